@@ -6,14 +6,19 @@ import static iudx.resource.server.apiserver.util.Constants.API_ENDPOINT;
 import static iudx.resource.server.apiserver.util.Constants.APPLICATION_JSON;
 import static iudx.resource.server.apiserver.util.Constants.CONTENT_TYPE;
 import static iudx.resource.server.apiserver.util.Constants.DOMAIN;
+import static iudx.resource.server.apiserver.util.Constants.EXPORT_JOB_COMPLETED;
+import static iudx.resource.server.apiserver.util.Constants.EXPORT_JOB_FAILED;
+import static iudx.resource.server.apiserver.util.Constants.EXPORT_JOB_ID;
 import static iudx.resource.server.apiserver.util.Constants.HEADER_ACCEPT;
 import static iudx.resource.server.apiserver.util.Constants.HEADER_ALLOW_ORIGIN;
+import static iudx.resource.server.apiserver.util.Constants.HEADER_CONTENT_DISPOSITION;
 import static iudx.resource.server.apiserver.util.Constants.HEADER_CONTENT_LENGTH;
 import static iudx.resource.server.apiserver.util.Constants.HEADER_CONTENT_TYPE;
 import static iudx.resource.server.apiserver.util.Constants.HEADER_HOST;
 import static iudx.resource.server.apiserver.util.Constants.HEADER_OPTIONS;
 import static iudx.resource.server.apiserver.util.Constants.HEADER_ORIGIN;
 import static iudx.resource.server.apiserver.util.Constants.HEADER_REFERER;
+import static iudx.resource.server.apiserver.util.Constants.HEADER_RETRY_AFTER;
 import static iudx.resource.server.apiserver.util.Constants.HEADER_TOKEN;
 import static iudx.resource.server.apiserver.util.Constants.ID;
 import static iudx.resource.server.apiserver.util.Constants.IUDXQUERY_OPTIONS;
@@ -22,18 +27,29 @@ import static iudx.resource.server.apiserver.util.Constants.IUDX_PROVIDER_AUDIT_
 import static iudx.resource.server.apiserver.util.Constants.JSON_ALIAS;
 import static iudx.resource.server.apiserver.util.Constants.JSON_CONSUMER;
 import static iudx.resource.server.apiserver.util.Constants.JSON_COUNT;
+import static iudx.resource.server.apiserver.util.Constants.JSON_EXPORT_FORMAT;
+import static iudx.resource.server.apiserver.util.Constants.JSON_EXPORT_STATUS;
+import static iudx.resource.server.apiserver.util.Constants.JSON_EXPORT_USER_ID;
+import static iudx.resource.server.apiserver.util.Constants.JSON_ENTITIES;
 import static iudx.resource.server.apiserver.util.Constants.JSON_ID;
 import static iudx.resource.server.apiserver.util.Constants.JSON_INSTANCEID;
 import static iudx.resource.server.apiserver.util.Constants.JSON_NAME;
 import static iudx.resource.server.apiserver.util.Constants.JSON_SEARCH_TYPE;
 import static iudx.resource.server.apiserver.util.Constants.JSON_TITLE;
 import static iudx.resource.server.apiserver.util.Constants.JSON_TYPE;
+import static iudx.resource.server.apiserver.util.Constants.MIME_APPLICATION_GZIP;
 import static iudx.resource.server.apiserver.util.Constants.MIME_APPLICATION_JSON;
 import static iudx.resource.server.apiserver.util.Constants.MIME_TEXT_HTML;
 import static iudx.resource.server.apiserver.util.Constants.MSG_INVALID_NAME;
 import static iudx.resource.server.apiserver.util.Constants.MSG_SUB_TYPE_NOT_FOUND;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_AGGR_INTERVAL;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_ATTRIBUTE;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_CURSOR;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_FROM;
 import static iudx.resource.server.apiserver.util.Constants.NGSILD_ENTITIES_URL;
+import static iudx.resource.server.apiserver.util.Constants.NGSILD_EXPORT_URL;
 import static iudx.resource.server.apiserver.util.Constants.NGSILD_POST_ENTITIES_QUERY_PATH;
+import static iudx.resource.server.apiserver.util.Constants.NGSILD_POST_LATEST_QUERY_PATH;
 import static iudx.resource.server.apiserver.util.Constants.NGSILD_POST_TEMPORAL_QUERY_PATH;
 import static iudx.resource.server.apiserver.util.Constants.NGSILD_TEMPORAL_URL;
 import static iudx.resource.server.apiserver.util.Constants.RESOURCE_GROUP;
@@ -51,14 +67,25 @@ import static iudx.resource.server.common.Api.INGESTION;
 import static iudx.resource.server.common.Api.MANAGEMENT;
 import static iudx.resource.server.common.Api.NGSILD_BASE;
 import static iudx.resource.server.common.Api.SUBSCRIPTION;
+import static iudx.resource.server.common.Constants.EXPORT_SERVICE_ADDRESS;
+import static iudx.resource.server.common.Constants.LOCAL_SERVICES_MAP;
 import static iudx.resource.server.common.Constants.PG_SERVICE_ADDRESS;
 import static iudx.resource.server.common.HttpStatusCode.BAD_REQUEST;
+import static iudx.resource.server.common.HttpStatusCode.CONFLICT;
+import static iudx.resource.server.common.HttpStatusCode.TOO_MANY_REQUESTS;
 import static iudx.resource.server.common.HttpStatusCode.UNAUTHORIZED;
 import static iudx.resource.server.common.ResponseUrn.BACKING_SERVICE_FORMAT_URN;
+import static iudx.resource.server.common.ResponseUrn.INVALID_OPERATION_URN;
 import static iudx.resource.server.common.ResponseUrn.INVALID_PARAM_URN;
 import static iudx.resource.server.common.ResponseUrn.INVALID_TEMPORAL_PARAM_URN;
 import static iudx.resource.server.common.ResponseUrn.MISSING_TOKEN_URN;
+import static iudx.resource.server.common.ResponseUrn.RESOURCE_NOT_FOUND_URN;
+import static iudx.resource.server.common.ResponseUrn.TOO_MANY_REQUESTS_URN;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -69,6 +96,7 @@ import org.apache.logging.log4j.Logger;
 import io.netty.handler.codec.http.HttpConstants;
 import io.netty.handler.codec.http.QueryStringDecoder;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.MultiMap;
 import io.vertx.core.Promise;
@@ -81,10 +109,13 @@ import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.net.JksOptions;
+import io.vertx.core.shareddata.LocalMap;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.CorsHandler;
+import iudx.resource.server.apiserver.admission.AdmissionController;
+import iudx.resource.server.apiserver.admission.AdmissionRejectedException;
 import iudx.resource.server.apiserver.exceptions.DxRuntimeException;
 import iudx.resource.server.apiserver.handlers.AuthHandler;
 import iudx.resource.server.apiserver.handlers.FailureHandler;
@@ -103,7 +134,11 @@ import iudx.resource.server.authenticator.AuthenticationService;
 import iudx.resource.server.common.HttpStatusCode;
 import iudx.resource.server.common.ResponseUrn;
 import iudx.resource.server.database.archives.DatabaseService;
+import iudx.resource.server.database.archives.DatabaseServiceImpl;
+import iudx.resource.server.database.export.ExportFormat;
+import iudx.resource.server.database.export.ExportService;
 import iudx.resource.server.database.latest.LatestDataService;
+import iudx.resource.server.database.latest.LatestDataServiceImpl;
 import iudx.resource.server.database.postgres.PostgresService;
 import iudx.resource.server.databroker.DataBrokerService;
 import iudx.resource.server.metering.MeteringService;
@@ -154,8 +189,14 @@ public class ApiServerVerticle extends AbstractVerticle {
   private DataBrokerService databroker;
   private AuthenticationService authenticator;
   private ParamsValidator validator;
+  private LocalMap<String, DatabaseServiceImpl> localServices;
+  private ExportService exportService;
+  private long exportMaxDaysInterval;
+  private Path exportDirectory;
 
   private LatestDataService latestDataService;
+  private LocalMap<String, LatestDataServiceImpl> latestServices;
+  private AdmissionController admission;
 
   /**
    * This method is used to start the Verticle. It deploys a verticle in a cluster, reads the
@@ -256,6 +297,15 @@ public class ApiServerVerticle extends AbstractVerticle {
         .handler(this::handleLatestEntitiesQuery)
         .failureHandler(validationsFailureHandler);
 
+    ValidationHandler latestGroupValidationHandler =
+        new ValidationHandler(vertx, RequestType.LATEST_GROUP);
+    router
+        .get(NGSILD_ENTITIES_URL + "/:domain/:userSha/:resourceServer/:resourceGroup")
+        .handler(latestGroupValidationHandler)
+        .handler(AuthHandler.create(vertx))
+        .handler(this::handleLatestGroupQuery)
+        .failureHandler(validationsFailureHandler);
+
     ValidationHandler postTemporalValidationHandler =
         new ValidationHandler(vertx, RequestType.POST_TEMPORAL);
     router
@@ -276,6 +326,17 @@ public class ApiServerVerticle extends AbstractVerticle {
         .handler(this::handlePostEntitiesQuery)
         .failureHandler(validationsFailureHandler);
 
+    // latest data of many entities in one request
+    ValidationHandler postLatestValidationHandler =
+        new ValidationHandler(vertx, RequestType.POST_LATEST);
+    router
+        .post(NGSILD_POST_LATEST_QUERY_PATH)
+        .consumes(APPLICATION_JSON)
+        .handler(postLatestValidationHandler)
+        .handler(AuthHandler.create(vertx))
+        .handler(this::handlePostLatestQuery)
+        .failureHandler(validationsFailureHandler);
+
     ValidationHandler temporalValidationHandler =
         new ValidationHandler(vertx, RequestType.TEMPORAL);
     router
@@ -285,6 +346,28 @@ public class ApiServerVerticle extends AbstractVerticle {
         .handler(this::handleTemporalQuery)
         .failureHandler(validationsFailureHandler);
 
+    // bulk export of a temporal query
+    ValidationHandler exportValidationHandler = new ValidationHandler(vertx, RequestType.EXPORT);
+    router
+        .post(NGSILD_EXPORT_URL)
+        .consumes(APPLICATION_JSON)
+        .handler(exportValidationHandler)
+        .handler(AuthHandler.create(vertx))
+        .handler(this::handleExportSubmit)
+        .failureHandler(validationsFailureHandler);
+
+    router
+        .get(NGSILD_EXPORT_URL + "/:" + EXPORT_JOB_ID)
+        .handler(AuthHandler.create(vertx))
+        .handler(this::handleExportStatus)
+        .failureHandler(validationsFailureHandler);
+
+    router
+        .get(NGSILD_EXPORT_URL + "/:" + EXPORT_JOB_ID + "/file")
+        .handler(AuthHandler.create(vertx))
+        .handler(this::handleExportDownload)
+        .failureHandler(validationsFailureHandler);
+
     // create sub
     ValidationHandler subsValidationHandler =
         new ValidationHandler(vertx, RequestType.SUBSCRIPTION);
@@ -447,6 +530,27 @@ public class ApiServerVerticle extends AbstractVerticle {
     databroker = DataBrokerService.createProxy(vertx, BROKER_SERVICE_ADDRESS);
     meteringService = MeteringService.createProxy(vertx, METERING_SERVICE_ADDRESS);
     latestDataService = LatestDataService.createProxy(vertx, LATEST_SEARCH_ADDRESS);
+    exportService = ExportService.createProxy(vertx, EXPORT_SERVICE_ADDRESS);
+    exportMaxDaysInterval = config().getLong("exportMaxDaysInterval", 365L);
+    /*
+     * The export files are written by the export verticle and sent from here, both have to be
+     * configured with the same exportDirectory, on the same host or on a shared volume.
+     */
+    exportDirectory = Paths.get(config().getString("exportDirectory", "exports"));
+    /* Archive queries are admitted by their cost when enabled. */
+    if (config().getBoolean("admissionEnabled", false)) {
+      admission = AdmissionController.shared(vertx, config());
+    }
+
+    /*
+     * Search results are streamed from the database directly when enabled, through the service of
+     * the database verticle of this instance.
+     */
+    if (config().getBoolean("enableStreaming", false)) {
+      localServices = vertx.sharedData().getLocalMap(LOCAL_SERVICES_MAP);
+      /* Latest values of a resource group are streamed through the latest verticle as well. */
+      latestServices = vertx.sharedData().getLocalMap(LOCAL_SERVICES_MAP);
+    }
 
     managementApi = new ManagementApiImpl();
     subsService = new SubscriptionService();
@@ -609,6 +713,121 @@ public class ApiServerVerticle extends AbstractVerticle {
     });
   }
 
+  /**
+   * This method is used to handle the latest data of all the entities of a resource group for
+   * endpoint /ngsi-ld/v1/entities/{domain}/{userSha}/{resourceServer}/{resourceGroup}, the response
+   * may be projected to the attributes given in <code>attrs</code>.
+   *
+   * @param routingContext RoutingContext Object
+   */
+  private void handleLatestGroupQuery(RoutingContext routingContext) {
+    LOGGER.trace("Info:handleLatestGroupQuery method started.;");
+    HttpServerRequest request = routingContext.request();
+    HttpServerResponse response = routingContext.response();
+    MultiMap params = getQueryParams(routingContext, response).get();
+    if (params.names().stream().anyMatch(name -> !NGSILDQUERY_ATTRIBUTE.equals(name))) {
+      RuntimeException ex =
+          new RuntimeException("Only attrs query parameter is allowed with latest group query");
+      routingContext.fail(ex);
+      return;
+    }
+    String id = request.getParam(DOMAIN) + "/" + request.getParam(USERSHA) + "/"
+        + request.getParam(RESOURCE_SERVER) + "/" + request.getParam(RESOURCE_GROUP);
+
+    JsonObject json = new JsonObject();
+    /* HTTP request instance/host details */
+    String instanceID = request.getHeader(HEADER_HOST);
+    json.put(JSON_INSTANCEID, instanceID);
+    json.put(JSON_ID, new JsonArray().add(id));
+    json.put(JSON_SEARCH_TYPE, "latestSearch");
+    if (params.contains(NGSILDQUERY_ATTRIBUTE)) {
+      JsonArray attrs = new JsonArray();
+      Stream.of(params.get(NGSILDQUERY_ATTRIBUTE).split(","))
+          .map(String::trim)
+          .filter(attr -> !attr.isEmpty())
+          .forEach(attrs::add);
+      json.put(NGSILDQUERY_ATTRIBUTE, attrs);
+    }
+    LOGGER.debug("Info: IUDX query json;" + json);
+    LatestDataServiceImpl latestStreamer =
+        latestServices == null ? null : latestServices.get(LATEST_SEARCH_ADDRESS);
+    if (latestStreamer != null) {
+      executeLatestGroupStreamQuery(latestStreamer, routingContext, json, response);
+      return;
+    }
+    latestDataService.getGroupLatestData(
+        json,
+        handler -> {
+          if (handler.succeeded()) {
+            LOGGER.info("Latest group data search succeeded");
+            Future.future(fu -> updateAuditTable(routingContext));
+            handleSuccessResponse(response, ResponseType.Ok.getCode(), handler.result().toString());
+          } else {
+            LOGGER.error("Fail: Search Fail");
+            processBackendResponse(response, handler.cause().getMessage());
+          }
+        });
+  }
+
+  /**
+   * Write the latest values of a resource group to the client as they are read from Redis.
+   *
+   * @param latestStreamer latest service of the latest verticle of this instance
+   * @param json valid json query
+   * @param response
+   */
+  private void executeLatestGroupStreamQuery(LatestDataServiceImpl latestStreamer,
+      RoutingContext context, JsonObject json, HttpServerResponse response) {
+    latestStreamer.getGroupLatestStream(
+        json,
+        handler -> {
+          if (handler.succeeded()) {
+            LOGGER.info("Success: Latest group stream started");
+            response
+                .putHeader(CONTENT_TYPE, APPLICATION_JSON)
+                .setStatusCode(ResponseType.Ok.getCode())
+                .setChunked(true);
+            handler.result().pipe().endOnFailure(false).to(response, pipeHandler -> {
+              if (pipeHandler.succeeded()) {
+                Future.future(fu -> updateAuditTable(context));
+              } else {
+                LOGGER.error("Fail: Latest group stream;" + pipeHandler.cause().getMessage());
+                response.reset();
+              }
+            });
+          } else {
+            LOGGER.error("Fail: Search Fail");
+            processBackendResponse(response, handler.cause().getMessage());
+          }
+        });
+  }
+
+  /**
+   * This method is used to handle the latest data of many entities for endpoint
+   * /ngsi-ld/v1/entityOperations/latest, the latest data of all the entities is looked up together
+   * and returned in one response.
+   *
+   * @param routingContext RoutingContext Object
+   */
+  private void handlePostLatestQuery(RoutingContext routingContext) {
+    LOGGER.trace("Info: handlePostLatestQuery method started.");
+    HttpServerRequest request = routingContext.request();
+    HttpServerResponse response = routingContext.response();
+    JsonObject requestJson = routingContext.getBodyAsJson();
+    Set<String> ids = new LinkedHashSet<>();
+    requestJson.getJsonArray(JSON_ENTITIES)
+        .forEach(entity -> ids.add(((JsonObject) entity).getString(JSON_ID)));
+
+    JsonObject json = new JsonObject();
+    /* HTTP request instance/host details */
+    String instanceID = request.getHeader(HEADER_HOST);
+    json.put(JSON_INSTANCEID, instanceID);
+    json.put(JSON_ID, new JsonArray(new ArrayList<>(ids)));
+    json.put(JSON_SEARCH_TYPE, "latestSearch");
+    LOGGER.debug("Info: IUDX query json;" + json);
+    executeLatestSearchQuery(routingContext, json, response);
+  }
+
   /**
    * This method is used to handle all NGSI-LD queries for endpoint /ngsi-ld/v1/entities/**.
    *
@@ -694,8 +913,7 @@ public class ApiServerVerticle extends AbstractVerticle {
             NGSILDQueryParams ngsildquery = new NGSILDQueryParams(requestJson);
             QueryMapper queryMapper = new QueryMapper();
             JsonObject json = queryMapper.toJson(ngsildquery, requestJson.containsKey("temporalQ"));
-            Future<List<String>> filtersFuture =
-                catalogueService.getApplicableFilters(json.getJsonArray("id").getString(0));
+            Future<List<String>> filtersFuture = getApplicableFilters(json.getJsonArray("id"));
             String instanceID = request.getHeader(HEADER_HOST);
             json.put(JSON_INSTANCEID, instanceID);
             requestJson.put("ids", json.getJsonArray("id"));
@@ -709,6 +927,10 @@ public class ApiServerVerticle extends AbstractVerticle {
                     	json.put("limit", params.get("limit"));
                     	json.put("offset", params.get("offset"));
                     }
+                    if (params.contains(NGSILDQUERY_CURSOR)) {
+                      json.remove(NGSILDQUERY_FROM);
+                      json.put(NGSILDQUERY_CURSOR, params.get(NGSILDQUERY_CURSOR));
+                    }
                     if (json.containsKey(IUDXQUERY_OPTIONS)
                         && JSON_COUNT.equalsIgnoreCase(json.getString(IUDXQUERY_OPTIONS))) {
                       executeCountQuery(routingContext, json, response);
@@ -728,6 +950,30 @@ public class ApiServerVerticle extends AbstractVerticle {
   }
 
 
+  /**
+   * Filters applicable to all the entities of a query, a query on several entities may only use
+   * the filters every one of them supports.
+   *
+   * @param ids ids of the queried entities
+   * @return common applicable filters
+   */
+  private Future<List<String>> getApplicableFilters(JsonArray ids) {
+    if (ids.size() == 1) {
+      return catalogueService.getApplicableFilters(ids.getString(0));
+    }
+    List<Future> filterFutures = new ArrayList<>();
+    for (Object id : new HashSet<>(ids.getList())) {
+      filterFutures.add(catalogueService.getApplicableFilters(id.toString()));
+    }
+    return CompositeFuture.all(filterFutures).map(filters -> {
+      List<String> common = new ArrayList<>(filters.<List<String>>resultAt(0));
+      for (int i = 1; i < filters.size(); i++) {
+        common.retainAll(filters.<List<String>>resultAt(i));
+      }
+      return common;
+    });
+  }
+
   /**
    * Execute a count query in DB
    *
@@ -736,18 +982,19 @@ public class ApiServerVerticle extends AbstractVerticle {
    */
   private void executeCountQuery(
       RoutingContext context, JsonObject json, HttpServerResponse response) {
-    database.countQuery(
+    admitQuery(context, json, response, () -> database.countQuery(
         json,
         handler -> {
           if (handler.succeeded()) {
             LOGGER.info("Success: Count Success");
+            recordQueryCost(json, handler.result());
             Future.future(fu -> updateAuditTable(context));
             handleSuccessResponse(response, ResponseType.Ok.getCode(), handler.result().toString());
           } else if (handler.failed()) {
             LOGGER.error("Fail: Count Fail");
             processBackendResponse(response, handler.cause().getMessage());
           }
-        });
+        }));
   }
 
   /**
@@ -758,17 +1005,99 @@ public class ApiServerVerticle extends AbstractVerticle {
    */
   private void executeSearchQuery(
       RoutingContext context, JsonObject json, HttpServerResponse response) {
-    database.searchQuery(
+    // results of several entities are merged per entity and buckets of an aggregation are
+    // collected by the database, only the documents of a single entity are streamed
+    DatabaseServiceImpl archiveStreamer =
+        localServices == null ? null : localServices.get(DATABASE_SERVICE_ADDRESS);
+    if (archiveStreamer != null && json.getJsonArray(JSON_ID).size() == 1
+        && !json.containsKey(NGSILDQUERY_AGGR_INTERVAL)) {
+      admitQuery(context, json, response,
+          () -> executeSearchStreamQuery(archiveStreamer, context, json, response));
+      return;
+    }
+    admitQuery(context, json, response, () -> database.searchQuery(
         json,
         handler -> {
           if (handler.succeeded()) {
             LOGGER.info("Success: Search Success");
+            recordQueryCost(json, handler.result());
             Future.future(fu -> updateAuditTable(context));
             handleSuccessResponse(response, ResponseType.Ok.getCode(), handler.result().toString());
           } else if (handler.failed()) {
             LOGGER.error("Fail: Search Fail");
             processBackendResponse(response, handler.cause().getMessage());
           }
+        }));
+  }
+
+  /**
+   * Runs an archive query once it is admitted within the budgets of its user and of the server. A
+   * query above budget is answered with a 429 and the seconds after which it may be sent again.
+   *
+   * @param json valid json query
+   * @param response
+   * @param query sends the query to the database
+   */
+  private void admitQuery(RoutingContext context, JsonObject json, HttpServerResponse response,
+      Runnable query) {
+    if (admission == null) {
+      query.run();
+      return;
+    }
+    JsonObject authInfo = (JsonObject) context.data().get("authInfo");
+    String user = authInfo == null ? null : authInfo.getString(USER_ID);
+    admission.admit(user, json).onComplete(admitted -> {
+      if (admitted.succeeded()) {
+        query.run();
+        return;
+      }
+      LOGGER.warn("Fail: Query not admitted;" + admitted.cause().getMessage());
+      long retryAfter = admitted.cause() instanceof AdmissionRejectedException
+          ? ((AdmissionRejectedException) admitted.cause()).getRetryAfter()
+          : 1;
+      response.putHeader(HEADER_RETRY_AFTER, String.valueOf(retryAfter));
+      handleResponse(response, TOO_MANY_REQUESTS, TOO_MANY_REQUESTS_URN,
+          admitted.cause().getMessage());
+    });
+  }
+
+  private void recordQueryCost(JsonObject json, JsonObject result) {
+    if (admission != null) {
+      admission.record(json, result);
+    }
+  }
+
+  /**
+   * Execute a search query in DB and write the results to the client as they are read, without
+   * holding the complete result in memory.
+   *
+   * @param archiveStreamer database service of this instance
+   * @param json valid json query
+   * @param response
+   */
+  private void executeSearchStreamQuery(DatabaseServiceImpl archiveStreamer,
+      RoutingContext context, JsonObject json, HttpServerResponse response) {
+    archiveStreamer.searchStream(
+        json,
+        handler -> {
+          if (handler.succeeded()) {
+            LOGGER.info("Success: Search stream started");
+            response
+                .putHeader(CONTENT_TYPE, APPLICATION_JSON)
+                .setStatusCode(ResponseType.Ok.getCode())
+                .setChunked(true);
+            handler.result().pipe().endOnFailure(false).to(response, pipeHandler -> {
+              if (pipeHandler.succeeded()) {
+                Future.future(fu -> updateAuditTable(context));
+              } else {
+                LOGGER.error("Fail: Search stream;" + pipeHandler.cause().getMessage());
+                response.reset();
+              }
+            });
+          } else {
+            LOGGER.error("Fail: Search Fail");
+            processBackendResponse(response, handler.cause().getMessage());
+          }
         });
   }
 
@@ -843,6 +1172,135 @@ public class ApiServerVerticle extends AbstractVerticle {
         });
 
   }
+
+  /**
+   * This method is used to submit a bulk export of a temporal query, the export is run in the
+   * background and its status is polled with the returned job id.
+   *
+   * @param routingContext routingContext
+   */
+  private void handleExportSubmit(RoutingContext routingContext) {
+    LOGGER.trace("Info: handleExportSubmit method started.");
+    HttpServerRequest request = routingContext.request();
+    HttpServerResponse response = routingContext.response();
+    JsonObject requestJson = routingContext.getBodyAsJson();
+    JsonObject authInfo = (JsonObject) routingContext.data().get("authInfo");
+    // the format is not a query parameter, it is checked by the export service
+    JsonObject queryJson = requestJson.copy();
+    String format = (String) queryJson.remove(JSON_EXPORT_FORMAT);
+    Future<Boolean> validationResult = validator.validate(queryJson);
+    validationResult.onComplete(
+        validationHandler -> {
+          if (validationHandler.failed()) {
+            LOGGER.error("Fail: Bad request");
+            handleResponse(
+                response, BAD_REQUEST, INVALID_PARAM_URN, validationHandler.cause().getMessage());
+            return;
+          }
+          NGSILDQueryParams ngsildquery = new NGSILDQueryParams(queryJson);
+          JsonObject json;
+          try {
+            json = new QueryMapper(exportMaxDaysInterval).toJson(ngsildquery, true);
+          } catch (DxRuntimeException ex) {
+            handleResponse(response, HttpStatusCode.getByValue(ex.getStatusCode()), ex.getUrn(),
+                ex.getMessage());
+            return;
+          }
+          json.put(JSON_INSTANCEID, request.getHeader(HEADER_HOST));
+          json.put(JSON_EXPORT_FORMAT, format);
+          json.put(JSON_EXPORT_USER_ID, authInfo.getString(USER_ID));
+          LOGGER.debug("Info: IUDX export json query;" + json);
+          getApplicableFilters(json.getJsonArray(JSON_ID))
+              .compose(filters -> {
+                json.put("applicableFilters", filters);
+                Promise<JsonObject> promise = Promise.promise();
+                exportService.submitJob(json, promise);
+                return promise.future();
+              })
+              .onComplete(handler -> {
+                if (handler.succeeded()) {
+                  LOGGER.info("Success: export job submitted");
+                  Future.future(fu -> updateAuditTable(routingContext));
+                  handleSuccessResponse(response, ResponseType.Accepted.getCode(),
+                      handler.result().toString());
+                } else {
+                  LOGGER.error("Fail: export job submit;" + handler.cause().getMessage());
+                  processBackendResponse(response, handler.cause().getMessage());
+                }
+              });
+        });
+  }
+
+  /**
+   * This method is used to get the status of an export job of the user.
+   *
+   * @param routingContext routingContext
+   */
+  private void handleExportStatus(RoutingContext routingContext) {
+    LOGGER.trace("Info: handleExportStatus method started.");
+    HttpServerResponse response = routingContext.response();
+    getExportJob(routingContext).onComplete(handler -> {
+      if (handler.succeeded()) {
+        handleSuccessResponse(response, ResponseType.Ok.getCode(), handler.result().toString());
+      } else {
+        processBackendResponse(response, handler.cause().getMessage());
+      }
+    });
+  }
+
+  /**
+   * This method is used to download the file of a completed export job of the user.
+   *
+   * @param routingContext routingContext
+   */
+  private void handleExportDownload(RoutingContext routingContext) {
+    LOGGER.trace("Info: handleExportDownload method started.");
+    HttpServerResponse response = routingContext.response();
+    getExportJob(routingContext).onComplete(handler -> {
+      if (handler.failed()) {
+        processBackendResponse(response, handler.cause().getMessage());
+        return;
+      }
+      JsonObject status = handler.result().getJsonArray("results").getJsonObject(0);
+      String jobStatus = status.getString(JSON_EXPORT_STATUS);
+      if (EXPORT_JOB_FAILED.equals(jobStatus)) {
+        handleResponse(response, HttpStatusCode.NOT_FOUND, RESOURCE_NOT_FOUND_URN,
+            "Export job failed");
+        return;
+      }
+      if (!EXPORT_JOB_COMPLETED.equals(jobStatus)) {
+        handleResponse(response, CONFLICT, INVALID_OPERATION_URN,
+            "Export job is " + jobStatus);
+        return;
+      }
+      // the file is looked up in the export directory of this verticle by its name only
+      String fileName = ExportFormat.fromFormat(status.getString(JSON_EXPORT_FORMAT))
+          .fileName(status.getString(EXPORT_JOB_ID));
+      String filePath = exportDirectory.resolve(fileName).toString();
+      Future.future(fu -> updateAuditTable(routingContext));
+      response
+          .putHeader(CONTENT_TYPE, MIME_APPLICATION_GZIP)
+          .putHeader(HEADER_CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+          .sendFile(filePath, sendHandler -> {
+            if (sendHandler.failed()) {
+              LOGGER.error("Fail: export file;" + sendHandler.cause().getMessage());
+              if (!response.headWritten()) {
+                handleResponse(response, HttpStatusCode.NOT_FOUND, RESOURCE_NOT_FOUND_URN,
+                    "Export file not found");
+              }
+            }
+          });
+    });
+  }
+
+  /** Status of the export job in the path, an export job is only visible to its own user. */
+  private Future<JsonObject> getExportJob(RoutingContext routingContext) {
+    JsonObject authInfo = (JsonObject) routingContext.data().get("authInfo");
+    Promise<JsonObject> promise = Promise.promise();
+    exportService.getJobStatus(routingContext.pathParam(EXPORT_JOB_ID),
+        authInfo.getString(USER_ID), promise);
+    return promise.future();
+  }
   
 
   /**
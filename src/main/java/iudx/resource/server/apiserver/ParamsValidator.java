@@ -2,10 +2,15 @@ package iudx.resource.server.apiserver;
 
 import static iudx.resource.server.apiserver.util.Constants.HEADER_OPTIONS;
 import static iudx.resource.server.apiserver.util.Constants.HEADER_TOKEN;
+import static iudx.resource.server.apiserver.util.Constants.IUDXQUERY_ACCURACY;
 import static iudx.resource.server.apiserver.util.Constants.IUDXQUERY_OPTIONS;
 import static iudx.resource.server.apiserver.util.Constants.MSG_BAD_QUERY;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_AGGR_ATTRS;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_AGGR_INTERVAL;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_AGGR_METHODS;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_ATTRIBUTE;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_COORDINATES;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_CURSOR;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_ENDTIME;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_ENTITIES;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_FROM;
@@ -89,9 +94,15 @@ public class ParamsValidator {
     validParams.add(NGSILDQUERY_TIME_PROPERTY);
     validParams.add(NGSILDQUERY_FROM);
     validParams.add(NGSILDQUERY_SIZE);
+    validParams.add(NGSILDQUERY_CURSOR);
+    // temporal aggregation
+    validParams.add(NGSILDQUERY_AGGR_INTERVAL);
+    validParams.add(NGSILDQUERY_AGGR_METHODS);
+    validParams.add(NGSILDQUERY_AGGR_ATTRS);
 
     // for IUDX count query
     validParams.add(IUDXQUERY_OPTIONS);
+    validParams.add(IUDXQUERY_ACCURACY);
   }
 
   static {
@@ -0,0 +1,181 @@
+package iudx.resource.server.apiserver.admission;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.micrometer.backends.BackendRegistries;
+
+/**
+ * Admission of archive queries by their cost, within a token bucket per user and a global one.
+ * <p>
+ * A query is admitted at once when both buckets hold its cost. A query which fits once the
+ * buckets are refilled within the maximum wait is queued, its cost is taken ahead of time and it
+ * is admitted when it is due. Any other query is rejected with the time after which it would fit,
+ * so a consumer pulling heavy queries is slowed down before the light queries of others are.
+ * </p>
+ */
+public final class AdmissionController implements Shareable {
+
+  private static final Logger LOGGER = LogManager.getLogger(AdmissionController.class);
+
+  private static final String METRIC_PREFIX = "iudx.rs.api.admission";
+  private static final String SHARED_NAME = "iudx.rs.api.admission";
+
+  private final Vertx vertx;
+  private final QueryCostEstimator estimator;
+  private final LongSupplier clock;
+  private final double userRate;
+  private final double userBurst;
+  private final long maxWait;
+  private final int maxUsers;
+  private final TokenBucket global;
+  private final LinkedHashMap<String, TokenBucket> users = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final Counter admitted;
+  private final Counter queued;
+  private final Counter rejected;
+
+  /**
+   * Admission controller configured from the API server configuration.
+   * <ul>
+   * <li><code>admissionUserRate</code> units per second of a user</li>
+   * <li><code>admissionUserBurst</code> units a user may spend at once</li>
+   * <li><code>admissionGlobalRate</code> units per second of all users</li>
+   * <li><code>admissionGlobalBurst</code> units all users may spend at once</li>
+   * <li><code>admissionMaxWait</code> millis a query may be queued for</li>
+   * <li><code>admissionMaxUsers</code> number of users whose buckets are kept</li>
+   * </ul>
+   *
+   * @param vertx vertx instance the queued queries are admitted on
+   * @param config configuration
+   * @param estimator cost of the queries
+   * @param registry registry the admission metrics are published to
+   * @param clock current time in millis
+   */
+  public AdmissionController(Vertx vertx, JsonObject config, QueryCostEstimator estimator,
+      MeterRegistry registry, LongSupplier clock) {
+    this.vertx = vertx;
+    this.estimator = estimator;
+    this.clock = clock;
+    this.userRate = config.getDouble("admissionUserRate", 50.0);
+    this.userBurst = config.getDouble("admissionUserBurst", 500.0);
+    this.maxWait = config.getLong("admissionMaxWait", 2000L);
+    this.maxUsers = config.getInteger("admissionMaxUsers", 10000);
+    this.global = new TokenBucket(config.getDouble("admissionGlobalRate", 500.0),
+        config.getDouble("admissionGlobalBurst", 5000.0), clock.getAsLong());
+
+    admitted = Counter.builder(METRIC_PREFIX + ".requests").tag("result", "admitted")
+        .register(registry);
+    queued = Counter.builder(METRIC_PREFIX + ".requests").tag("result", "queued")
+        .register(registry);
+    rejected = Counter.builder(METRIC_PREFIX + ".requests").tag("result", "rejected")
+        .register(registry);
+  }
+
+  /**
+   * The admission controller shared by the API server verticles of a vertx instance, so the
+   * budgets do not grow with the number of verticle instances.
+   *
+   * @param vertx vertx instance
+   * @param config configuration of the API server
+   * @return the shared admission controller
+   */
+  public static AdmissionController shared(Vertx vertx, JsonObject config) {
+    LocalMap<String, AdmissionController> controllers =
+        vertx.sharedData().getLocalMap(SHARED_NAME);
+    AdmissionController controller = controllers.get(SHARED_NAME);
+    if (controller == null) {
+      MeterRegistry registry = BackendRegistries.getDefaultNow();
+      AdmissionController created = new AdmissionController(vertx, config,
+          new QueryCostEstimator(config),
+          registry == null ? new SimpleMeterRegistry() : registry,
+          () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+      controller = controllers.putIfAbsent(SHARED_NAME, created);
+      if (controller == null) {
+        controller = created;
+      }
+    }
+    return controller;
+  }
+
+  /**
+   * Admits a query.
+   *
+   * @param user subject of the token of the request, null to only use the global budget
+   * @param query query as mapped from the request
+   * @return completed when the query is admitted, failed with an
+   *         {@link AdmissionRejectedException} when it is above budget
+   */
+  public Future<Void> admit(String user, JsonObject query) {
+    double cost = estimator.cost(query);
+    long wait;
+    synchronized (this) {
+      long now = clock.getAsLong();
+      TokenBucket bucket = user == null ? null : bucket(user, now);
+      // a query costing more than a full bucket is charged a full bucket
+      double charge = Math.min(cost,
+          bucket == null ? global.capacity() : Math.min(bucket.capacity(), global.capacity()));
+      wait = global.waitMillis(charge, now);
+      if (bucket != null) {
+        wait = Math.max(wait, bucket.waitMillis(charge, now));
+      }
+      if (wait > maxWait) {
+        rejected.increment();
+        long retryAfter = Math.max(1, (long) Math.ceil(wait / 1000.0));
+        LOGGER.debug("Info: query of cost " + cost + " rejected, retry after " + retryAfter);
+        return Future.failedFuture(new AdmissionRejectedException(
+            "Query cost above the budget, retry after " + retryAfter + " seconds", retryAfter));
+      }
+      global.take(charge);
+      if (bucket != null) {
+        bucket.take(charge);
+      }
+    }
+    if (wait == 0) {
+      admitted.increment();
+      return Future.succeededFuture();
+    }
+    queued.increment();
+    Promise<Void> promise = Promise.promise();
+    vertx.setTimer(wait, id -> promise.complete());
+    return promise.future();
+  }
+
+  /**
+   * Learns the documents per day of an index from the response of a query.
+   *
+   * @param query query as mapped from the request
+   * @param response successful response of the query
+   */
+  public void record(JsonObject query, JsonObject response) {
+    estimator.record(query, response);
+  }
+
+  synchronized double tokens(String user) {
+    TokenBucket bucket = users.get(user);
+    return bucket == null ? userBurst : bucket.tokens(clock.getAsLong());
+  }
+
+  private TokenBucket bucket(String user, long now) {
+    TokenBucket bucket = users.get(user);
+    if (bucket == null) {
+      bucket = new TokenBucket(userRate, userBurst, now);
+      users.put(user, bucket);
+      if (users.size() > maxUsers) {
+        users.remove(users.keySet().iterator().next());
+      }
+    }
+    return bucket;
+  }
+}
@@ -0,0 +1,23 @@
+package iudx.resource.server.apiserver.admission;
+
+/**
+ * A query above the budget of its user or of the server, which may be sent again after a while.
+ */
+public final class AdmissionRejectedException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final long retryAfter;
+
+  public AdmissionRejectedException(final String message, final long retryAfter) {
+    super(message);
+    this.retryAfter = retryAfter;
+  }
+
+  /**
+   * @return seconds after which the query fits in the budget
+   */
+  public long getRetryAfter() {
+    return retryAfter;
+  }
+}
@@ -0,0 +1,234 @@
+package iudx.resource.server.apiserver.admission;
+
+import static iudx.resource.server.apiserver.util.Constants.IUDXQUERY_OPTIONS;
+import static iudx.resource.server.apiserver.util.Constants.JSON_ATTR_QUERY;
+import static iudx.resource.server.apiserver.util.Constants.JSON_COORDINATES;
+import static iudx.resource.server.apiserver.util.Constants.JSON_COUNT;
+import static iudx.resource.server.apiserver.util.Constants.JSON_DURING;
+import static iudx.resource.server.apiserver.util.Constants.JSON_ENDTIME;
+import static iudx.resource.server.apiserver.util.Constants.JSON_GEOMETRY;
+import static iudx.resource.server.apiserver.util.Constants.JSON_ID;
+import static iudx.resource.server.apiserver.util.Constants.JSON_LAT;
+import static iudx.resource.server.apiserver.util.Constants.JSON_RADIUS;
+import static iudx.resource.server.apiserver.util.Constants.JSON_TIME;
+import static iudx.resource.server.apiserver.util.Constants.JSON_TIMEREL;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_AGGR_INTERVAL;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_SIZE;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Cost of an archive query in units, a query on a day of a quiet resource costs about 1.
+ * <p>
+ * The documents a query reads are estimated from its time span and the number of documents per
+ * day of the index of its resource group, which is learnt from the counts and total hits of the
+ * queries on the index. The documents read are weighed by the area and the vertices of the
+ * geometry and by the number of attribute filters, and the documents returned by the page size.
+ * </p>
+ */
+public final class QueryCostEstimator {
+
+  private static final long DAY = TimeUnit.DAYS.toMillis(1);
+  // km per degree of latitude
+  private static final double KM_PER_DEGREE = 111.32;
+  private static final double LEARNING_RATE = 0.2;
+  private static final int MAX_INDICES = 10000;
+
+  private final double defaultDocsPerDay;
+  private final double defaultSpanDays;
+  private final double docsPerUnit;
+  private final double pageDocsPerUnit;
+  private final double referenceArea;
+  private final int defaultPageSize;
+  private final LongSupplier clock;
+  private final LinkedHashMap<String, Double> docsPerDay = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Cost estimator configured from the API server configuration.
+   * <ul>
+   * <li><code>admissionDocsPerDay</code> documents per day of an index nothing is known of</li>
+   * <li><code>admissionDefaultSpanDays</code> days read by a query without a time window</li>
+   * <li><code>admissionDocsPerUnit</code> documents read for a unit</li>
+   * <li><code>admissionPageDocsPerUnit</code> documents returned for a unit</li>
+   * <li><code>admissionReferenceArea</code> area in km<sup>2</sup> a geometry is weighed by</li>
+   * </ul>
+   *
+   * @param config configuration
+   */
+  public QueryCostEstimator(JsonObject config) {
+    this(config, System::currentTimeMillis);
+  }
+
+  QueryCostEstimator(JsonObject config, LongSupplier clock) {
+    this.defaultDocsPerDay = config.getDouble("admissionDocsPerDay", 10000.0);
+    this.defaultSpanDays = config.getDouble("admissionDefaultSpanDays", 10.0);
+    this.docsPerUnit = config.getDouble("admissionDocsPerUnit", 10000.0);
+    this.pageDocsPerUnit = config.getDouble("admissionPageDocsPerUnit", 1000.0);
+    this.referenceArea = config.getDouble("admissionReferenceArea", 100.0);
+    this.defaultPageSize = config.getInteger("admissionDefaultPageSize", 5000);
+    this.clock = clock;
+  }
+
+  /**
+   * Cost of a query.
+   *
+   * @param query query as mapped from the request
+   * @return cost in units, at least 1
+   */
+  public double cost(JsonObject query) {
+    double docs = docsPerDay(index(query)) * spanDays(query, clock.getAsLong());
+    JsonArray attributes = query.getJsonArray(JSON_ATTR_QUERY);
+    double filters = 1 + 0.5 * (attributes == null ? 0 : attributes.size());
+    double read = docs / docsPerUnit * geometryWeight(query) * filters;
+
+    boolean returnsDocuments = !JSON_COUNT.equalsIgnoreCase(query.getString(IUDXQUERY_OPTIONS))
+        && !query.containsKey(NGSILDQUERY_AGGR_INTERVAL);
+    double returned = returnsDocuments ? Math.min(docs, pageSize(query)) / pageDocsPerUnit : 0;
+    return 1 + read + returned;
+  }
+
+  /**
+   * Learns the documents per day of the index of a query from its response. Only the responses
+   * of queries filtered by their time window alone are used.
+   *
+   * @param query query as mapped from the request
+   * @param response successful response of the query
+   */
+  public void record(JsonObject query, JsonObject response) {
+    if (query.containsKey(JSON_ATTR_QUERY) || query.containsKey(JSON_GEOMETRY)
+        || query.containsKey(JSON_LAT) || query.getJsonArray(JSON_ID, new JsonArray()).size() != 1) {
+      return;
+    }
+    long hits;
+    if (response.containsKey("totalHits")) {
+      if (!"eq".equals(response.getString("totalHitsRelation", "eq"))) {
+        return;
+      }
+      hits = response.getLong("totalHits");
+    } else if (JSON_COUNT.equalsIgnoreCase(query.getString(IUDXQUERY_OPTIONS))
+        && !response.getBoolean("estimate", false)
+        && "eq".equals(response.getString("totalHitsRelation", "eq"))) {
+      hits = response.getJsonArray("results", new JsonArray()).getJsonObject(0)
+          .getLong("count", 0L);
+    } else {
+      return;
+    }
+    double rate = hits / spanDays(query, clock.getAsLong());
+    String index = index(query);
+    synchronized (this) {
+      Double known = docsPerDay.get(index);
+      docsPerDay.put(index, known == null ? rate : known + LEARNING_RATE * (rate - known));
+      if (docsPerDay.size() > MAX_INDICES) {
+        docsPerDay.remove(docsPerDay.keySet().iterator().next());
+      }
+    }
+  }
+
+  synchronized double docsPerDay(String index) {
+    return docsPerDay.getOrDefault(index, defaultDocsPerDay);
+  }
+
+  /** Resource group of the first id of a query, which the index is named after. */
+  static String index(JsonObject query) {
+    JsonArray ids = query.getJsonArray(JSON_ID);
+    if (ids == null || ids.isEmpty()) {
+      return "";
+    }
+    String id = ids.getString(0);
+    int group = id.lastIndexOf('/');
+    return group > 0 ? id.substring(0, group) : id;
+  }
+
+  /** Days of the time window of a query, at least an hour. */
+  double spanDays(JsonObject query, long now) {
+    double days = defaultSpanDays;
+    String timerel = query.getString(JSON_TIMEREL);
+    try {
+      if (JSON_DURING.equalsIgnoreCase(timerel)) {
+        days = (millis(query.getString(JSON_ENDTIME)) - millis(query.getString(JSON_TIME)))
+            / (double) DAY;
+      } else if ("after".equalsIgnoreCase(timerel)) {
+        days = (now - millis(query.getString(JSON_TIME))) / (double) DAY;
+      }
+    } catch (DateTimeParseException | NullPointerException e) {
+      days = defaultSpanDays;
+    }
+    return Math.max(days, 1.0 / 24);
+  }
+
+  /** 1 for queries without a geometry, growing with the logarithm of its area. */
+  double geometryWeight(JsonObject query) {
+    double area = 0;
+    int vertices = 0;
+    if (query.containsKey(JSON_LAT) && query.containsKey(JSON_RADIUS)) {
+      double radius = number(query.getValue(JSON_RADIUS)) / 1000;
+      area = Math.PI * radius * radius;
+    } else if (query.containsKey(JSON_GEOMETRY)) {
+      try {
+        JsonArray coordinates = new JsonArray(query.getString(JSON_COORDINATES));
+        String geometry = query.getString(JSON_GEOMETRY);
+        if ("polygon".equalsIgnoreCase(geometry)) {
+          JsonArray shell = coordinates.getJsonArray(0);
+          vertices = shell.size();
+          area = area(shell);
+        } else if ("bbox".equalsIgnoreCase(geometry)) {
+          JsonArray corners = new JsonArray()
+              .add(coordinates.getJsonArray(0))
+              .add(new JsonArray().add(coordinates.getJsonArray(1).getValue(0))
+                  .add(coordinates.getJsonArray(0).getValue(1)))
+              .add(coordinates.getJsonArray(1))
+              .add(new JsonArray().add(coordinates.getJsonArray(0).getValue(0))
+                  .add(coordinates.getJsonArray(1).getValue(1)));
+          area = area(corners);
+        } else if ("linestring".equalsIgnoreCase(geometry)) {
+          vertices = coordinates.size();
+        }
+      } catch (DecodeException | ClassCastException | IndexOutOfBoundsException e) {
+        // invalid geometries are rejected by the database
+        return 1;
+      }
+    }
+    return 1 + Math.log1p(area / referenceArea) + vertices / 100.0;
+  }
+
+  /** Area in km<sup>2</sup> of a ring of longitude and latitude pairs. */
+  private static double area(JsonArray ring) {
+    double sum = 0;
+    double latitudes = 0;
+    for (int i = 0; i < ring.size(); i++) {
+      JsonArray current = ring.getJsonArray(i);
+      JsonArray next = ring.getJsonArray((i + 1) % ring.size());
+      sum += number(current.getValue(0)) * number(next.getValue(1))
+          - number(next.getValue(0)) * number(current.getValue(1));
+      latitudes += number(current.getValue(1));
+    }
+    double meanLatitude = Math.toRadians(latitudes / ring.size());
+    return Math.abs(sum) / 2 * KM_PER_DEGREE * KM_PER_DEGREE * Math.cos(meanLatitude);
+  }
+
+  private int pageSize(JsonObject query) {
+    Object size = query.getValue(NGSILDQUERY_SIZE);
+    return size == null ? defaultPageSize : (int) number(size);
+  }
+
+  private static double number(Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    try {
+      return Double.parseDouble(String.valueOf(value));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static long millis(String time) {
+    return ZonedDateTime.parse(time).toInstant().toEpochMilli();
+  }
+}
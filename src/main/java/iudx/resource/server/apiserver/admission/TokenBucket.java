@@ -0,0 +1,60 @@
+package iudx.resource.server.apiserver.admission;
+
+/**
+ * Budget of query cost, refilled at a constant rate up to its capacity. Tokens may be taken ahead
+ * of time, the bucket then stays below zero until the taken tokens are refilled. Not thread safe,
+ * the {@link AdmissionController} synchronizes its buckets.
+ */
+final class TokenBucket {
+
+  private final double ratePerMilli;
+  private final double capacity;
+  private double tokens;
+  private long refilledAt;
+
+  /**
+   * @param ratePerSecond units refilled per second
+   * @param capacity units the bucket holds when it is full
+   * @param now current time in millis
+   */
+  TokenBucket(double ratePerSecond, double capacity, long now) {
+    this.ratePerMilli = ratePerSecond / 1000;
+    this.capacity = capacity;
+    this.tokens = capacity;
+    this.refilledAt = now;
+  }
+
+  /**
+   * Time until the bucket holds a cost.
+   *
+   * @return millis to wait, 0 when the cost can be taken now
+   */
+  long waitMillis(double cost, long now) {
+    refill(now);
+    if (tokens >= cost) {
+      return 0;
+    }
+    return (long) Math.ceil((cost - tokens) / ratePerMilli);
+  }
+
+  /** Takes a cost, ahead of time when the bucket does not hold it yet. */
+  void take(double cost) {
+    tokens -= cost;
+  }
+
+  double capacity() {
+    return capacity;
+  }
+
+  double tokens(long now) {
+    refill(now);
+    return tokens;
+  }
+
+  private void refill(long now) {
+    if (now > refilledAt) {
+      tokens = Math.min(capacity, tokens + (now - refilledAt) * ratePerMilli);
+      refilledAt = now;
+    }
+  }
+}
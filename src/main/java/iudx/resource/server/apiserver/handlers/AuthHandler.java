@@ -8,6 +8,8 @@ import static iudx.resource.server.apiserver.util.Constants.BIND_URL_REGEX;
 import static iudx.resource.server.apiserver.util.Constants.CONTENT_TYPE;
 import static iudx.resource.server.apiserver.util.Constants.DOMAIN;
 import static iudx.resource.server.apiserver.util.Constants.ENTITIES_POST_QUERY_URL_REGEX;
+import static iudx.resource.server.apiserver.util.Constants.LATEST_POST_QUERY_URL_REGEX;
+import static iudx.resource.server.apiserver.util.Constants.EXPORT_URL_REGEX;
 import static iudx.resource.server.apiserver.util.Constants.ENTITITES_URL_REGEX;
 import static iudx.resource.server.apiserver.util.Constants.EXCHANGE_URL_REGEX;
 import static iudx.resource.server.apiserver.util.Constants.EXPIRY;
@@ -24,7 +26,9 @@ import static iudx.resource.server.apiserver.util.Constants.JSON_ENTITIES;
 import static iudx.resource.server.apiserver.util.Constants.JSON_TITLE;
 import static iudx.resource.server.apiserver.util.Constants.JSON_TYPE;
 import static iudx.resource.server.apiserver.util.Constants.NGSILD_ENTITIES_URL;
+import static iudx.resource.server.apiserver.util.Constants.NGSILD_EXPORT_URL;
 import static iudx.resource.server.apiserver.util.Constants.NGSILD_POST_ENTITIES_QUERY_PATH;
+import static iudx.resource.server.apiserver.util.Constants.NGSILD_POST_LATEST_QUERY_PATH;
 import static iudx.resource.server.apiserver.util.Constants.NGSILD_POST_TEMPORAL_QUERY_PATH;
 import static iudx.resource.server.apiserver.util.Constants.NGSILD_SUBSCRIPTION_URL;
 import static iudx.resource.server.apiserver.util.Constants.NGSILD_TEMPORAL_URL;
@@ -57,19 +61,24 @@ import static iudx.resource.server.common.Api.SUBSCRIPTION;
 import static iudx.resource.server.common.Api.UNBIND;
 import static iudx.resource.server.common.Api.VHOST;
 import static iudx.resource.server.common.Constants.AUTH_SERVICE_ADDRESS;
+import static iudx.resource.server.common.Constants.LOCAL_SERVICES_MAP;
 import static iudx.resource.server.common.ResponseUrn.INVALID_TOKEN_URN;
 import static iudx.resource.server.common.ResponseUrn.RESOURCE_NOT_FOUND_URN;
 import java.util.List;
 import java.util.Map;
+import java.util.StringJoiner;
 import java.util.regex.Pattern;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
 import io.vertx.ext.web.RoutingContext;
 import iudx.resource.server.authenticator.AuthenticationService;
 import iudx.resource.server.common.HttpStatusCode;
@@ -82,12 +91,14 @@ public class AuthHandler implements Handler<RoutingContext> {
 
   private static final Pattern regexIDPattern = ID_REGEX;
   private static AuthenticationService authenticator;
+  private static LocalMap<String, AuthenticationService> localServices;
   private final String AUTH_INFO = "authInfo";
   private final List<String> noAuthRequired = bypassEndpoint;
   private HttpServerRequest request;
 
   public static AuthHandler create(Vertx vertx) {
     authenticator = AuthenticationService.createProxy(vertx, AUTH_SERVICE_ADDRESS);
+    localServices = vertx.sharedData().getLocalMap(LOCAL_SERVICES_MAP);
     return new AuthHandler();
   }
 
@@ -135,23 +146,45 @@ public class AuthHandler implements Handler<RoutingContext> {
     }
     requestJson.put(IDS, ids);
 
-    authenticator.tokenInterospect(
-        requestJson,
-        authInfo,
-        authHandler -> {
-          if (authHandler.succeeded()) {
+    Handler<AsyncResult<JsonObject>> authHandler = authResult -> {
+      if (authResult.succeeded()) {
 
-            authInfo.put(IID, authHandler.result().getValue(IID));
-            authInfo.put(USER_ID, authHandler.result().getValue(USER_ID));
-            authInfo.put(EXPIRY, authHandler.result().getValue(EXPIRY));
-            context.data().put(AUTH_INFO, authInfo);
-          } else {
-            processAuthFailure(context, authHandler.cause().getMessage());
-            return;
-          }
-          context.next();
-          return;
-        });
+        authInfo.put(IID, authResult.result().getValue(IID));
+        authInfo.put(USER_ID, authResult.result().getValue(USER_ID));
+        authInfo.put(EXPIRY, authResult.result().getValue(EXPIRY));
+        context.data().put(AUTH_INFO, authInfo);
+      } else {
+        processAuthFailure(context, authResult.cause().getMessage());
+        return;
+      }
+      context.next();
+      return;
+    };
+
+    // the service deployed in this instance is called directly, the proxy when it is deployed in
+    // another instance of the cluster
+    AuthenticationService localAuthenticator = localServices.get(AUTH_SERVICE_ADDRESS);
+    if (localAuthenticator == null) {
+      authenticator.tokenInterospect(requestJson, authInfo, authHandler);
+    } else {
+      localAuthenticator.tokenInterospect(requestJson, authInfo,
+          onContext(context.vertx().getOrCreateContext(), authHandler));
+    }
+  }
+
+  /**
+   * Handles the reply of the local service on the context of the request, the reply may complete
+   * on the context of another request sharing a lookup.
+   */
+  private static Handler<AsyncResult<JsonObject>> onContext(Context requestContext,
+      Handler<AsyncResult<JsonObject>> handler) {
+    return reply -> {
+      if (Vertx.currentContext() == requestContext) {
+        handler.handle(reply);
+      } else {
+        requestContext.runOnContext(v -> handler.handle(reply));
+      }
+    };
   }
 
   private void processAuthFailure(RoutingContext ctx, String result) {
@@ -249,10 +282,15 @@ public class AuthHandler implements Handler<RoutingContext> {
         if (api.matches(ADAPTER_URL_REGEX) || api.matches(SUBSCRIPTION_URL_REGEX)) {
           id = array.getString(0);
         } else {
-          JsonObject json = array.getJsonObject(0);
-          if (json != null) {
-            id = json.getString(ID);
+          // a query may ask for many entities, all of them are authorized
+          StringJoiner ids = new StringJoiner(",");
+          for (int i = 0; i < array.size(); i++) {
+            JsonObject json = array.getJsonObject(i);
+            if (json != null && json.getString(ID) != null) {
+              ids.add(json.getString(ID));
+            }
           }
+          id = ids.length() == 0 ? null : ids.toString();
         }
       }
     }
@@ -277,6 +315,10 @@ public class AuthHandler implements Handler<RoutingContext> {
       path = NGSILD_POST_TEMPORAL_QUERY_PATH;
     } else if (url.matches(ENTITIES_POST_QUERY_URL_REGEX)) {
       path = NGSILD_POST_ENTITIES_QUERY_PATH;
+    } else if (url.matches(LATEST_POST_QUERY_URL_REGEX)) {
+      path = NGSILD_POST_LATEST_QUERY_PATH;
+    } else if (url.matches(EXPORT_URL_REGEX)) {
+      path = NGSILD_EXPORT_URL;
     } else if (url.matches(SUBSCRIPTION_URL_REGEX)) {
       path = NGSILD_SUBSCRIPTION_URL;
     } else if (url.matches(ADAPTER_URL_REGEX)) {
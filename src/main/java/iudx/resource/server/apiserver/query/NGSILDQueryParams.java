@@ -1,9 +1,14 @@
 package iudx.resource.server.apiserver.query;
 
+import static iudx.resource.server.apiserver.util.Constants.IUDXQUERY_ACCURACY;
 import static iudx.resource.server.apiserver.util.Constants.IUDXQUERY_OPTIONS;
 import static iudx.resource.server.apiserver.util.Constants.MSG_INVALID_PARAM;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_AGGR_ATTRS;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_AGGR_INTERVAL;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_AGGR_METHODS;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_ATTRIBUTE;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_COORDINATES;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_CURSOR;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_ENDTIME;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_FROM;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_GEOMETRY;
@@ -51,8 +56,13 @@ public class NGSILDQueryParams {
   private String geoProperty;
   private TemporalRelation temporalRelation;
   private String options;
+  private String accuracy;
   private String pageFrom;
   private String pageSize;
+  private String pageCursor;
+  private String aggrInterval;
+  private List<String> aggrMethods;
+  private List<String> aggrAttrs;
 
   public NGSILDQueryParams() {}
 
@@ -149,6 +159,10 @@ public class NGSILDQueryParams {
           this.options = entry.getValue();
           break;
         }
+        case IUDXQUERY_ACCURACY: {
+          this.accuracy = entry.getValue();
+          break;
+        }
         case NGSILDQUERY_SIZE: {
           this.pageSize = entry.getValue();
           break;
@@ -157,6 +171,22 @@ public class NGSILDQueryParams {
           this.pageFrom = entry.getValue();
           break;
         }
+        case NGSILDQUERY_CURSOR: {
+          this.pageCursor = entry.getValue();
+          break;
+        }
+        case NGSILDQUERY_AGGR_INTERVAL: {
+          this.aggrInterval = entry.getValue();
+          break;
+        }
+        case NGSILDQUERY_AGGR_METHODS: {
+          this.aggrMethods = Arrays.asList(entry.getValue().split(","));
+          break;
+        }
+        case NGSILDQUERY_AGGR_ATTRS: {
+          this.aggrAttrs = Arrays.asList(entry.getValue().split(","));
+          break;
+        }
         default: {
           LOGGER.warn(MSG_INVALID_PARAM + ":" + entry.getKey());
           break;
@@ -224,9 +254,9 @@ public class NGSILDQueryParams {
       } else if (entry.getKey().equalsIgnoreCase("entities")) {
         JsonArray array = new JsonArray(entry.getValue().toString());
         Iterator<?> iter = array.iterator();
+        this.id = new ArrayList<URI>();
+        this.idPattern = new ArrayList<String>();
         while (iter.hasNext()) {
-          this.id = new ArrayList<URI>();
-          this.idPattern = new ArrayList<String>();
           JsonObject entity = (JsonObject) iter.next();
           String id = entity.getString("id");
           String idPattern = entity.getString("idPattern");
@@ -239,10 +269,14 @@ public class NGSILDQueryParams {
         }
       } else if (entry.getKey().equalsIgnoreCase(IUDXQUERY_OPTIONS)) {
         this.options = requestJson.getString(entry.getKey());
+      } else if (entry.getKey().equalsIgnoreCase(IUDXQUERY_ACCURACY)) {
+        this.accuracy = requestJson.getString(entry.getKey());
       } else if (entry.getKey().equalsIgnoreCase(NGSILDQUERY_FROM)) {
         this.pageFrom = requestJson.getString(entry.getKey());
       } else if (entry.getKey().equalsIgnoreCase(NGSILDQUERY_SIZE)) {
         this.pageSize = requestJson.getString(NGSILDQUERY_SIZE);
+      } else if (entry.getKey().equalsIgnoreCase(NGSILDQUERY_CURSOR)) {
+        this.pageCursor = requestJson.getString(NGSILDQUERY_CURSOR);
       }
     });
   }
@@ -345,6 +379,10 @@ public class NGSILDQueryParams {
     this.options = options;
   }
 
+  public String getAccuracy() {
+    return accuracy;
+  }
+
   public String getPageFrom() {
     return pageFrom;
   }
@@ -353,6 +391,22 @@ public class NGSILDQueryParams {
     return pageSize;
   }
 
+  public String getPageCursor() {
+    return pageCursor;
+  }
+
+  public String getAggrInterval() {
+    return aggrInterval;
+  }
+
+  public List<String> getAggrMethods() {
+    return aggrMethods;
+  }
+
+  public List<String> getAggrAttrs() {
+    return aggrAttrs;
+  }
+
 
   @Override
   public String toString() {
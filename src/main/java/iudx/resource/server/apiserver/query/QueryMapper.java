@@ -26,6 +26,20 @@ public class QueryMapper {
   private boolean isGeoSearch = false;
   private boolean isResponseFilter = false;
   private boolean isAttributeSearch = false;
+  private final long maxDaysInterval;
+
+  public QueryMapper() {
+    this(Constants.VALIDATION_MAX_DAYS_INTERVAL_ALLOWED);
+  }
+
+  /**
+   * QueryMapper allowing temporal queries over a longer time interval, used by bulk exports.
+   *
+   * @param maxDaysInterval max number of days between time and endTime of a during query.
+   */
+  public QueryMapper(long maxDaysInterval) {
+    this.maxDaysInterval = maxDaysInterval;
+  }
 
   /**
    * This method is used to create a json object from NGSILDQueryParams.
@@ -116,12 +130,25 @@ public class QueryMapper {
       json.put(Constants.IUDXQUERY_OPTIONS, params.getOptions());
       LOGGER.debug("Info : json " + json);
     }
-    if (params.getPageFrom() != null) {
+    if (params.getAccuracy() != null) {
+      json.put(Constants.IUDXQUERY_ACCURACY, params.getAccuracy());
+    }
+    if (params.getPageCursor() != null) {
+      // a cursor continues from the previous page, an offset is not applicable.
+      json.put(Constants.NGSILDQUERY_CURSOR, params.getPageCursor());
+    } else if (params.getPageFrom() != null) {
       json.put(Constants.NGSILDQUERY_FROM, params.getPageFrom());
     }
     if (params.getPageSize() != null) {
       json.put(Constants.NGSILDQUERY_SIZE, params.getPageSize());
     }
+    if (isTemporal && params.getAggrInterval() != null) {
+      // buckets of the temporal window replace the documents in the response.
+      json.put(Constants.NGSILDQUERY_AGGR_INTERVAL, params.getAggrInterval());
+      json.put(Constants.NGSILDQUERY_AGGR_METHODS, new JsonArray(params.getAggrMethods()));
+      json.put(Constants.NGSILDQUERY_AGGR_ATTRS, new JsonArray(params.getAggrAttrs()));
+      LOGGER.debug("Info : json " + json);
+    }
 
     json.put(Constants.JSON_SEARCH_TYPE, getSearchType());
     LOGGER.debug("Info : json " + json);
@@ -155,9 +182,9 @@ public class QueryMapper {
     } else if (timeRel.equalsIgnoreCase("before")) {
 
     }
-    if (totalDaysAllowed > Constants.VALIDATION_MAX_DAYS_INTERVAL_ALLOWED) {
+    if (totalDaysAllowed > maxDaysInterval) {
       throw new DxRuntimeException(BAD_REQUEST.getValue(), ResponseUrn.INVALID_TEMPORAL_PARAM_URN,
-          "time interval greater than 10 days is not allowed");
+          "time interval greater than " + maxDaysInterval + " days is not allowed");
     }
   }
 
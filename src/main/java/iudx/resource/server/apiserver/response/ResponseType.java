@@ -9,6 +9,7 @@ import java.util.stream.Stream;
 public enum ResponseType {
   Ok(200, "Ok"),
   Created(201, "created"),
+  Accepted(202, "Accepted"),
   NoContent(204, "Already Exist"),
   AuthenticationFailure(401, "Invalid credentials"),
   BadRequestData(400, "Bad Request"),
@@ -36,6 +36,12 @@ public class Constants {
       NGSILD_BASE_PATH + "/entityOperations/query";
   public static final String ENTITIES_POST_QUERY_URL_REGEX =
       NGSILD_POST_ENTITIES_QUERY_PATH + "(.*)";
+  public static final String NGSILD_POST_LATEST_QUERY_PATH =
+      NGSILD_BASE_PATH + "/entityOperations/latest";
+  public static final String LATEST_POST_QUERY_URL_REGEX =
+      NGSILD_POST_LATEST_QUERY_PATH + "(.*)";
+  public static final String NGSILD_EXPORT_URL = NGSILD_BASE_PATH + "/export";
+  public static final String EXPORT_URL_REGEX = NGSILD_EXPORT_URL + "(.*)";
   // IUDX management endpoints
   public static final String IUDX_MANAGEMENT_URL = "/management";
   public static final String IUDX_ADAPTOR_URL = "/ngsi-ld/v1";
@@ -94,12 +100,17 @@ public class Constants {
   public static final String NGSILDQUERY_MAXDISTANCE = "maxdistance";
   public static final String NGSILDQUERY_MINDISTANCE = "mindistance";
   public static final String IUDXQUERY_OPTIONS = "options";
+  public static final String IUDXQUERY_ACCURACY = "accuracy";
   public static final String NGSILDQUERY_ENTITIES = "entities";
   public static final String NGSILDQUERY_GEOQ = "geoQ";
   public static final String NGSILDQUERY_TEMPORALQ = "temporalQ";
   public static final String NGSILDQUERY_TIME_PROPERTY = "timeProperty";
   public static final String NGSILDQUERY_FROM = "offset";
   public static final String NGSILDQUERY_SIZE = "limit";
+  public static final String NGSILDQUERY_CURSOR = "cursor";
+  public static final String NGSILDQUERY_AGGR_INTERVAL = "aggrInterval";
+  public static final String NGSILDQUERY_AGGR_METHODS = "aggrMethods";
+  public static final String NGSILDQUERY_AGGR_ATTRS = "aggrAttrs";
 
   // Header params
   public static final String HEADER_TOKEN = "token";
@@ -111,6 +122,7 @@ public class Constants {
   public static final String HEADER_REFERER = "Referer";
   public static final String HEADER_ALLOW_ORIGIN = "Access-Control-Allow-Origin";
   public static final String HEADER_OPTIONS = "options";
+  public static final String HEADER_RETRY_AFTER = "Retry-After";
 
   public static final String COUNT_HEADER = "Count";
   public static final String PUBLIC_TOKEN = "public";
@@ -178,6 +190,14 @@ public class Constants {
   public static final String RESOURCE_GROUP = "resourceGroup";
   public static final String RESOURCE_NAME = "resourceName";
   public static final String USER_ID = "userid";
+  public static final String JSON_EXPORT_FORMAT = "format";
+  public static final String JSON_EXPORT_USER_ID = "userId";
+  public static final String JSON_EXPORT_STATUS = "status";
+  public static final String EXPORT_JOB_ID = "jobId";
+  public static final String EXPORT_JOB_COMPLETED = "completed";
+  public static final String EXPORT_JOB_FAILED = "failed";
+  public static final String MIME_APPLICATION_GZIP = "application/gzip";
+  public static final String HEADER_CONTENT_DISPOSITION = "Content-Disposition";
   public static final String EXPIRY = "expiry";
   public static final String IID = "iid";
   public static final String API = "api";
@@ -249,6 +269,10 @@ public class Constants {
   public static final double VALIDATION_ALLOWED_DIST = 1000.0;
   public static final int VALIDATION_PAGINATION_LIMIT_MAX = 5000;
   public static final int VALIDATION_PAGINATION_OFFSET_MAX = 49999;
+  public static final Pattern VALIDATION_PAGINATION_CURSOR_PATTERN =
+      Pattern.compile("^[A-Za-z0-9_-]{1,4096}$");
+  public static final Pattern VALIDATION_COUNT_ACCURACY_PATTERN =
+      Pattern.compile("^(approx|exact)$");
   public static final List<Object> VALIDATION_ALLOWED_GEOM =
       List.of("Point", "point", "Polygon", "polygon", "LineString", "linestring", "bbox");
   public static final List<Object> VALIDATION_ALLOWED_GEOPROPERTY = List.of("location", "Location");
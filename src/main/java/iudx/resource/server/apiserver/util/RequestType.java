@@ -5,9 +5,12 @@ public enum RequestType {
   ENTITY("entity"),
   TEMPORAL("temporal"),
   LATEST("latest"),
+  LATEST_GROUP("latest_group"),
   POST_TEMPORAL("post_temporal_schema.json"),
   POST_ENTITIES("post_entities_schema.json"),
-  SUBSCRIPTION("subscription_schema.json");
+  POST_LATEST("post_latest_schema.json"),
+  SUBSCRIPTION("subscription_schema.json"),
+  EXPORT("export_schema.json");
 
   private String filename;
 
@@ -7,9 +7,14 @@ import static iudx.resource.server.apiserver.util.Constants.ID_RG_REGEX;
 import static iudx.resource.server.apiserver.util.Constants.ID_RN_REGEX;
 import static iudx.resource.server.apiserver.util.Constants.ID_RS_REGEX;
 import static iudx.resource.server.apiserver.util.Constants.ID_USERSHA_REGEX;
+import static iudx.resource.server.apiserver.util.Constants.IUDXQUERY_ACCURACY;
 import static iudx.resource.server.apiserver.util.Constants.IUDXQUERY_OPTIONS;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_AGGR_ATTRS;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_AGGR_INTERVAL;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_AGGR_METHODS;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_ATTRIBUTE;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_COORDINATES;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_CURSOR;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_ENDTIME;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_FROM;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_GEOMETRY;
@@ -25,6 +30,7 @@ import static iudx.resource.server.apiserver.util.Constants.RESOURCE_GROUP;
 import static iudx.resource.server.apiserver.util.Constants.RESOURCE_NAME;
 import static iudx.resource.server.apiserver.util.Constants.RESOURCE_SERVER;
 import static iudx.resource.server.apiserver.util.Constants.USERSHA;
+import static iudx.resource.server.apiserver.util.Constants.VALIDATION_COUNT_ACCURACY_PATTERN;
 import static iudx.resource.server.common.ResponseUrn.SCHEMA_READ_ERROR_URN;
 import java.io.IOException;
 import java.io.InputStream;
@@ -46,6 +52,7 @@ import io.vertx.json.schema.SchemaRouter;
 import io.vertx.json.schema.SchemaRouterOptions;
 import iudx.resource.server.apiserver.exceptions.DxRuntimeException;
 import iudx.resource.server.apiserver.util.RequestType;
+import iudx.resource.server.apiserver.validation.types.AggregationTypeValidator;
 import iudx.resource.server.apiserver.validation.types.AttrsTypeValidator;
 import iudx.resource.server.apiserver.validation.types.CoordinatesTypeValidator;
 import iudx.resource.server.apiserver.validation.types.DateTypeValidator;
@@ -87,6 +94,9 @@ public class ValidatorsHandlersFactory {
       case LATEST:
         validator = getLatestRequestValidations(parameters, headers);
         break;
+      case LATEST_GROUP:
+        validator = getLatestGroupRequestValidations(parameters, headers);
+        break;
       case POST_TEMPORAL:
         validator = getPostEntitiesValidations(vertx, parameters, headers, body, requestType);
         break;
@@ -96,6 +106,10 @@ public class ValidatorsHandlersFactory {
       case SUBSCRIPTION:
         validator = getSubscriptionsValidations(vertx, body, headers);
         break;
+      case POST_LATEST:
+      case EXPORT:
+        validator = getRequestSchemaValidator(vertx, body, requestType);
+        break;
       default:
         break;
     }
@@ -117,11 +131,14 @@ public class ValidatorsHandlersFactory {
     validators.add(new DistanceTypeValidator(parameters.get(NGSILDQUERY_MAXDISTANCE), false));
     validators.add(new DistanceTypeValidator(parameters.get("maxDistance"), false));
     validators.add(new OptionsTypeValidator(parameters.get(IUDXQUERY_OPTIONS), false));
+    validators.add(new StringTypeValidator(parameters.get(IUDXQUERY_ACCURACY), false,
+        VALIDATION_COUNT_ACCURACY_PATTERN));
     validators.add(new CoordinatesTypeValidator(parameters.get(NGSILDQUERY_COORDINATES), false));
 
     // pagination optional fields
     validators.add(new PaginationLimitTypeValidator(parameters.get(NGSILDQUERY_SIZE), false));
-    validators.add(new PaginationOffsetTypeValidator(parameters.get(NGSILDQUERY_FROM), false));
+    validators.add(new PaginationOffsetTypeValidator(parameters.get(NGSILDQUERY_FROM),
+        parameters.get(NGSILDQUERY_CURSOR), false));
 
     return validators;
 
@@ -141,14 +158,19 @@ public class ValidatorsHandlersFactory {
     validators.add(new DistanceTypeValidator(parameters.get(NGSILDQUERY_MAXDISTANCE), false));
     validators.add(new DistanceTypeValidator(parameters.get("maxDistance"), false));
     validators.add(new OptionsTypeValidator(parameters.get(IUDXQUERY_OPTIONS), false));
+    validators.add(new StringTypeValidator(parameters.get(IUDXQUERY_ACCURACY), false,
+        VALIDATION_COUNT_ACCURACY_PATTERN));
     validators.add(new CoordinatesTypeValidator(parameters.get(NGSILDQUERY_COORDINATES), false));
     validators.add(new TimeRelTypeValidator(parameters.get(NGSILDQUERY_TIMEREL), true));
     validators.add(new DateTypeValidator(parameters.get(NGSILDQUERY_TIME), true));
     validators.add(new DateTypeValidator(parameters.get(NGSILDQUERY_ENDTIME), false));
+    validators.add(new AggregationTypeValidator(parameters.get(NGSILDQUERY_AGGR_INTERVAL),
+        parameters.get(NGSILDQUERY_AGGR_METHODS), parameters.get(NGSILDQUERY_AGGR_ATTRS)));
 
     // pagination optional fields
     validators.add(new PaginationLimitTypeValidator(parameters.get(NGSILDQUERY_SIZE), false));
-    validators.add(new PaginationOffsetTypeValidator(parameters.get(NGSILDQUERY_FROM), false));
+    validators.add(new PaginationOffsetTypeValidator(parameters.get(NGSILDQUERY_FROM),
+        parameters.get(NGSILDQUERY_CURSOR), false));
 
     return validators;
   }
@@ -167,13 +189,28 @@ public class ValidatorsHandlersFactory {
     return validators;
   }
 
+  private List<Validator> getLatestGroupRequestValidations(final MultiMap parameters,
+      final MultiMap headers) {
+
+    List<Validator> validators = new ArrayList<>();
+    validators.add(new StringTypeValidator(parameters.get(DOMAIN), true, ID_DOMAIN_REGEX));
+    validators.add(new StringTypeValidator(parameters.get(USERSHA), true, ID_USERSHA_REGEX));
+    validators.add(new StringTypeValidator(parameters.get(RESOURCE_SERVER), true, ID_RS_REGEX));
+    validators.add(new StringTypeValidator(parameters.get(RESOURCE_GROUP), true, ID_RG_REGEX));
+    // optional projection of the latest values
+    validators.add(new AttrsTypeValidator(parameters.get(NGSILDQUERY_ATTRIBUTE), false));
+
+    return validators;
+  }
+
   private List<Validator> getPostEntitiesValidations(Vertx vertx, final MultiMap parameters,
       final MultiMap headers, final JsonObject body, final RequestType requestType) {
 
     List<Validator> validators = new ArrayList<>();
     // pagination optional fields
     validators.add(new PaginationLimitTypeValidator(parameters.get(NGSILDQUERY_SIZE), false));
-    validators.add(new PaginationOffsetTypeValidator(parameters.get(NGSILDQUERY_FROM), false));
+    validators.add(new PaginationOffsetTypeValidator(parameters.get(NGSILDQUERY_FROM),
+        parameters.get(NGSILDQUERY_CURSOR), false));
     // request body validators.
     validators.addAll(getRequestSchemaValidator(vertx, body, requestType));
 
@@ -187,7 +224,8 @@ public class ValidatorsHandlersFactory {
     List<Validator> validators = new ArrayList<>();
     // pagination optional fields
     validators.add(new PaginationLimitTypeValidator(parameters.get(NGSILDQUERY_SIZE), false));
-    validators.add(new PaginationOffsetTypeValidator(parameters.get(NGSILDQUERY_FROM), false));
+    validators.add(new PaginationOffsetTypeValidator(parameters.get(NGSILDQUERY_FROM),
+        parameters.get(NGSILDQUERY_CURSOR), false));
     // request body validators.
     validators.addAll(getRequestSchemaValidator(vertx, body, requestType));
 
@@ -0,0 +1,67 @@
+package iudx.resource.server.apiserver.validation.types;
+
+import static iudx.resource.server.common.ResponseUrn.INVALID_PARAM_VALUE_URN;
+import static iudx.resource.server.database.archives.Constants.AGGR_ALLOWED_METHODS;
+import static iudx.resource.server.database.archives.Constants.AGGR_INTERVAL_PATTERN;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import iudx.resource.server.apiserver.exceptions.DxRuntimeException;
+import iudx.resource.server.common.HttpStatusCode;
+
+/**
+ * Validates the parameters of a temporal aggregation, the interval of the buckets, the methods and
+ * the attributes the methods are applied to. The parameters are optional, but they are passed
+ * together.
+ */
+public final class AggregationTypeValidator implements Validator {
+
+  private static final Logger LOGGER = LogManager.getLogger(AggregationTypeValidator.class);
+
+  private final String interval;
+  private final String methods;
+  private final String attrs;
+
+  public AggregationTypeValidator(final String interval, final String methods,
+      final String attrs) {
+    this.interval = interval;
+    this.methods = methods;
+    this.attrs = attrs;
+  }
+
+  @Override
+  public boolean isValid() {
+    if (interval == null && methods == null && attrs == null) {
+      return true;
+    }
+    if (interval == null || methods == null || attrs == null) {
+      LOGGER.error("Validation error : aggrInterval, aggrMethods and aggrAttrs are mandatory");
+      throw new DxRuntimeException(failureCode(), INVALID_PARAM_VALUE_URN,
+          "aggrInterval, aggrMethods and aggrAttrs are mandatory for an aggregation");
+    }
+    // the same interval and methods are accepted by the database
+    if (!AGGR_INTERVAL_PATTERN.matcher(interval).matches()) {
+      LOGGER.error("Validation error : invalid aggregation interval [ " + interval + " ]");
+      throw new DxRuntimeException(failureCode(), INVALID_PARAM_VALUE_URN,
+          failureMessage(interval));
+    }
+    for (String method : methods.split(",")) {
+      if (!AGGR_ALLOWED_METHODS.contains(method)) {
+        LOGGER.error("Validation error : invalid aggregation method [ " + method + " ]");
+        throw new DxRuntimeException(failureCode(), INVALID_PARAM_VALUE_URN,
+            failureMessage(methods));
+      }
+    }
+    // the attributes follow the rules of a response filter
+    return new AttrsTypeValidator(attrs, true).isValid();
+  }
+
+  @Override
+  public int failureCode() {
+    return HttpStatusCode.BAD_REQUEST.getValue();
+  }
+
+  @Override
+  public String failureMessage() {
+    return INVALID_PARAM_VALUE_URN.getMessage();
+  }
+}
@@ -13,15 +13,32 @@ public final class PaginationOffsetTypeValidator implements Validator {
   private static final Logger LOGGER = LogManager.getLogger(PaginationOffsetTypeValidator.class);
 
   private final String value;
+  private final String cursor;
   private final boolean required;
 
   public PaginationOffsetTypeValidator(final String value, final boolean required) {
+    this(value, null, required);
+  }
+
+  /**
+   * Offset validator which accepts a pagination cursor in place of the offset.
+   *
+   * @param value offset value
+   * @param cursor cursor value, an alternative to the offset
+   * @param required whether one of offset or cursor is mandatory
+   */
+  public PaginationOffsetTypeValidator(final String value, final String cursor,
+      final boolean required) {
     this.value = value;
+    this.cursor = cursor;
     this.required = required;
   }
 
   @Override
   public boolean isValid() {
+    if (cursor != null) {
+      return isValidCursor();
+    }
     if (required && (value == null || value.isBlank())) {
       LOGGER.error("Validation error : null or blank value for required mandatory field");
       throw new DxRuntimeException(failureCode(), INVALID_PARAM_VALUE_URN, failureMessage());
@@ -56,6 +73,19 @@ public final class PaginationOffsetTypeValidator implements Validator {
     }
   }
 
+  private boolean isValidCursor() {
+    if (value != null) {
+      LOGGER.error("Validation error : both pagination offset and cursor passed");
+      throw new DxRuntimeException(failureCode(), INVALID_PARAM_VALUE_URN,
+          "offset and cursor are not allowed together");
+    }
+    if (!VALIDATION_PAGINATION_CURSOR_PATTERN.matcher(cursor).matches()) {
+      LOGGER.error("Validation error : invalid pagination cursor Value [ " + cursor + " ]");
+      throw new DxRuntimeException(failureCode(), INVALID_PARAM_VALUE_URN, failureMessage(cursor));
+    }
+    return true;
+  }
+
   @Override
   public int failureCode() {
     return HttpStatusCode.BAD_REQUEST.getValue();
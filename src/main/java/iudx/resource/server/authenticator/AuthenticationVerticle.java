@@ -1,6 +1,8 @@
 package iudx.resource.server.authenticator;
 
 import static iudx.resource.server.common.Constants.CACHE_SERVICE_ADDRESS;
+import static iudx.resource.server.common.Constants.CLIENT_REVOKED_ADDRESS;
+import static iudx.resource.server.common.Constants.LOCAL_SERVICES_MAP;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import io.vertx.core.AbstractVerticle;
@@ -37,6 +39,8 @@ public class AuthenticationVerticle extends AbstractVerticle {
   private AuthenticationService jwtAuthenticationService;
   private ServiceBinder binder;
   private MessageConsumer<JsonObject> consumer;
+  private MessageConsumer<JsonObject> revokedConsumer;
+  private JwtAuthenticationServiceImpl jwtAuthentication;
   private WebClient webClient;
 
   private CacheService cacheService;
@@ -87,17 +91,38 @@ public class AuthenticationVerticle extends AbstractVerticle {
               JWTAuth jwtAuth = JWTAuth.create(vertx, jwtAuthOptions);
 
               cacheService = CacheService.createProxy(vertx, CACHE_SERVICE_ADDRESS);
-              jwtAuthenticationService =
+              jwtAuthentication =
                   new JwtAuthenticationServiceImpl(
                       vertx, jwtAuth, createWebClient(vertx, config()), config(), cacheService);
+              jwtAuthenticationService = jwtAuthentication;
 
-              /* Publish the Authentication service with the Event Bus against an address. */
-              consumer =
-                  binder
-                      .setAddress(AUTH_SERVICE_ADDRESS)
-                      .register(AuthenticationService.class, jwtAuthenticationService);
+              /* Tokens verified before are verified again once their client is revoked. */
+              revokedConsumer = vertx.eventBus().consumer(CLIENT_REVOKED_ADDRESS,
+                  message -> jwtAuthentication.clientRevoked(message.body().getString("sub")));
 
-              LOGGER.info("Authentication verticle deployed");
+              /*
+               * Access policies are read from the catalogue before the service is published, so the
+               * first requests are not looked up one at a time. The service is published when they
+               * could not be read, and looks them up as before.
+               */
+              Future<Void> aclPreload = config().getBoolean("aclPreloadEnabled", false)
+                  ? jwtAuthentication.preloadAcls(config())
+                  : Future.succeededFuture();
+              aclPreload.onComplete(preloaded -> {
+                /* Publish the Authentication service with the Event Bus against an address. */
+                consumer =
+                    binder
+                        .setAddress(AUTH_SERVICE_ADDRESS)
+                        .register(AuthenticationService.class, jwtAuthenticationService);
+
+                /* The verticles of this instance call the service without the Event Bus. */
+                if (config().getBoolean("authInProcess", true)) {
+                  vertx.sharedData().getLocalMap(LOCAL_SERVICES_MAP)
+                      .put(AUTH_SERVICE_ADDRESS, jwtAuthentication);
+                }
+
+                LOGGER.info("Authentication verticle deployed");
+              });
             })
         .onFailure(
             handler -> {
@@ -108,6 +133,14 @@ public class AuthenticationVerticle extends AbstractVerticle {
 
   @Override
   public void stop() {
+    if (revokedConsumer != null) {
+      revokedConsumer.unregister();
+    }
+    if (jwtAuthentication != null) {
+      vertx.sharedData().getLocalMap(LOCAL_SERVICES_MAP)
+          .removeIfPresent(AUTH_SERVICE_ADDRESS, jwtAuthentication);
+      jwtAuthentication.stopAclSync();
+    }
     binder.unregister(consumer);
   }
 
@@ -0,0 +1,113 @@
+package iudx.resource.server.authenticator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+
+/**
+ * Access policies of catalogue items looked up during token introspection.
+ * <p>
+ * The requests which miss the same item while it is looked up share the one lookup. An item the
+ * catalogue does not have is remembered for a short time, so the catalogue is not asked again for
+ * every request naming it. An item read again late in its time to live is looked up again in the
+ * background, so items in use do not all miss when they expire.
+ * </p>
+ */
+final class CatalogueAclCache {
+
+  // share of the time to live after which an item read is looked up again
+  private static final double REFRESH_AHEAD = 0.8;
+
+  private final Cache<String, Acl> acls;
+  private final Map<String, Future<String>> inFlight = new ConcurrentHashMap<>();
+  private final LongSupplier clock;
+  private final long refreshAfter;
+  private final long notFoundTimeout;
+
+  /**
+   * @param maxEntries number of items kept
+   * @param timeout millis an access policy is kept for
+   * @param notFoundTimeout millis an item not found is remembered for
+   * @param clock current time in millis
+   */
+  CatalogueAclCache(int maxEntries, long timeout, long notFoundTimeout, LongSupplier clock) {
+    this.acls = CacheBuilder.newBuilder()
+        .maximumSize(maxEntries)
+        .expireAfterWrite(timeout, TimeUnit.MILLISECONDS)
+        .build();
+    this.clock = clock;
+    this.refreshAfter = (long) (timeout * REFRESH_AHEAD);
+    this.notFoundTimeout = notFoundTimeout;
+  }
+
+  /** Access policy of an item, null when it is not known or was not found. */
+  String getIfPresent(String id) {
+    Acl acl = current(id);
+    return acl == null ? null : acl.policy;
+  }
+
+  void put(String id, String policy) {
+    acls.put(id, new Acl(policy, clock.getAsLong()));
+  }
+
+  /**
+   * Access policy of an item, looked up when it is not known.
+   *
+   * @param id id of the item
+   * @param lookup looks up the access policy of an item in the catalogue, completes with null when
+   *        the catalogue does not have the item and fails when the catalogue could not be asked
+   * @return Future with the access policy, null when the catalogue does not have the item
+   */
+  Future<String> get(String id, Function<String, Future<String>> lookup) {
+    Acl acl = current(id);
+    if (acl == null) {
+      return lookup(id, lookup);
+    }
+    if (acl.policy != null && clock.getAsLong() - acl.loadedAt >= refreshAfter) {
+      // the current policy is served while it is looked up again
+      lookup(id, lookup);
+    }
+    return Future.succeededFuture(acl.policy);
+  }
+
+  private Acl current(String id) {
+    Acl acl = acls.getIfPresent(id);
+    if (acl != null && acl.policy == null && clock.getAsLong() - acl.loadedAt >= notFoundTimeout) {
+      acls.invalidate(id);
+      return null;
+    }
+    return acl;
+  }
+
+  private Future<String> lookup(String id, Function<String, Future<String>> lookup) {
+    Promise<String> promise = Promise.promise();
+    Future<String> running = inFlight.putIfAbsent(id, promise.future());
+    if (running != null) {
+      return running;
+    }
+    lookup.apply(id).onComplete(looked -> {
+      if (looked.succeeded()) {
+        acls.put(id, new Acl(looked.result(), clock.getAsLong()));
+      }
+      inFlight.remove(id, promise.future());
+      promise.handle(looked);
+    });
+    return promise.future();
+  }
+
+  private static final class Acl {
+    private final String policy;
+    private final long loadedAt;
+
+    private Acl(String policy, long loadedAt) {
+      this.policy = policy;
+      this.loadedAt = loadedAt;
+    }
+  }
+}
@@ -0,0 +1,243 @@
+package iudx.resource.server.authenticator;
+
+import static iudx.resource.server.authenticator.Constants.ACL_INDEX;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.apache.http.HttpStatus;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.predicate.ResponsePredicate;
+
+/**
+ * Access policies of all the resource groups and resources of the server, read from the catalogue
+ * page by page when the authenticator starts and read again on a schedule.
+ * <p>
+ * The catalogue is searched for the items of the resource server only, when its
+ * <code>resourceServerId</code> is configured. Every read is a full resync of the items of the
+ * server, the catalogue does not tell which items changed since the previous read.
+ * </p>
+ * <p>
+ * A resource has the access policy of its group. The index read replaces the previous one at once,
+ * and ids looked up one at a time between two reads are added to the current index, so items added
+ * to the catalogue are served from the index until the next read.
+ * </p>
+ * <p>
+ * The authentication services of a vertx instance share one index, which is read by the first of
+ * them to start it and kept until the last of them stops it.
+ * </p>
+ */
+final class CatalogueAclIndex implements Shareable {
+
+  private static final Logger LOGGER = LogManager.getLogger(CatalogueAclIndex.class);
+  private static final String METRIC_PREFIX = "iudx.rs.auth.acl.index";
+  private static final String GROUP_TYPE = "iudx:ResourceGroup";
+  private static final String RESOURCE_TYPE = "iudx:Resource";
+
+  private final Vertx vertx;
+  private final WebClient catWebClient;
+  private final String host;
+  private final int port;
+  private final String path;
+  private final String resourceServer;
+  private final String resourceServerId;
+  private final int pageSize;
+  private final LongSupplier clock;
+
+  private volatile Map<String, String> groups = new ConcurrentHashMap<>();
+  private volatile Map<String, String> resources = new ConcurrentHashMap<>();
+  private volatile long syncedAt = -1;
+  private volatile boolean started;
+  private long timerId = -1;
+  private int users;
+  private Future<Void> firstSync;
+  private LocalMap<String, CatalogueAclIndex> indices;
+
+  /**
+   * @param vertx Vertx instance
+   * @param catWebClient client of the catalogue
+   * @param config configuration of the authenticator, <code>host</code> is the resource server
+   *        whose items are read and <code>resourceServerId</code> its id in the catalogue
+   * @param pageSize items read from the catalogue per request
+   * @param registry registry the size of the index and the time since it was read are published to
+   * @param clock current time in millis
+   */
+  CatalogueAclIndex(Vertx vertx, WebClient catWebClient, JsonObject config, int pageSize,
+      MeterRegistry registry, LongSupplier clock) {
+    this.vertx = vertx;
+    this.catWebClient = catWebClient;
+    this.host = config.getString("catServerHost");
+    this.port = config.getInteger("catServerPort");
+    this.path = Constants.CAT_RSG_PATH;
+    this.resourceServer = config.getString("host");
+    this.resourceServerId = config.getString("resourceServerId", "");
+    this.pageSize = pageSize;
+    this.clock = clock;
+
+    Gauge.builder(METRIC_PREFIX + ".size", this, index -> index.size())
+        .description("resource groups and resources in the access policy index")
+        .register(registry);
+    Gauge.builder(METRIC_PREFIX + ".sync.lag", this, index -> index.syncLag())
+        .description("seconds since the access policy index was read from the catalogue")
+        .register(registry);
+  }
+
+  /**
+   * The index shared by the authentication services of a vertx instance, created by the first of
+   * them. It is removed once the last of them stops it.
+   *
+   * @param vertx Vertx instance
+   * @param catWebClient client of the catalogue
+   * @param config configuration of the authenticator
+   * @param pageSize items read from the catalogue per request
+   * @param registry registry the size of the index and the time since it was read are published to
+   * @return the shared index
+   */
+  static CatalogueAclIndex shared(Vertx vertx, WebClient catWebClient, JsonObject config,
+      int pageSize, MeterRegistry registry) {
+    LocalMap<String, CatalogueAclIndex> indices = vertx.sharedData().getLocalMap(ACL_INDEX);
+    return indices.computeIfAbsent(ACL_INDEX, key -> {
+      CatalogueAclIndex index = new CatalogueAclIndex(vertx, catWebClient, config, pageSize,
+          registry, System::currentTimeMillis);
+      index.indices = indices;
+      return index;
+    });
+  }
+
+  /**
+   * Reads the index, and reads it whole again every interval. The index is read by its first user
+   * only, the others share its reads.
+   *
+   * @param resyncInterval millis between two full reads
+   * @return Future which completes once the index is first read
+   */
+  synchronized Future<Void> start(long resyncInterval) {
+    if (users++ == 0) {
+      started = true;
+      timerId = vertx.setPeriodic(resyncInterval, id -> sync());
+      firstSync = sync();
+    }
+    return firstSync;
+  }
+
+  /** Stops the reads once the last user of the index stops it. */
+  synchronized void stop() {
+    if (users == 0 || --users > 0) {
+      return;
+    }
+    started = false;
+    if (timerId != -1) {
+      vertx.cancelTimer(timerId);
+      timerId = -1;
+    }
+    if (indices != null) {
+      indices.removeIfPresent(ACL_INDEX, this);
+    }
+  }
+
+  /** Access policy of a resource group or resource, null when it is not in the index. */
+  String get(String id) {
+    return id.split("/").length == 4 ? groups.get(id) : resources.get(id);
+  }
+
+  /** Adds an id looked up in the catalogue, while the index is kept. */
+  void put(String id, String acl) {
+    if (started) {
+      (id.split("/").length == 4 ? groups : resources).put(id, acl);
+    }
+  }
+
+  int size() {
+    return groups.size() + resources.size();
+  }
+
+  double syncLag() {
+    return syncedAt < 0 ? Double.NaN
+        : TimeUnit.MILLISECONDS.toSeconds(clock.getAsLong() - syncedAt);
+  }
+
+  Future<Void> sync() {
+    long startedAt = clock.getAsLong();
+    Map<String, String> groupAcls = new HashMap<>();
+    return items(GROUP_TYPE, "[id,accessPolicy]", 0, new ArrayList<>())
+        .compose(groupItems -> {
+          groupItems.stream().filter(group -> group.containsKey("accessPolicy"))
+              .forEach(group -> groupAcls.put(group.getString("id"),
+                  group.getString("accessPolicy").intern()));
+          return items(RESOURCE_TYPE, "[id,resourceGroup]", 0, new ArrayList<>());
+        })
+        .<Void>map(resourceItems -> {
+          Map<String, String> resourceAcls = new ConcurrentHashMap<>(resourceItems.size());
+          resourceItems.forEach(resource -> {
+            String acl = groupAcls.get(resource.getString("resourceGroup"));
+            if (acl != null) {
+              resourceAcls.put(resource.getString("id"), acl);
+            }
+          });
+          groups = new ConcurrentHashMap<>(groupAcls);
+          resources = resourceAcls;
+          syncedAt = startedAt;
+          LOGGER.info("access policies of " + groupAcls.size() + " groups and "
+              + resourceAcls.size() + " resources read from catalogue");
+          return null;
+        })
+        .onFailure(failure -> LOGGER.error("failed to read access policies from catalogue : "
+            + failure.getMessage()));
+  }
+
+  /** Items of a type on this resource server, read a page at a time from an offset. */
+  private Future<List<JsonObject>> items(String type, String filter, int offset,
+      List<JsonObject> items) {
+    Promise<JsonObject> page = Promise.promise();
+    // the catalogue returns the items of the server when its id is configured, otherwise the
+    // items of every server are read and those of the server are kept by their ids
+    boolean byServer = !resourceServerId.isBlank();
+    catWebClient
+        .get(port, host, path)
+        .addQueryParam("property", byServer ? "[type,resourceServer]" : "[type]")
+        .addQueryParam("value",
+            byServer ? "[[" + type + "],[" + resourceServerId + "]]" : "[[" + type + "]]")
+        .addQueryParam("filter", filter)
+        .addQueryParam("offset", String.valueOf(offset))
+        .addQueryParam("limit", String.valueOf(pageSize))
+        .expect(ResponsePredicate.JSON)
+        .send(responseHandler -> {
+          if (responseHandler.failed()) {
+            page.fail(responseHandler.cause());
+          } else if (responseHandler.result().statusCode() != HttpStatus.SC_OK) {
+            page.fail("catalogue responded " + responseHandler.result().statusCode());
+          } else {
+            page.complete(responseHandler.result().bodyAsJsonObject());
+          }
+        });
+    return page.future().compose(response -> {
+      JsonArray results = response.getJsonArray("results", new JsonArray());
+      for (Object result : results) {
+        JsonObject item = (JsonObject) result;
+        String[] id = item.getString("id", "").split("/");
+        if (id.length > 2 && id[2].equals(resourceServer)) {
+          items.add(item);
+        }
+      }
+      int read = offset + results.size();
+      if (results.isEmpty() || read >= response.getInteger("totalHits", 0)) {
+        return Future.succeededFuture(items);
+      }
+      return items(type, filter, read, items);
+    });
+  }
+}
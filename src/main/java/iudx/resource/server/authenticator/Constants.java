@@ -17,6 +17,7 @@ public class Constants {
           "/ngsi-ld/v1/temporal/entities",
           "/ngsi-ld/v1/entities",
           "/ngsi-ld/v1/entityOperations/query",
+          "/ngsi-ld/v1/entityOperations/latest",
           "/ngsi-ld/v1/temporal/entityOperations/query");
   public static final String AUTH_TIP_PATH = "/auth/v1/token/introspect";
   public static final List<String> CLOSED_ENDPOINTS =
@@ -27,9 +28,11 @@ public class Constants {
   public static final String SUBSCRIPTION_ENDPOINT = "/ngsi-ld/v1/subscription";
   public static final String MANAGEMENT_ENDPOINT = "/management/*";
   public static final long CACHE_TIMEOUT_AMOUNT = 30;
+  public static final long NOT_FOUND_CACHE_TIMEOUT_SECONDS = 30;
   public static final ChronoUnit TIP_CACHE_TIMEOUT_UNIT = ChronoUnit.MINUTES;
   public static final String CAT_RSG_PATH = "/iudx/cat/v1/search";
   public static final String CAT_ITEM_PATH = "/iudx/cat/v1/item";
+  public static final String ACL_INDEX = "iudx.rs.auth.acl.index";
   public static final String SERVER_MODE = "serverMode";
   public static final String JSON_USERID = "userid";
   public static final String JSON_IID = "iid";
@@ -8,38 +8,45 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.apache.http.HttpStatus;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
 import io.vertx.ext.auth.authentication.TokenCredentials;
 import io.vertx.ext.auth.jwt.JWTAuth;
 import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.client.WebClientOptions;
 import io.vertx.ext.web.client.predicate.ResponsePredicate;
+import io.vertx.micrometer.backends.BackendRegistries;
 import iudx.resource.server.authenticator.authorization.Api;
 import iudx.resource.server.authenticator.authorization.AuthorizationContextFactory;
-import iudx.resource.server.authenticator.authorization.AuthorizationRequest;
 import iudx.resource.server.authenticator.authorization.AuthorizationStrategy;
 import iudx.resource.server.authenticator.authorization.IudxRole;
-import iudx.resource.server.authenticator.authorization.JwtAuthorization;
 import iudx.resource.server.authenticator.authorization.Method;
 import iudx.resource.server.authenticator.model.JwtData;
 import iudx.resource.server.cache.CacheService;
 import iudx.resource.server.cache.cacheImpl.CacheType;
 
-public class JwtAuthenticationServiceImpl implements AuthenticationService {
+/**
+ * Authentication service, shared through a local map with the verticles of the same Vert.x
+ * instance, which call it directly. Its caches are thread safe.
+ */
+public class JwtAuthenticationServiceImpl implements AuthenticationService, Shareable {
 
   private static final Logger LOGGER = LogManager.getLogger(JwtAuthenticationServiceImpl.class);
 
@@ -50,19 +57,20 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
   final String path;
   final String audience;
   final CacheService cache;
+  final VerifiedTokenCache verifiedTokens;
+  final CatalogueAclIndex aclIndex;
+  private boolean aclSyncStarted;
 
   // resourceGroupCache will contains ACL info about all resource group in a resource server
-  Cache<String, String> resourceGroupCache =
-      CacheBuilder.newBuilder()
-          .maximumSize(1000)
-          .expireAfterAccess(Constants.CACHE_TIMEOUT_AMOUNT, TimeUnit.MINUTES)
-          .build();
+  CatalogueAclCache resourceGroupCache =
+      new CatalogueAclCache(1000, TimeUnit.MINUTES.toMillis(Constants.CACHE_TIMEOUT_AMOUNT),
+          TimeUnit.SECONDS.toMillis(Constants.NOT_FOUND_CACHE_TIMEOUT_SECONDS),
+          System::currentTimeMillis);
   // resourceIdCache will contains info about resources available(& their ACL) in resource server.
-  Cache<String, String> resourceIdCache =
-      CacheBuilder.newBuilder()
-          .maximumSize(1000)
-          .expireAfterAccess(Constants.CACHE_TIMEOUT_AMOUNT, TimeUnit.MINUTES)
-          .build();
+  CatalogueAclCache resourceIdCache =
+      new CatalogueAclCache(1000, TimeUnit.MINUTES.toMillis(Constants.CACHE_TIMEOUT_AMOUNT),
+          TimeUnit.SECONDS.toMillis(Constants.NOT_FOUND_CACHE_TIMEOUT_SECONDS),
+          System::currentTimeMillis);
 
 
 
@@ -79,6 +87,32 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
     options.setTrustAll(true).setVerifyHost(false).setSsl(true);
     catWebClient = WebClient.create(vertx, options);
     this.cache = cacheService;
+    this.verifiedTokens = new VerifiedTokenCache(
+        config.getInteger("verifiedTokenCacheMaxEntries", 10000), System::currentTimeMillis);
+    MeterRegistry registry = BackendRegistries.getDefaultNow();
+    this.aclIndex = CatalogueAclIndex.shared(vertx, catWebClient, config,
+        config.getInteger("aclPreloadPageSize", 1000),
+        registry == null ? new SimpleMeterRegistry() : registry);
+  }
+
+  /**
+   * Reads the access policies of all the items of the server from the catalogue, and resyncs them
+   * all every <code>aclResyncInterval</code> minutes, so the items are not looked up one at a time.
+   * The index is shared by the authentication services of the vertx instance.
+   *
+   * @param config configuration of the authenticator
+   * @return Future which completes once the access policies are first read
+   */
+  Future<Void> preloadAcls(JsonObject config) {
+    aclSyncStarted = true;
+    return aclIndex.start(TimeUnit.MINUTES.toMillis(config.getLong("aclResyncInterval", 15L)));
+  }
+
+  void stopAclSync() {
+    if (aclSyncStarted) {
+      aclSyncStarted = false;
+      aclIndex.stop();
+    }
   }
 
   @Override
@@ -100,7 +134,9 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
             || endPoint.equalsIgnoreCase("/ngsi-ld/v1/consumer/audit")
             || endPoint.equalsIgnoreCase("/admin/revokeToken")
             || endPoint.equalsIgnoreCase("/admin/resourceattribute")
-            || endPoint.equalsIgnoreCase("/ngsi-ld/v1/provider/audit");
+            || endPoint.equalsIgnoreCase("/ngsi-ld/v1/provider/audit")
+            // an export job is checked against the user who submitted it
+            || (endPoint.equalsIgnoreCase("/ngsi-ld/v1/export") && method.equalsIgnoreCase("GET"));
 
 
     LOGGER.debug("checkResourceFlag " + skipResourceIdCheck);
@@ -125,7 +161,7 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
             revokeTokenHandler -> {
               if (!skipResourceIdCheck
                   && !result.jwtData.getIss().equals(result.jwtData.getSub())) {
-                return isOpenResource(id);
+                return isOpenResources(id, result);
               } else {
                 return Future.succeededFuture("OPEN");
               }
@@ -140,7 +176,11 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
               } else if (!skipResourceIdCheck
                   && (!result.isOpen || endPoint.equalsIgnoreCase("/ngsi-ld/v1/subscription")
                       || endPoint.equalsIgnoreCase("/ngsi-ld/v1/ingestion"))) {
-                return isValidId(result.jwtData, id);
+                // ids of open resources in a multi entity request need no token for them
+                if (result.isOpen || result.secureIds.size() == 1) {
+                  return isValidId(result.jwtData, result.isOpen ? id : result.secureIds.get(0));
+                }
+                return isValidGroup(result.jwtData, result.secureIds);
               } else {
                 return Future.succeededFuture(true);
               }
@@ -174,6 +214,10 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
   }
 
   Future<JwtData> decodeJwt(String jwtToken) {
+    JwtData verified = verifiedTokens.get(jwtToken);
+    if (verified != null) {
+      return Future.succeededFuture(verified);
+    }
     Promise<JwtData> promise = Promise.promise();
     TokenCredentials creds = new TokenCredentials(jwtToken);
 
@@ -184,6 +228,7 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
               JwtData jwtData = new JwtData(user.principal());
               jwtData.setExp(user.get("exp"));
               jwtData.setIat(user.get("iat"));
+              verifiedTokens.put(jwtToken, jwtData);
               promise.complete(jwtData);
             })
         .onFailure(
@@ -195,45 +240,64 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
     return promise.future();
   }
 
+  /**
+   * Access policy of a comma separated list of ids, <code>OPEN</code> only if every id is open.
+   * The ids which are not open are collected into the result container.
+   */
+  private Future<String> isOpenResources(String id, ResultContainer result) {
+    List<String> ids = Arrays.asList(id.split(","));
+    @SuppressWarnings("rawtypes")
+    List<Future> aclFutures = new ArrayList<>(ids.size());
+    for (String resourceId : ids) {
+      aclFutures.add(isOpenResource(resourceId));
+    }
+    return CompositeFuture.all(aclFutures).map(acls -> {
+      for (int i = 0; i < ids.size(); i++) {
+        if (!"OPEN".equalsIgnoreCase(acls.resultAt(i)) && !result.secureIds.contains(ids.get(i))) {
+          result.secureIds.add(ids.get(i));
+        }
+      }
+      return result.secureIds.isEmpty() ? "OPEN" : "SECURE";
+    });
+  }
+
   private Future<String> isOpenResource(String id) {
     LOGGER.trace("isOpenResource() started");
-    Promise<String> promise = Promise.promise();
-
-    String ACL = resourceIdCache.getIfPresent(id);
-    if (ACL != null) {
-      LOGGER.debug("Cache Hit");
-      promise.complete(ACL);
-    } else {
-      // cache miss
-      LOGGER.debug("Cache miss calling cat server");
-      String[] idComponents = id.split("/");
-      if (idComponents.length < 4) {
-        promise.fail("Not Found " + id);
-      }
-      String groupId =
-          (idComponents.length == 4)
-              ? id
-              : String.join("/", Arrays.copyOfRange(idComponents, 0, 4));
-      // 1. check group accessPolicy.
-      // 2. check resource exist, if exist set accessPolicy to group accessPolicy. else fail
-      Future<String> groupACLFuture = getGroupAccessPolicy(groupId);
-      groupACLFuture
-          .compose(
-              groupACLResult -> {
-                String groupPolicy = groupACLResult;
-                return isResourceExist(id, groupPolicy);
-              })
-          .onSuccess(
-              handler -> {
-                promise.complete(resourceIdCache.getIfPresent(id));
-              })
-          .onFailure(
-              handler -> {
-                LOGGER.error("cat response failed for Id : (" + id + ")" + handler.getCause());
-                promise.fail("Not Found " + id);
-              });
+    String[] idComponents = id.split("/");
+    if (idComponents.length < 4) {
+      return Future.failedFuture("Not Found " + id);
     }
-    return promise.future();
+    String indexed = aclIndex.get(id);
+    if (indexed != null) {
+      return Future.succeededFuture(indexed);
+    }
+    // 1. check group accessPolicy.
+    // 2. check resource exist, if exist set accessPolicy to group accessPolicy. else fail
+    return resourceIdCache.get(id, this::getResourceAccessPolicy)
+        .recover(failure -> {
+          LOGGER.error("cat response failed for Id : (" + id + ")" + failure.getMessage());
+          return Future.failedFuture("Not Found " + id);
+        })
+        .compose(acl -> {
+          if (acl == null) {
+            return Future.failedFuture("Not Found " + id);
+          }
+          aclIndex.put(id, acl);
+          return Future.succeededFuture(acl);
+        });
+  }
+
+  /** Access policy of a resource, its group access policy when the resource exists. */
+  private Future<String> getResourceAccessPolicy(String id) {
+    LOGGER.debug("Cache miss calling cat server");
+    String[] idComponents = id.split("/");
+    String groupId =
+        (idComponents.length == 4)
+            ? id
+            : String.join("/", Arrays.copyOfRange(idComponents, 0, 4));
+    return resourceGroupCache.get(groupId, this::getGroupAccessPolicy)
+        .compose(groupACL -> groupACL == null ? Future.<String>succeededFuture(null)
+            : isResourceExist(id).map(exist -> exist ? groupACL : null));
   }
 
   public Future<JsonObject> validateAccess(
@@ -252,14 +316,12 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
 
     Method method = Method.valueOf(authInfo.getString("method"));
     Api api = Api.fromEndpoint(authInfo.getString("apiEndpoint"));
-    AuthorizationRequest authRequest = new AuthorizationRequest(method, api);
 
     IudxRole role = IudxRole.fromRole(jwtData.getRole());
     AuthorizationStrategy authStrategy = AuthorizationContextFactory.create(role);
-    LOGGER.info("strategy : " + authStrategy.getClass().getSimpleName());
-    JwtAuthorization jwtAuthStrategy = new JwtAuthorization(authStrategy);
-    LOGGER.info("endPoint : " + authInfo.getString("apiEndpoint"));
-    if (jwtAuthStrategy.isAuthorized(authRequest, jwtData)) {
+    LOGGER.info("strategy : {}", authStrategy.getClass().getSimpleName());
+    LOGGER.info("endPoint : {}", authInfo.getString("apiEndpoint"));
+    if (authStrategy.isAuthorized(api, method, jwtData)) {
       LOGGER.info("User access is allowed.");
       JsonObject jsonResponse = new JsonObject();
       jsonResponse.put(JSON_USERID, jwtData.getSub());
@@ -303,6 +365,32 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
     return promise.future();
   }
 
+  /**
+   * Checks the secure ids of a multi entity request. A token is issued for a single item, so it
+   * covers several secure ids only when it is issued for their resource group.
+   */
+  Future<Boolean> isValidGroup(JwtData jwtData, List<String> ids) {
+    String[] iid = jwtData.getIid().split(":");
+    boolean groupToken = "rg".equalsIgnoreCase(iid[0]);
+    for (String id : ids) {
+      if (!groupToken || !id.toLowerCase().startsWith(iid[1].toLowerCase() + "/")) {
+        LOGGER.error("Incorrect id value in jwt, secure ids of several groups");
+        return Future.failedFuture(
+            "Token does not cover every secure id, several secure ids need a resource group token");
+      }
+    }
+    return Future.succeededFuture(true);
+  }
+
+  /**
+   * Drops the verified tokens of a client whose privileges changed.
+   *
+   * @param sub id of the client, the tokens of all clients are dropped when null
+   */
+  void clientRevoked(String sub) {
+    verifiedTokens.invalidate(sub);
+  }
+
   Future<Boolean> isRevokedClientToken(JwtData jwtData) {
     LOGGER.trace("isRevokedClientToken started param : " + jwtData);
     Promise<Boolean> promise = Promise.promise();
@@ -364,95 +452,84 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
     return promise.future();
   }
 
-  private Future<Boolean> isResourceExist(String id, String groupACL) {
+  private Future<Boolean> isResourceExist(String id) {
     LOGGER.trace("isResourceExist() started");
     Promise<Boolean> promise = Promise.promise();
-    String resourceExist = resourceIdCache.getIfPresent(id);
-    if (resourceExist != null) {
-      LOGGER.info("Info : cache Hit");
-      promise.complete(true);
-    } else {
-      LOGGER.info("Info : Cache miss : call cat server");
-      catWebClient
-          .get(port, host, path)
-          .addQueryParam("property", "[id]")
-          .addQueryParam("value", "[[" + id + "]]")
-          .addQueryParam("filter", "[id]")
-          .expect(ResponsePredicate.JSON)
-          .send(
-              responseHandler -> {
-                if (responseHandler.failed()) {
-                  promise.fail("false");
-                }
-                HttpResponse<Buffer> response = responseHandler.result();
-                JsonObject responseBody = response.bodyAsJsonObject();
-                if (response.statusCode() != HttpStatus.SC_OK) {
-                  promise.fail("false");
-                } else if (!responseBody.getString("type").equals("urn:dx:cat:Success")) {
-                  promise.fail("Not Found");
-                  return;
-                } else if (responseBody.getInteger("totalHits") == 0) {
-                  LOGGER.error("Info: Resource ID invalid : Catalogue item Not Found");
-                  promise.fail("Not Found");
-                } else {
-                  LOGGER.debug("is Exist response : " + responseBody);
-                  resourceIdCache.put(id, groupACL);
-                  promise.complete(true);
-                }
-              });
-    }
+    LOGGER.info("Info : Cache miss : call cat server");
+    catWebClient
+        .get(port, host, path)
+        .addQueryParam("property", "[id]")
+        .addQueryParam("value", "[[" + id + "]]")
+        .addQueryParam("filter", "[id]")
+        .expect(ResponsePredicate.JSON)
+        .send(
+            responseHandler -> {
+              if (responseHandler.failed()) {
+                promise.fail("false");
+                return;
+              }
+              HttpResponse<Buffer> response = responseHandler.result();
+              JsonObject responseBody = response.bodyAsJsonObject();
+              if (response.statusCode() != HttpStatus.SC_OK) {
+                promise.fail("false");
+              } else if (!responseBody.getString("type").equals("urn:dx:cat:Success")) {
+                promise.complete(false);
+              } else if (responseBody.getInteger("totalHits") == 0) {
+                LOGGER.error("Info: Resource ID invalid : Catalogue item Not Found");
+                promise.complete(false);
+              } else {
+                LOGGER.debug("is Exist response : " + responseBody);
+                promise.complete(true);
+              }
+            });
     return promise.future();
   }
 
+  /**
+   * Access policy of a resource group, completes with null when the catalogue does not have the
+   * group.
+   */
   private Future<String> getGroupAccessPolicy(String groupId) {
     LOGGER.trace("getGroupAccessPolicy() started");
     Promise<String> promise = Promise.promise();
-    String groupACL = resourceGroupCache.getIfPresent(groupId);
-    if (groupACL != null) {
-      LOGGER.info("Info : cache Hit");
-      promise.complete(groupACL);
-    } else {
-      LOGGER.info("Info : cache miss");
-      catWebClient
-          .get(port, host, path)
-          .addQueryParam("property", "[id]")
-          .addQueryParam("value", "[[" + groupId + "]]")
-          .addQueryParam("filter", "[accessPolicy]")
-          .expect(ResponsePredicate.JSON)
-          .send(
-              httpResponseAsyncResult -> {
-                if (httpResponseAsyncResult.failed()) {
-                  LOGGER.error(httpResponseAsyncResult.cause());
-                  promise.fail("Resource not found");
-                  return;
-                }
-                HttpResponse<Buffer> response = httpResponseAsyncResult.result();
-                if (response.statusCode() != HttpStatus.SC_OK) {
-                  promise.fail("Resource not found");
-                  return;
-                }
-                JsonObject responseBody = response.bodyAsJsonObject();
-                if (!responseBody.getString("type").equals("urn:dx:cat:Success")) {
-                  promise.fail("Resource not found");
-                  return;
-                }
-                String resourceACL = "SECURE";
-                try {
-                  resourceACL =
-                      responseBody
-                          .getJsonArray("results")
-                          .getJsonObject(0)
-                          .getString("accessPolicy");
-                  resourceGroupCache.put(groupId, resourceACL);
-                  LOGGER.debug("Info: Group ID valid : Catalogue item Found");
-                  promise.complete(resourceACL);
-                } catch (Exception ignored) {
-                  LOGGER.error("Info: Group ID invalid : Empty response in results from Catalogue",
-                      ignored);
-                  promise.fail("Resource not found");
-                }
-              });
-    }
+    LOGGER.info("Info : cache miss");
+    catWebClient
+        .get(port, host, path)
+        .addQueryParam("property", "[id]")
+        .addQueryParam("value", "[[" + groupId + "]]")
+        .addQueryParam("filter", "[accessPolicy]")
+        .expect(ResponsePredicate.JSON)
+        .send(
+            httpResponseAsyncResult -> {
+              if (httpResponseAsyncResult.failed()) {
+                LOGGER.error(httpResponseAsyncResult.cause());
+                promise.fail("Resource not found");
+                return;
+              }
+              HttpResponse<Buffer> response = httpResponseAsyncResult.result();
+              if (response.statusCode() != HttpStatus.SC_OK) {
+                promise.fail("Resource not found");
+                return;
+              }
+              JsonObject responseBody = response.bodyAsJsonObject();
+              if (!responseBody.getString("type").equals("urn:dx:cat:Success")) {
+                promise.complete(null);
+                return;
+              }
+              try {
+                String resourceACL =
+                    responseBody
+                        .getJsonArray("results")
+                        .getJsonObject(0)
+                        .getString("accessPolicy");
+                LOGGER.debug("Info: Group ID valid : Catalogue item Found");
+                promise.complete(resourceACL);
+              } catch (Exception ignored) {
+                LOGGER.error("Info: Group ID invalid : Empty response in results from Catalogue",
+                    ignored);
+                promise.complete(null);
+              }
+            });
     return promise.future();
   }
 
@@ -461,5 +538,6 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
     JwtData jwtData;
     boolean isResourceExist;
     boolean isOpen;
+    List<String> secureIds = new ArrayList<>();
   }
 }
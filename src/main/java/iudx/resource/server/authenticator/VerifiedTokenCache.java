@@ -0,0 +1,74 @@
+package iudx.resource.server.authenticator;
+
+import java.util.function.LongSupplier;
+import org.apache.commons.codec.digest.DigestUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import iudx.resource.server.authenticator.model.JwtData;
+
+/**
+ * Tokens whose signature is verified, by the SHA-256 digest of the token, so a token reused by a
+ * client is only verified and decoded once.
+ * <p>
+ * A token is served until its expiry, and all the tokens of a client are dropped when the client
+ * is revoked. The decoded token is shared between requests and is not to be changed.
+ * </p>
+ */
+final class VerifiedTokenCache {
+
+  private final Cache<String, JwtData> tokens;
+  private final LongSupplier clock;
+
+  /**
+   * @param maxEntries number of tokens kept
+   * @param clock current time in millis
+   */
+  VerifiedTokenCache(int maxEntries, LongSupplier clock) {
+    this.tokens = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+    this.clock = clock;
+  }
+
+  /**
+   * Decoded token, when it was verified before.
+   *
+   * @return null when the token is not known or has expired
+   */
+  JwtData get(String token) {
+    String digest = DigestUtils.sha256Hex(token);
+    JwtData jwtData = tokens.getIfPresent(digest);
+    if (jwtData != null && expired(jwtData)) {
+      tokens.invalidate(digest);
+      return null;
+    }
+    return jwtData;
+  }
+
+  /** Keeps a verified token, a token without expiry or past its expiry is not kept. */
+  void put(String token, JwtData jwtData) {
+    if (jwtData.getExp() != null && !expired(jwtData)) {
+      tokens.put(DigestUtils.sha256Hex(token), jwtData);
+    }
+  }
+
+  /**
+   * Drops the tokens of a client.
+   *
+   * @param sub id of the client, all tokens are dropped when null
+   */
+  void invalidate(String sub) {
+    if (sub == null) {
+      tokens.invalidateAll();
+    } else {
+      tokens.asMap().values().removeIf(jwtData -> sub.equals(jwtData.getSub()));
+    }
+  }
+
+  long size() {
+    tokens.cleanUp();
+    return tokens.size();
+  }
+
+  private boolean expired(JwtData jwtData) {
+    return jwtData.getExp() * 1000L <= clock.getAsLong();
+  }
+}
@@ -1,16 +1,18 @@
 package iudx.resource.server.authenticator.authorization;
 
-import java.util.stream.Stream;
-
 public enum Api {
   ENTITIES("/ngsi-ld/v1/entities"),
   TEMPORAL("/ngsi-ld/v1/temporal/entities"),
   ENTITY_OPERATION("/ngsi-ld/v1/entityoperations/query"),
+  ENTITY_OPERATION_LATEST("/ngsi-ld/v1/entityoperations/latest"),
   ENTITY_OPERATION_TEMPORAL("/ngsi-ld/v1/temporal/entityoperations/query"),
   SUBSCRIPTION("/ngsi-ld/v1/subscription"),
   INGESTION("/ngsi-ld/v1/ingestion"),
   RESET_PWD("/management/user/resetPassword"),
-  USER_AUDIT("/ngsi-ld/v1/consumer/audit");
+  USER_AUDIT("/ngsi-ld/v1/consumer/audit"),
+  EXPORT("/ngsi-ld/v1/export");
+
+  private static final Api[] APIS = values();
 
   private final String endpoint;
 
@@ -19,10 +21,12 @@ public enum Api {
   }
 
   public static Api fromEndpoint(final String endpoint) {
-    return Stream.of(values())
-        .filter(v -> v.endpoint.equalsIgnoreCase(endpoint))
-        .findAny()
-        .orElse(null);
+    for (Api api : APIS) {
+      if (api.endpoint.equalsIgnoreCase(endpoint)) {
+        return api;
+      }
+    }
+    return null;
   }
 
   public String getApiEndpoint() {
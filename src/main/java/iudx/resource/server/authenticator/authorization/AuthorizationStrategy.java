@@ -6,4 +6,9 @@ public interface AuthorizationStrategy {
 
   boolean isAuthorized(AuthorizationRequest authRequest,JwtData jwtData);
 
+  /** Authorizes a call of an api with a method, without building a request for it. */
+  default boolean isAuthorized(Api api, Method method, JwtData jwtData) {
+    return isAuthorized(new AuthorizationRequest(method, api), jwtData);
+  }
+
 }
@@ -2,7 +2,9 @@ package iudx.resource.server.authenticator.authorization;
 
 import static iudx.resource.server.authenticator.authorization.Api.ENTITIES;
 import static iudx.resource.server.authenticator.authorization.Api.ENTITY_OPERATION;
+import static iudx.resource.server.authenticator.authorization.Api.ENTITY_OPERATION_LATEST;
 import static iudx.resource.server.authenticator.authorization.Api.ENTITY_OPERATION_TEMPORAL;
+import static iudx.resource.server.authenticator.authorization.Api.EXPORT;
 import static iudx.resource.server.authenticator.authorization.Api.RESET_PWD;
 import static iudx.resource.server.authenticator.authorization.Api.SUBSCRIPTION;
 import static iudx.resource.server.authenticator.authorization.Api.TEMPORAL;
@@ -25,7 +27,11 @@ public class ConsumerAuthStrategy implements AuthorizationStrategy {
 
   private static final Logger LOGGER = LogManager.getLogger(ConsumerAuthStrategy.class);
 
+  private static final int METHODS = Method.values().length;
+
   static Map<String, List<AuthorizationRequest>> consumerAuthorizationRules = new HashMap<>();
+  // access masks allowed to call each api with each method, compiled from the rules
+  private static final int[] grants = new int[Api.values().length * METHODS];
   static {
 
     // api access list/rules
@@ -33,8 +39,11 @@ public class ConsumerAuthStrategy implements AuthorizationStrategy {
     apiAccessList.add(new AuthorizationRequest(GET, ENTITIES));
     apiAccessList.add(new AuthorizationRequest(GET, TEMPORAL));
     apiAccessList.add(new AuthorizationRequest(POST, ENTITY_OPERATION));
+    apiAccessList.add(new AuthorizationRequest(POST, ENTITY_OPERATION_LATEST));
     apiAccessList.add(new AuthorizationRequest(POST, ENTITY_OPERATION_TEMPORAL));
     apiAccessList.add(new AuthorizationRequest(GET,USER_AUDIT));
+    apiAccessList.add(new AuthorizationRequest(POST, EXPORT));
+    apiAccessList.add(new AuthorizationRequest(GET, EXPORT));
     consumerAuthorizationRules.put(IudxAccess.API.getAccess(), apiAccessList);
 
     // subscriptions access list/rules
@@ -50,32 +59,47 @@ public class ConsumerAuthStrategy implements AuthorizationStrategy {
     List<AuthorizationRequest> mgmtAccessList=new ArrayList<>();
     mgmtAccessList.add(new AuthorizationRequest(POST, RESET_PWD));
     consumerAuthorizationRules.put(IudxAccess.MANAGEMENT.getAccess(), mgmtAccessList);
+
+    grant(IudxAccess.API.mask(), apiAccessList);
+    grant(IudxAccess.SUBSCRIPTION.mask(), subsAccessList);
+    // management is allowed to every token with an access list
+    grant(IudxAccess.LISTED, mgmtAccessList);
   }
 
+  private static void grant(int mask, List<AuthorizationRequest> rules) {
+    for (AuthorizationRequest rule : rules) {
+      grants[index(rule.getApi(), rule.getMethod())] |= mask;
+    }
+  }
+
+  private static int index(Api api, Method method) {
+    return api.ordinal() * METHODS + method.ordinal();
+  }
 
   @Override
   public boolean isAuthorized(AuthorizationRequest authRequest, JwtData jwtData) {
-    JsonArray access = jwtData.getCons() != null ? jwtData.getCons().getJsonArray("access") : null;
-    boolean result = false;
-    if (access == null) {
-      return result;
-    }
-    String endpoint = authRequest.getApi().getApiEndpoint();
-    Method method = authRequest.getMethod();
-    LOGGER.debug("authorization request for : " + endpoint + " with method : " + method.name());
-    LOGGER.debug("allowed access : " + access);
+    return isAuthorized(authRequest.getApi(), authRequest.getMethod(), jwtData);
+  }
 
-    if (!result && access.contains(IudxAccess.API.getAccess())) {
-      result = consumerAuthorizationRules.get(IudxAccess.API.getAccess()).contains(authRequest);
-    }
-    if (!result && access.contains(IudxAccess.SUBSCRIPTION.getAccess())) {
-      result = consumerAuthorizationRules.get(IudxAccess.SUBSCRIPTION.getAccess()).contains(authRequest);
-    }
-    if(!result) {
-      result=consumerAuthorizationRules.get(IudxAccess.MANAGEMENT.getAccess()).contains(authRequest);
+  @Override
+  public boolean isAuthorized(Api api, Method method, JwtData jwtData) {
+    if (api == null || method == null) {
+      return false;
     }
+    LOGGER.debug("authorization request for : {} with method : {}", api, method);
+    return (grants[index(api, method)] & accessMask(jwtData)) != 0;
+  }
 
-    return result;
+  /** Mask of the access list of a token, decoded once and kept with the token. */
+  private static int accessMask(JwtData jwtData) {
+    int mask = jwtData.accessMask();
+    if (mask == JwtData.ACCESS_NOT_DECODED) {
+      JsonArray access =
+          jwtData.getCons() != null ? jwtData.getCons().getJsonArray("access") : null;
+      mask = IudxAccess.mask(access);
+      jwtData.accessMask(mask);
+    }
+    return mask;
   }
 
 }
@@ -22,4 +22,9 @@ public class DelegateAuthStrategy implements AuthorizationStrategy {
   public boolean isAuthorized(AuthorizationRequest authRequest, JwtData jwtData) {
     return true;
   }
+
+  @Override
+  public boolean isAuthorized(Api api, Method method, JwtData jwtData) {
+    return true;
+  }
 }
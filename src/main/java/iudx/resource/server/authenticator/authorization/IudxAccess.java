@@ -1,6 +1,7 @@
 package iudx.resource.server.authenticator.authorization;
 
 import java.util.stream.Stream;
+import io.vertx.core.json.JsonArray;
 
 public enum IudxAccess {
 
@@ -9,6 +10,11 @@ public enum IudxAccess {
   INGESTION("ingestion"),
   MANAGEMENT("management");
 
+  /** bit of every access list, set so an empty list is told from a token without one */
+  public static final int LISTED = 1 << 30;
+
+  private static final IudxAccess[] ACCESSES = values();
+
   private final String access;
 
   IudxAccess(String access) {
@@ -19,6 +25,30 @@ public enum IudxAccess {
     return this.access;
   }
 
+  public int mask() {
+    return 1 << ordinal();
+  }
+
+  /**
+   * Decodes the access list of a token into a mask of the bits of its accesses.
+   *
+   * @param access access list of the token
+   * @return 0 when the token has no access list, otherwise {@link #LISTED} with the bits of the
+   *         accesses in the list
+   */
+  public static int mask(JsonArray access) {
+    if (access == null) {
+      return 0;
+    }
+    int mask = LISTED;
+    for (IudxAccess value : ACCESSES) {
+      if (access.contains(value.access)) {
+        mask |= value.mask();
+      }
+    }
+    return mask;
+  }
+
   public static IudxAccess fromAccess(final String access) {
     return Stream.of(values())
         .filter(v -> v.access.equalsIgnoreCase(access))
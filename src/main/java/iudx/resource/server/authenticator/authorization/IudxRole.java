@@ -1,7 +1,5 @@
 package iudx.resource.server.authenticator.authorization;
 
-import java.util.stream.Stream;
-
 public enum IudxRole {
   
   CONSUMER("consumer"),
@@ -9,6 +7,8 @@ public enum IudxRole {
   DELEGATE("delegate"),
   ADMIN("admin");
 
+  private static final IudxRole[] ROLES = values();
+
   private final String role;
 
   IudxRole(String role) {
@@ -20,10 +20,12 @@ public enum IudxRole {
   }
 
   public static IudxRole fromRole(final String role) {
-    return Stream.of(values())
-        .filter(v -> v.role.equalsIgnoreCase(role))
-        .findAny()
-        .orElse(null);
+    for (IudxRole value : ROLES) {
+      if (value.role.equalsIgnoreCase(role)) {
+        return value;
+      }
+    }
+    return null;
   }
 
 }
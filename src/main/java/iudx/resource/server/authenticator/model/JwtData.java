@@ -15,6 +15,11 @@ public final class JwtData {
   private String iid;
   private String role;
   private JsonObject cons;
+  // accesses of cons decoded by the authorization, kept with the token verified
+  private volatile int accessMask = ACCESS_NOT_DECODED;
+
+  /** access mask of a token whose access list is not decoded yet */
+  public static final int ACCESS_NOT_DECODED = -1;
 
   public JsonObject toJson() {
     JsonObject json = new JsonObject();
@@ -84,6 +89,15 @@ public final class JwtData {
 
   public void setCons(JsonObject cons) {
     this.cons = cons;
+    this.accessMask = ACCESS_NOT_DECODED;
+  }
+
+  public int accessMask() {
+    return accessMask;
+  }
+
+  public void accessMask(int accessMask) {
+    this.accessMask = accessMask;
   }
 
   public Integer getExp() {
@@ -45,6 +45,36 @@ public interface CacheService {
   @Fluent
   CacheService get(JsonObject request, Handler<AsyncResult<JsonObject>> handler);
 
+  /**
+   * get values of many keys from cache in one call passing a json object specifying cache name and
+   * keys.
+   * 
+   * <pre>
+   * json ex (type and keys both are required)
+   * {
+   *    "type": "cache name", 
+   *    "keys" : ["cache key to fetch value", ...]
+   * }
+   * </pre>
+   * 
+   * in case of success method returns the values of the keys present in cache, keys not present
+   * are left out, else handler will fail.
+   * 
+   * <pre>
+   * {
+   *    "values": {
+   *        "key":"value for key"
+   *    }
+   * }
+   * </pre>
+   * 
+   * @param request valid json request
+   * @param handler handler
+   * @return
+   */
+  @Fluent
+  CacheService getAll(JsonObject request, Handler<AsyncResult<JsonObject>> handler);
+
   /**
    * put value in cache passing a json object specifying cache name (in case of multiple caches are
    * configured), key and value
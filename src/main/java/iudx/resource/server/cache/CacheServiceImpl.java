@@ -1,11 +1,14 @@
 package iudx.resource.server.cache;
 
+import static iudx.resource.server.common.Constants.CLIENT_REVOKED_ADDRESS;
+import static iudx.resource.server.common.Constants.LATEST_KEYS_REFRESH_ADDRESS;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import iudx.resource.server.cache.cacheImpl.CacheType;
 import iudx.resource.server.cache.cacheImpl.IudxCache;
@@ -20,8 +23,10 @@ public class CacheServiceImpl implements CacheService {
   private IudxCache revokedClientCache;
   private IudxCache uniqueAttributeCache;
   private PostgresService postgresService;
+  private Vertx vertx;
 
   public CacheServiceImpl(Vertx vertx, PostgresService pgService) {
+    this.vertx = vertx;
     this.postgresService = pgService;
     revokedClientCache = new RevokedClientCache(vertx, postgresService);
     uniqueAttributeCache = new UniqueAttributeCache(vertx, postgresService);
@@ -61,6 +66,39 @@ public class CacheServiceImpl implements CacheService {
     return this;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public CacheService getAll(JsonObject request, Handler<AsyncResult<JsonObject>> handler) {
+    IudxCache cache = null;
+
+    try {
+      cache = getCache(request);
+    } catch (IllegalArgumentException ex) {
+      LOGGER.error("No cache defined for given argument.");
+      handler.handle(Future.failedFuture("No cache defined for given type"));
+      return this;
+    }
+
+    JsonArray keys = request.getJsonArray("keys");
+
+    if (keys != null) {
+      JsonObject values = new JsonObject();
+      for (Object key : keys) {
+        String value = key == null ? null : cache.get(key.toString());
+        if (value != null) {
+          values.put(key.toString(), value);
+        }
+      }
+      handler.handle(Future.succeededFuture(new JsonObject().put("values", values)));
+    } else {
+      handler.handle(Future.failedFuture("null keys passed."));
+    }
+
+    return this;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -112,6 +150,15 @@ public class CacheServiceImpl implements CacheService {
     } else {
       cache.refreshCache();
     }
+    if (cache == uniqueAttributeCache) {
+      // Redis keys resolved for the ids are dropped, of all ids when the changed one is not known
+      JsonObject changed = key == null ? new JsonObject() : new JsonObject().put("id", key);
+      vertx.eventBus().publish(LATEST_KEYS_REFRESH_ADDRESS, changed);
+    } else if (cache == revokedClientCache) {
+      // verified tokens of the client are dropped, of all clients when it is not known
+      JsonObject revoked = key == null ? new JsonObject() : new JsonObject().put("sub", key);
+      vertx.eventBus().publish(CLIENT_REVOKED_ADDRESS, revoked);
+    }
     handler.handle(Future.succeededFuture());
     return this;
   }
@@ -9,6 +9,14 @@ public class Constants {
   public static final String AUTH_SERVICE_ADDRESS = "iudx.rs.authentication.service";
   public static final String DATABASE_SERVICE_ADDRESS = "iudx.rs.database.service";
   public static final String BROKER_SERVICE_ADDRESS = "iudx.rs.broker.service";
+  public static final String EXPORT_SERVICE_ADDRESS = "iudx.rs.export.service";
+
+  /** event bus addresses **/
+  public static final String LATEST_KEYS_REFRESH_ADDRESS = "iudx.rs.latest.keys.refresh";
+  public static final String CLIENT_REVOKED_ADDRESS = "iudx.rs.client.revoked";
+
+  /** local map of the services deployed in this Vert.x instance, by their address **/
+  public static final String LOCAL_SERVICES_MAP = "iudx.rs.local.services";
 
 
 
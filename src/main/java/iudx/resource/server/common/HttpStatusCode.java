@@ -11,6 +11,7 @@ public enum HttpStatusCode {
   // 2XX: codes
   NO_CONTENT(204, "No Content", "urn:dx:rs:noContent"),
   SUCCESS(200, "Success", "urn:dx:rs:Success"),
+  ACCEPTED(202, "Accepted", "urn:dx:rs:accepted"),
 
   // 4xx: Client Error
   BAD_REQUEST(400, "Bad Request", "urn:dx:rs:badRequest"),
@@ -35,6 +35,8 @@ public enum ResponseUrn {
   INVALID_HEADER_VALUE_URN("urn:dx:rs:invalidHeaderValue","Invalid header value"),
   DB_ERROR_URN("urn:dx:rs:DatabaseError","Database error"),
   QUEUE_ERROR_URN("urn:dx:rs:QueueError","Queue error"),
+  SERVICE_UNAVAILABLE_URN("urn:dx:rs:serviceUnavailable", "Service is overloaded or unavailable"),
+  TOO_MANY_REQUESTS_URN("urn:dx:rs:tooManyRequests", "Query cost above the budget"),
 
   BACKING_SERVICE_FORMAT_URN("urn:dx:rs:backend", "format error from backing service [cat,auth etc.]"),
   SCHEMA_READ_ERROR_URN("urn:dx:rs:readError","Fail to read file"),
@@ -1,5 +1,8 @@
 package iudx.resource.server.database.archives;
 
+import java.util.List;
+import java.util.regex.Pattern;
+
 public class Constants {
   /* General Purpose */
   public static final String SEARCH_TYPE = "searchType";
@@ -28,7 +31,8 @@ public class Constants {
   public static final String TERM_KEY = "term";
   public static final String TERMS_KEY = "terms";
   public static final String FILTER_PATH = "filter_path";
-  public static final String FILTER_PATH_VAL = "took,hits.hits._source";
+  public static final String FILTER_PATH_VAL =
+      "took,pit_id,hits.total,hits.hits._source,hits.hits.sort";
   public static final String FILTER_PATH_VAL_LATEST = "docs._source";
   public static final String SIZE_KEY = "size";
   public static final String GREATER_THAN = "gt";
@@ -48,6 +52,77 @@ public class Constants {
   public static final String COUNT_REQ_PARAM_WITHOUT_FILTER = "/_search?search_type=count";
   public static final String TIME_FIELD_DB = "observationDateTime";
   public static final String FROM_KEY = "from";
+  public static final String TOTAL_HITS = "totalHits";
+  public static final String TOTAL_HITS_RELATION = "totalHitsRelation";
+  public static final String TRACK_TOTAL_HITS = "track_total_hits";
+  public static final String TOTAL_KEY = "total";
+  public static final String RELATION_KEY = "relation";
+  public static final String RELATION_EQ = "eq";
+  public static final String RELATION_GTE = "gte";
+  public static final String SORT_KEY = "sort";
+  public static final String SEARCH_AFTER = "search_after";
+  public static final String PIT_KEY = "pit";
+  public static final String PIT_ID = "pit_id";
+  public static final String KEEP_ALIVE = "keep_alive";
+  public static final String PIT_KEEP_ALIVE = "1m";
+  public static final String PIT_REQ_PARAM = "/_pit";
+  public static final String MSEARCH_REQ_PARAM = "_msearch";
+  public static final String FILTER_PATH_VAL_MSEARCH =
+      "responses.status,responses.error.reason,responses.hits.total,responses.hits.hits._source";
+  public static final String RESPONSES = "responses";
+  public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+  public static final int MAX_MSEARCH_IDS = 50;
+  public static final int MAX_MSEARCH_HITS = 5000;
+  public static final String SCROLL_KEY = "scroll";
+  public static final String SCROLL_ID = "_scroll_id";
+  public static final String SCROLL_ID_KEY = "scroll_id";
+  public static final String SCROLL_REQ_PARAM = "/_search/scroll";
+  public static final String FILTER_PATH_VAL_SCROLL = "_scroll_id,hits.hits._source";
+  public static final String SLICE_KEY = "slice";
+  public static final String SLICE_MAX = "max";
+  public static final String DOC_SORT = "_doc";
+  public static final String PIT_SEARCH_INDEX = "_search";
+  public static final String REQUEST_POST = "POST";
+  public static final String REQUEST_DELETE = "DELETE";
+  public static final String SORT_ASC = "asc";
+  public static final int STREAM_CHUNK_SIZE = 64 * 1024;
+  public static final String AGGS_KEY = "aggs";
+  public static final String AGGREGATIONS_KEY = "aggregations";
+  public static final String BUCKETS_AGG = "timeBuckets";
+  public static final String BUCKETS_KEY = "buckets";
+  public static final String DATE_HISTOGRAM = "date_histogram";
+  public static final String FIXED_INTERVAL = "fixed_interval";
+  public static final String FIELD_KEY = "field";
+  public static final String KEY_AS_STRING = "key_as_string";
+  public static final String DOC_COUNT = "doc_count";
+  public static final String VALUE_COUNT = "value_count";
+  public static final String FILTER_PATH_VAL_AGGREGATION =
+      "took,aggregations." + BUCKETS_AGG + ".buckets";
+  public static final int MAX_AGGREGATION_BUCKETS = 10000;
+  public static final String ALIAS_REQ_PARAM = "_alias";
+  public static final String ALIASES_KEY = "aliases";
+  public static final String IS_WRITE_INDEX = "is_write_index";
+  public static final String ALIAS_FILTER_KEY = "filter";
+  public static final String ALIAS_SEARCH_ROUTING = "search_routing";
+  public static final String INDEX_ROUTER = "iudx.rs.archive.index.router";
+  public static final String QUERY_RESULT_CACHE = "iudx.rs.archive.query.cache";
+  public static final String GEO_SHAPE_CACHE = "iudx.rs.archive.geo.shape.cache";
+  public static final String REQUEST_LIMITER = "iudx.rs.archive.elastic.limiter";
+  public static final String INDEX_MIN_AGG = "minTime";
+  public static final String INDEX_MAX_AGG = "maxTime";
+  public static final String FILTER_PATH_VAL_INDEX_RANGE = "responses.aggregations";
+  public static final String MIN_KEY = "min";
+  public static final String MAX_KEY = "max";
+  public static final int DEFAULT_INDEX_ROUTING_REFRESH = 300;
+  public static final String ACCURACY_KEY = "accuracy";
+  public static final String APPROX_ACCURACY = "approx";
+  public static final String ESTIMATE_KEY = "estimate";
+  public static final String TERMINATE_AFTER = "terminate_after";
+  public static final String TERMINATED_EARLY = "terminated_early";
+  public static final String CALENDAR_INTERVAL = "calendar_interval";
+  public static final String MIN_DOC_COUNT = "min_doc_count";
+  public static final String EXTENDED_BOUNDS = "extended_bounds";
+  public static final int DEFAULT_COUNT_TERMINATE_AFTER = 100000;
   /* Request Params */
   /* Temporal */
   public static final String REQ_TIMEREL = "timerel";
@@ -64,6 +139,7 @@ public class Constants {
   public static final String GEOMETRY = "geometry";
   public static final String GEOREL = "georel";
   public static final String WITHIN = "within";
+  public static final String INTERSECTS = "intersects";
   public static final String POLYGON = "polygon";
   public static final String LINESTRING = "linestring";
   public static final String GEO_PROPERTY = "geoproperty";
@@ -88,6 +164,11 @@ public class Constants {
   /*pagination*/
   public static final String PARAM_SIZE = "limit";
   public static final String PARAM_FROM = "offset";
+  public static final String PARAM_CURSOR = "cursor";
+  /* Temporal aggregation */
+  public static final String AGGR_INTERVAL = "aggrInterval";
+  public static final String AGGR_METHODS = "aggrMethods";
+  public static final String AGGR_ATTRS = "aggrAttrs";
   
   /* Errors */
   public static final String INVALID_OPERATOR = "Invalid operator";
@@ -102,6 +183,8 @@ public class Constants {
   public static final String COUNT_UNSUPPORTED = "Count is not supported with filtering";
   public static final String EMPTY_RESPONSE = "Empty response";
   public static final String DB_ERROR = "DB request has failed";
+  public static final String DB_OVERLOADED = "DB is overloaded, retry later";
+  public static final String DB_UNAVAILABLE = "DB is unavailable, retry later";
   public static final String DB_ERROR_2XX = "Status code is not 2xx";
   public static final String ID_NOT_FOUND = "No id found";
   public static final String EMPTY_RESOURCE_ID = "resource-id is empty";
@@ -116,14 +199,27 @@ public class Constants {
   public static final String ROOT_CAUSE = "root_cause";
   public static final String REASON = "reason";
   public static final String MALFORMED_ID = "Malformed Id ";
+  public static final String MULTI_ID_CURSOR_UNSUPPORTED =
+      "Cursor is not supported for a query on several entities";
+  public static final String TOO_MANY_IDS = "Number of entities exceeds ";
   public static final String STATUS = "status";
   public static final String INDEX_NOT_FOUND = "index_not_found_exception";
   public static final String INVALID_RESOURCE_ID = "Invalid resource id";
+  public static final String INVALID_CURSOR = "Invalid cursor";
+  public static final String MISSING_AGGREGATION_FIELDS = "Missing/Invalid aggregation parameters";
+  public static final String MULTI_ID_AGGREGATION_UNSUPPORTED =
+      "Aggregation is not supported for a query on several entities";
+  public static final String AGGREGATION_CURSOR_UNSUPPORTED =
+      "Cursor is not supported for an aggregation";
+  public static final String TOO_MANY_BUCKETS = "Number of aggregation buckets exceeds ";
   /* Search Regex */
   public static final String GEOSEARCH_REGEX = "(.*)geoSearch(.*)";
   public static final String RESPONSE_FILTER_REGEX = "(.*)responseFilter(.*)";
   public static final String ATTRIBUTE_SEARCH_REGEX = "(.*)attributeSearch(.*)";
   public static final String TEMPORAL_SEARCH_REGEX = "(.*)temporalSearch(.*)";
+  public static final Pattern AGGR_INTERVAL_PATTERN = Pattern.compile("^[1-9][0-9]{0,2}[mhd]$");
+  public static final List<String> AGGR_ALLOWED_METHODS =
+      List.of("avg", "min", "max", "sum", "count");
   public static final String LATEST_SEARCH = "latestSearch";
   /* Query templates */
   public static final String GEO_SHAPE_QUERY =
@@ -0,0 +1,248 @@
+package iudx.resource.server.database.archives;
+
+import static iudx.resource.server.database.archives.Constants.AGGS_KEY;
+import static iudx.resource.server.database.archives.Constants.ATTRIBUTE_SEARCH_REGEX;
+import static iudx.resource.server.database.archives.Constants.BOOL_KEY;
+import static iudx.resource.server.database.archives.Constants.BUCKETS_AGG;
+import static iudx.resource.server.database.archives.Constants.CALENDAR_INTERVAL;
+import static iudx.resource.server.database.archives.Constants.COUNT_REQ_PARAM;
+import static iudx.resource.server.database.archives.Constants.DATE_HISTOGRAM;
+import static iudx.resource.server.database.archives.Constants.DEFAULT_COUNT_TERMINATE_AFTER;
+import static iudx.resource.server.database.archives.Constants.DOC_COUNT;
+import static iudx.resource.server.database.archives.Constants.EMPTY_RESPONSE;
+import static iudx.resource.server.database.archives.Constants.EXTENDED_BOUNDS;
+import static iudx.resource.server.database.archives.Constants.FAILED;
+import static iudx.resource.server.database.archives.Constants.FIELD_KEY;
+import static iudx.resource.server.database.archives.Constants.FILTER_KEY;
+import static iudx.resource.server.database.archives.Constants.GEOSEARCH_REGEX;
+import static iudx.resource.server.database.archives.Constants.ID;
+import static iudx.resource.server.database.archives.Constants.KEY;
+import static iudx.resource.server.database.archives.Constants.MAX_AGGREGATION_BUCKETS;
+import static iudx.resource.server.database.archives.Constants.MAX_KEY;
+import static iudx.resource.server.database.archives.Constants.MIN_DOC_COUNT;
+import static iudx.resource.server.database.archives.Constants.MIN_KEY;
+import static iudx.resource.server.database.archives.Constants.QUERY_KEY;
+import static iudx.resource.server.database.archives.Constants.RANGE_KEY;
+import static iudx.resource.server.database.archives.Constants.SEARCH_REQ_PARAM;
+import static iudx.resource.server.database.archives.Constants.SEARCH_TYPE;
+import static iudx.resource.server.database.archives.Constants.SIZE_KEY;
+import static iudx.resource.server.database.archives.Constants.SUCCESS;
+import static iudx.resource.server.database.archives.Constants.TERMS_KEY;
+import static iudx.resource.server.database.archives.Constants.TIME_FIELD_DB;
+import static iudx.resource.server.database.archives.Constants.TRACK_TOTAL_HITS;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.database.archives.elastic.ElasticClient;
+import iudx.resource.server.database.archives.elastic.ElasticQuery;
+
+/**
+ * Approximate counts of the documents of an entity.
+ * <p>
+ * A count filtered by the time window only is estimated from the number of documents of the
+ * entity per day. The counts of the days which have passed are cached, only the missing days and
+ * the current day are read with a <code>date_histogram</code>, and the days at the edges of the
+ * window are counted in proportion to their overlap with it. Any other count is sent as a
+ * <code>_count</code> which stops after a number of documents per shard, and is then reported as a
+ * lower bound.
+ * </p>
+ */
+final class CountEstimator {
+
+  private static final Logger LOGGER = LogManager.getLogger(CountEstimator.class);
+
+  private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+  private final ElasticClient client;
+  private final int terminateAfter;
+  private final int maxEntities;
+  private final long ttl;
+  private final LongSupplier clock;
+  private final LinkedHashMap<String, DailyCounts> entities = new LinkedHashMap<>(16, 0.75f, true);
+
+  CountEstimator(ElasticClient client, JsonObject config) {
+    this(client, config, System::currentTimeMillis);
+  }
+
+  CountEstimator(ElasticClient client, JsonObject config, LongSupplier clock) {
+    this.client = client;
+    this.terminateAfter = config.getInteger("countTerminateAfter", DEFAULT_COUNT_TERMINATE_AFTER);
+    this.maxEntities = config.getInteger("countCacheSize", 1000);
+    this.ttl = TimeUnit.SECONDS.toMillis(config.getLong("countCacheTtl", 3600L));
+    this.clock = clock;
+  }
+
+  /**
+   * Estimated count of a request on a single entity.
+   *
+   * @param index index or indices the request is routed to
+   * @param request scoped request
+   * @param query decoded query of the request
+   * @return count response flagged as an estimate, or as a lower bound
+   */
+  Future<JsonObject> count(String index, JsonObject request, ElasticQuery query) {
+    long now = clock.getAsLong();
+    long[] window = dailyWindow(request, now);
+    if (window == null) {
+      return boundedCount(index, query);
+    }
+    String id = request.getJsonArray(ID).getString(0);
+    long firstDay = floorDay(window[0]);
+    long lastDay = floorDay(window[1] - 1);
+    long today = floorDay(now);
+
+    NavigableMap<Long, Long> cached = cachedDays(id, now);
+    long fetchFrom = -1;
+    for (long day = firstDay; day <= lastDay; day += DAY) {
+      if (day >= today || !cached.containsKey(day)) {
+        fetchFrom = day;
+        break;
+      }
+    }
+    if (fetchFrom < 0) {
+      LOGGER.debug("Info: Count estimated from cached days");
+      return estimate(cached, window, now);
+    }
+
+    Promise<JsonArray> promise = Promise.promise();
+    client.aggregateAsync(index.concat(SEARCH_REQ_PARAM), histogram(id, fetchFrom, lastDay + DAY),
+        promise);
+    return promise.future().compose(buckets -> {
+      NavigableMap<Long, Long> days = new TreeMap<>(cached);
+      NavigableMap<Long, Long> closed = new TreeMap<>();
+      for (Object entry : buckets) {
+        JsonObject bucket = (JsonObject) entry;
+        long day = bucket.getLong(KEY);
+        long count = bucket.getLong(DOC_COUNT, 0L);
+        days.put(day, count);
+        if (day < today) {
+          closed.put(day, count);
+        }
+      }
+      cacheDays(id, closed, now);
+      return estimate(days, window, now);
+    });
+  }
+
+  /**
+   * Window of a request which is filtered by its time window only, closed at now.
+   *
+   * @return start and end in epoch millis, or null when the count can not be estimated per day
+   */
+  static long[] dailyWindow(JsonObject request, long now) {
+    String searchType = request.getString(SEARCH_TYPE, "");
+    if (searchType.matches(GEOSEARCH_REGEX) || searchType.matches(ATTRIBUTE_SEARCH_REGEX)) {
+      return null;
+    }
+    long[] window = IndexRouter.window(request, now);
+    if (window == null || window[0] == Long.MIN_VALUE) {
+      return null;
+    }
+    long end = Math.min(window[1], now);
+    if (end <= window[0] || (end - window[0]) / DAY >= MAX_AGGREGATION_BUCKETS) {
+      return null;
+    }
+    return new long[] {window[0], end};
+  }
+
+  /**
+   * Sum of the days of the window, the days at its edges in proportion to their overlap. The
+   * current day only counts the documents received so far, it overlaps up to now.
+   */
+  static Future<JsonObject> estimate(NavigableMap<Long, Long> days, long[] window, long now) {
+    double estimate = 0;
+    for (Map.Entry<Long, Long> day : days
+        .subMap(floorDay(window[0]), true, floorDay(window[1] - 1), true).entrySet()) {
+      long dayStart = day.getKey();
+      long dayEnd = Math.min(dayStart + DAY, now);
+      long overlap = Math.min(window[1], dayEnd) - Math.max(window[0], dayStart);
+      if (overlap > 0 && dayEnd > dayStart) {
+        estimate += day.getValue() * (double) overlap / (dayEnd - dayStart);
+      }
+    }
+    long count = Math.round(estimate);
+    if (count == 0) {
+      return Future.failedFuture(new ResponseBuilder(FAILED).setTypeAndTitle(204)
+          .setMessage(EMPTY_RESPONSE).getResponse().toString());
+    }
+    return Future.succeededFuture(new ResponseBuilder(SUCCESS).setTypeAndTitle(200)
+        .setCount((int) Math.min(Integer.MAX_VALUE, count)).setEstimate(true).getResponse());
+  }
+
+  private Future<JsonObject> boundedCount(String index, ElasticQuery query) {
+    Promise<JsonObject> promise = Promise.promise();
+    client.countAsync(index.concat(COUNT_REQ_PARAM), query.countBody(), terminateAfter, promise);
+    return promise.future();
+  }
+
+  private static Buffer histogram(String id, long from, long to) {
+    JsonObject query = new JsonObject().put(BOOL_KEY, new JsonObject().put(FILTER_KEY,
+        new JsonArray()
+            .add(new JsonObject().put(TERMS_KEY, new JsonObject().put(ID, new JsonArray().add(id))))
+            .add(new JsonObject().put(RANGE_KEY, new JsonObject().put(TIME_FIELD_DB,
+                new JsonObject().put("gte", from).put("lt", to).put("format", "epoch_millis"))))));
+    JsonObject histogram = new JsonObject().put(DATE_HISTOGRAM, new JsonObject()
+        .put(FIELD_KEY, TIME_FIELD_DB)
+        .put(CALENDAR_INTERVAL, "1d")
+        .put(MIN_DOC_COUNT, 0)
+        .put(EXTENDED_BOUNDS, new JsonObject().put(MIN_KEY, from).put(MAX_KEY, to - 1)));
+    return new JsonObject()
+        .put(QUERY_KEY, query)
+        .put(SIZE_KEY, 0)
+        .put(TRACK_TOTAL_HITS, false)
+        .put(AGGS_KEY, new JsonObject().put(BUCKETS_AGG, histogram))
+        .toBuffer();
+  }
+
+  private static long floorDay(long time) {
+    return Math.floorDiv(time, DAY) * DAY;
+  }
+
+  private synchronized NavigableMap<Long, Long> cachedDays(String id, long now) {
+    DailyCounts counts = entities.get(id);
+    if (counts == null || counts.expiresAt <= now) {
+      entities.remove(id);
+      return new TreeMap<>();
+    }
+    return new TreeMap<>(counts.days);
+  }
+
+  private synchronized void cacheDays(String id, NavigableMap<Long, Long> closed, long now) {
+    DailyCounts counts = entities.get(id);
+    if (counts == null || counts.expiresAt <= now) {
+      counts = new DailyCounts(now + ttl);
+      entities.put(id, counts);
+    }
+    counts.days.putAll(closed);
+    Iterator<String> eldest = entities.keySet().iterator();
+    while (entities.size() > maxEntities && eldest.hasNext()) {
+      eldest.next();
+      eldest.remove();
+    }
+  }
+
+  synchronized int size() {
+    return entities.size();
+  }
+
+  private static final class DailyCounts {
+
+    private final NavigableMap<Long, Long> days = new TreeMap<>();
+    private final long expiresAt;
+
+    private DailyCounts(long expiresAt) {
+      this.expiresAt = expiresAt;
+    }
+  }
+}
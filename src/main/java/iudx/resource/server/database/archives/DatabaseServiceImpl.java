@@ -1,40 +1,76 @@
 package iudx.resource.server.database.archives;
 
 
+import static iudx.resource.server.database.archives.Constants.ACCURACY_KEY;
+import static iudx.resource.server.database.archives.Constants.AGGREGATION_CURSOR_UNSUPPORTED;
+import static iudx.resource.server.database.archives.Constants.AGGR_INTERVAL;
+import static iudx.resource.server.database.archives.Constants.APPROX_ACCURACY;
 import static iudx.resource.server.database.archives.Constants.COUNT_REQ_PARAM;
 import static iudx.resource.server.database.archives.Constants.DEFAULT_FROM_VALUE;
+import static iudx.resource.server.database.archives.Constants.DEFAULT_INDEX_ROUTING_REFRESH;
 import static iudx.resource.server.database.archives.Constants.DEFAULT_SIZE_VALUE;
 import static iudx.resource.server.database.archives.Constants.EMPTY_RESOURCE_ID;
-import static iudx.resource.server.database.archives.Constants.ERROR;
+import static iudx.resource.server.database.archives.Constants.EMPTY_RESPONSE;
 import static iudx.resource.server.database.archives.Constants.FAILED;
 import static iudx.resource.server.database.archives.Constants.FILTER_PATH_VAL;
 import static iudx.resource.server.database.archives.Constants.FILTER_PATH_VAL_LATEST;
+import static iudx.resource.server.database.archives.Constants.FILTER_PATH_VAL_MSEARCH;
 import static iudx.resource.server.database.archives.Constants.FROM_KEY;
 import static iudx.resource.server.database.archives.Constants.ID;
 import static iudx.resource.server.database.archives.Constants.ID_NOT_FOUND;
+import static iudx.resource.server.database.archives.Constants.INVALID_CURSOR;
+import static iudx.resource.server.database.archives.Constants.KEEP_ALIVE;
 import static iudx.resource.server.database.archives.Constants.LATEST_RESOURCE_INDEX;
 import static iudx.resource.server.database.archives.Constants.LATEST_SEARCH;
 import static iudx.resource.server.database.archives.Constants.MALFORMED_ID;
+import static iudx.resource.server.database.archives.Constants.MAX_MSEARCH_HITS;
+import static iudx.resource.server.database.archives.Constants.MAX_MSEARCH_IDS;
+import static iudx.resource.server.database.archives.Constants.MULTI_ID_AGGREGATION_UNSUPPORTED;
+import static iudx.resource.server.database.archives.Constants.MULTI_ID_CURSOR_UNSUPPORTED;
+import static iudx.resource.server.database.archives.Constants.PARAM_CURSOR;
 import static iudx.resource.server.database.archives.Constants.PARAM_FROM;
 import static iudx.resource.server.database.archives.Constants.PARAM_SIZE;
+import static iudx.resource.server.database.archives.Constants.PIT_KEEP_ALIVE;
+import static iudx.resource.server.database.archives.Constants.PIT_KEY;
+import static iudx.resource.server.database.archives.Constants.PIT_SEARCH_INDEX;
 import static iudx.resource.server.database.archives.Constants.SEARCHTYPE_NOT_FOUND;
+import static iudx.resource.server.database.archives.Constants.SEARCH_AFTER;
 import static iudx.resource.server.database.archives.Constants.SEARCH_KEY;
 import static iudx.resource.server.database.archives.Constants.SEARCH_REQ_PARAM;
 import static iudx.resource.server.database.archives.Constants.SEARCH_TYPE;
 import static iudx.resource.server.database.archives.Constants.SIZE_KEY;
-import static iudx.resource.server.database.archives.Constants.SOURCE_FILTER_KEY;
+import static iudx.resource.server.database.archives.Constants.SORT_ASC;
+import static iudx.resource.server.database.archives.Constants.SORT_KEY;
+import static iudx.resource.server.database.archives.Constants.SUCCESS;
+import static iudx.resource.server.database.archives.Constants.TIME_FIELD_DB;
 import static iudx.resource.server.database.archives.Constants.TIME_LIMIT;
+import static iudx.resource.server.database.archives.Constants.TOO_MANY_IDS;
+import static iudx.resource.server.database.archives.Constants.TRACK_TOTAL_HITS;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.micrometer.backends.BackendRegistries;
 import iudx.resource.server.database.archives.elastic.ElasticClient;
+import iudx.resource.server.database.archives.elastic.ElasticQuery;
+import iudx.resource.server.database.archives.elastic.GeoShapeCache;
 import iudx.resource.server.database.archives.elastic.QueryDecoder;
+import iudx.resource.server.database.archives.elastic.TemporalAggregation;
 
 /**
  * The Database Service Implementation.
@@ -48,22 +84,100 @@ import iudx.resource.server.database.archives.elastic.QueryDecoder;
  * @since 2020-05-31
  */
 
-public class DatabaseServiceImpl implements DatabaseService {
+public class DatabaseServiceImpl implements DatabaseService, Shareable {
 
   private static final Logger LOGGER = LogManager.getLogger(DatabaseServiceImpl.class);
   private final ElasticClient client;
-  private JsonObject query;
-  private QueryDecoder queryDecoder = new QueryDecoder();
-  private ResponseBuilder responseBuilder;
+  private final QueryDecoder queryDecoder;
   private String timeLimit;
+  private int totalHitsCap;
+  private String cursorTiebreaker;
+  private boolean pointInTime;
+  private QueryResultCache resultCache;
+  private IndexRouter indexRouter;
+  private final String countAccuracy;
+  private final CountEstimator countEstimator;
 
   public DatabaseServiceImpl(ElasticClient client, String timeLimit) {
+    this(client, new JsonObject().put(TIME_LIMIT, timeLimit));
+  }
+
+  /**
+   * Database service configured from the verticle configuration.
+   * <ul>
+   * <li><code>timeLimit</code> time limit applied to queries without a temporal window</li>
+   * <li><code>totalHitsCap</code> number of hits counted exactly for a search, 0 to always count
+   * all hits</li>
+   * <li><code>cursorTiebreaker</code> unique keyword field, with doc values, used to order hits
+   * with the same observationDateTime for cursor pagination without a point in time</li>
+   * <li><code>cursorPointInTime</code> read the pages of a cursor from a point in time, ordered by
+   * the <code>_shard_doc</code> tiebreaker of elasticsearch. Always set without a
+   * <code>cursorTiebreaker</code></li>
+   * <li><code>queryCacheEnabled</code> cache search and count responses, see
+   * {@link QueryResultCache} for the cache settings</li>
+   * <li><code>geoSimplifyTolerance</code>, <code>geoShapeCacheSize</code> preparation of the geo
+   * shapes, see {@link GeoShapeCache}</li>
+   * <li><code>countAccuracy</code> accuracy of a count without an <code>accuracy</code> parameter,
+   * <code>approx</code> or <code>exact</code></li>
+   * <li><code>countTerminateAfter</code> documents counted per shard by an approximate count
+   * which is not filtered by its time window only</li>
+   * <li><code>countCacheSize</code>, <code>countCacheTtl</code> number of entities, and seconds,
+   * the daily counts of an approximate count are kept for</li>
+   * </ul>
+   *
+   * @param client elastic client
+   * @param config configuration
+   */
+  public DatabaseServiceImpl(ElasticClient client, JsonObject config) {
+    this(client, config, null);
+  }
+
+  private DatabaseServiceImpl(ElasticClient client, JsonObject config, Vertx vertx) {
     this.client = client;
-    this.timeLimit = timeLimit;
+    this.timeLimit = config.getString(TIME_LIMIT);
+    this.totalHitsCap = config.getInteger("totalHitsCap", 0);
+    String tiebreaker = config.getString("cursorTiebreaker", "");
+    this.cursorTiebreaker = tiebreaker.isEmpty() ? null : tiebreaker;
+    this.pointInTime = config.getBoolean("cursorPointInTime", true) || cursorTiebreaker == null;
+    MeterRegistry registry = BackendRegistries.getDefaultNow();
+    if (registry == null) {
+      registry = new SimpleMeterRegistry();
+    }
+    this.queryDecoder = new QueryDecoder(vertx == null ? new GeoShapeCache(config, registry)
+        : GeoShapeCache.shared(vertx, config, registry));
+    this.countAccuracy = config.getString("countAccuracy", APPROX_ACCURACY);
+    this.countEstimator = new CountEstimator(client, config);
+    if (config.getBoolean("queryCacheEnabled", false)) {
+      this.resultCache = vertx == null ? new QueryResultCache(config, registry)
+          : QueryResultCache.shared(vertx, config, registry);
+    }
+  }
+
+  /**
+   * Database service configured from the verticle configuration, which routes searches to the
+   * time partitioned indices overlapping their temporal window when
+   * <code>indexRoutingEnabled</code> is set. The index layouts are refreshed every
+   * <code>indexRoutingRefresh</code> seconds by a router shared by the services of the vertx
+   * instance, see {@link IndexRouter}. The query result cache and the shape cache are shared by
+   * the services of the vertx instance as well.
+   *
+   * @param vertx vertx instance running the refresh of the index layouts
+   * @param client elastic client
+   * @param config configuration
+   */
+  public DatabaseServiceImpl(Vertx vertx, ElasticClient client, JsonObject config) {
+    this(client, config, vertx);
+    if (config.getBoolean("indexRoutingEnabled", false)) {
+      long refresh = config.getInteger("indexRoutingRefresh", DEFAULT_INDEX_ROUTING_REFRESH);
+      this.indexRouter = IndexRouter.shared(vertx, client, refresh);
+    }
   }
 
   /**
-   * Performs a ElasticSearch search query using the low level REST client.
+   * Performs a ElasticSearch search query using the low level REST client. The hits and their
+   * total are fetched with a single search request, a query on several entities is sent as one
+   * multi search request with a result per entity. A query with an aggregation interval returns
+   * the aggregated buckets of its temporal window instead of the documents.
    * 
    * @param request Json object received from the ApiServerVerticle
    * @param handler Handler to return database response in case of success and appropriate error
@@ -74,204 +188,464 @@ public class DatabaseServiceImpl implements DatabaseService {
 
     LOGGER.trace("Info: searchQuery;" + request.toString());
 
-    request.put(SEARCH_KEY, true);
-    request.put(TIME_LIMIT, timeLimit);
-    request.put("isTest", true);
-
-    if (!request.containsKey(ID)) {
-      LOGGER.debug("Info: " + ID_NOT_FOUND);
-      responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(ID_NOT_FOUND);
-      handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-      return null;
+    JsonObject search = scopedRequest(request, true).put("isTest", true);
+    String invalidReason = validateRequest(search);
+    if (invalidReason != null) {
+      handler.handle(Future.failedFuture(failure(400, invalidReason)));
+      return this;
     }
-
-    if (request.getJsonArray(ID).isEmpty()) {
-      LOGGER.debug("Info: " + EMPTY_RESOURCE_ID);
-      responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(400)
-          .setMessage(EMPTY_RESOURCE_ID);
-      handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-      return null;
+    if (search.containsKey(AGGR_INTERVAL)) {
+      return aggregateQuery(search, handler);
+    }
+    boolean latest = LATEST_SEARCH.equalsIgnoreCase(search.getString(SEARCH_TYPE));
+    if (search.getJsonArray(ID).size() > 1 && !latest) {
+      return multiSearchQuery(search, false, handler);
     }
 
-    if (!request.containsKey(SEARCH_TYPE)) {
-      LOGGER.debug("Info: " + SEARCHTYPE_NOT_FOUND);
-      responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(400)
-          .setMessage(SEARCHTYPE_NOT_FOUND);
-      handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-      return null;
+    decode(search)
+        .compose(archiveQuery -> latest ? searchLatest(archiveQuery) : searchPage(archiveQuery))
+        .onComplete(logged(handler));
+    return this;
+  }
+
+  /**
+   * Performs a ElasticSearch count query using the low level REST client. Unless an
+   * <code>exact</code> accuracy is requested, the count of a single entity is estimated by the
+   * {@link CountEstimator}. An estimate is flagged with <code>estimate</code> in the response, a
+   * count which stopped early with a <code>totalHitsRelation</code> of <code>gte</code>.
+   * 
+   * @param request Json object received from the ApiServerVerticle
+   * @param handler Handler to return database response in case of success and appropriate error
+   *        message in case of failure
+   */
+  @Override
+  public DatabaseService countQuery(JsonObject request, Handler<AsyncResult<JsonObject>> handler) {
+
+    LOGGER.trace("Info: countQuery;" + request.toString());
+
+    JsonObject count = scopedRequest(request, false);
+    String invalidReason = validateRequest(count);
+    if (invalidReason != null) {
+      handler.handle(Future.failedFuture(failure(400, invalidReason)));
+      return this;
+    }
+    if (count.getJsonArray(ID).size() > 1) {
+      return multiSearchQuery(count, true, handler);
     }
 
-    if (request.getJsonArray(ID).getString(0).split("/").length != 5) {
-      LOGGER.error("Malformed ID: " + request.getJsonArray(ID).getString(0));
-      responseBuilder =
-          new ResponseBuilder(FAILED).setTypeAndTitle(400)
-              .setMessage(MALFORMED_ID + request.getJsonArray(ID));
-      handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-      return null;
+    boolean approximate = APPROX_ACCURACY.equals(count.getString(ACCURACY_KEY, countAccuracy));
+    decode(count)
+        .compose(query -> approximate
+            ? countEstimator.count(query.index, query.request, query.query)
+            : count(query))
+        .onComplete(logged(handler));
+    return this;
+  }
+
+  /**
+   * Performs a ElasticSearch search query and streams the matching documents instead of
+   * collecting them into a single response. An empty result is still reported as a failure before
+   * anything is written to the client.
+   *
+   * <p>
+   * This method is not part of the {@link DatabaseService} proxy, the returned stream has to be
+   * consumed on the same Vert.x instance, e.g. piped into a chunked HTTP response. The database
+   * verticle publishes its service for this in the local services map. The documents are read on
+   * the context of the caller.
+   * </p>
+   *
+   * @param request Json object received from the ApiServerVerticle
+   * @param handler Handler to return a stream of the serialized response in case of success and
+   *        appropriate error message in case of failure
+   */
+  public DatabaseServiceImpl searchStream(JsonObject request,
+      Handler<AsyncResult<ReadStream<Buffer>>> handler) {
+
+    LOGGER.trace("Info: searchStream;" + request.toString());
+
+    JsonObject search = scopedRequest(request, true);
+    String invalidReason = validateRequest(search);
+    if (invalidReason != null) {
+      handler.handle(Future.failedFuture(failure(400, invalidReason)));
+      return this;
     }
 
-    List<String> splitId = new LinkedList<>(Arrays.asList(request.getJsonArray(ID)
-        .getString(0).split("/")));
-    splitId.remove(splitId.size() - 1);
-    final String searchIndex = String.join("__", splitId).concat(SEARCH_REQ_PARAM);
-    LOGGER.debug("Index name: " + searchIndex);
+    Context context = Vertx.currentContext();
+    decode(search)
+        .compose(archiveQuery -> streamPage(archiveQuery, context))
+        .onComplete(logged(handler));
+    return this;
+  }
 
+  /*
+   * A single entity search goes through the same stages: the request is validated, decoded into
+   * an ArchiveQuery, routed to its index, executed and the result shaped into the response. Every
+   * stage works on its own request-scoped values only, so a service instance can serve any number
+   * of queries at the same time.
+   */
+
+  /** Copy of a request with the settings of this service, the request of the caller is kept. */
+  private JsonObject scopedRequest(JsonObject request, boolean search) {
+    return request.copy()
+        .put(SEARCH_KEY, search)
+        .put(TIME_LIMIT, timeLimit);
+  }
+
+  /** Decodes the elasticsearch query of a single entity and routes it to its index. */
+  private Future<ArchiveQuery> decode(JsonObject request) {
+    String group = getGroup(request.getJsonArray(ID).getString(0));
     try {
-      query = new QueryDecoder().getESquery(request);
+      ElasticQuery query = queryDecoder.getESquery(request);
+      LOGGER.debug("Info: Query constructed: " + query.toString());
+      String index = route(group, request);
+      LOGGER.debug("Index name: " + index);
+      return Future.succeededFuture(new ArchiveQuery(request, index, query));
     } catch (Exception e) {
-      responseBuilder =
-          new ResponseBuilder(FAILED)
-              .setTypeAndTitle(400)
-              .setMessage(e.getMessage());
-      handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-      return null;
+      LOGGER.error("Fail: Query returned with an error: " + e.getMessage());
+      return Future.failedFuture(failure(400, e.getMessage()));
     }
+  }
 
-    if (query.containsKey(ERROR)) {
-      LOGGER.error("Fail: Query returned with an error: " + query.getString(ERROR));
-      responseBuilder =
-          new ResponseBuilder(FAILED).setTypeAndTitle(400)
-              .setMessage(query.getString(ERROR));
-      handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-      return null;
-    }
+  private Future<JsonObject> searchLatest(ArchiveQuery archiveQuery) {
+    Promise<JsonObject> promise = Promise.promise();
+    client.searchAsync(LATEST_RESOURCE_INDEX, FILTER_PATH_VAL_LATEST,
+        archiveQuery.query.searchBody(new JsonObject()), promise);
+    return promise.future();
+  }
 
-    LOGGER.debug("Info: Query constructed: " + query.toString());
-    if (LATEST_SEARCH.equalsIgnoreCase(request.getString(SEARCH_TYPE))) {
-      client.searchAsync(LATEST_RESOURCE_INDEX, FILTER_PATH_VAL_LATEST, query.toString(),
-          searchRes -> {
-            if (searchRes.succeeded()) {
-              LOGGER.debug("Success: Successful DB request");
-              handler.handle(Future.succeededFuture(searchRes.result()));
-            } else {
-              LOGGER.error("Fail: DB Request;" + searchRes.cause().getMessage());
-              handler.handle(Future.failedFuture(searchRes.cause().getMessage()));
-            }
-          });
-    } else {
-      String countIndex = String.join("__", splitId);
-      countIndex = countIndex.concat(COUNT_REQ_PARAM);
-      JsonObject countQuery = query.copy();
-      countQuery.remove(SOURCE_FILTER_KEY);
-      client.countAsync(countIndex, countQuery.toString(), countHandler -> {
-        if (countHandler.succeeded()) {
-          query.put(SIZE_KEY, getOrDefault(request, PARAM_SIZE, DEFAULT_SIZE_VALUE));
-          query.put(FROM_KEY, getOrDefault(request, PARAM_FROM, DEFAULT_FROM_VALUE));
-          JsonObject countJson = countHandler.result();
-          LOGGER.debug("count json : " + countJson);
-          int count = countJson.getJsonArray("results").getJsonObject(0).getInteger("count");
-          client.searchAsync(searchIndex, FILTER_PATH_VAL, query.toString(),
-              searchRes -> {
-                if (searchRes.succeeded()) {
-                  LOGGER.debug("Success: Successful DB request");
-                  handler.handle(Future.succeededFuture(searchRes.result()
-                      .put(PARAM_SIZE, query.getInteger(SIZE_KEY))
-                      .put(PARAM_FROM, query.getInteger(FROM_KEY))
-                      .put("totalHits", count)));
-                } else {
-                  LOGGER.error("Fail: DB Request;" + searchRes.cause().getMessage());
-                  handler.handle(Future.failedFuture(searchRes.cause().getMessage()));
-                }
-              });
-        } else {
-          LOGGER.error("Fail: DB Request;" + countHandler.cause().getMessage());
-          handler.handle(Future.failedFuture(countHandler.cause().getMessage()));
+  private Future<JsonObject> searchPage(ArchiveQuery archiveQuery) {
+    JsonObject request = archiveQuery.request;
+    SearchCursor cursor;
+    try {
+      cursor = getCursor(request);
+    } catch (IllegalArgumentException e) {
+      LOGGER.error("Fail: " + e.getMessage());
+      return Future.failedFuture(failure(400, INVALID_CURSOR));
+    }
+    int size = getOrDefault(request, PARAM_SIZE, DEFAULT_SIZE_VALUE);
+    int from = cursor == null ? getOrDefault(request, PARAM_FROM, DEFAULT_FROM_VALUE) : 0;
+    boolean sorted = cursor != null;
+    JsonObject page = new JsonObject()
+        .put(SIZE_KEY, size)
+        .put(FROM_KEY, from)
+        .put(TRACK_TOTAL_HITS, getTrackTotalHits(from, size));
+
+    return preparePage(page, archiveQuery.index, cursor, sorted).compose(searchIndex -> {
+      Buffer body = archiveQuery.query.searchBody(page);
+      // pages read from a point in time are tied to that point in time
+      String cacheKey = resultCache == null || PIT_SEARCH_INDEX.equals(searchIndex) ? null
+          : QueryResultCache.key(searchIndex, body);
+      JsonObject cached = cacheKey == null ? null : resultCache.get(cacheKey);
+      if (cached != null) {
+        LOGGER.debug("Success: Served from query cache");
+        return Future.succeededFuture(cached);
+      }
+      Promise<JsonObject> promise = Promise.promise();
+      client.searchAsync(searchIndex, FILTER_PATH_VAL, body, sorted ? size : 0, promise);
+      return promise.future().map(result -> {
+        result.put(PARAM_SIZE, size);
+        if (cursor == null) {
+          result.put(PARAM_FROM, from);
         }
+        if (cacheKey != null) {
+          resultCache.put(cacheKey, result, QueryResultCache.isClosedWindow(request));
+        }
+        return result;
       });
+    });
+  }
 
+  private Future<JsonObject> count(ArchiveQuery archiveQuery) {
+    String index = archiveQuery.index.concat(COUNT_REQ_PARAM);
+    Buffer body = archiveQuery.query.countBody();
+    String cacheKey = resultCache == null ? null : QueryResultCache.key(index, body);
+    JsonObject cached = cacheKey == null ? null : resultCache.get(cacheKey);
+    if (cached != null) {
+      LOGGER.debug("Success: Served from query cache");
+      return Future.succeededFuture(cached);
     }
-    return this;
+    Promise<JsonObject> promise = Promise.promise();
+    client.countAsync(index, body, promise);
+    return promise.future().map(result -> {
+      if (cacheKey != null) {
+        resultCache.put(cacheKey, result, QueryResultCache.isClosedWindow(archiveQuery.request));
+      }
+      return result;
+    });
   }
 
-  /**
-   * Performs a ElasticSearch count query using the low level REST client.
-   * 
-   * @param request Json object received from the ApiServerVerticle
-   * @param handler Handler to return database response in case of success and appropriate error
-   *        message in case of failure
-   */
-  @Override
-  public DatabaseService countQuery(JsonObject request, Handler<AsyncResult<JsonObject>> handler) {
+  private Future<ReadStream<Buffer>> streamPage(ArchiveQuery archiveQuery, Context context) {
+    JsonObject request = archiveQuery.request;
+    SearchCursor cursor;
+    try {
+      cursor = getCursor(request);
+    } catch (IllegalArgumentException e) {
+      LOGGER.error("Fail: " + e.getMessage());
+      return Future.failedFuture(failure(400, INVALID_CURSOR));
+    }
+    int size = getOrDefault(request, PARAM_SIZE, DEFAULT_SIZE_VALUE);
+    int from = cursor == null ? getOrDefault(request, PARAM_FROM, DEFAULT_FROM_VALUE) : 0;
+    boolean sorted = cursor != null;
+    JsonObject page = new JsonObject()
+        .put(SIZE_KEY, size)
+        .put(FROM_KEY, from)
+        .put(TRACK_TOTAL_HITS, getTrackTotalHits(from, size));
+    JsonObject trailer = new JsonObject().put(PARAM_SIZE, size);
+    if (cursor == null) {
+      trailer.put(PARAM_FROM, from);
+    }
+    return preparePage(page, archiveQuery.index, cursor, sorted).compose(searchIndex -> {
+      Promise<ReadStream<Buffer>> promise = Promise.promise();
+      // a point in time is opened by the low level client, the stream is still sent from the
+      // context it is piped on
+      Handler<Void> send = v -> client.searchStreamAsync(searchIndex,
+          archiveQuery.query.searchBody(page), trailer, sorted ? size : 0, promise);
+      if (context == null) {
+        send.handle(null);
+      } else {
+        context.runOnContext(send);
+      }
+      return promise.future();
+    });
+  }
 
-    LOGGER.trace("Info: countQuery;" + request.toString());
+  /** Logs the outcome of a database request before it is handed to the caller. */
+  private static <T> Handler<AsyncResult<T>> logged(Handler<AsyncResult<T>> handler) {
+    return result -> {
+      if (result.succeeded()) {
+        LOGGER.debug("Success: Successful DB request");
+      } else {
+        LOGGER.error("Fail: DB Request;" + result.cause().getMessage());
+      }
+      handler.handle(result);
+    };
+  }
 
-    request.put(SEARCH_KEY, false);
-    request.put(TIME_LIMIT, timeLimit);
+  /** Serialized failure response of the database service. */
+  private static String failure(int statusCode, String reason) {
+    return new ResponseBuilder(FAILED).setTypeAndTitle(statusCode).setMessage(reason)
+        .getResponse().toString();
+  }
 
+  /** Resource group, and index alias, of a resource id. */
+  private static String getGroup(String id) {
+    List<String> splitId = new LinkedList<>(Arrays.asList(id.split("/")));
+    splitId.remove(splitId.size() - 1);
+    return String.join("__", splitId);
+  }
 
-    if (!request.containsKey(ID)) {
-      LOGGER.debug("Info: " + ID_NOT_FOUND);
-      responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(ID_NOT_FOUND);
-      handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
+  /**
+   * Searches or counts several entities with a single <code>_msearch</code> request. Every entity
+   * is queried on its own index with the same filters, and its hits, or its count, are reported
+   * in a result of its own. Results of a multi search are neither cached nor paged with a cursor.
+   * The hits of all entities together are capped, the page size of every entity is reduced to its
+   * share of the cap.
+   */
+  private DatabaseService multiSearchQuery(JsonObject request, boolean count,
+      Handler<AsyncResult<JsonObject>> handler) {
+    JsonArray ids = request.getJsonArray(ID);
+    if (ids.size() > MAX_MSEARCH_IDS || request.containsKey(PARAM_CURSOR)) {
+      String reason = ids.size() > MAX_MSEARCH_IDS ? TOO_MANY_IDS + MAX_MSEARCH_IDS
+          : MULTI_ID_CURSOR_UNSUPPORTED;
+      handler.handle(Future.failedFuture(failure(400, reason)));
       return null;
     }
 
-    if (request.getJsonArray(ID).isEmpty()) {
-      LOGGER.debug("Info: " + EMPTY_RESOURCE_ID);
-      responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(400)
-          .setMessage(EMPTY_RESOURCE_ID);
-      handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-      return null;
+    LinkedHashSet<Object> entities = new LinkedHashSet<>(ids.getList());
+    int size = Math.min(getOrDefault(request, PARAM_SIZE, DEFAULT_SIZE_VALUE),
+        Math.max(1, MAX_MSEARCH_HITS / entities.size()));
+    int from = getOrDefault(request, PARAM_FROM, DEFAULT_FROM_VALUE);
+    JsonObject page = new JsonObject();
+    if (count) {
+      page.put(SIZE_KEY, 0).put(TRACK_TOTAL_HITS, true);
+    } else {
+      page.put(SIZE_KEY, size)
+          .put(FROM_KEY, from)
+          .put(TRACK_TOTAL_HITS, getTrackTotalHits(from, size));
     }
 
-    if (!request.containsKey(SEARCH_TYPE)) {
-      LOGGER.debug("Info: " + SEARCHTYPE_NOT_FOUND);
-      responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(400)
-          .setMessage(SEARCHTYPE_NOT_FOUND);
-      handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-      return null;
+    MultiSearch multiSearch = new MultiSearch();
+    for (Object entity : entities) {
+      String id = entity.toString();
+      List<String> splitId = new LinkedList<>(Arrays.asList(id.split("/")));
+      if (splitId.size() != 5) {
+        LOGGER.error("Malformed ID: " + id);
+        handler.handle(Future.failedFuture(failure(400, MALFORMED_ID + id)));
+        return null;
+      }
+      splitId.remove(splitId.size() - 1);
+      try {
+        ElasticQuery entityQuery =
+            queryDecoder.getESquery(request.copy().put(ID, new JsonArray().add(id)));
+        multiSearch.add(id, route(String.join("__", splitId), request),
+            entityQuery.searchBody(page));
+      } catch (Exception e) {
+        LOGGER.error("Fail: Query returned with an error: " + e.getMessage());
+        handler.handle(Future.failedFuture(failure(400, e.getMessage())));
+        return null;
+      }
     }
+    LOGGER.debug("Info: Multi search on " + multiSearch.size() + " entities");
 
-    if (request.getJsonArray(ID).getString(0).split("/").length != 5) {
-      LOGGER.error("Malformed ID: " + request.getJsonArray(ID).getString(0));
-      responseBuilder =
-          new ResponseBuilder(FAILED).setTypeAndTitle(400)
-              .setMessage(MALFORMED_ID + request.getJsonArray(ID));
-      handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
+    client.msearchAsync(multiSearch.body(), FILTER_PATH_VAL_MSEARCH, msearchRes -> {
+      if (msearchRes.failed()) {
+        LOGGER.error("Fail: DB Request;" + msearchRes.cause().getMessage());
+        handler.handle(Future.failedFuture(msearchRes.cause().getMessage()));
+        return;
+      }
+      JsonObject result = multiSearch.merge(msearchRes.result(), count);
+      if (result == null) {
+        handler.handle(Future.failedFuture(failure(204, EMPTY_RESPONSE)));
+        return;
+      }
+      if (!count) {
+        result.put(PARAM_SIZE, size).put(PARAM_FROM, from);
+      }
+      LOGGER.debug("Success: Successful DB request");
+      handler.handle(Future.succeededFuture(result));
+    });
+    return this;
+  }
+
+  /**
+   * Index expression a search of a resource group is sent to, the group itself unless index
+   * routing is enabled.
+   */
+  private String route(String group, JsonObject request) {
+    return indexRouter == null ? group : indexRouter.route(group, request);
+  }
+
+  /**
+   * Summarizes the documents of the temporal window of a single entity in buckets of a fixed
+   * interval. Only the buckets are read from elasticsearch, no documents.
+   */
+  private DatabaseService aggregateQuery(JsonObject request,
+      Handler<AsyncResult<JsonObject>> handler) {
+    if (request.getJsonArray(ID).size() > 1 || request.containsKey(PARAM_CURSOR)) {
+      String reason = request.getJsonArray(ID).size() > 1 ? MULTI_ID_AGGREGATION_UNSUPPORTED
+          : AGGREGATION_CURSOR_UNSUPPORTED;
+      handler.handle(Future.failedFuture(failure(400, reason)));
       return null;
     }
 
-    List<String> splitId = new LinkedList<>(Arrays.asList(request.getJsonArray(ID)
-        .getString(0).split("/")));
-    splitId.remove(splitId.size() - 1);
-    String index = String.join("__", splitId);
-    index = index.concat(COUNT_REQ_PARAM);
-    LOGGER.debug("Index name: " + index);
+    String index =
+        route(getGroup(request.getJsonArray(ID).getString(0)), request).concat(SEARCH_REQ_PARAM);
 
+    Buffer body;
+    TemporalAggregation aggregation;
     try {
-      query = new QueryDecoder().getESquery(request);
+      aggregation = queryDecoder.getAggregation(request);
+      body = queryDecoder.getESquery(request).searchBody(aggregation.searchPage());
     } catch (Exception e) {
-      responseBuilder =
-          new ResponseBuilder(FAILED)
-              .setTypeAndTitle(400)
-              .setMessage(e.getMessage());
-      handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
+      LOGGER.error("Fail: Query returned with an error: " + e.getMessage());
+      handler.handle(Future.failedFuture(failure(400, e.getMessage())));
       return null;
     }
 
-    if (query.containsKey(ERROR)) {
-      LOGGER.error("Fail: Query returned with an error: " + query.getString(ERROR));
-      responseBuilder =
-          new ResponseBuilder(FAILED).setTypeAndTitle(400)
-              .setMessage(query.getString(ERROR));
-      handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-      return null;
+    String cacheKey = resultCache == null ? null : QueryResultCache.key(index, body);
+    JsonObject cached = cacheKey == null ? null : resultCache.get(cacheKey);
+    if (cached != null) {
+      LOGGER.debug("Success: Served from query cache");
+      handler.handle(Future.succeededFuture(cached));
+      return this;
     }
 
-    LOGGER.debug("Info: Query constructed: " + query.toString());
-
-    client.countAsync(index, query.toString(), countRes -> {
-      if (countRes.succeeded()) {
-        LOGGER.debug("Success: Successful DB request");
-        handler.handle(Future.succeededFuture(countRes.result()));
-      } else {
-        LOGGER.error("Fail: DB Request;" + countRes.cause().getMessage());
-        handler.handle(Future.failedFuture(countRes.cause().getMessage()));
+    client.aggregateAsync(index, body, aggregateRes -> {
+      if (aggregateRes.failed()) {
+        LOGGER.error("Fail: DB Request;" + aggregateRes.cause().getMessage());
+        handler.handle(Future.failedFuture(aggregateRes.cause().getMessage()));
+        return;
+      }
+      JsonArray results = aggregation.toResults(aggregateRes.result());
+      if (results.isEmpty()) {
+        handler.handle(Future.failedFuture(failure(204, EMPTY_RESPONSE)));
+        return;
       }
+      LOGGER.debug("Success: Successful DB request");
+      JsonObject result =
+          new ResponseBuilder(SUCCESS).setTypeAndTitle(200).setMessage(results).getResponse();
+      if (cacheKey != null) {
+        resultCache.put(cacheKey, result, QueryResultCache.isClosedWindow(request));
+      }
+      handler.handle(Future.succeededFuture(result));
     });
     return this;
   }
 
+  private SearchCursor getCursor(JsonObject request) {
+    if (!request.containsKey(PARAM_CURSOR)) {
+      return null;
+    }
+    return SearchCursor.decode(request.getString(PARAM_CURSOR));
+  }
+
+  /**
+   * Adds the sort, <code>search_after</code> and point in time of a cursor to the page fields of
+   * a search. Only the pages requested with a cursor are sorted, on observationDateTime, so that a
+   * cursor can be handed out for the next page.
+   *
+   * @return the index the search has to be sent to
+   */
+  private Future<String> preparePage(JsonObject page, String index, SearchCursor cursor,
+      boolean sorted) {
+    if (!sorted) {
+      return Future.succeededFuture(index + SEARCH_REQ_PARAM);
+    }
+    JsonArray sort = new JsonArray().add(new JsonObject().put(TIME_FIELD_DB, SORT_ASC));
+    if (cursor.getSearchAfter() != null) {
+      page.put(SEARCH_AFTER, cursor.getSearchAfter());
+    }
+    if (!pointInTime) {
+      sort.add(new JsonObject().put(cursorTiebreaker, SORT_ASC));
+      page.put(SORT_KEY, sort);
+      return Future.succeededFuture(index + SEARCH_REQ_PARAM);
+    }
+    // elasticsearch adds the _shard_doc tiebreaker to searches on a point in time
+    page.put(SORT_KEY, sort);
+    Promise<String> pitPromise = Promise.promise();
+    if (cursor.getPitId() != null) {
+      pitPromise.complete(cursor.getPitId());
+    } else {
+      client.openPointInTimeAsync(index, PIT_KEEP_ALIVE, pitPromise);
+    }
+    return pitPromise.future().map(pitId -> {
+      page.put(PIT_KEY, new JsonObject().put(ID, pitId).put(KEEP_ALIVE, PIT_KEEP_ALIVE));
+      return PIT_SEARCH_INDEX;
+    });
+  }
+
+  /**
+   * The value of <code>track_total_hits</code> for a search. Without a configured cap the total is
+   * counted exactly, otherwise counting stops at the cap, or at the end of the requested page if
+   * that is further, and the total is reported as a lower bound.
+   */
+  private Object getTrackTotalHits(int from, int size) {
+    if (totalHitsCap <= 0) {
+      return true;
+    }
+    return Math.max(totalHitsCap, from + size);
+  }
+
+  private String validateRequest(JsonObject request) {
+    if (!request.containsKey(ID)) {
+      LOGGER.debug("Info: " + ID_NOT_FOUND);
+      return ID_NOT_FOUND;
+    }
+    if (request.getJsonArray(ID).isEmpty()) {
+      LOGGER.debug("Info: " + EMPTY_RESOURCE_ID);
+      return EMPTY_RESOURCE_ID;
+    }
+    if (!request.containsKey(SEARCH_TYPE)) {
+      LOGGER.debug("Info: " + SEARCHTYPE_NOT_FOUND);
+      return SEARCHTYPE_NOT_FOUND;
+    }
+    if (request.getJsonArray(ID).getString(0).split("/").length != 5) {
+      LOGGER.error("Malformed ID: " + request.getJsonArray(ID).getString(0));
+      return MALFORMED_ID + request.getJsonArray(ID);
+    }
+    return null;
+  }
+
   public int getOrDefault(JsonObject json, String key, int def) {
     if (json.containsKey(key)) {
       int value = Integer.parseInt(json.getString(key));
@@ -279,4 +653,18 @@ public class DatabaseServiceImpl implements DatabaseService {
     }
     return def;
   }
+
+  /** Decoded query of a single entity and the index it is sent to, scoped to one request. */
+  private static final class ArchiveQuery {
+
+    private final JsonObject request;
+    private final String index;
+    private final ElasticQuery query;
+
+    private ArchiveQuery(JsonObject request, String index, ElasticQuery query) {
+      this.request = request;
+      this.index = index;
+      this.query = query;
+    }
+  }
 }
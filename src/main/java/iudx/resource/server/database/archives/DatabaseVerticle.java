@@ -1,11 +1,17 @@
 package iudx.resource.server.database.archives;
 
 import static iudx.resource.server.common.Constants.DATABASE_SERVICE_ADDRESS;
+import static iudx.resource.server.common.Constants.LOCAL_SERVICES_MAP;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
 import io.vertx.serviceproxy.ServiceBinder;
 import iudx.resource.server.database.archives.elastic.ElasticClient;
+import iudx.resource.server.database.archives.elastic.RequestLimiter;
+import iudx.resource.server.database.archives.elastic.WireFormat;
 
 /**
  * The Database Verticle.
@@ -21,12 +27,11 @@ import iudx.resource.server.database.archives.elastic.ElasticClient;
 
 public class DatabaseVerticle extends AbstractVerticle {
 
-  private DatabaseService database;
+  private DatabaseServiceImpl database;
   private ElasticClient client;
   private String databaseIP;
   private String user;
   private String password;
-  private String timeLimit;
   private int databasePort;
   private ServiceBinder binder;
   private MessageConsumer<JsonObject> consumer;
@@ -46,20 +51,38 @@ public class DatabaseVerticle extends AbstractVerticle {
     databasePort = config().getInteger("databasePort");
     user = config().getString("dbUser");
     password = config().getString("dbPassword");
-    timeLimit = config().getString("timeLimit");
 
-    client = new ElasticClient(databaseIP, databasePort, user, password); 
+    /*
+     * Requests to elasticsearch are limited adaptively when enabled, by a limiter shared with the
+     * other database verticles of the instance. The connection pool is sized for the largest limit.
+     */
+    RequestLimiter limiter = null;
+    int maxConnections = ElasticClient.DEFAULT_MAX_CONNECTIONS;
+    if (config().getBoolean("esLimitEnabled", false)) {
+      MeterRegistry registry = BackendRegistries.getDefaultNow();
+      limiter = RequestLimiter.shared(vertx, config(),
+          registry == null ? new SimpleMeterRegistry() : registry);
+      maxConnections = Math.max(maxConnections, limiter.getMaxLimit());
+    }
+    client = new ElasticClient(vertx, databaseIP, databasePort, user, password, maxConnections);
+    client.setWireFormat(WireFormat.of(config().getString("esWireFormat")));
+    client.setRequestLimiter(limiter);
     binder = new ServiceBinder(vertx);
-    database = new DatabaseServiceImpl(client, timeLimit);
+    database = new DatabaseServiceImpl(vertx, client, config());
 
     consumer =
         binder.setAddress(DATABASE_SERVICE_ADDRESS)
         .register(DatabaseService.class, database);
+
+    /* The API server verticles of this instance stream search results through the service. */
+    vertx.sharedData().getLocalMap(LOCAL_SERVICES_MAP).put(DATABASE_SERVICE_ADDRESS, database);
   }
 
 
   @Override
   public void stop() {
+    vertx.sharedData().getLocalMap(LOCAL_SERVICES_MAP)
+        .removeIfPresent(DATABASE_SERVICE_ADDRESS, database);
 	binder.unregister(consumer);
   }
 }
@@ -0,0 +1,443 @@
+package iudx.resource.server.database.archives;
+
+import static iudx.resource.server.database.archives.Constants.AFTER;
+import static iudx.resource.server.database.archives.Constants.AGGREGATIONS_KEY;
+import static iudx.resource.server.database.archives.Constants.AGGS_KEY;
+import static iudx.resource.server.database.archives.Constants.ALIASES_KEY;
+import static iudx.resource.server.database.archives.Constants.ALIAS_FILTER_KEY;
+import static iudx.resource.server.database.archives.Constants.ALIAS_SEARCH_ROUTING;
+import static iudx.resource.server.database.archives.Constants.BEFORE;
+import static iudx.resource.server.database.archives.Constants.DURING;
+import static iudx.resource.server.database.archives.Constants.END_TIME;
+import static iudx.resource.server.database.archives.Constants.FIELD_KEY;
+import static iudx.resource.server.database.archives.Constants.FILTER_PATH_VAL_INDEX_RANGE;
+import static iudx.resource.server.database.archives.Constants.INDEX_MAX_AGG;
+import static iudx.resource.server.database.archives.Constants.INDEX_MIN_AGG;
+import static iudx.resource.server.database.archives.Constants.INDEX_ROUTER;
+import static iudx.resource.server.database.archives.Constants.IS_WRITE_INDEX;
+import static iudx.resource.server.database.archives.Constants.MAX_KEY;
+import static iudx.resource.server.database.archives.Constants.MIN_KEY;
+import static iudx.resource.server.database.archives.Constants.PROD_INSTANCE;
+import static iudx.resource.server.database.archives.Constants.REQ_TIMEREL;
+import static iudx.resource.server.database.archives.Constants.SIZE_KEY;
+import static iudx.resource.server.database.archives.Constants.TEQUALS;
+import static iudx.resource.server.database.archives.Constants.TEST_INSTANCE;
+import static iudx.resource.server.database.archives.Constants.TIME_FIELD_DB;
+import static iudx.resource.server.database.archives.Constants.TIME_KEY;
+import static iudx.resource.server.database.archives.Constants.TIME_LIMIT;
+import static iudx.resource.server.database.archives.Constants.TRACK_TOTAL_HITS;
+import static iudx.resource.server.database.archives.Constants.VALUE;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import iudx.resource.server.database.archives.elastic.ElasticClient;
+
+/**
+ * Routes the searches of a resource group to the physical indices overlapping their temporal
+ * window, instead of every shard behind the alias of the group.
+ * <p>
+ * The documents of a group are expected in time partitioned indices behind an alias named after
+ * the group, either monthly indices with the month in their name (<code>group-2021.05</code>) or
+ * rollover indices with a generation number (<code>group-000012</code>). The layouts are read from
+ * the aliases of elasticsearch on every refresh: the month of a monthly index is taken from its
+ * name, the time range of a rollover index from the minimum and maximum observationDateTime of its
+ * documents, and the write index of a rollover alias is open ended.
+ * </p>
+ * <p>
+ * A routed index is written as a wildcard expression, a wildcard matching no index is ignored by
+ * elasticsearch, so an index deleted or not yet created since the last refresh never fails a
+ * search. For the same reason the months of a window are routed to whether their index is known
+ * or not, and the successor of the write index is routed to along with it. Groups of any other
+ * layout, and requests without a bounded window, are sent to the alias of the group.
+ * </p>
+ * <p>
+ * A search sent to the physical indices skips the filter and the routing of the alias. Aliases
+ * with a filter or a search routing on any of their indices are therefore never routed.
+ * </p>
+ */
+final class IndexRouter implements Shareable {
+
+  private static final Logger LOGGER = LogManager.getLogger(IndexRouter.class);
+  private static final Pattern MONTHLY_INDEX = Pattern.compile("^(.+[-_.])(\\d{4})([.-])(\\d{2})$");
+  private static final Pattern ROLLOVER_INDEX = Pattern.compile("^(.+-)(\\d+)$");
+  private static final int MAX_ROUTED_MONTHS = 24;
+
+  private final ElasticClient client;
+  private final LongSupplier clock;
+  private volatile Map<String, IndexLayout> layouts = Collections.emptyMap();
+
+  IndexRouter(ElasticClient client) {
+    this(client, System::currentTimeMillis);
+  }
+
+  IndexRouter(ElasticClient client, LongSupplier clock) {
+    this.client = client;
+    this.clock = clock;
+  }
+
+  /**
+   * The index router shared by the database services of a vertx instance, so the layouts are
+   * read once for all of them. The first service creates the router and schedules its refresh.
+   *
+   * @param vertx vertx instance running the refresh of the index layouts
+   * @param client elastic client the layouts are read with
+   * @param refresh seconds between two reads of the layouts
+   * @return the shared index router
+   */
+  static IndexRouter shared(Vertx vertx, ElasticClient client, long refresh) {
+    LocalMap<String, IndexRouter> routers = vertx.sharedData().getLocalMap(INDEX_ROUTER);
+    IndexRouter created = new IndexRouter(client);
+    IndexRouter router = routers.putIfAbsent(INDEX_ROUTER, created);
+    if (router != null) {
+      return router;
+    }
+    created.refresh();
+    vertx.setPeriodic(refresh * 1000, timerId -> created.refresh());
+    return created;
+  }
+
+  /**
+   * Reads the layouts of all aliases. The previous layouts are kept when the aliases can not be
+   * read, a rollover index of an unknown time range is routed to for every window.
+   *
+   * @return future completed once the new layouts are in use
+   */
+  Future<Void> refresh() {
+    Promise<Void> promise = Promise.promise();
+    client.aliasesAsync(aliasRes -> {
+      if (aliasRes.failed()) {
+        LOGGER.warn("Fail: Index layouts not refreshed;" + aliasRes.cause().getMessage());
+        promise.fail(aliasRes.cause());
+        return;
+      }
+      Map<String, IndexLayout> next = readLayouts(aliasRes.result());
+      List<IndexRange> ranges = new ArrayList<>();
+      for (IndexLayout layout : next.values()) {
+        if (!layout.monthly) {
+          ranges.addAll(layout.indices);
+        }
+      }
+      if (ranges.isEmpty()) {
+        layouts = next;
+        promise.complete();
+        return;
+      }
+      client.msearchAsync(rangeSearches(ranges), FILTER_PATH_VAL_INDEX_RANGE, rangeRes -> {
+        if (rangeRes.succeeded()) {
+          readRanges(ranges, rangeRes.result());
+        } else {
+          LOGGER.warn("Fail: Index time ranges not read;" + rangeRes.cause().getMessage());
+        }
+        layouts = next;
+        LOGGER.debug("Info: Index layouts of " + next.size() + " groups refreshed");
+        promise.complete();
+      });
+    });
+    return promise.future();
+  }
+
+  /**
+   * Index expression a search of a group is sent to.
+   *
+   * @param group alias of the resource group
+   * @param request request received from the ApiServerVerticle
+   * @return the overlapping indices, or the group when the search can not be narrowed
+   */
+  String route(String group, JsonObject request) {
+    IndexLayout layout = layouts.get(group);
+    if (layout == null) {
+      return group;
+    }
+    long[] window = window(request, clock.getAsLong());
+    if (window == null) {
+      return group;
+    }
+    List<String> targets = layout.monthly ? monthlyTargets(layout, window, clock.getAsLong())
+        : rolloverTargets(layout, window);
+    if (targets == null || targets.isEmpty()) {
+      return group;
+    }
+    StringBuilder expression = new StringBuilder();
+    for (String target : targets) {
+      if (expression.length() > 0) {
+        expression.append(',');
+      }
+      expression.append(target).append('*');
+    }
+    return expression.toString();
+  }
+
+  /**
+   * Temporal window of a request, the default time limit applies to requests without a window of
+   * their own.
+   *
+   * @return start and end of the window in epoch millis, open ends as {@link Long#MIN_VALUE} and
+   *         {@link Long#MAX_VALUE}, or null when the request is not bounded in time
+   */
+  static long[] window(JsonObject request, long now) {
+    String timeRelation = request.getString(REQ_TIMEREL);
+    try {
+      if (timeRelation == null) {
+        JsonArray filters = request.getJsonArray("applicableFilters");
+        if (filters == null || !filters.contains("TEMPORAL") || !request.containsKey(TIME_LIMIT)) {
+          return null;
+        }
+        String[] timeLimit = request.getString(TIME_LIMIT).split(",");
+        if (PROD_INSTANCE.equalsIgnoreCase(timeLimit[0])) {
+          long start = Instant.ofEpochMilli(now)
+              .minus(Long.parseLong(timeLimit[1]), ChronoUnit.DAYS)
+              .truncatedTo(ChronoUnit.DAYS).toEpochMilli();
+          return new long[] {start, Long.MAX_VALUE};
+        } else if (TEST_INSTANCE.equalsIgnoreCase(timeLimit[0])) {
+          ZonedDateTime end = ZonedDateTime.parse(timeLimit[1]);
+          return new long[] {end.minusDays(Long.parseLong(timeLimit[2])).toInstant().toEpochMilli(),
+              end.toInstant().toEpochMilli()};
+        }
+        return null;
+      }
+      if (!request.containsKey(TIME_KEY)) {
+        return null;
+      }
+      long time = ZonedDateTime.parse(request.getString(TIME_KEY)).toInstant().toEpochMilli();
+      if (DURING.equalsIgnoreCase(timeRelation) && request.containsKey(END_TIME)) {
+        return new long[] {time,
+            ZonedDateTime.parse(request.getString(END_TIME)).toInstant().toEpochMilli()};
+      } else if (AFTER.equalsIgnoreCase(timeRelation)) {
+        return new long[] {time, Long.MAX_VALUE};
+      } else if (BEFORE.equalsIgnoreCase(timeRelation)) {
+        return new long[] {Long.MIN_VALUE, time};
+      } else if (TEQUALS.equalsIgnoreCase(timeRelation)) {
+        return new long[] {time, time};
+      }
+      return null;
+    } catch (DateTimeParseException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+      return null;
+    }
+  }
+
+  /** Layouts of the unfiltered aliases with more than one time partitioned index. */
+  static Map<String, IndexLayout> readLayouts(JsonObject aliases) {
+    Map<String, List<String>> members = new LinkedHashMap<>();
+    Map<String, String> writeIndices = new HashMap<>();
+    Set<String> filtered = new HashSet<>();
+    for (String index : aliases.fieldNames()) {
+      JsonObject indexAliases = aliases.getJsonObject(index, new JsonObject())
+          .getJsonObject(ALIASES_KEY, new JsonObject());
+      for (String alias : indexAliases.fieldNames()) {
+        members.computeIfAbsent(alias, key -> new ArrayList<>()).add(index);
+        JsonObject aliasOptions = indexAliases.getJsonObject(alias, new JsonObject());
+        if (aliasOptions.getBoolean(IS_WRITE_INDEX, false)) {
+          writeIndices.put(alias, index);
+        }
+        if (aliasOptions.containsKey(ALIAS_FILTER_KEY)
+            || aliasOptions.containsKey(ALIAS_SEARCH_ROUTING)) {
+          filtered.add(alias);
+        }
+      }
+    }
+    Map<String, IndexLayout> layouts = new HashMap<>();
+    for (Map.Entry<String, List<String>> alias : members.entrySet()) {
+      if (alias.getValue().size() < 2 || filtered.contains(alias.getKey())) {
+        continue;
+      }
+      IndexLayout layout = IndexLayout.of(alias.getValue(), writeIndices.get(alias.getKey()));
+      if (layout != null) {
+        layouts.put(alias.getKey(), layout);
+      }
+    }
+    return layouts;
+  }
+
+  private static List<String> monthlyTargets(IndexLayout layout, long[] window, long now) {
+    if (window[0] == Long.MIN_VALUE) {
+      return null;
+    }
+    YearMonth month = YearMonth.from(Instant.ofEpochMilli(window[0]).atZone(ZoneOffset.UTC));
+    YearMonth last = YearMonth.from(Instant.ofEpochMilli(window[1] == Long.MAX_VALUE ? now
+        : window[1]).atZone(ZoneOffset.UTC));
+    List<String> targets = new ArrayList<>();
+    for (; !month.isAfter(last); month = month.plusMonths(1)) {
+      if (targets.size() == MAX_ROUTED_MONTHS) {
+        return null;
+      }
+      targets.add(layout.prefix + String.format("%04d%s%02d", month.getYear(), layout.separator,
+          month.getMonthValue()));
+    }
+    return targets;
+  }
+
+  private static List<String> rolloverTargets(IndexLayout layout, long[] window) {
+    List<String> targets = new ArrayList<>();
+    for (IndexRange range : layout.indices) {
+      if (range.overlaps(window[0], window[1])) {
+        targets.add(range.index);
+      }
+    }
+    IndexRange write = layout.indices.get(layout.indices.size() - 1);
+    if (targets.contains(write.index)) {
+      targets.add(layout.successor);
+    }
+    return targets;
+  }
+
+  /** Newline delimited searches of the minimum and maximum observationDateTime per index. */
+  private static Buffer rangeSearches(List<IndexRange> ranges) {
+    JsonObject aggregations = new JsonObject()
+        .put(INDEX_MIN_AGG, new JsonObject().put(MIN_KEY,
+            new JsonObject().put(FIELD_KEY, TIME_FIELD_DB)))
+        .put(INDEX_MAX_AGG, new JsonObject().put(MAX_KEY,
+            new JsonObject().put(FIELD_KEY, TIME_FIELD_DB)));
+    String search = new JsonObject()
+        .put(SIZE_KEY, 0)
+        .put(TRACK_TOTAL_HITS, false)
+        .put(AGGS_KEY, aggregations)
+        .encode();
+    Buffer body = Buffer.buffer();
+    for (IndexRange range : ranges) {
+      body.appendString(new JsonObject().put("index", range.index).encode()).appendString("\n")
+          .appendString(search).appendString("\n");
+    }
+    return body;
+  }
+
+  private static void readRanges(List<IndexRange> ranges, JsonArray responses) {
+    for (int i = 0; i < ranges.size() && i < responses.size(); i++) {
+      JsonObject response = responses.getJsonObject(i);
+      if (response == null) {
+        continue;
+      }
+      JsonObject aggregations = response.getJsonObject(AGGREGATIONS_KEY, new JsonObject());
+      Number min = aggregations.getJsonObject(INDEX_MIN_AGG, new JsonObject()).getNumber(VALUE);
+      Number max = aggregations.getJsonObject(INDEX_MAX_AGG, new JsonObject()).getNumber(VALUE);
+      if (min != null && max != null) {
+        ranges.get(i).setRange(min.longValue(), max.longValue());
+      }
+    }
+  }
+
+  /** Time partitioned indices behind the alias of a group. */
+  static final class IndexLayout {
+
+    private final boolean monthly;
+    private final String prefix;
+    private final String separator;
+    private final List<IndexRange> indices;
+    private final String successor;
+
+    private IndexLayout(boolean monthly, String prefix, String separator,
+        List<IndexRange> indices, String successor) {
+      this.monthly = monthly;
+      this.prefix = prefix;
+      this.separator = separator;
+      this.indices = indices;
+      this.successor = successor;
+    }
+
+    /**
+     * Layout of the indices of an alias.
+     *
+     * @param names indices behind the alias
+     * @param writeIndex write index of the alias, or null
+     * @return the layout, or null when the indices are neither monthly nor rollover indices of a
+     *         single prefix
+     */
+    static IndexLayout of(List<String> names, String writeIndex) {
+      IndexLayout monthly = monthly(names);
+      return monthly != null ? monthly : rollover(names, writeIndex);
+    }
+
+    private static IndexLayout monthly(List<String> names) {
+      String prefix = null;
+      String separator = null;
+      for (String name : names) {
+        Matcher matcher = MONTHLY_INDEX.matcher(name);
+        if (!matcher.matches() || (prefix != null && (!prefix.equals(matcher.group(1))
+            || !separator.equals(matcher.group(3))))) {
+          return null;
+        }
+        prefix = matcher.group(1);
+        separator = matcher.group(3);
+      }
+      return new IndexLayout(true, prefix, separator, Collections.emptyList(), null);
+    }
+
+    private static IndexLayout rollover(List<String> names, String writeIndex) {
+      String prefix = null;
+      int width = 0;
+      List<IndexRange> indices = new ArrayList<>();
+      for (String name : names) {
+        Matcher matcher = ROLLOVER_INDEX.matcher(name);
+        if (!matcher.matches() || (prefix != null && !prefix.equals(matcher.group(1)))) {
+          return null;
+        }
+        prefix = matcher.group(1);
+        width = matcher.group(2).length();
+        indices.add(new IndexRange(name, Long.parseLong(matcher.group(2))));
+      }
+      indices.sort(Comparator.comparingLong(range -> range.generation));
+      IndexRange write = indices.get(indices.size() - 1);
+      if (writeIndex != null && !writeIndex.equals(write.index)) {
+        // the newest generation is expected to be the write index of a rollover alias
+        return null;
+      }
+      write.open = true;
+      String successor =
+          prefix + String.format("%0" + width + "d", write.generation + 1);
+      return new IndexLayout(false, prefix, null, indices, successor);
+    }
+  }
+
+  /** Time range of the documents of a rollover index. */
+  static final class IndexRange {
+
+    private final String index;
+    private final long generation;
+    private boolean known;
+    private boolean open;
+    private long min;
+    private long max;
+
+    IndexRange(String index, long generation) {
+      this.index = index;
+      this.generation = generation;
+    }
+
+    void setRange(long min, long max) {
+      this.known = true;
+      this.min = min;
+      this.max = max;
+    }
+
+    boolean overlaps(long from, long to) {
+      if (!known) {
+        return true;
+      }
+      return min <= to && (open || max >= from);
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package iudx.resource.server.database.archives;
+
+import static iudx.resource.server.database.archives.Constants.COUNT;
+import static iudx.resource.server.database.archives.Constants.DETAIL;
+import static iudx.resource.server.database.archives.Constants.EMPTY_RESPONSE;
+import static iudx.resource.server.database.archives.Constants.ERROR_TYPE;
+import static iudx.resource.server.database.archives.Constants.FAILED;
+import static iudx.resource.server.database.archives.Constants.HITS;
+import static iudx.resource.server.database.archives.Constants.ID;
+import static iudx.resource.server.database.archives.Constants.REASON;
+import static iudx.resource.server.database.archives.Constants.RELATION_EQ;
+import static iudx.resource.server.database.archives.Constants.RELATION_KEY;
+import static iudx.resource.server.database.archives.Constants.RESULTS;
+import static iudx.resource.server.database.archives.Constants.SOURCE_FILTER_KEY;
+import static iudx.resource.server.database.archives.Constants.STATUS;
+import static iudx.resource.server.database.archives.Constants.SUCCESS;
+import static iudx.resource.server.database.archives.Constants.TITLE;
+import static iudx.resource.server.database.archives.Constants.TOTAL_HITS;
+import static iudx.resource.server.database.archives.Constants.TOTAL_HITS_RELATION;
+import static iudx.resource.server.database.archives.Constants.TOTAL_KEY;
+import static iudx.resource.server.database.archives.Constants.VALUE;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Search or count of several entities sent to elasticsearch as a single <code>_msearch</code>
+ * request.
+ * <p>
+ * The searches are grouped by the index of their entity in the request body, and the responses
+ * are merged back into one result per entity in the order the entities were requested.
+ * </p>
+ */
+final class MultiSearch {
+
+  private static final byte[] NEWLINE = "\n".getBytes(StandardCharsets.UTF_8);
+
+  private final List<String> requested = new ArrayList<>();
+  private final Map<String, List<Item>> byIndex = new LinkedHashMap<>();
+
+  /**
+   * Adds the search of an entity.
+   *
+   * @param id resource id of the entity
+   * @param index index the entity is stored in
+   * @param body search request body of the entity
+   * @return this
+   */
+  MultiSearch add(String id, String index, Buffer body) {
+    requested.add(id);
+    byIndex.computeIfAbsent(index, key -> new ArrayList<>()).add(new Item(id, body));
+    return this;
+  }
+
+  int size() {
+    return requested.size();
+  }
+
+  /** Newline delimited body of the <code>_msearch</code> request. */
+  Buffer body() {
+    Buffer body = Buffer.buffer();
+    for (Map.Entry<String, List<Item>> group : byIndex.entrySet()) {
+      byte[] header = new JsonObject().put("index", group.getKey()).toBuffer().getBytes();
+      for (Item item : group.getValue()) {
+        body.appendBytes(header).appendBytes(NEWLINE)
+            .appendBytes(item.body.getBytes()).appendBytes(NEWLINE);
+      }
+    }
+    return body;
+  }
+
+  /**
+   * Merges the <code>responses</code> of the <code>_msearch</code> request into one result per
+   * entity. A failed search is reported in the result of its entity only.
+   *
+   * @param responses responses in the order of the request body
+   * @param count whether only the number of hits is reported
+   * @return the merged response, or null when no entity has any hit
+   */
+  JsonObject merge(JsonArray responses, boolean count) {
+    Map<String, JsonObject> resultById = new LinkedHashMap<>();
+    boolean empty = true;
+    int position = 0;
+    for (List<Item> group : byIndex.values()) {
+      for (Item item : group) {
+        JsonObject response = responses.getJsonObject(position++);
+        if (response == null) {
+          response = new JsonObject();
+        }
+        JsonObject result = toResult(item.id, response, count);
+        if (result.containsKey(DETAIL) || result.getInteger(count ? COUNT : TOTAL_HITS) > 0) {
+          empty = false;
+        }
+        resultById.put(item.id, result);
+      }
+    }
+    if (empty) {
+      return null;
+    }
+    JsonArray results = new JsonArray();
+    for (String id : requested) {
+      results.add(resultById.get(id));
+    }
+    return new JsonObject().put(ERROR_TYPE, 200).put(TITLE, SUCCESS).put(RESULTS, results);
+  }
+
+  private JsonObject toResult(String id, JsonObject response, boolean count) {
+    JsonObject result = new JsonObject().put(ID, id);
+    int status = response.getInteger(STATUS, 200);
+    if (status / 100 != 2 || !response.containsKey(HITS)) {
+      JsonObject error = response.getJsonObject("error", new JsonObject());
+      return result.put(ERROR_TYPE, status).put(TITLE, FAILED)
+          .put(DETAIL, error.getString(REASON, EMPTY_RESPONSE));
+    }
+    JsonObject hits = response.getJsonObject(HITS);
+    JsonObject total = hits.getJsonObject(TOTAL_KEY, new JsonObject());
+    int totalHits = total.getInteger(VALUE, 0);
+    if (count) {
+      return result.put(COUNT, totalHits);
+    }
+    result.put(TOTAL_HITS, totalHits);
+    String relation = total.getString(RELATION_KEY);
+    if (relation != null && !RELATION_EQ.equalsIgnoreCase(relation)) {
+      result.put(TOTAL_HITS_RELATION, relation);
+    }
+    JsonArray sources = new JsonArray();
+    for (Object hit : hits.getJsonArray(HITS, new JsonArray())) {
+      sources.add(((JsonObject) hit).getJsonObject(SOURCE_FILTER_KEY));
+    }
+    return result.put(RESULTS, sources);
+  }
+
+  private static final class Item {
+
+    private final String id;
+    private final Buffer body;
+
+    private Item(String id, Buffer body) {
+      this.id = id;
+      this.body = body;
+    }
+  }
+}
@@ -0,0 +1,234 @@
+package iudx.resource.server.database.archives;
+
+import static iudx.resource.server.database.archives.Constants.BEFORE;
+import static iudx.resource.server.database.archives.Constants.DURING;
+import static iudx.resource.server.database.archives.Constants.END_TIME;
+import static iudx.resource.server.database.archives.Constants.QUERY_RESULT_CACHE;
+import static iudx.resource.server.database.archives.Constants.REQ_TIMEREL;
+import static iudx.resource.server.database.archives.Constants.TIME_KEY;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * Cache of database responses keyed by the generated elasticsearch query and the index it is sent
+ * to.
+ * <p>
+ * The cache is bounded both by the number of entries and by the serialized size of the responses,
+ * the least recently used entries are evicted first. Responses of a time window which has already
+ * closed do not change anymore and are kept for a long time, responses of a window reaching up to
+ * now only for a short time.
+ * </p>
+ * <p>
+ * The database services of a vertx instance share a single cache, so its bounds hold for the
+ * instance and a query cached by one service is served by all of them.
+ * </p>
+ */
+public class QueryResultCache implements Shareable {
+
+  private static final Logger LOGGER = LogManager.getLogger(QueryResultCache.class);
+
+  private static final String METRIC_PREFIX = "iudx.rs.archive.cache";
+
+  private final int maxEntries;
+  private final long maxBytes;
+  private final long closedWindowTtl;
+  private final long openWindowTtl;
+  private final LongSupplier clock;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes;
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter sizeEvictions;
+  private final Counter expiredEvictions;
+
+  /**
+   * Query result cache configured from the database configuration.
+   * <ul>
+   * <li><code>queryCacheMaxEntries</code> maximum number of cached responses</li>
+   * <li><code>queryCacheMaxBytes</code> maximum serialized size of all cached responses</li>
+   * <li><code>queryCacheClosedTtl</code> seconds a response of a closed time window is kept</li>
+   * <li><code>queryCacheOpenTtl</code> seconds a response of a window reaching now is kept</li>
+   * </ul>
+   *
+   * @param config configuration
+   * @param registry registry the cache metrics are published to
+   */
+  public QueryResultCache(JsonObject config, MeterRegistry registry) {
+    this(config, registry, System::currentTimeMillis);
+  }
+
+  QueryResultCache(JsonObject config, MeterRegistry registry, LongSupplier clock) {
+    this.maxEntries = config.getInteger("queryCacheMaxEntries", 1000);
+    this.maxBytes = config.getLong("queryCacheMaxBytes", 64L * 1024 * 1024);
+    this.closedWindowTtl =
+        TimeUnit.SECONDS.toMillis(config.getLong("queryCacheClosedTtl", 3600L));
+    this.openWindowTtl = TimeUnit.SECONDS.toMillis(config.getLong("queryCacheOpenTtl", 10L));
+    this.clock = clock;
+
+    hits = Counter.builder(METRIC_PREFIX + ".requests").tag("result", "hit").register(registry);
+    misses = Counter.builder(METRIC_PREFIX + ".requests").tag("result", "miss").register(registry);
+    sizeEvictions =
+        Counter.builder(METRIC_PREFIX + ".evictions").tag("cause", "size").register(registry);
+    expiredEvictions =
+        Counter.builder(METRIC_PREFIX + ".evictions").tag("cause", "expired").register(registry);
+    Gauge.builder(METRIC_PREFIX + ".entries", this, QueryResultCache::size).register(registry);
+    Gauge.builder(METRIC_PREFIX + ".bytes", this, QueryResultCache::bytes).register(registry);
+  }
+
+  /**
+   * The query result cache shared by the database services of a vertx instance, created by the
+   * first of them from its configuration.
+   *
+   * @param vertx vertx instance
+   * @param config configuration
+   * @param registry registry the cache metrics are published to
+   * @return the shared cache
+   */
+  public static QueryResultCache shared(Vertx vertx, JsonObject config, MeterRegistry registry) {
+    LocalMap<String, QueryResultCache> caches = vertx.sharedData().getLocalMap(QUERY_RESULT_CACHE);
+    return caches.computeIfAbsent(QUERY_RESULT_CACHE,
+        key -> new QueryResultCache(config, registry));
+  }
+
+  /**
+   * Key of a query. The body is written by
+   * {@link iudx.resource.server.database.archives.elastic.ElasticQuery} in a fixed order, so equal
+   * requests have equal bodies.
+   *
+   * @param index index or endpoint the query is sent to
+   * @param body request body
+   * @return hex encoded SHA-256 of the index and the body
+   */
+  public static String key(String index, Buffer body) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(index.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) '\n');
+      digest.update(body.getBytes());
+      StringBuilder hex = new StringBuilder(64);
+      for (byte b : digest.digest()) {
+        hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Whether the temporal window of a request ends in the past, so its result can not change
+   * anymore.
+   *
+   * @param request request received from the ApiServerVerticle
+   * @return true for a <code>before</code> or <code>during</code> window ending before now
+   */
+  public static boolean isClosedWindow(JsonObject request) {
+    String timeRelation = request.getString(REQ_TIMEREL);
+    String end;
+    if (DURING.equalsIgnoreCase(timeRelation)) {
+      end = request.getString(END_TIME);
+    } else if (BEFORE.equalsIgnoreCase(timeRelation)) {
+      end = request.getString(TIME_KEY);
+    } else {
+      return false;
+    }
+    try {
+      return end != null && ZonedDateTime.parse(end).isBefore(ZonedDateTime.now());
+    } catch (DateTimeParseException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns a copy of the cached response.
+   *
+   * @param key key of the query
+   * @return the response, or null when it is not cached or expired
+   */
+  public synchronized JsonObject get(String key) {
+    Entry entry = entries.get(key);
+    if (entry != null && entry.expiresAt <= clock.getAsLong()) {
+      remove(key, entry);
+      expiredEvictions.increment();
+      entry = null;
+    }
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return new JsonObject(entry.response);
+  }
+
+  /**
+   * Caches a response, evicting the least recently used responses which no longer fit.
+   *
+   * @param key key of the query
+   * @param response database response
+   * @param closedWindow whether the time window of the query is closed
+   */
+  public synchronized void put(String key, JsonObject response, boolean closedWindow) {
+    Buffer encoded = response.toBuffer();
+    if (encoded.length() > maxBytes) {
+      LOGGER.debug("Info: response of " + encoded.length() + " bytes is too large to be cached");
+      return;
+    }
+    long expiresAt = clock.getAsLong() + (closedWindow ? closedWindowTtl : openWindowTtl);
+    Entry previous = entries.put(key, new Entry(encoded, expiresAt));
+    if (previous != null) {
+      bytes -= previous.response.length();
+    }
+    bytes += encoded.length();
+
+    Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+    while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+      Map.Entry<String, Entry> evicted = eldest.next();
+      eldest.remove();
+      bytes -= evicted.getValue().response.length();
+      sizeEvictions.increment();
+    }
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long bytes() {
+    return bytes;
+  }
+
+  private void remove(String key, Entry entry) {
+    entries.remove(key);
+    bytes -= entry.response.length();
+  }
+
+  private static final class Entry {
+
+    private final Buffer response;
+    private final long expiresAt;
+
+    private Entry(Buffer response, long expiresAt) {
+      this.response = response;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -4,17 +4,22 @@ import static iudx.resource.server.database.archives.Constants.COUNT;
 import static iudx.resource.server.database.archives.Constants.DETAIL;
 import static iudx.resource.server.database.archives.Constants.ERROR;
 import static iudx.resource.server.database.archives.Constants.ERROR_TYPE;
+import static iudx.resource.server.database.archives.Constants.ESTIMATE_KEY;
 import static iudx.resource.server.database.archives.Constants.FAILED;
 import static iudx.resource.server.database.archives.Constants.FROM_KEY;
 import static iudx.resource.server.database.archives.Constants.INDEX_NOT_FOUND;
 import static iudx.resource.server.database.archives.Constants.INVALID_RESOURCE_ID;
+import static iudx.resource.server.database.archives.Constants.PARAM_CURSOR;
 import static iudx.resource.server.database.archives.Constants.REASON;
+import static iudx.resource.server.database.archives.Constants.RELATION_EQ;
 import static iudx.resource.server.database.archives.Constants.RESULTS;
 import static iudx.resource.server.database.archives.Constants.ROOT_CAUSE;
 import static iudx.resource.server.database.archives.Constants.SIZE_KEY;
 import static iudx.resource.server.database.archives.Constants.STATUS;
 import static iudx.resource.server.database.archives.Constants.SUCCESS;
 import static iudx.resource.server.database.archives.Constants.TITLE;
+import static iudx.resource.server.database.archives.Constants.TOTAL_HITS;
+import static iudx.resource.server.database.archives.Constants.TOTAL_HITS_RELATION;
 import static iudx.resource.server.database.archives.Constants.TYPE_KEY;
 
 import io.vertx.core.json.JsonArray;
@@ -42,6 +47,13 @@ public class ResponseBuilder {
     return this;
   }
 
+  /** Type of the response with an urn as its title. */
+  public ResponseBuilder setTypeAndTitle(int statusCode, String title) {
+    response.put(ERROR_TYPE, statusCode);
+    response.put(TITLE, title);
+    return this;
+  }
+
   /** Successful Database Request with responses > 0. */
 
   public ResponseBuilder setMessage(JsonArray results) {
@@ -74,6 +86,34 @@ public class ResponseBuilder {
     return this;
   }
   
+  /** Marks a count as an estimate rather than the exact number of documents. */
+  public ResponseBuilder setEstimate(boolean estimate) {
+    response.put(ESTIMATE_KEY, estimate);
+    return this;
+  }
+
+  /** Relation of a count to the number of documents, only added when the count is a bound. */
+  public ResponseBuilder setCountRelation(String relation) {
+    if (relation != null && !RELATION_EQ.equalsIgnoreCase(relation)) {
+      response.put(TOTAL_HITS_RELATION, relation);
+    }
+    return this;
+  }
+
+  /** Total hits of a search, the relation is only added when the total is a lower bound. */
+  public ResponseBuilder setTotalHits(int totalHits, String relation) {
+    response.put(TOTAL_HITS, totalHits);
+    if (relation != null && !RELATION_EQ.equalsIgnoreCase(relation)) {
+      response.put(TOTAL_HITS_RELATION, relation);
+    }
+    return this;
+  }
+
+  public ResponseBuilder setCursor(String cursor) {
+    response.put(PARAM_CURSOR, cursor);
+    return this;
+  }
+
   public ResponseBuilder setFromParam(int from) {
     response.put(FROM_KEY, from);
     return this;
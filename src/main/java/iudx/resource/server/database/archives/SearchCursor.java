@@ -0,0 +1,73 @@
+package iudx.resource.server.database.archives;
+
+import static iudx.resource.server.database.archives.Constants.INVALID_CURSOR;
+import java.util.Base64;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Pagination cursor handed out with a page of search results.
+ * <p>
+ * The cursor holds the sort values of the last hit of a page, used as <code>search_after</code> for
+ * the next page, and optionally the point in time the pages are read from. It is encoded as an
+ * opaque url safe token so clients do not depend on its content. The first page of a cursor is
+ * requested with the {@link #START} token, which has no sort values.
+ * </p>
+ */
+public final class SearchCursor {
+
+  /** token requesting the first page of a cursor */
+  public static final String START = "start";
+
+  private static final String SEARCH_AFTER_FIELD = "sa";
+  private static final String PIT_FIELD = "pit";
+
+  private final JsonArray searchAfter;
+  private final String pitId;
+
+  public SearchCursor(JsonArray searchAfter, String pitId) {
+    this.searchAfter = searchAfter;
+    this.pitId = pitId;
+  }
+
+  public JsonArray getSearchAfter() {
+    return searchAfter;
+  }
+
+  public String getPitId() {
+    return pitId;
+  }
+
+  /** Encodes the cursor into the token returned to the client. */
+  public String encode() {
+    JsonObject json = new JsonObject().put(SEARCH_AFTER_FIELD, searchAfter);
+    if (pitId != null) {
+      json.put(PIT_FIELD, pitId);
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(json.toBuffer().getBytes());
+  }
+
+  /**
+   * Decodes a token received from the client.
+   *
+   * @param cursor token
+   * @return SearchCursor, without sort values for the {@link #START} token
+   * @throws IllegalArgumentException if the token was not created by {@link #encode()}
+   */
+  public static SearchCursor decode(String cursor) {
+    if (START.equals(cursor)) {
+      return new SearchCursor(null, null);
+    }
+    try {
+      JsonObject json = new JsonObject(Buffer.buffer(Base64.getUrlDecoder().decode(cursor)));
+      JsonArray searchAfter = json.getJsonArray(SEARCH_AFTER_FIELD);
+      if (searchAfter == null || searchAfter.isEmpty()) {
+        throw new IllegalArgumentException(INVALID_CURSOR);
+      }
+      return new SearchCursor(searchAfter, json.getString(PIT_FIELD));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException(INVALID_CURSOR, e);
+    }
+  }
+}
@@ -14,8 +14,9 @@ import static iudx.resource.server.database.archives.Constants.VALUE;
 import static iudx.resource.server.database.archives.Constants.VALUE_LOWER;
 import static iudx.resource.server.database.archives.Constants.VALUE_UPPER;
 
-import org.elasticsearch.index.query.BoolQueryBuilder;
-import org.elasticsearch.index.query.QueryBuilders;
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -24,16 +25,14 @@ import iudx.resource.server.database.archives.elastic.exception.ESQueryDecodeExc
 
 public class AttributeQueryParser implements QueryParser {
 
-  private final BoolQueryBuilder builder;
   private final JsonObject json;
 
-  public AttributeQueryParser(BoolQueryBuilder builder, JsonObject json) {
-    this.builder = builder;
+  public AttributeQueryParser(JsonObject json) {
     this.json = json;
   }
 
   @Override
-  public BoolQueryBuilder parse() {
+  public void writeFilters(JsonGenerator generator) throws IOException {
     JsonArray attrQuery;
 
     if (json.containsKey(ATTRIBUTE_QUERY_KEY)) {
@@ -48,22 +47,21 @@ public class AttributeQueryParser implements QueryParser {
           String attributeValue = attrObj.getString(VALUE);
 
           if (GREATER_THAN_OP.equalsIgnoreCase(operator)) {
-            builder.filter(QueryBuilders.rangeQuery(attribute).gt(attributeValue));
+            QueryClauses.range(generator, attribute, QueryClauses.GT, attributeValue);
           } else if (LESS_THAN_OP.equalsIgnoreCase(operator)) {
-            builder.filter(QueryBuilders.rangeQuery(attribute).lt(attributeValue));
+            QueryClauses.range(generator, attribute, QueryClauses.LT, attributeValue);
           } else if (GREATER_THAN_EQ_OP.equalsIgnoreCase(operator)) {
-            builder.filter(QueryBuilders.rangeQuery(attribute).gte(attributeValue));
+            QueryClauses.range(generator, attribute, QueryClauses.GTE, attributeValue);
           } else if (LESS_THAN_EQ_OP.equalsIgnoreCase(operator)) {
-            builder.filter(QueryBuilders.rangeQuery(attribute).lte(attributeValue));
+            QueryClauses.range(generator, attribute, QueryClauses.LTE, attributeValue);
           } else if (EQUAL_OP.equalsIgnoreCase(operator)) {
-            builder.filter(QueryBuilders.termQuery(attribute, attributeValue));
+            QueryClauses.term(generator, attribute, attributeValue);
           } else if (BETWEEN_OP.equalsIgnoreCase(operator)) {
-            builder.filter(
-                QueryBuilders.rangeQuery(attribute)
-                    .gte(attrObj.getString(VALUE_LOWER))
-                    .lte(attrObj.getString(VALUE_UPPER)));
+            QueryClauses.range(generator, attribute,
+                QueryClauses.GTE, attrObj.getString(VALUE_LOWER),
+                QueryClauses.LTE, attrObj.getString(VALUE_UPPER));
           } else if (NOT_EQUAL_OP.equalsIgnoreCase(operator)) {
-            builder.mustNot(QueryBuilders.termQuery(attribute, attributeValue));
+            // written by writeMustNot
           } else {
             throw new ESQueryDecodeException(ResponseUrn.INVALID_ATTR_PARAM_URN, "invalid attribute operator");
           }
@@ -72,6 +70,28 @@ public class AttributeQueryParser implements QueryParser {
         }
       }
     }
-    return builder;
+  }
+
+  @Override
+  public boolean hasMustNot() {
+    if (!json.containsKey(ATTRIBUTE_QUERY_KEY)) {
+      return false;
+    }
+    for (Object obj : json.getJsonArray(ATTRIBUTE_QUERY_KEY)) {
+      if (NOT_EQUAL_OP.equalsIgnoreCase(((JsonObject) obj).getString(OPERATOR))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void writeMustNot(JsonGenerator generator) throws IOException {
+    for (Object obj : json.getJsonArray(ATTRIBUTE_QUERY_KEY)) {
+      JsonObject attrObj = (JsonObject) obj;
+      if (NOT_EQUAL_OP.equalsIgnoreCase(attrObj.getString(OPERATOR))) {
+        QueryClauses.term(generator, attrObj.getString(ATTRIBUTE_KEY), attrObj.getString(VALUE));
+      }
+    }
   }
 }
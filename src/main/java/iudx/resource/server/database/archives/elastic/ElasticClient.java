@@ -1,187 +1,730 @@
-package iudx.resource.server.database.archives.elastic;
-
-import static iudx.resource.server.database.archives.Constants.BAD_PARAMETERS;
-import static iudx.resource.server.database.archives.Constants.COUNT;
-import static iudx.resource.server.database.archives.Constants.DB_ERROR_2XX;
-import static iudx.resource.server.database.archives.Constants.DOCS_KEY;
-import static iudx.resource.server.database.archives.Constants.EMPTY_RESPONSE;
-import static iudx.resource.server.database.archives.Constants.FAILED;
-import static iudx.resource.server.database.archives.Constants.FILTER_PATH;
-import static iudx.resource.server.database.archives.Constants.HITS;
-import static iudx.resource.server.database.archives.Constants.REQUEST_GET;
-import static iudx.resource.server.database.archives.Constants.SOURCE_FILTER_KEY;
-import static iudx.resource.server.database.archives.Constants.SUCCESS;
-import java.io.IOException;
-import org.apache.http.HttpHost;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.util.EntityUtils;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import org.elasticsearch.client.Request;
-import org.elasticsearch.client.Response;
-import org.elasticsearch.client.ResponseListener;
-import org.elasticsearch.client.RestClient;
-import io.vertx.core.AsyncResult;
-import io.vertx.core.Future;
-import io.vertx.core.Handler;
-import io.vertx.core.json.DecodeException;
-import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
-import iudx.resource.server.database.archives.ResponseBuilder;
-
-public class ElasticClient {
-
-  private final RestClient client;
-  private ResponseBuilder responseBuilder;
-  private static final Logger LOGGER = LogManager.getLogger(ElasticClient.class);
-  /**
-   * ElasticClient - Elastic Low level wrapper.
-   * 
-   * @param databaseIP IP of the ElasticDB
-   * @param databasePort Port of the ElasticDB
-   */
-
-  public ElasticClient(String databaseIP, int databasePort, String user, String password) {
-    CredentialsProvider credentials = new BasicCredentialsProvider();
-    credentials.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(user, password));
-    client = RestClient.builder(new HttpHost(databaseIP, databasePort)).setHttpClientConfigCallback(
-        httpClientBuilder -> httpClientBuilder.setDefaultCredentialsProvider(credentials)).build();
-  }
-
-  /**
-   * searchAsync - Wrapper around elasticsearch async search requests.
-   * 
-   * @param index Index to search on
-   * @param query Query
-   * @param searchHandler JsonObject result {@link AsyncResult}
-   */
-  public ElasticClient searchAsync(String index, String filterPathValue, String query,
-      Handler<AsyncResult<JsonObject>> searchHandler) {
-
-    Request queryRequest = new Request(REQUEST_GET, index);
-    queryRequest.addParameter(FILTER_PATH, filterPathValue);
-    queryRequest.setJsonEntity(query);
-
-    client.performRequestAsync(queryRequest, new ResponseListener() {
-      @Override
-      public void onSuccess(Response response) {
-        JsonArray dbResponse = new JsonArray();
-        JsonObject jsonTemp;
-        try {
-          JsonObject responseJson = new JsonObject(EntityUtils.toString(response.getEntity()));
-          if (!responseJson.containsKey(HITS) && !responseJson.containsKey(DOCS_KEY)) {
-            responseBuilder =
-                new ResponseBuilder(FAILED).setTypeAndTitle(204).setMessage(EMPTY_RESPONSE);
-            searchHandler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-            return;
-          }
-          responseBuilder = new ResponseBuilder(SUCCESS).setTypeAndTitle(200);
-          JsonArray responseHits = new JsonArray();
-          if (responseJson.containsKey(HITS)) {
-            responseHits = responseJson.getJsonObject(HITS).getJsonArray(HITS);
-          } else if (responseJson.containsKey(DOCS_KEY)) {
-            responseHits = responseJson.getJsonArray(DOCS_KEY);
-          }
-          for (Object json : responseHits) {
-            jsonTemp = (JsonObject) json;
-            dbResponse.add(jsonTemp.getJsonObject(SOURCE_FILTER_KEY));
-          }
-          responseBuilder.setMessage(dbResponse);
-          searchHandler.handle(Future.succeededFuture(responseBuilder.getResponse()));
-        } catch (IOException e) {
-          LOGGER.error("IO Execption from Database: " + e.getMessage());
-          JsonObject ioError = new JsonObject(e.getMessage());
-          responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(ioError);
-          searchHandler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-        }
-      }
-
-      @Override
-      public void onFailure(Exception e) {
-        LOGGER.error(e.getLocalizedMessage());
-        try {
-          String error = e.getMessage().substring(e.getMessage().indexOf("{"),
-              e.getMessage().lastIndexOf("}") + 1);
-          JsonObject dbError = new JsonObject(error);
-          responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(dbError);
-          searchHandler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-        } catch (DecodeException jsonError) {
-          LOGGER.error("Json parsing exception: " , jsonError);
-          responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(400)
-              .setMessage(BAD_PARAMETERS);
-          searchHandler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-        }
-      }
-    });
-    return this;
-  }
-
-  /**
-   * countAsync - Wrapper around elasticsearch async count requests.
-   * 
-   * @param index Index to search on
-   * @param query Query
-   * @param countHandler JsonObject result {@link AsyncResult}
-   */
-  public ElasticClient countAsync(String index, String query,
-      Handler<AsyncResult<JsonObject>> countHandler) {
-
-    Request queryRequest = new Request(REQUEST_GET, index);
-    queryRequest.setJsonEntity(query);
-
-    client.performRequestAsync(queryRequest, new ResponseListener() {
-      @Override
-      public void onSuccess(Response response) {
-
-        try {
-          int statusCode = response.getStatusLine().getStatusCode();
-          if (statusCode != 200 && statusCode != 204) {
-            countHandler.handle(Future.failedFuture(DB_ERROR_2XX));
-            responseBuilder =
-                new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(DB_ERROR_2XX);
-            countHandler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-            return;
-          }
-
-          JsonObject responseJson = new JsonObject(EntityUtils.toString(response.getEntity()));
-          if (responseJson.getInteger(COUNT) == 0) {
-            responseBuilder =
-                new ResponseBuilder(FAILED).setTypeAndTitle(204).setMessage(EMPTY_RESPONSE);
-            countHandler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-            return;
-          }
-          responseBuilder =
-              new ResponseBuilder(SUCCESS).setTypeAndTitle(200)
-                  .setCount(responseJson.getInteger(COUNT));
-          countHandler.handle(Future.succeededFuture(responseBuilder.getResponse()));
-        } catch (IOException e) {
-          LOGGER.error("IO Execption from Database: " , e.getMessage());
-          JsonObject ioError = new JsonObject(e.getMessage());
-          responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(ioError);
-          countHandler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-        }
-      }
-
-      @Override
-      public void onFailure(Exception e) {
-        LOGGER.error(e.getLocalizedMessage());
-        try {
-          String error = e.getMessage().substring(e.getMessage().indexOf("{"),
-              e.getMessage().lastIndexOf("}") + 1);
-          JsonObject dbError = new JsonObject(error);
-          responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(dbError);
-          countHandler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-        } catch (DecodeException jsonError) {
-          LOGGER.error("Json parsing exception: " , jsonError);
-          responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(400)
-              .setMessage(BAD_PARAMETERS);
-          countHandler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-        }
-      }
-    });
-    return this;
-  }
-}
+package iudx.resource.server.database.archives.elastic;
+
+import static iudx.resource.server.common.ResponseUrn.SERVICE_UNAVAILABLE_URN;
+import static iudx.resource.server.database.archives.Constants.AGGREGATIONS_KEY;
+import static iudx.resource.server.database.archives.Constants.ALIAS_REQ_PARAM;
+import static iudx.resource.server.database.archives.Constants.BAD_PARAMETERS;
+import static iudx.resource.server.database.archives.Constants.BUCKETS_AGG;
+import static iudx.resource.server.database.archives.Constants.BUCKETS_KEY;
+import static iudx.resource.server.database.archives.Constants.COUNT;
+import static iudx.resource.server.database.archives.Constants.DB_ERROR;
+import static iudx.resource.server.database.archives.Constants.DB_ERROR_2XX;
+import static iudx.resource.server.database.archives.Constants.DB_OVERLOADED;
+import static iudx.resource.server.database.archives.Constants.DB_UNAVAILABLE;
+import static iudx.resource.server.database.archives.Constants.DOCS_KEY;
+import static iudx.resource.server.database.archives.Constants.EMPTY_RESPONSE;
+import static iudx.resource.server.database.archives.Constants.FAILED;
+import static iudx.resource.server.database.archives.Constants.FILTER_PATH;
+import static iudx.resource.server.database.archives.Constants.FILTER_PATH_VAL;
+import static iudx.resource.server.database.archives.Constants.FILTER_PATH_VAL_AGGREGATION;
+import static iudx.resource.server.database.archives.Constants.FILTER_PATH_VAL_SCROLL;
+import static iudx.resource.server.database.archives.Constants.HITS;
+import static iudx.resource.server.database.archives.Constants.ID;
+import static iudx.resource.server.database.archives.Constants.KEEP_ALIVE;
+import static iudx.resource.server.database.archives.Constants.MSEARCH_REQ_PARAM;
+import static iudx.resource.server.database.archives.Constants.NDJSON_CONTENT_TYPE;
+import static iudx.resource.server.database.archives.Constants.PIT_ID;
+import static iudx.resource.server.database.archives.Constants.PIT_REQ_PARAM;
+import static iudx.resource.server.database.archives.Constants.RELATION_KEY;
+import static iudx.resource.server.database.archives.Constants.RESPONSES;
+import static iudx.resource.server.database.archives.Constants.SCROLL_ID_KEY;
+import static iudx.resource.server.database.archives.Constants.SCROLL_KEY;
+import static iudx.resource.server.database.archives.Constants.SCROLL_REQ_PARAM;
+import static iudx.resource.server.database.archives.Constants.SEARCH_REQ_PARAM;
+import static iudx.resource.server.database.archives.Constants.RELATION_GTE;
+import static iudx.resource.server.database.archives.Constants.REQUEST_DELETE;
+import static iudx.resource.server.database.archives.Constants.REQUEST_GET;
+import static iudx.resource.server.database.archives.Constants.REQUEST_POST;
+import static iudx.resource.server.database.archives.Constants.SORT_KEY;
+import static iudx.resource.server.database.archives.Constants.SOURCE_FILTER_KEY;
+import static iudx.resource.server.database.archives.Constants.STREAM_CHUNK_SIZE;
+import static iudx.resource.server.database.archives.Constants.SUCCESS;
+import static iudx.resource.server.database.archives.Constants.TERMINATED_EARLY;
+import static iudx.resource.server.database.archives.Constants.TERMINATE_AFTER;
+import static iudx.resource.server.database.archives.Constants.TOTAL_KEY;
+import static iudx.resource.server.database.archives.Constants.VALUE;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import iudx.resource.server.database.archives.ResponseBuilder;
+import iudx.resource.server.database.archives.SearchCursor;
+
+public class ElasticClient {
+
+  private final RestClient client;
+  private HttpClient streamClient;
+  private String authorization;
+  private RequestLimiter limiter;
+  private volatile WireFormat wireFormat = WireFormat.JSON;
+  private static final Logger LOGGER = LogManager.getLogger(ElasticClient.class);
+  /** connections kept to elasticsearch when they are not sized by a request limiter */
+  public static final int DEFAULT_MAX_CONNECTIONS = 30;
+  /**
+   * ElasticClient - Elastic Low level wrapper.
+   * 
+   * @param databaseIP IP of the ElasticDB
+   * @param databasePort Port of the ElasticDB
+   */
+
+  public ElasticClient(String databaseIP, int databasePort, String user, String password) {
+    this(databaseIP, databasePort, user, password, DEFAULT_MAX_CONNECTIONS);
+  }
+
+  /**
+   * ElasticClient - Elastic Low level wrapper, with a pool of connections sized for the requests
+   * sent at once, so the requests admitted by a request limiter do not wait for a connection.
+   *
+   * @param databaseIP IP of the ElasticDB
+   * @param databasePort Port of the ElasticDB
+   * @param maxConnections connections kept to elasticsearch
+   */
+  public ElasticClient(String databaseIP, int databasePort, String user, String password,
+      int maxConnections) {
+    CredentialsProvider credentials = new BasicCredentialsProvider();
+    credentials.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(user, password));
+    client = RestClient.builder(new HttpHost(databaseIP, databasePort)).setHttpClientConfigCallback(
+        httpClientBuilder -> httpClientBuilder.setDefaultCredentialsProvider(credentials)
+            .setMaxConnPerRoute(maxConnections)
+            .setMaxConnTotal(maxConnections)).build();
+  }
+
+  /**
+   * ElasticClient - Elastic Low level wrapper, with a Vert.x HTTP client used for streaming
+   * searches.
+   * 
+   * @param vertx Vertx instance the streamed responses are consumed on
+   * @param databaseIP IP of the ElasticDB
+   * @param databasePort Port of the ElasticDB
+   * @param maxConnections connections kept to elasticsearch by the low level client
+   */
+  public ElasticClient(Vertx vertx, String databaseIP, int databasePort, String user,
+      String password, int maxConnections) {
+    this(databaseIP, databasePort, user, password, maxConnections);
+    streamClient = vertx.createHttpClient(new HttpClientOptions()
+        .setDefaultHost(databaseIP)
+        .setDefaultPort(databasePort)
+        .setKeepAlive(true));
+    authorization = "Basic " + Base64.getEncoder()
+        .encodeToString((user + ":" + password).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Limits the concurrency of the search, count, aggregation and multi search requests of this
+   * client, a rejected request fails with a 503 response.
+   *
+   * @param limiter limiter of the requests, null to send every request at once
+   * @return this
+   */
+  public ElasticClient setRequestLimiter(RequestLimiter limiter) {
+    this.limiter = limiter;
+    return this;
+  }
+
+  /**
+   * Sends the bodies of the search, count, aggregation and scroll requests and reads their
+   * responses in a binary format. Streaming searches always use JSON.
+   *
+   * @param wireFormat format of the requests and responses
+   * @return this
+   */
+  public ElasticClient setWireFormat(WireFormat wireFormat) {
+    this.wireFormat = wireFormat;
+    return this;
+  }
+
+  /**
+   * searchAsync - Wrapper around elasticsearch async search requests.
+   * 
+   * @param index Index to search on
+   * @param query Query
+   * @param searchHandler JsonObject result {@link AsyncResult}
+   */
+  public ElasticClient searchAsync(String index, String filterPathValue, Buffer query,
+      Handler<AsyncResult<JsonObject>> searchHandler) {
+    return searchAsync(index, filterPathValue, query, 0, searchHandler);
+  }
+
+  /**
+   * searchAsync - Wrapper around elasticsearch async search requests which also returns a
+   * pagination cursor when a sorted search fills the requested page.
+   * 
+   * @param index Index to search on
+   * @param query Query
+   * @param pageSize page size for which a cursor is returned, 0 to never return a cursor
+   * @param searchHandler JsonObject result {@link AsyncResult}
+   */
+  public ElasticClient searchAsync(String index, String filterPathValue, Buffer query,
+      int pageSize, Handler<AsyncResult<JsonObject>> searchHandler) {
+
+    Request queryRequest = new Request(REQUEST_GET, index);
+    queryRequest.addParameter(FILTER_PATH, filterPathValue);
+    performLimitedAsync(queryRequest, query, searchHandler, new ResponseListener() {
+      @Override
+      public void onSuccess(Response response) {
+        JsonArray dbResponse = new JsonArray();
+        JsonObject jsonTemp;
+        try {
+          JsonObject responseJson = readBody(response);
+          if (!responseJson.containsKey(HITS) && !responseJson.containsKey(DOCS_KEY)) {
+            searchHandler.handle(Future.failedFuture(failed(204, EMPTY_RESPONSE)));
+            return;
+          }
+          ResponseBuilder responseBuilder = new ResponseBuilder(SUCCESS).setTypeAndTitle(200);
+          JsonArray responseHits = new JsonArray();
+          if (responseJson.containsKey(HITS)) {
+            JsonObject hits = responseJson.getJsonObject(HITS);
+            JsonObject total = hits.getJsonObject(TOTAL_KEY);
+            if (total != null) {
+              if (total.getInteger(VALUE) == 0) {
+                searchHandler.handle(Future.failedFuture(failed(204, EMPTY_RESPONSE)));
+                return;
+              }
+              responseBuilder.setTotalHits(total.getInteger(VALUE), total.getString(RELATION_KEY));
+            }
+            responseHits = hits.getJsonArray(HITS, new JsonArray());
+          } else if (responseJson.containsKey(DOCS_KEY)) {
+            responseHits = responseJson.getJsonArray(DOCS_KEY);
+          }
+          JsonArray lastSort = null;
+          for (Object json : responseHits) {
+            jsonTemp = (JsonObject) json;
+            dbResponse.add(jsonTemp.getJsonObject(SOURCE_FILTER_KEY));
+            lastSort = jsonTemp.getJsonArray(SORT_KEY);
+          }
+          responseBuilder.setMessage(dbResponse);
+          if (pageSize > 0 && dbResponse.size() == pageSize && lastSort != null) {
+            responseBuilder.setCursor(
+                new SearchCursor(lastSort, responseJson.getString(PIT_ID)).encode());
+          }
+          searchHandler.handle(Future.succeededFuture(responseBuilder.getResponse()));
+        } catch (IOException | DecodeException e) {
+          LOGGER.error("IO Execption from Database: " + e.getMessage());
+          searchHandler.handle(Future.failedFuture(failed(400, DB_ERROR)));
+        }
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        searchHandler.handle(Future.failedFuture(failure(e)));
+      }
+    });
+    return this;
+  }
+
+  /**
+   * searchStreamAsync - Streams the <code>_source</code> of every hit of a search request without
+   * buffering the elasticsearch response. The resulting stream emits the serialized response
+   * (<code>type</code>, <code>title</code>, <code>results</code> followed by the trailer fields) in
+   * chunks of about {@link iudx.resource.server.database.archives.Constants#STREAM_CHUNK_SIZE}
+   * bytes. The handler is only called once <code>hits.total</code> has been read, so an empty
+   * result is still reported as a failure.
+   * 
+   * @param index Index to search on
+   * @param query Query
+   * @param trailer fields appended to the response after the results
+   * @param pageSize page size for which a cursor is returned, 0 to never return a cursor
+   * @param streamHandler ReadStream of the response {@link AsyncResult}
+   */
+  public ElasticClient searchStreamAsync(String index, Buffer query, JsonObject trailer,
+      int pageSize, Handler<AsyncResult<ReadStream<Buffer>>> streamHandler) {
+
+    if (streamClient == null) {
+      streamHandler.handle(Future.failedFuture(failed(400, DB_ERROR)));
+      return this;
+    }
+
+    RequestOptions options = new RequestOptions()
+        .setMethod(HttpMethod.POST)
+        .setURI("/" + index + "?" + FILTER_PATH + "=" + FILTER_PATH_VAL)
+        .putHeader(HttpHeaders.AUTHORIZATION, authorization)
+        .putHeader(HttpHeaders.CONTENT_TYPE, "application/json");
+
+    streamClient.request(options)
+        .compose(request -> request.send(query))
+        .onSuccess(response -> {
+          if (response.statusCode() == 200) {
+            SearchHitsStream hitsStream =
+                new SearchHitsStream(response, trailer, pageSize, STREAM_CHUNK_SIZE);
+            hitsStream.ready().onComplete(readyHandler -> {
+              if (readyHandler.failed()) {
+                LOGGER.error("Json parsing exception: ", readyHandler.cause());
+                streamHandler.handle(Future.failedFuture(failed(400, DB_ERROR)));
+              } else if (hitsStream.getTotalHits() == 0) {
+                streamHandler.handle(Future.failedFuture(failed(204, EMPTY_RESPONSE)));
+              } else {
+                streamHandler.handle(Future.succeededFuture(hitsStream));
+              }
+            });
+            return;
+          }
+          response.body(body -> {
+            ResponseBuilder responseBuilder;
+            if (body.failed()) {
+              responseBuilder =
+                  new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(DB_ERROR);
+            } else {
+              try {
+                responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(400)
+                    .setMessage(body.result().toJsonObject());
+              } catch (DecodeException jsonError) {
+                LOGGER.error("Json parsing exception: ", jsonError);
+                responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(400)
+                    .setMessage(BAD_PARAMETERS);
+              }
+            }
+            streamHandler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
+          });
+        })
+        .onFailure(e -> streamHandler.handle(Future.failedFuture(failure(e))));
+    return this;
+  }
+
+  /**
+   * openPointInTimeAsync - Opens a point in time on an index, used to read consistent pages of a
+   * search. The point in time is not closed explicitly, it expires after the keep alive.
+   * 
+   * @param index Index to open the point in time on
+   * @param keepAlive time the point in time is kept after each request
+   * @param pitHandler id of the point in time {@link AsyncResult}
+   */
+  public ElasticClient openPointInTimeAsync(String index, String keepAlive,
+      Handler<AsyncResult<String>> pitHandler) {
+
+    Request pitRequest = new Request(REQUEST_POST, index + PIT_REQ_PARAM);
+    pitRequest.addParameter(KEEP_ALIVE, keepAlive);
+
+    client.performRequestAsync(pitRequest, new ResponseListener() {
+      @Override
+      public void onSuccess(Response response) {
+        try {
+          JsonObject responseJson = new JsonObject(EntityUtils.toString(response.getEntity()));
+          pitHandler.handle(Future.succeededFuture(responseJson.getString(ID)));
+        } catch (IOException | DecodeException e) {
+          LOGGER.error("Fail: point in time;" + e.getMessage());
+          pitHandler.handle(Future.failedFuture(failed(400, DB_ERROR)));
+        }
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        pitHandler.handle(Future.failedFuture(failure(e)));
+      }
+    });
+    return this;
+  }
+
+  /**
+   * countAsync - Wrapper around elasticsearch async count requests.
+   * 
+   * @param index Index to search on
+   * @param query Query
+   * @param countHandler JsonObject result {@link AsyncResult}
+   */
+  public ElasticClient countAsync(String index, Buffer query,
+      Handler<AsyncResult<JsonObject>> countHandler) {
+    return countAsync(index, query, 0, countHandler);
+  }
+
+  /**
+   * countAsync - Wrapper around elasticsearch async count requests which stop counting on every
+   * shard after a number of documents. A count which stopped early is a lower bound, its
+   * <code>totalHitsRelation</code> is <code>gte</code>.
+   *
+   * @param index Index to search on
+   * @param query Query
+   * @param terminateAfter documents counted per shard, 0 to count all documents
+   * @param countHandler JsonObject result {@link AsyncResult}
+   */
+  public ElasticClient countAsync(String index, Buffer query, int terminateAfter,
+      Handler<AsyncResult<JsonObject>> countHandler) {
+
+    Request queryRequest = new Request(REQUEST_GET, index);
+    if (terminateAfter > 0) {
+      queryRequest.addParameter(TERMINATE_AFTER, String.valueOf(terminateAfter));
+    }
+    performLimitedAsync(queryRequest, query, countHandler, new ResponseListener() {
+      @Override
+      public void onSuccess(Response response) {
+
+        try {
+          int statusCode = response.getStatusLine().getStatusCode();
+          if (statusCode != 200 && statusCode != 204) {
+            countHandler.handle(Future.failedFuture(failed(400, DB_ERROR_2XX)));
+            return;
+          }
+
+          JsonObject responseJson = readBody(response);
+          if (responseJson.getInteger(COUNT) == 0) {
+            countHandler.handle(Future.failedFuture(failed(204, EMPTY_RESPONSE)));
+            return;
+          }
+          ResponseBuilder responseBuilder =
+              new ResponseBuilder(SUCCESS).setTypeAndTitle(200)
+                  .setCount(responseJson.getInteger(COUNT));
+          if (responseJson.getBoolean(TERMINATED_EARLY, false)) {
+            responseBuilder.setCountRelation(RELATION_GTE);
+          }
+          countHandler.handle(Future.succeededFuture(responseBuilder.getResponse()));
+        } catch (IOException | DecodeException e) {
+          LOGGER.error("IO Execption from Database: " , e.getMessage());
+          countHandler.handle(Future.failedFuture(failed(400, DB_ERROR)));
+        }
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        countHandler.handle(Future.failedFuture(failure(e)));
+      }
+    });
+    return this;
+  }
+
+  /**
+   * aggregateAsync - Wrapper around elasticsearch async search requests of a temporal
+   * aggregation, only the buckets of the <code>date_histogram</code> are read from the response.
+   *
+   * @param index Index to search on
+   * @param query Query, including the aggregation
+   * @param aggregateHandler JsonArray of buckets {@link AsyncResult}
+   */
+  public ElasticClient aggregateAsync(String index, Buffer query,
+      Handler<AsyncResult<JsonArray>> aggregateHandler) {
+
+    Request queryRequest = new Request(REQUEST_GET, index);
+    queryRequest.addParameter(FILTER_PATH, FILTER_PATH_VAL_AGGREGATION);
+    performLimitedAsync(queryRequest, query, aggregateHandler, new ResponseListener() {
+      @Override
+      public void onSuccess(Response response) {
+        try {
+          JsonObject responseJson = readBody(response);
+          // filter_path drops the aggregation when it has no buckets
+          JsonArray buckets = responseJson.getJsonObject(AGGREGATIONS_KEY, new JsonObject())
+              .getJsonObject(BUCKETS_AGG, new JsonObject())
+              .getJsonArray(BUCKETS_KEY, new JsonArray());
+          aggregateHandler.handle(Future.succeededFuture(buckets));
+        } catch (IOException | DecodeException e) {
+          LOGGER.error("IO Execption from Database: " + e.getMessage());
+          aggregateHandler.handle(Future.failedFuture(failed(400, DB_ERROR)));
+        }
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        aggregateHandler.handle(Future.failedFuture(failure(e)));
+      }
+    });
+    return this;
+  }
+
+  /**
+   * aliasesAsync - Reads the aliases of all indices.
+   *
+   * @param aliasHandler JsonObject of the aliases per index name {@link AsyncResult}
+   */
+  public ElasticClient aliasesAsync(Handler<AsyncResult<JsonObject>> aliasHandler) {
+
+    Request aliasRequest = new Request(REQUEST_GET, ALIAS_REQ_PARAM);
+
+    client.performRequestAsync(aliasRequest, new ResponseListener() {
+      @Override
+      public void onSuccess(Response response) {
+        try {
+          aliasHandler.handle(Future.succeededFuture(
+              new JsonObject(EntityUtils.toString(response.getEntity()))));
+        } catch (IOException | DecodeException e) {
+          LOGGER.error("IO Execption from Database: " + e.getMessage());
+          aliasHandler.handle(Future.failedFuture(DB_ERROR));
+        }
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        LOGGER.error(e.getLocalizedMessage());
+        aliasHandler.handle(Future.failedFuture(e.getLocalizedMessage()));
+      }
+    });
+    return this;
+  }
+
+  /**
+   * msearchAsync - Wrapper around elasticsearch async multi search requests. The responses of the
+   * searches are returned as they are, a failed search only fails its own response.
+   *
+   * @param body newline delimited pairs of header and search body
+   * @param filterPathValue filter applied to the responses
+   * @param msearchHandler JsonArray of responses {@link AsyncResult}
+   */
+  public ElasticClient msearchAsync(Buffer body, String filterPathValue,
+      Handler<AsyncResult<JsonArray>> msearchHandler) {
+
+    Request queryRequest = new Request(REQUEST_POST, MSEARCH_REQ_PARAM);
+    queryRequest.addParameter(FILTER_PATH, filterPathValue);
+    queryRequest.setEntity(
+        new NByteArrayEntity(body.getBytes(), ContentType.create(NDJSON_CONTENT_TYPE)));
+    // the searches stay newline delimited JSON, only the responses are read in the wire format
+    performLimitedAsync(queryRequest, null, msearchHandler, new ResponseListener() {
+      @Override
+      public void onSuccess(Response response) {
+        try {
+          JsonObject responseJson = readBody(response);
+          msearchHandler.handle(
+              Future.succeededFuture(responseJson.getJsonArray(RESPONSES, new JsonArray())));
+        } catch (IOException | DecodeException e) {
+          LOGGER.error("IO Execption from Database: " + e.getMessage());
+          msearchHandler.handle(Future.failedFuture(failed(400, DB_ERROR)));
+        }
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        msearchHandler.handle(Future.failedFuture(failure(e)));
+      }
+    });
+    return this;
+  }
+
+  /**
+   * openScroll - Opens a scroll search and reads its first batch of hits. The request blocks the
+   * calling thread, it is meant for bulk reads running on worker threads only.
+   *
+   * @param index Index to search on
+   * @param query Query, including the size of a batch and the slice of a sliced scroll
+   * @param keepAlive time the scroll is kept between two batches
+   * @return response with the <code>_scroll_id</code> and the <code>_source</code> of the hits
+   * @throws IOException if the request fails
+   */
+  public JsonObject openScroll(String index, Buffer query, String keepAlive) throws IOException {
+    Request scrollRequest = new Request(REQUEST_POST, index + SEARCH_REQ_PARAM);
+    scrollRequest.addParameter(SCROLL_KEY, keepAlive);
+    scrollRequest.addParameter(FILTER_PATH, FILTER_PATH_VAL_SCROLL);
+    setBody(scrollRequest, query);
+    return readBody(client.performRequest(scrollRequest));
+  }
+
+  /**
+   * scroll - Reads the next batch of hits of a scroll search, blocking the calling thread.
+   *
+   * @param scrollId id of the scroll returned with the previous batch
+   * @param keepAlive time the scroll is kept between two batches
+   * @return response with the <code>_scroll_id</code> and the <code>_source</code> of the hits
+   * @throws IOException if the request fails
+   */
+  public JsonObject scroll(String scrollId, String keepAlive) throws IOException {
+    Request scrollRequest = new Request(REQUEST_POST, SCROLL_REQ_PARAM);
+    scrollRequest.addParameter(FILTER_PATH, FILTER_PATH_VAL_SCROLL);
+    setBody(scrollRequest, new JsonObject().put(SCROLL_KEY, keepAlive)
+        .put(SCROLL_ID_KEY, scrollId).toBuffer());
+    return readBody(client.performRequest(scrollRequest));
+  }
+
+  /**
+   * clearScroll - Releases the search context of a scroll before its keep alive runs out.
+   *
+   * @param scrollId id of the scroll
+   */
+  public void clearScroll(String scrollId) {
+    Request clearRequest = new Request(REQUEST_DELETE, SCROLL_REQ_PARAM);
+    clearRequest.setEntity(jsonEntity(new JsonObject().put(SCROLL_ID_KEY, scrollId).toBuffer()));
+    client.performRequestAsync(clearRequest, new ResponseListener() {
+      @Override
+      public void onSuccess(Response response) {
+        LOGGER.debug("Info: scroll cleared");
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        LOGGER.warn("Fail: clear scroll;" + e.getMessage());
+      }
+    });
+  }
+
+  /**
+   * Sends a request in the wire format. A request which is not accepted in a binary format falls
+   * back to JSON and is sent once more in JSON, the other requests then use JSON as well.
+   *
+   * @param body JSON body of the request, or null when the request keeps its own body and only
+   *        the response is read in the wire format
+   */
+  private <T> void performLimitedAsync(Request request, Buffer body,
+      Handler<AsyncResult<T>> handler, ResponseListener listener) {
+    WireFormat format = wireFormat;
+    setBody(request, body, format);
+    if (format == WireFormat.JSON) {
+      performLimitedAsync(request, handler, listener);
+      return;
+    }
+    performLimitedAsync(request, handler, new ResponseListener() {
+      @Override
+      public void onSuccess(Response response) {
+        listener.onSuccess(response);
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        if (!isNotAccepted(e)) {
+          listener.onFailure(e);
+          return;
+        }
+        LOGGER.warn("Fail: " + format + " not accepted by the database, retrying in JSON");
+        wireFormat = WireFormat.JSON;
+        setBody(request, body, WireFormat.JSON);
+        performLimitedAsync(request, handler, listener);
+      }
+    });
+  }
+
+  /**
+   * Sends a request once it is admitted by the request limiter. Failures of elasticsearch itself,
+   * as opposed to errors of the query, are reported to the limiter as overload.
+   */
+  private <T> void performLimitedAsync(Request request, Handler<AsyncResult<T>> handler,
+      ResponseListener listener) {
+    if (limiter == null) {
+      client.performRequestAsync(request, listener);
+      return;
+    }
+    limiter.execute(permit -> client.performRequestAsync(request, new ResponseListener() {
+      @Override
+      public void onSuccess(Response response) {
+        permit.succeeded();
+        listener.onSuccess(response);
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        if (isOverloaded(e)) {
+          permit.overloaded();
+        } else {
+          permit.succeeded();
+        }
+        listener.onFailure(e);
+      }
+    }), rejection -> {
+      LOGGER.warn("Fail: DB request rejected;" + rejection);
+      ResponseBuilder unavailable = new ResponseBuilder(FAILED)
+          .setTypeAndTitle(503, SERVICE_UNAVAILABLE_URN.getUrn())
+          .setMessage(rejection == RequestLimiter.Rejection.BREAKER ? DB_UNAVAILABLE
+              : DB_OVERLOADED);
+      handler.handle(Future.failedFuture(unavailable.getResponse().toString()));
+    });
+  }
+
+  private static boolean isOverloaded(Exception e) {
+    if (!(e instanceof ResponseException)) {
+      return true;
+    }
+    int status = ((ResponseException) e).getResponse().getStatusLine().getStatusCode();
+    return status == 429 || status == 502 || status == 503 || status == 504;
+  }
+
+  /** Whether a request was rejected for the format of its body or of the response asked for. */
+  private static boolean isNotAccepted(Exception e) {
+    if (!(e instanceof ResponseException)) {
+      return false;
+    }
+    int status = ((ResponseException) e).getResponse().getStatusLine().getStatusCode();
+    return status == 406 || status == 415;
+  }
+
+  private static NByteArrayEntity jsonEntity(Buffer body) {
+    return new NByteArrayEntity(body.getBytes(), ContentType.APPLICATION_JSON);
+  }
+
+  private void setBody(Request request, Buffer body) {
+    setBody(request, body, wireFormat);
+  }
+
+  private static void setBody(Request request, Buffer body, WireFormat format) {
+    format.accept(request);
+    if (body != null) {
+      request.setEntity(format.entity(body));
+    }
+  }
+
+  /** Reads a response in the format of its content type, whichever format was asked for. */
+  private static JsonObject readBody(Response response) throws IOException {
+    HttpEntity entity = response.getEntity();
+    Header contentType = entity.getContentType();
+    return WireFormat.forContentType(contentType == null ? null : contentType.getValue())
+        .read(EntityUtils.toByteArray(entity));
+  }
+
+  /** Failure response with a status and a detail. */
+  private static String failed(int status, String detail) {
+    return new ResponseBuilder(FAILED).setTypeAndTitle(status).setMessage(detail)
+        .getResponse().toString();
+  }
+
+  /**
+   * Failure response of a request which failed. A request which did not get a response from
+   * elasticsearch, because it is down or unreachable, fails as unavailable without reading a body.
+   */
+  private String failure(Throwable e) {
+    LOGGER.error(e.getLocalizedMessage());
+    if (!(e instanceof ResponseException)) {
+      return new ResponseBuilder(FAILED)
+          .setTypeAndTitle(503, SERVICE_UNAVAILABLE_URN.getUrn())
+          .setMessage(DB_UNAVAILABLE)
+          .getResponse().toString();
+    }
+    try {
+      return new ResponseBuilder(FAILED).setTypeAndTitle(400)
+          .setMessage(dbError((ResponseException) e))
+          .getResponse().toString();
+    } catch (DecodeException | NullPointerException | ClassCastException jsonError) {
+      // the error is not an object, or not in the shape of an elasticsearch error
+      LOGGER.error("Json parsing exception: ", jsonError);
+      return failed(400, BAD_PARAMETERS);
+    }
+  }
+
+  /**
+   * Error returned by elasticsearch. A node which does not accept the binary formats rejects the
+   * requests as not acceptable, the client then falls back to JSON for the next requests.
+   *
+   * @throws DecodeException when the error is not an object
+   */
+  private JsonObject dbError(ResponseException e) {
+    Response response = e.getResponse();
+    if (isNotAccepted(e) && wireFormat != WireFormat.JSON) {
+      LOGGER.warn("Fail: " + wireFormat + " not accepted by the database, falling back to JSON");
+      wireFormat = WireFormat.JSON;
+    }
+    try {
+      return readBody(response);
+    } catch (IOException ioError) {
+      throw new DecodeException(ioError.getMessage());
+    }
+  }
+}
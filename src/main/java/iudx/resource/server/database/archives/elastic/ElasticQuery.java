@@ -0,0 +1,137 @@
+package iudx.resource.server.database.archives.elastic;
+
+import static iudx.resource.server.database.archives.Constants.QUERY_KEY;
+import static iudx.resource.server.database.archives.Constants.SOURCE_FILTER_KEY;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Compiled elasticsearch query.
+ * <p>
+ * Holds the serialized <code>bool</code> query and the response filter of a request, the count
+ * and search request bodies are written from the same compiled form without building an
+ * intermediate json tree.
+ * </p>
+ */
+public final class ElasticQuery {
+
+  static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  // scratch buffer reused by all queries compiled or written on the same thread
+  private static final ThreadLocal<ByteArrayBuilder> SCRATCH =
+      ThreadLocal.withInitial(() -> new ByteArrayBuilder(1024));
+
+  private static final byte[] QUERY_PREFIX =
+      ("{\"" + QUERY_KEY + "\":").getBytes(StandardCharsets.UTF_8);
+
+  private final byte[] query;
+  private final JsonArray sourceFilter;
+
+  ElasticQuery(byte[] query, JsonArray sourceFilter) {
+    this.query = query;
+    this.sourceFilter = sourceFilter;
+  }
+
+  /** Body of a <code>_count</code> request. */
+  public Buffer countBody() {
+    return Buffer.buffer(QUERY_PREFIX.length + query.length + 1)
+        .appendBytes(QUERY_PREFIX)
+        .appendBytes(query)
+        .appendByte((byte) '}');
+  }
+
+  /**
+   * Body of a <code>_search</code> request.
+   *
+   * @param page fields added to the body next to the query, e.g. size, from and sort
+   * @return request body
+   */
+  public Buffer searchBody(JsonObject page) {
+    byte[] tail = write(generator -> {
+      generator.writeStartObject();
+      if (sourceFilter != null) {
+        generator.writeFieldName(SOURCE_FILTER_KEY);
+        writeValue(generator, sourceFilter);
+      }
+      for (Map.Entry<String, Object> field : page) {
+        generator.writeFieldName(field.getKey());
+        writeValue(generator, field.getValue());
+      }
+      generator.writeEndObject();
+    });
+    Buffer body = Buffer.buffer(QUERY_PREFIX.length + query.length + tail.length)
+        .appendBytes(QUERY_PREFIX)
+        .appendBytes(query);
+    // tail is an object, its fields follow the query
+    if (tail.length > 2) {
+      body.appendByte((byte) ',').appendBytes(tail, 1, tail.length - 1);
+    } else {
+      body.appendByte((byte) '}');
+    }
+    return body;
+  }
+
+  @Override
+  public String toString() {
+    return new String(query, StandardCharsets.UTF_8);
+  }
+
+  interface Writer {
+    void write(JsonGenerator generator) throws IOException;
+  }
+
+  /**
+   * Runs a writer against the scratch buffer of the current thread.
+   *
+   * @return a copy of the written bytes
+   */
+  static byte[] write(Writer writer) {
+    ByteArrayBuilder scratch = SCRATCH.get();
+    scratch.reset();
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(scratch, JsonEncoding.UTF8)) {
+      writer.write(generator);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return scratch.toByteArray();
+  }
+
+  /** Writes a vert.x json value, including nested objects and arrays. */
+  static void writeValue(JsonGenerator generator, Object value) throws IOException {
+    if (value == null) {
+      generator.writeNull();
+    } else if (value instanceof JsonObject) {
+      generator.writeStartObject();
+      for (Map.Entry<String, Object> field : (JsonObject) value) {
+        generator.writeFieldName(field.getKey());
+        writeValue(generator, field.getValue());
+      }
+      generator.writeEndObject();
+    } else if (value instanceof JsonArray) {
+      generator.writeStartArray();
+      for (Object element : (JsonArray) value) {
+        writeValue(generator, element);
+      }
+      generator.writeEndArray();
+    } else if (value instanceof String) {
+      generator.writeString((String) value);
+    } else if (value instanceof Integer || value instanceof Long) {
+      generator.writeNumber(((Number) value).longValue());
+    } else if (value instanceof Number) {
+      generator.writeNumber(((Number) value).doubleValue());
+    } else if (value instanceof Boolean) {
+      generator.writeBoolean((Boolean) value);
+    } else {
+      generator.writeString(value.toString());
+    }
+  }
+}
@@ -12,9 +12,11 @@ import static iudx.resource.server.database.archives.Constants.LON;
 import static iudx.resource.server.database.archives.Constants.POLYGON;
 import static iudx.resource.server.database.archives.Constants.WITHIN;
 
-import org.elasticsearch.common.geo.ShapeRelation;
-import org.elasticsearch.index.query.BoolQueryBuilder;
-import org.elasticsearch.index.query.QueryBuilders;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -22,28 +24,25 @@ import iudx.resource.server.database.archives.elastic.exception.ESQueryDecodeExc
 
 public class GeoQueryParser implements QueryParser {
 
-  private BoolQueryBuilder builder;
-  private JsonObject json;
+  private static final Set<String> RELATIONS = Set.of("intersects", "disjoint", "within", "contains");
+
+  private final JsonObject json;
+  private final GeoShapeCache shapes;
 
-  public GeoQueryParser(BoolQueryBuilder builder, JsonObject json) {
-    this.builder = builder;
+  public GeoQueryParser(JsonObject json, GeoShapeCache shapes) {
     this.json = json;
+    this.shapes = shapes;
   }
 
   @Override
-  public BoolQueryBuilder parse() {
+  public void writeFilters(JsonGenerator generator) throws IOException {
 
     String relation;
 
     if (json.containsKey(LON) && json.containsKey(LAT) && json.containsKey(GEO_RADIUS)) {
 
       relation = json.containsKey(GEOREL) ? json.getString(GEOREL) : WITHIN;
-      json.put("geometry", "point");// TODO : replace and pass geom directly in query from api verticle
-      builder.filter(QueryBuilders.wrapperQuery(String
-          .format("{ \"geo_shape\": { \"%s\": { \"shape\": %s, \"relation\": \"%s\" } } }",
-              "location",
-              getGeoJson(json),
-              ShapeRelation.getRelationByName(relation).getRelationName())));
+      writeGeoShape(generator, relation, circle());
 
     } else if (json.containsKey(GEOMETRY)
         && (json.getString(GEOMETRY).equalsIgnoreCase(POLYGON)
@@ -51,67 +50,44 @@ public class GeoQueryParser implements QueryParser {
         && json.containsKey(GEOREL) && json.containsKey(COORDINATES_KEY)
         && json.containsKey(GEO_PROPERTY)) {
 
-      if (!isValidCoordinates(json.getString(GEOMETRY), new JsonArray(json.getString("coordinates")))) {
-        throw new ESQueryDecodeException("Coordinate mismatch (Polygon)");
-      }
-
       relation = json.getString(GEOREL);
-
-      builder.filter(QueryBuilders.wrapperQuery(String
-          .format("{ \"geo_shape\": { \"%s\": { \"shape\": %s, \"relation\": \"%s\" } } }",
-              "location",
-              getGeoJson(json),
-              ShapeRelation.getRelationByName(relation).getRelationName())));
+      writeGeoShape(generator, relation,
+          shapes.shape(json.getString(GEOMETRY), json.getString(COORDINATES_KEY), relation));
 
     } else if (json.containsKey(GEOMETRY) && json.getString(GEOMETRY).equalsIgnoreCase(BBOX)
         && json.containsKey(GEOREL) && json.containsKey(COORDINATES_KEY)
         && json.containsKey(GEO_PROPERTY)) {
       relation = json.getString(GEOREL);
-      builder.filter(QueryBuilders.wrapperQuery(String
-          .format("{ \"geo_shape\": { \"%s\": { \"shape\": %s, \"relation\": \"%s\" } } }",
-              "location",
-              getGeoJson(json),
-              ShapeRelation.getRelationByName(relation).getRelationName())));
+      writeGeoShape(generator, relation,
+          shapes.shape(json.getString(GEOMETRY), json.getString(COORDINATES_KEY), relation));
 
     } else {
       throw new ESQueryDecodeException("Missing/Invalid geo parameters");
     }
-    return builder;
   }
 
-  private JsonObject getGeoJson(JsonObject json) {
-    JsonObject geoJson = new JsonObject();
-    String geom;
-    JsonArray coordinates;
-    if ("Point".equalsIgnoreCase(json.getString(GEOMETRY))) {
-      double lat = json.getDouble(LAT);
-      double lon = json.getDouble(LON);
-      geom = "Circle";
-      geoJson.put("radius", json.getString("radius") + "m");
-      coordinates = (new JsonArray().add(lon).add(lat));
-    } else if ("bbox".equalsIgnoreCase(json.getString(GEOMETRY))) {
-      geom = "envelope";
-      coordinates = (new JsonArray(json.getString("coordinates")));
-    } else {
-      geom = json.getString(GEOMETRY);
-      coordinates = (new JsonArray(json.getString("coordinates")));
+  private void writeGeoShape(JsonGenerator generator, String relation, String shape)
+      throws IOException {
+    String relationName = relation == null ? null : relation.toLowerCase(Locale.ROOT);
+    if (!RELATIONS.contains(relationName)) {
+      throw new ESQueryDecodeException("Missing/Invalid geo parameters");
     }
-    geoJson.put("type", geom);
-    geoJson.put("coordinates", coordinates);
-    return geoJson;
+    generator.writeStartObject();
+    generator.writeObjectFieldStart("geo_shape");
+    generator.writeObjectFieldStart("location");
+    generator.writeFieldName("shape");
+    generator.writeRawValue(shape);
+    generator.writeStringField("relation", relationName);
+    generator.writeEndObject();
+    generator.writeEndObject();
+    generator.writeEndObject();
   }
 
-  private boolean isValidCoordinates(String geometry, JsonArray coordinates) {
-    int length = coordinates.getJsonArray(0).size();
-    if (geometry.equalsIgnoreCase(POLYGON)
-        && !coordinates.getJsonArray(0).getJsonArray(0).getDouble(0)
-            .equals(coordinates.getJsonArray(0).getJsonArray(length - 1).getDouble(0))
-        && !coordinates.getJsonArray(0).getJsonArray(0).getDouble(1)
-            .equals(coordinates.getJsonArray(0).getJsonArray(length - 1).getDouble(1))) {
-      return false;
-
-    }
-    return true;
+  private String circle() {
+    return new JsonObject()
+        .put("type", "Circle")
+        .put("coordinates", new JsonArray().add(json.getDouble(LON)).add(json.getDouble(LAT)))
+        .put("radius", json.getString(GEO_RADIUS) + "m")
+        .encode();
   }
-
 }
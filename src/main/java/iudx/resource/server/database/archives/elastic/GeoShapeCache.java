@@ -0,0 +1,268 @@
+package iudx.resource.server.database.archives.elastic;
+
+import static iudx.resource.server.database.archives.Constants.BBOX;
+import static iudx.resource.server.database.archives.Constants.COORDINATE_MISMATCH;
+import static iudx.resource.server.database.archives.Constants.GEO_BBOX;
+import static iudx.resource.server.database.archives.Constants.GEO_SHAPE_CACHE;
+import static iudx.resource.server.database.archives.Constants.INTERSECTS;
+import static iudx.resource.server.database.archives.Constants.LINESTRING;
+import static iudx.resource.server.database.archives.Constants.MISSING_GEO_FIELDS;
+import static iudx.resource.server.database.archives.Constants.POLYGON;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import org.locationtech.jts.algorithm.Orientation;
+import org.locationtech.jts.algorithm.distance.DiscreteHausdorffDistance;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateArrays;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+import org.wololo.jts2geojson.GeoJSONReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import iudx.resource.server.database.archives.elastic.exception.ESQueryDecodeException;
+
+/**
+ * Prepared <code>geo_shape</code> shapes of the polygon, linestring and bbox queries, keyed by a
+ * hash of the geometry and its coordinates.
+ * <p>
+ * The coordinates of a request are parsed once into a JTS geometry, which is validated, oriented
+ * counter-clockwise and simplified within the configured tolerance. For the intersects relation
+ * only, a polygon is replaced by its envelope when the two do not differ by more than the
+ * tolerance: the envelope covers the polygon, so an intersection is only widened by the tolerance,
+ * while within, contains and disjoint could match other documents. The shape is kept serialized,
+ * so a repeated query only costs the hash of its coordinates. The least recently used shapes are
+ * evicted first.
+ * </p>
+ * <p>
+ * The database services of a vertx instance share one cache, see
+ * {@link #shared(Vertx, JsonObject, MeterRegistry)}.
+ * </p>
+ */
+public final class GeoShapeCache implements Shareable {
+
+  private static final String METRIC_PREFIX = "iudx.rs.archive.geometry";
+
+  private final double tolerance;
+  private final int maxEntries;
+  private final GeometryFactory factory = new GeometryFactory();
+  private final LinkedHashMap<String, String> shapes = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final Counter hits;
+  private final Counter misses;
+
+  /**
+   * Shape cache configured from the database configuration.
+   * <ul>
+   * <li><code>geoSimplifyTolerance</code> distance in degrees a shape may be moved by when it is
+   * simplified, 0 to send the shapes as they are</li>
+   * <li><code>geoShapeCacheSize</code> maximum number of cached shapes</li>
+   * </ul>
+   *
+   * @param config configuration
+   * @param registry registry the cache metrics are published to
+   */
+  public GeoShapeCache(JsonObject config, MeterRegistry registry) {
+    this.tolerance = Math.max(0, config.getDouble("geoSimplifyTolerance", 0.0));
+    this.maxEntries = config.getInteger("geoShapeCacheSize", 1000);
+
+    hits = Counter.builder(METRIC_PREFIX + ".cache.requests").tag("result", "hit")
+        .register(registry);
+    misses = Counter.builder(METRIC_PREFIX + ".cache.requests").tag("result", "miss")
+        .register(registry);
+    Gauge.builder(METRIC_PREFIX + ".cache.entries", this, GeoShapeCache::size).register(registry);
+  }
+
+  /**
+   * The shape cache shared by the database services of a vertx instance, created by the first of
+   * them from its configuration.
+   *
+   * @param vertx vertx instance
+   * @param config configuration
+   * @param registry registry the cache metrics are published to
+   * @return the shared cache
+   */
+  public static GeoShapeCache shared(Vertx vertx, JsonObject config, MeterRegistry registry) {
+    LocalMap<String, GeoShapeCache> caches = vertx.sharedData().getLocalMap(GEO_SHAPE_CACHE);
+    return caches.computeIfAbsent(GEO_SHAPE_CACHE, key -> new GeoShapeCache(config, registry));
+  }
+
+  /**
+   * Serialized shape of a polygon, linestring or bbox, which holds for every relation.
+   *
+   * @param geometry geometry of the request
+   * @param coordinates coordinates of the request
+   * @return geojson shape, or an envelope
+   * @throws ESQueryDecodeException when the coordinates are not a valid geometry
+   */
+  public String shape(String geometry, String coordinates) {
+    return shape(geometry, coordinates, null);
+  }
+
+  /**
+   * Serialized shape of a polygon, linestring or bbox queried with a relation.
+   *
+   * @param geometry geometry of the request
+   * @param coordinates coordinates of the request
+   * @param relation relation of the request
+   * @return geojson shape, or an envelope
+   * @throws ESQueryDecodeException when the coordinates are not a valid geometry
+   */
+  public String shape(String geometry, String coordinates, String relation) {
+    String type = geometry.toLowerCase(Locale.ROOT);
+    boolean approximate = tolerance > 0 && INTERSECTS.equalsIgnoreCase(relation);
+    String key = key(type, approximate, coordinates);
+    String shape;
+    synchronized (this) {
+      shape = shapes.get(key);
+    }
+    if (shape != null) {
+      hits.increment();
+      return shape;
+    }
+    misses.increment();
+    shape = prepare(type, coordinates, approximate);
+    synchronized (this) {
+      shapes.put(key, shape);
+      if (shapes.size() > maxEntries) {
+        shapes.remove(shapes.keySet().iterator().next());
+      }
+    }
+    return shape;
+  }
+
+  public synchronized int size() {
+    return shapes.size();
+  }
+
+  private String prepare(String type, String coordinates, boolean approximate) {
+    Geometry geometry;
+    if (POLYGON.equals(type)) {
+      geometry = read("Polygon", coordinates);
+    } else if (LINESTRING.equals(type)) {
+      geometry = read("LineString", coordinates);
+    } else if (BBOX.equals(type)) {
+      // the two corners of the box are read as a linestring
+      Geometry corners = read("LineString", coordinates);
+      if (corners.getNumPoints() != 2) {
+        throw new ESQueryDecodeException(MISSING_GEO_FIELDS);
+      }
+      return envelope(corners.getEnvelopeInternal());
+    } else {
+      throw new ESQueryDecodeException(MISSING_GEO_FIELDS);
+    }
+    if (!geometry.isValid()) {
+      throw new ESQueryDecodeException(MISSING_GEO_FIELDS);
+    }
+
+    if (tolerance > 0) {
+      Geometry simplified = TopologyPreservingSimplifier.simplify(geometry, tolerance);
+      if (simplified.isValid() && !simplified.isEmpty()) {
+        geometry = simplified;
+      }
+    }
+    if (geometry instanceof Polygon) {
+      Polygon polygon = orient((Polygon) geometry);
+      if (polygon.getNumInteriorRing() == 0 && (polygon.isRectangle() || (approximate
+          && DiscreteHausdorffDistance.distance(polygon, polygon.getEnvelope()) <= tolerance))) {
+        return envelope(polygon.getEnvelopeInternal());
+      }
+      return polygon(polygon);
+    }
+    return lineString((LineString) geometry);
+  }
+
+  private Geometry read(String type, String coordinates) {
+    try {
+      return new GeoJSONReader()
+          .read("{\"type\":\"" + type + "\",\"coordinates\":" + coordinates + "}");
+    } catch (IllegalArgumentException e) {
+      // rings which are not closed are rejected by jts
+      throw new ESQueryDecodeException(
+          "Polygon".equals(type) ? COORDINATE_MISMATCH : MISSING_GEO_FIELDS);
+    } catch (RuntimeException e) {
+      throw new ESQueryDecodeException(MISSING_GEO_FIELDS);
+    }
+  }
+
+  /** Polygon with a counter-clockwise shell and clockwise holes, as read by elasticsearch. */
+  private Polygon orient(Polygon polygon) {
+    LinearRing shell = orient(polygon.getExteriorRing(), true);
+    LinearRing[] holes = new LinearRing[polygon.getNumInteriorRing()];
+    for (int i = 0; i < holes.length; i++) {
+      holes[i] = orient(polygon.getInteriorRingN(i), false);
+    }
+    return factory.createPolygon(shell, holes);
+  }
+
+  private LinearRing orient(LineString ring, boolean counterClockwise) {
+    Coordinate[] coordinates = ring.getCoordinates();
+    if (Orientation.isCCW(coordinates) != counterClockwise) {
+      coordinates = coordinates.clone();
+      CoordinateArrays.reverse(coordinates);
+    }
+    return factory.createLinearRing(coordinates);
+  }
+
+  private static String envelope(Envelope envelope) {
+    // upper left and lower right corners
+    return new StringBuilder(96).append("{\"type\":\"").append(GEO_BBOX)
+        .append("\",\"coordinates\":[[").append(envelope.getMinX()).append(',')
+        .append(envelope.getMaxY()).append("],[").append(envelope.getMaxX()).append(',')
+        .append(envelope.getMinY()).append("]]}").toString();
+  }
+
+  private static String polygon(Polygon polygon) {
+    StringBuilder shape = new StringBuilder("{\"type\":\"Polygon\",\"coordinates\":[");
+    appendRing(shape, polygon.getExteriorRing().getCoordinates());
+    for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+      appendRing(shape.append(','), polygon.getInteriorRingN(i).getCoordinates());
+    }
+    return shape.append("]}").toString();
+  }
+
+  private static String lineString(LineString lineString) {
+    StringBuilder shape = new StringBuilder("{\"type\":\"LineString\",\"coordinates\":");
+    appendRing(shape, lineString.getCoordinates());
+    return shape.append('}').toString();
+  }
+
+  private static void appendRing(StringBuilder shape, Coordinate[] coordinates) {
+    shape.append('[');
+    for (int i = 0; i < coordinates.length; i++) {
+      if (i > 0) {
+        shape.append(',');
+      }
+      shape.append('[').append(coordinates[i].x).append(',').append(coordinates[i].y).append(']');
+    }
+    shape.append(']');
+  }
+
+  private static String key(String type, boolean approximate, String coordinates) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(type.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) (approximate ? '~' : '\n'));
+      digest.update(coordinates.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder(64);
+      for (byte b : digest.digest()) {
+        hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
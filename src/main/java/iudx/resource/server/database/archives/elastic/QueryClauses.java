@@ -0,0 +1,47 @@
+package iudx.resource.server.database.archives.elastic;
+
+import java.io.IOException;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writers for the leaf query clauses used by the query parsers.
+ */
+final class QueryClauses {
+
+  static final String GT = "gt";
+  static final String GTE = "gte";
+  static final String LT = "lt";
+  static final String LTE = "lte";
+
+  private QueryClauses() {}
+
+  /** <code>{"term":{field:value}}</code> */
+  static void term(JsonGenerator generator, String field, String value) throws IOException {
+    generator.writeStartObject();
+    generator.writeObjectFieldStart("term");
+    generator.writeStringField(field, value);
+    generator.writeEndObject();
+    generator.writeEndObject();
+  }
+
+  /** <code>{"range":{field:{operator:value}}}</code> */
+  static void range(JsonGenerator generator, String field, String operator, String value)
+      throws IOException {
+    range(generator, field, operator, value, null, null);
+  }
+
+  /** <code>{"range":{field:{operator:value,operator2:value2}}}</code> */
+  static void range(JsonGenerator generator, String field, String operator, String value,
+      String operator2, String value2) throws IOException {
+    generator.writeStartObject();
+    generator.writeObjectFieldStart("range");
+    generator.writeObjectFieldStart(field);
+    generator.writeStringField(operator, value);
+    if (operator2 != null) {
+      generator.writeStringField(operator2, value2);
+    }
+    generator.writeEndObject();
+    generator.writeEndObject();
+    generator.writeEndObject();
+  }
+}
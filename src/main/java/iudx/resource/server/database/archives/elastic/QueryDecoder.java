@@ -1,118 +1,224 @@
 package iudx.resource.server.database.archives.elastic;
 
+import static iudx.resource.server.database.archives.Constants.AGGR_ALLOWED_METHODS;
+import static iudx.resource.server.database.archives.Constants.AGGR_ATTRS;
+import static iudx.resource.server.database.archives.Constants.AGGR_INTERVAL;
+import static iudx.resource.server.database.archives.Constants.AGGR_INTERVAL_PATTERN;
+import static iudx.resource.server.database.archives.Constants.AGGR_METHODS;
 import static iudx.resource.server.database.archives.Constants.ATTRIBUTE_SEARCH_REGEX;
 import static iudx.resource.server.database.archives.Constants.COUNT_UNSUPPORTED;
-import static iudx.resource.server.database.archives.Constants.ERROR;
+import static iudx.resource.server.database.archives.Constants.DURING;
+import static iudx.resource.server.database.archives.Constants.END_TIME;
 import static iudx.resource.server.database.archives.Constants.GEOSEARCH_REGEX;
 import static iudx.resource.server.database.archives.Constants.ID;
 import static iudx.resource.server.database.archives.Constants.INVALID_SEARCH;
+import static iudx.resource.server.database.archives.Constants.MAX_AGGREGATION_BUCKETS;
+import static iudx.resource.server.database.archives.Constants.MISSING_AGGREGATION_FIELDS;
 import static iudx.resource.server.database.archives.Constants.MISSING_RESPONSE_FILTER_FIELDS;
+import static iudx.resource.server.database.archives.Constants.MISSING_TEMPORAL_FIELDS;
 import static iudx.resource.server.database.archives.Constants.PROD_INSTANCE;
-import static iudx.resource.server.database.archives.Constants.QUERY_KEY;
 import static iudx.resource.server.database.archives.Constants.REQ_TIMEREL;
 import static iudx.resource.server.database.archives.Constants.RESPONSE_ATTRS;
 import static iudx.resource.server.database.archives.Constants.RESPONSE_FILTER_REGEX;
 import static iudx.resource.server.database.archives.Constants.SEARCH_KEY;
 import static iudx.resource.server.database.archives.Constants.SEARCH_TYPE;
-import static iudx.resource.server.database.archives.Constants.SOURCE_FILTER_KEY;
 import static iudx.resource.server.database.archives.Constants.TEMPORAL_SEARCH_REGEX;
 import static iudx.resource.server.database.archives.Constants.TEST_INSTANCE;
+import static iudx.resource.server.database.archives.Constants.TIME_FIELD_DB;
 import static iudx.resource.server.database.archives.Constants.TIME_KEY;
 import static iudx.resource.server.database.archives.Constants.TIME_LIMIT;
+import static iudx.resource.server.database.archives.Constants.TOO_MANY_BUCKETS;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.elasticsearch.index.query.BoolQueryBuilder;
-import org.elasticsearch.index.query.QueryBuilders;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-
+import iudx.resource.server.database.archives.elastic.exception.ESQueryDecodeException;
+
+/**
+ * Compiles a request into an {@link ElasticQuery}.
+ * <p>
+ * The clauses of the parsers are written straight into the serialized <code>bool</code> query, an
+ * invalid request is reported with an {@link ESQueryDecodeException}.
+ * </p>
+ */
 public class QueryDecoder {
 
   private static final Logger LOGGER = LogManager.getLogger(QueryDecoder.class);
 
-  public JsonObject getESquery(JsonObject json) {
-
-    String searchType = json.getString(SEARCH_TYPE);
-    Boolean isValidQuery = false;
-    JsonObject elasticQuery = new JsonObject();
+  private final GeoShapeCache shapes;
 
-    boolean temporalQuery = false;
+  public QueryDecoder() {
+    this(new GeoShapeCache(new JsonObject(), new SimpleMeterRegistry()));
+  }
 
-    JsonArray id = json.getJsonArray(ID);
+  /**
+   * Query decoder sharing the prepared shapes of the geo queries.
+   *
+   * @param shapes cache of the polygon, linestring and bbox shapes
+   */
+  public QueryDecoder(GeoShapeCache shapes) {
+    this.shapes = shapes;
+  }
 
-    String timeLimit = json.getString(TIME_LIMIT).split(",")[1];
-    int numDays = Integer.valueOf(json.getString(TIME_LIMIT).split(",")[2]);
+  public ElasticQuery getESquery(JsonObject json) {
 
-    BoolQueryBuilder boolQuery = QueryBuilders.boolQuery();
-    boolQuery.filter(QueryBuilders.termsQuery(ID, id.getString(0)));
+    String searchType = json.getString(SEARCH_TYPE);
+    List<QueryParser> parsers = new ArrayList<>(3);
+    boolean temporalQuery = false;
 
     if (searchType.matches(GEOSEARCH_REGEX)) {
-      boolQuery = new GeoQueryParser(boolQuery, json).parse();
-      isValidQuery = true;
+      parsers.add(new GeoQueryParser(json, shapes));
     }
 
     if (searchType.matches(TEMPORAL_SEARCH_REGEX) && json.containsKey(REQ_TIMEREL)
         && json.containsKey(TIME_KEY)) {
-      boolQuery = new TemporalQueryParser(boolQuery, json).parse();
+      parsers.add(new TemporalQueryParser(json));
       temporalQuery = true;
-      isValidQuery = true;
     }
 
     if (searchType.matches(ATTRIBUTE_SEARCH_REGEX)) {
-      boolQuery = new AttributeQueryParser(boolQuery, json).parse();
-      isValidQuery = true;
+      parsers.add(new AttributeQueryParser(json));
     }
 
     JsonArray responseFilters = null;
     if (searchType.matches(RESPONSE_FILTER_REGEX)) {
       LOGGER.debug("Info: Adding responseFilter");
-      isValidQuery = true;
       if (!json.getBoolean(SEARCH_KEY)) {
-        return new JsonObject().put(ERROR, COUNT_UNSUPPORTED);
+        throw new ESQueryDecodeException(COUNT_UNSUPPORTED);
       }
       if (json.containsKey(RESPONSE_ATTRS)) {
         responseFilters = json.getJsonArray(RESPONSE_ATTRS);
       } else {
-        return new JsonObject().put(ERROR, MISSING_RESPONSE_FILTER_FIELDS);
+        throw new ESQueryDecodeException(MISSING_RESPONSE_FILTER_FIELDS);
       }
     }
 
     /* checks if any valid search jsons have matched */
-    if (!isValidQuery) {
-      return new JsonObject().put(ERROR, INVALID_SEARCH);
-    } else {
-      if (!temporalQuery && json.getJsonArray("applicableFilters").contains("TEMPORAL")) {
-        if (json.getString(TIME_LIMIT).split(",")[0].equalsIgnoreCase(PROD_INSTANCE)) {
-          boolQuery
-              .filter(QueryBuilders.rangeQuery("observationDateTime")
-                  .gte("now-" + timeLimit + "d/d"));
-
-        } else if (json.getString(TIME_LIMIT).split(",")[0].equalsIgnoreCase(TEST_INSTANCE)) {
-          String endTime = json.getString(TIME_LIMIT).split(",")[1];
-          ZonedDateTime endTimeZ = ZonedDateTime.parse(endTime);
-          ZonedDateTime startTime = endTimeZ.minusDays(numDays);
-
-          boolQuery
-              .filter(QueryBuilders.rangeQuery("observationDateTime")
-                  .lte(endTime)
-                  .gte(startTime));
+    if (parsers.isEmpty() && responseFilters == null) {
+      throw new ESQueryDecodeException(INVALID_SEARCH);
+    }
 
+    boolean defaultTimeLimit =
+        !temporalQuery && json.getJsonArray("applicableFilters").contains("TEMPORAL");
+
+    byte[] query = ElasticQuery.write(generator -> {
+      generator.writeStartObject();
+      generator.writeObjectFieldStart("bool");
+      generator.writeArrayFieldStart("filter");
+      generator.writeStartObject();
+      generator.writeObjectFieldStart("terms");
+      generator.writeArrayFieldStart(ID);
+      generator.writeString(json.getJsonArray(ID).getString(0));
+      generator.writeEndArray();
+      generator.writeEndObject();
+      generator.writeEndObject();
+      for (QueryParser parser : parsers) {
+        parser.writeFilters(generator);
+      }
+      if (defaultTimeLimit) {
+        writeTimeLimit(generator, json);
+      }
+      generator.writeEndArray();
+      boolean mustNot = false;
+      for (QueryParser parser : parsers) {
+        if (parser.hasMustNot()) {
+          if (!mustNot) {
+            generator.writeArrayFieldStart("must_not");
+            mustNot = true;
+          }
+          parser.writeMustNot(generator);
         }
+      }
+      if (mustNot) {
+        generator.writeEndArray();
+      }
+      generator.writeEndObject();
+      generator.writeEndObject();
+    });
 
+    return new ElasticQuery(query, responseFilters);
+  }
+
+  /**
+   * Temporal aggregation of a request. The number of buckets of a <code>during</code> window is
+   * checked up front, the buckets of an open window are limited by elasticsearch.
+   *
+   * @param json request with the aggregation interval, methods and attributes
+   * @return the aggregation
+   * @throws ESQueryDecodeException if the aggregation is invalid
+   */
+  public TemporalAggregation getAggregation(JsonObject json) {
+    String interval = json.getString(AGGR_INTERVAL);
+    JsonArray methods = json.getJsonArray(AGGR_METHODS);
+    JsonArray attrs = json.getJsonArray(AGGR_ATTRS);
+    if (interval == null || methods == null || methods.isEmpty() || attrs == null
+        || attrs.isEmpty()) {
+      throw new ESQueryDecodeException(MISSING_AGGREGATION_FIELDS);
+    }
+    Duration bucket = parseInterval(interval);
+    if (DURING.equalsIgnoreCase(json.getString(REQ_TIMEREL)) && json.containsKey(END_TIME)) {
+      try {
+        Duration window = Duration.between(ZonedDateTime.parse(json.getString(TIME_KEY)),
+            ZonedDateTime.parse(json.getString(END_TIME)));
+        if (window.toMillis() / bucket.toMillis() >= MAX_AGGREGATION_BUCKETS) {
+          throw new ESQueryDecodeException(TOO_MANY_BUCKETS + MAX_AGGREGATION_BUCKETS);
+        }
+      } catch (DateTimeParseException e) {
+        throw new ESQueryDecodeException(MISSING_TEMPORAL_FIELDS);
       }
     }
+    List<String> methodList = new ArrayList<>(methods.size());
+    for (Object method : methods) {
+      if (!AGGR_ALLOWED_METHODS.contains(method.toString())) {
+        throw new ESQueryDecodeException(MISSING_AGGREGATION_FIELDS);
+      }
+      methodList.add(method.toString());
+    }
+    List<String> attrList = new ArrayList<>(attrs.size());
+    for (Object attr : attrs) {
+      attrList.add(attr.toString());
+    }
+    return new TemporalAggregation(interval, methodList, attrList);
+  }
 
-    elasticQuery.put(QUERY_KEY, new JsonObject(boolQuery.toString()));
-
-    if (responseFilters != null) {
-      elasticQuery.put(SOURCE_FILTER_KEY, responseFilters);
+  private Duration parseInterval(String interval) {
+    if (!AGGR_INTERVAL_PATTERN.matcher(interval).matches()) {
+      throw new ESQueryDecodeException(MISSING_AGGREGATION_FIELDS);
     }
+    long amount = Long.parseLong(interval.substring(0, interval.length() - 1));
+    switch (interval.charAt(interval.length() - 1)) {
+      case 'm':
+        return Duration.ofMinutes(amount);
+      case 'h':
+        return Duration.ofHours(amount);
+      default:
+        return Duration.ofDays(amount);
+    }
+  }
 
-    return elasticQuery;
+  private void writeTimeLimit(JsonGenerator generator, JsonObject json) throws IOException {
+    String[] timeLimit = json.getString(TIME_LIMIT).split(",");
+    if (timeLimit[0].equalsIgnoreCase(PROD_INSTANCE)) {
+      QueryClauses.range(generator, TIME_FIELD_DB, QueryClauses.GTE,
+          "now-" + timeLimit[1] + "d/d");
+
+    } else if (timeLimit[0].equalsIgnoreCase(TEST_INSTANCE)) {
+      String endTime = timeLimit[1];
+      ZonedDateTime startTime = ZonedDateTime.parse(endTime).minusDays(Integer.valueOf(timeLimit[2]));
+      QueryClauses.range(generator, TIME_FIELD_DB, QueryClauses.LTE, endTime, QueryClauses.GTE,
+          startTime.toString());
+    }
   }
 
 }
@@ -1,7 +1,18 @@
 package iudx.resource.server.database.archives.elastic;
 
-import org.elasticsearch.index.query.BoolQueryBuilder;
+import java.io.IOException;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 public interface QueryParser {
-  BoolQueryBuilder parse();
+
+  /** Writes the filter clauses of the request into the <code>filter</code> array. */
+  void writeFilters(JsonGenerator generator) throws IOException;
+
+  /** Whether the request has clauses for the <code>must_not</code> array. */
+  default boolean hasMustNot() {
+    return false;
+  }
+
+  /** Writes the clauses of the request into the <code>must_not</code> array. */
+  default void writeMustNot(JsonGenerator generator) throws IOException {}
 }
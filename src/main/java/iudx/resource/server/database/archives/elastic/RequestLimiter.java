@@ -0,0 +1,301 @@
+package iudx.resource.server.database.archives.elastic;
+
+import static iudx.resource.server.database.archives.Constants.REQUEST_LIMITER;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * Adaptive concurrency limit and circuit breaker of the requests sent to elasticsearch.
+ * <p>
+ * The number of requests in flight is limited by an AIMD limit driven by the observed latency: a
+ * request completing within the latency threshold raises the limit by one per round of requests,
+ * a slow or overloaded request lowers it by the backoff ratio, at most once per round. Requests
+ * above the limit wait in a bounded queue, requests which do not fit in the queue are rejected.
+ * </p>
+ * <p>
+ * The breaker opens after a number of consecutive failures of elasticsearch, and rejects every
+ * request until the open time has passed. A single trial request is then let through, the breaker
+ * closes again when it succeeds. Errors of a query itself do not count as failures.
+ * </p>
+ * <p>
+ * The database verticles of a vertx instance share one limiter, so the limit holds for all the
+ * requests the instance sends to elasticsearch, see {@link #shared(Vertx, JsonObject,
+ * MeterRegistry)}.
+ * </p>
+ */
+public final class RequestLimiter implements Shareable {
+
+  private static final Logger LOGGER = LogManager.getLogger(RequestLimiter.class);
+
+  private static final String METRIC_PREFIX = "iudx.rs.archive.elastic";
+
+  /** Reason a request was not sent. */
+  public enum Rejection {
+    LIMIT, BREAKER
+  }
+
+  private enum BreakerState {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final int maxQueued;
+  private final long latencyThreshold;
+  private final double backoffRatio;
+  private final int failureThreshold;
+  private final long openTime;
+  private final LongSupplier clock;
+
+  private final Deque<Pending> queue = new ArrayDeque<>();
+  private double limit;
+  private long lastBackoffAt;
+  private int inFlight;
+  private int consecutiveFailures;
+  private BreakerState breaker = BreakerState.CLOSED;
+  private long openedAt;
+  private boolean trialInFlight;
+
+  private final Counter limitRejections;
+  private final Counter breakerRejections;
+
+  /**
+   * Request limiter configured from the database configuration.
+   * <ul>
+   * <li><code>esLimitInitial</code> initial number of requests in flight</li>
+   * <li><code>esLimitMin</code>, <code>esLimitMax</code> bounds of the limit</li>
+   * <li><code>esLimitQueueSize</code> number of requests waiting for the limit</li>
+   * <li><code>esLimitLatencyThreshold</code> milliseconds above which a request is slow</li>
+   * <li><code>esLimitBackoffRatio</code> factor the limit is lowered by on a slow request</li>
+   * <li><code>esBreakerFailureThreshold</code> consecutive failures opening the breaker</li>
+   * <li><code>esBreakerOpenTime</code> milliseconds the breaker stays open</li>
+   * </ul>
+   *
+   * @param config configuration
+   * @param registry registry the limiter metrics are published to
+   */
+  public RequestLimiter(JsonObject config, MeterRegistry registry) {
+    this(config, registry, System::nanoTime);
+  }
+
+  RequestLimiter(JsonObject config, MeterRegistry registry, LongSupplier clock) {
+    this.minLimit = Math.max(1, config.getInteger("esLimitMin", 4));
+    this.maxLimit = Math.max(minLimit, config.getInteger("esLimitMax", 200));
+    this.limit = Math.min(maxLimit, Math.max(minLimit, config.getInteger("esLimitInitial", 20)));
+    this.maxQueued = config.getInteger("esLimitQueueSize", 100);
+    this.latencyThreshold =
+        TimeUnit.MILLISECONDS.toNanos(config.getLong("esLimitLatencyThreshold", 1000L));
+    this.backoffRatio = config.getDouble("esLimitBackoffRatio", 0.9);
+    this.failureThreshold = config.getInteger("esBreakerFailureThreshold", 5);
+    this.openTime = TimeUnit.MILLISECONDS.toNanos(config.getLong("esBreakerOpenTime", 10000L));
+    this.clock = clock;
+    this.lastBackoffAt = clock.getAsLong();
+
+    limitRejections =
+        Counter.builder(METRIC_PREFIX + ".rejected").tag("cause", "limit").register(registry);
+    breakerRejections =
+        Counter.builder(METRIC_PREFIX + ".rejected").tag("cause", "breaker").register(registry);
+    Gauge.builder(METRIC_PREFIX + ".inflight", this, RequestLimiter::inFlight).register(registry);
+    Gauge.builder(METRIC_PREFIX + ".queued", this, RequestLimiter::queued).register(registry);
+    Gauge.builder(METRIC_PREFIX + ".limit", this, RequestLimiter::limit).register(registry);
+    Gauge.builder(METRIC_PREFIX + ".breaker.open", this, limiter -> limiter.isOpen() ? 1 : 0)
+        .register(registry);
+  }
+
+  /**
+   * The request limiter shared by the database verticles of a vertx instance, created by the first
+   * of them from its configuration.
+   *
+   * @param vertx vertx instance
+   * @param config configuration
+   * @param registry registry the limiter metrics are published to
+   * @return the shared limiter
+   */
+  public static RequestLimiter shared(Vertx vertx, JsonObject config, MeterRegistry registry) {
+    LocalMap<String, RequestLimiter> limiters = vertx.sharedData().getLocalMap(REQUEST_LIMITER);
+    return limiters.computeIfAbsent(REQUEST_LIMITER, key -> new RequestLimiter(config, registry));
+  }
+
+  /** Largest number of requests in flight, the connections to elasticsearch are sized for it. */
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  /**
+   * Sends a request once it is admitted by the breaker and the limit. The request has to complete
+   * its permit exactly once.
+   *
+   * @param request sends the request
+   * @param rejected called instead when the request is not sent
+   */
+  public void execute(Consumer<Permit> request, Consumer<Rejection> rejected) {
+    Rejection rejection = null;
+    Permit permit = null;
+    synchronized (this) {
+      if (!allowedByBreaker()) {
+        rejection = Rejection.BREAKER;
+      } else if (inFlight < (int) limit) {
+        permit = admit();
+      } else if (queue.size() < maxQueued) {
+        queue.addLast(new Pending(request, rejected));
+      } else {
+        rejection = Rejection.LIMIT;
+      }
+    }
+    if (permit != null) {
+      request.accept(permit);
+    } else if (rejection != null) {
+      reject(rejected, rejection);
+    }
+  }
+
+  synchronized int inFlight() {
+    return inFlight;
+  }
+
+  synchronized int queued() {
+    return queue.size();
+  }
+
+  synchronized double limit() {
+    return limit;
+  }
+
+  synchronized boolean isOpen() {
+    return breaker == BreakerState.OPEN && clock.getAsLong() - openedAt < openTime;
+  }
+
+  private boolean allowedByBreaker() {
+    if (breaker == BreakerState.CLOSED) {
+      return true;
+    }
+    if (breaker == BreakerState.OPEN && clock.getAsLong() - openedAt >= openTime) {
+      breaker = BreakerState.HALF_OPEN;
+      trialInFlight = false;
+    }
+    if (breaker == BreakerState.HALF_OPEN && !trialInFlight) {
+      trialInFlight = true;
+      return true;
+    }
+    return false;
+  }
+
+  private Permit admit() {
+    inFlight++;
+    return new Permit(clock.getAsLong());
+  }
+
+  private void complete(Permit permit, Outcome outcome) {
+    List<Pending> admitted = new ArrayList<>();
+    List<Pending> rejected = new ArrayList<>();
+    synchronized (this) {
+      inFlight--;
+      long latency = clock.getAsLong() - permit.startedAt;
+      if (outcome == Outcome.OVERLOADED || latency > latencyThreshold) {
+        // requests sent before the last backoff already saw the higher limit
+        if (permit.startedAt - lastBackoffAt >= 0) {
+          limit = Math.max(minLimit, limit * backoffRatio);
+          lastBackoffAt = clock.getAsLong();
+        }
+      } else if (inFlight + 1 >= (int) limit / 2) {
+        limit = Math.min(maxLimit, limit + 1 / limit);
+      }
+      if (outcome == Outcome.OVERLOADED) {
+        consecutiveFailures++;
+        if (breaker == BreakerState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+          if (breaker != BreakerState.OPEN) {
+            LOGGER.warn("Fail: Database circuit breaker opened after " + consecutiveFailures
+                + " failures");
+          }
+          breaker = BreakerState.OPEN;
+          openedAt = clock.getAsLong();
+          rejected.addAll(queue);
+          queue.clear();
+        }
+      } else {
+        consecutiveFailures = 0;
+        if (breaker == BreakerState.HALF_OPEN) {
+          LOGGER.info("Info: Database circuit breaker closed");
+          breaker = BreakerState.CLOSED;
+        }
+      }
+      while (breaker == BreakerState.CLOSED && !queue.isEmpty() && inFlight < (int) limit) {
+        Pending pending = queue.pollFirst();
+        pending.permit = admit();
+        admitted.add(pending);
+      }
+    }
+    for (Pending pending : rejected) {
+      reject(pending.rejected, Rejection.BREAKER);
+    }
+    for (Pending pending : admitted) {
+      pending.request.accept(pending.permit);
+    }
+  }
+
+  private void reject(Consumer<Rejection> rejected, Rejection rejection) {
+    (rejection == Rejection.LIMIT ? limitRejections : breakerRejections).increment();
+    rejected.accept(rejection);
+  }
+
+  private enum Outcome {
+    SUCCEEDED, OVERLOADED
+  }
+
+  /** Admission of a single request. */
+  public final class Permit {
+
+    private final long startedAt;
+    private boolean completed;
+
+    private Permit(long startedAt) {
+      this.startedAt = startedAt;
+    }
+
+    /** The request was answered by elasticsearch, including errors of the query itself. */
+    public void succeeded() {
+      release(Outcome.SUCCEEDED);
+    }
+
+    /** The request failed because elasticsearch is unavailable or overloaded. */
+    public void overloaded() {
+      release(Outcome.OVERLOADED);
+    }
+
+    private void release(Outcome outcome) {
+      synchronized (RequestLimiter.this) {
+        if (completed) {
+          return;
+        }
+        completed = true;
+      }
+      complete(this, outcome);
+    }
+  }
+
+  private static final class Pending {
+
+    private final Consumer<Permit> request;
+    private final Consumer<Rejection> rejected;
+    private Permit permit;
+
+    private Pending(Consumer<Permit> request, Consumer<Rejection> rejected) {
+      this.request = request;
+      this.rejected = rejected;
+    }
+  }
+}
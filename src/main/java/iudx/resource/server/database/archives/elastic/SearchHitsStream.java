@@ -0,0 +1,251 @@
+package iudx.resource.server.database.archives.elastic;
+
+import static iudx.resource.server.database.archives.Constants.ERROR_TYPE;
+import static iudx.resource.server.database.archives.Constants.HITS;
+import static iudx.resource.server.database.archives.Constants.PARAM_CURSOR;
+import static iudx.resource.server.database.archives.Constants.PIT_ID;
+import static iudx.resource.server.database.archives.Constants.RELATION_EQ;
+import static iudx.resource.server.database.archives.Constants.RELATION_KEY;
+import static iudx.resource.server.database.archives.Constants.RESULTS;
+import static iudx.resource.server.database.archives.Constants.SORT_KEY;
+import static iudx.resource.server.database.archives.Constants.SOURCE_FILTER_KEY;
+import static iudx.resource.server.database.archives.Constants.SUCCESS;
+import static iudx.resource.server.database.archives.Constants.TITLE;
+import static iudx.resource.server.database.archives.Constants.TOTAL_HITS;
+import static iudx.resource.server.database.archives.Constants.TOTAL_HITS_RELATION;
+import static iudx.resource.server.database.archives.Constants.TOTAL_KEY;
+import static iudx.resource.server.database.archives.Constants.VALUE;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.JsonEvent;
+import io.vertx.core.parsetools.JsonParser;
+import io.vertx.core.streams.ReadStream;
+import iudx.resource.server.database.archives.SearchCursor;
+
+/**
+ * Turns an elasticsearch search response into the serialized database response while it is being
+ * received.
+ * <p>
+ * Only one hit is decoded at a time, the <code>_source</code> of the hits are appended to a chunk
+ * which is emitted once it reaches the configured size, so the memory held per request is bounded
+ * by the chunk size rather than by the number of hits. Flow control is delegated to the underlying
+ * parser and therefore to the elasticsearch connection.
+ * </p>
+ * <p>
+ * The response is read up to the start of the hits as soon as the stream is created, so
+ * <code>hits.total</code> is known once {@link #ready()} completes and before anything is written
+ * to the consumer. When the page is full the sort values of the last hit are added to the trailer
+ * as a pagination cursor.
+ * </p>
+ */
+public class SearchHitsStream implements ReadStream<Buffer> {
+
+  private static final String RESPONSE_PREFIX = "{\"" + ERROR_TYPE + "\":200,\"" + TITLE + "\":\""
+      + SUCCESS + "\",\"" + RESULTS + "\":[";
+
+  private final JsonParser parser;
+  private final JsonObject trailer;
+  private final int pageSize;
+  private final int chunkSize;
+  private final Promise<SearchHitsStream> ready = Promise.promise();
+
+  private Buffer chunk;
+  private int depth;
+  private boolean inHits;
+  private boolean inTotal;
+  private boolean firstHit = true;
+  private boolean flowing;
+  private boolean ended;
+  private int totalHits = -1;
+  private String totalHitsRelation = RELATION_EQ;
+  private int hitCount;
+  private JsonArray lastSort;
+  private String pitId;
+
+  private Handler<Buffer> dataHandler;
+  private Handler<Void> endHandler;
+  private Handler<Throwable> exceptionHandler;
+
+  SearchHitsStream(ReadStream<Buffer> source, JsonObject trailer, int pageSize, int chunkSize) {
+    this.trailer = trailer == null ? new JsonObject() : trailer;
+    this.pageSize = pageSize;
+    this.chunkSize = chunkSize;
+    this.chunk = Buffer.buffer(chunkSize).appendString(RESPONSE_PREFIX);
+    this.parser = JsonParser.newParser(source);
+    parser.handler(this::handleEvent);
+    parser.endHandler(v -> handleEnd());
+    parser.exceptionHandler(this::handleException);
+  }
+
+  /**
+   * Completes once the response has been read up to the first hit, or entirely when there are no
+   * hits.
+   */
+  public Future<SearchHitsStream> ready() {
+    return ready.future();
+  }
+
+  /** <code>hits.total.value</code> of the response, -1 when it is not tracked. */
+  public int getTotalHits() {
+    return totalHits;
+  }
+
+  private void handleEvent(JsonEvent event) {
+    switch (event.type()) {
+      case START_OBJECT:
+        depth++;
+        inTotal = depth == 3 && TOTAL_KEY.equals(event.fieldName());
+        break;
+      case END_OBJECT:
+        depth--;
+        inTotal = false;
+        break;
+      case START_ARRAY:
+        // hits.hits, every element is small enough to be decoded as a whole
+        if (depth == 2 && HITS.equals(event.fieldName())) {
+          inHits = true;
+          parser.objectValueMode();
+          if (!flowing) {
+            parser.pause();
+          }
+          ready.tryComplete(this);
+        }
+        break;
+      case END_ARRAY:
+        if (inHits) {
+          inHits = false;
+          parser.objectEventMode();
+        }
+        break;
+      case VALUE:
+        if (inHits && event.value() instanceof JsonObject) {
+          JsonObject hit = event.objectValue();
+          lastSort = hit.getJsonArray(SORT_KEY);
+          appendHit(hit.getJsonObject(SOURCE_FILTER_KEY));
+        } else if (depth == 1 && PIT_ID.equals(event.fieldName())) {
+          pitId = event.stringValue();
+        } else if (inTotal && VALUE.equals(event.fieldName())) {
+          totalHits = event.integerValue();
+        } else if (inTotal && RELATION_KEY.equals(event.fieldName())) {
+          totalHitsRelation = event.stringValue();
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void appendHit(JsonObject source) {
+    if (source == null) {
+      return;
+    }
+    if (!firstHit) {
+      chunk.appendByte((byte) ',');
+    }
+    firstHit = false;
+    hitCount++;
+    chunk.appendBuffer(source.toBuffer());
+    if (chunk.length() >= chunkSize) {
+      Buffer full = chunk;
+      chunk = Buffer.buffer(chunkSize);
+      emit(full);
+    }
+  }
+
+  private void handleEnd() {
+    ended = true;
+    ready.tryComplete(this);
+    if (flowing) {
+      finish();
+    }
+  }
+
+  private void finish() {
+    if (chunk == null) {
+      return;
+    }
+    if (totalHits >= 0) {
+      trailer.put(TOTAL_HITS, totalHits);
+      if (!RELATION_EQ.equalsIgnoreCase(totalHitsRelation)) {
+        trailer.put(TOTAL_HITS_RELATION, totalHitsRelation);
+      }
+    }
+    if (pageSize > 0 && hitCount == pageSize && lastSort != null) {
+      trailer.put(PARAM_CURSOR, new SearchCursor(lastSort, pitId).encode());
+    }
+    chunk.appendByte((byte) ']');
+    if (trailer.isEmpty()) {
+      chunk.appendByte((byte) '}');
+    } else {
+      chunk.appendByte((byte) ',').appendString(trailer.encode().substring(1));
+    }
+    Buffer last = chunk;
+    chunk = null;
+    emit(last);
+    Handler<Void> handler = endHandler;
+    if (handler != null) {
+      handler.handle(null);
+    }
+  }
+
+  private void handleException(Throwable cause) {
+    chunk = null;
+    ready.tryFail(cause);
+    Handler<Throwable> handler = exceptionHandler;
+    if (handler != null) {
+      handler.handle(cause);
+    }
+  }
+
+  private void emit(Buffer buffer) {
+    Handler<Buffer> handler = dataHandler;
+    if (handler != null) {
+      handler.handle(buffer);
+    }
+  }
+
+  @Override
+  public SearchHitsStream exceptionHandler(Handler<Throwable> handler) {
+    this.exceptionHandler = handler;
+    return this;
+  }
+
+  @Override
+  public SearchHitsStream handler(Handler<Buffer> handler) {
+    this.dataHandler = handler;
+    return this;
+  }
+
+  @Override
+  public SearchHitsStream pause() {
+    flowing = false;
+    parser.pause();
+    return this;
+  }
+
+  @Override
+  public SearchHitsStream resume() {
+    return fetch(Long.MAX_VALUE);
+  }
+
+  @Override
+  public SearchHitsStream fetch(long amount) {
+    flowing = true;
+    if (ended) {
+      finish();
+    } else {
+      parser.fetch(amount);
+    }
+    return this;
+  }
+
+  @Override
+  public SearchHitsStream endHandler(Handler<Void> endHandler) {
+    this.endHandler = endHandler;
+    return this;
+  }
+}
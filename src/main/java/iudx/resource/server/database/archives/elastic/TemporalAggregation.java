@@ -0,0 +1,92 @@
+package iudx.resource.server.database.archives.elastic;
+
+import static iudx.resource.server.database.archives.Constants.AGGS_KEY;
+import static iudx.resource.server.database.archives.Constants.BUCKETS_AGG;
+import static iudx.resource.server.database.archives.Constants.COUNT;
+import static iudx.resource.server.database.archives.Constants.DATE_HISTOGRAM;
+import static iudx.resource.server.database.archives.Constants.DOC_COUNT;
+import static iudx.resource.server.database.archives.Constants.FIELD_KEY;
+import static iudx.resource.server.database.archives.Constants.FIXED_INTERVAL;
+import static iudx.resource.server.database.archives.Constants.KEY_AS_STRING;
+import static iudx.resource.server.database.archives.Constants.SIZE_KEY;
+import static iudx.resource.server.database.archives.Constants.TIME_FIELD_DB;
+import static iudx.resource.server.database.archives.Constants.TRACK_TOTAL_HITS;
+import static iudx.resource.server.database.archives.Constants.VALUE;
+import static iudx.resource.server.database.archives.Constants.VALUE_COUNT;
+import java.util.List;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Temporal aggregation of a search, the documents of the temporal window are summarized in
+ * buckets of a fixed interval.
+ * <p>
+ * The search is sent as a <code>date_histogram</code> on observationDateTime with a metric
+ * sub-aggregation for every attribute and method, and no hits, so the size of a response depends
+ * on the number of buckets only.
+ * </p>
+ */
+public final class TemporalAggregation {
+
+  private final String interval;
+  private final List<String> methods;
+  private final List<String> attrs;
+
+  TemporalAggregation(String interval, List<String> methods, List<String> attrs) {
+    this.interval = interval;
+    this.methods = methods;
+    this.attrs = attrs;
+  }
+
+  /** Fields added to the search body next to the query. */
+  public JsonObject searchPage() {
+    JsonObject metrics = new JsonObject();
+    for (String attr : attrs) {
+      for (String method : methods) {
+        String type = COUNT.equals(method) ? VALUE_COUNT : method;
+        metrics.put(metricName(attr, method),
+            new JsonObject().put(type, new JsonObject().put(FIELD_KEY, attr)));
+      }
+    }
+    JsonObject histogram = new JsonObject()
+        .put(DATE_HISTOGRAM, new JsonObject()
+            .put(FIELD_KEY, TIME_FIELD_DB)
+            .put(FIXED_INTERVAL, interval))
+        .put(AGGS_KEY, metrics);
+    return new JsonObject()
+        .put(SIZE_KEY, 0)
+        .put(TRACK_TOTAL_HITS, false)
+        .put(AGGS_KEY, new JsonObject().put(BUCKETS_AGG, histogram));
+  }
+
+  /**
+   * Results of the aggregation, one per bucket with the number of documents in the bucket and the
+   * value of every method per attribute.
+   *
+   * @param buckets buckets of the <code>date_histogram</code>
+   * @return results in the order of the buckets
+   */
+  public JsonArray toResults(JsonArray buckets) {
+    JsonArray results = new JsonArray();
+    for (Object entry : buckets) {
+      JsonObject bucket = (JsonObject) entry;
+      JsonObject result = new JsonObject()
+          .put(TIME_FIELD_DB, bucket.getString(KEY_AS_STRING))
+          .put(COUNT, bucket.getLong(DOC_COUNT, 0L));
+      for (String attr : attrs) {
+        JsonObject values = new JsonObject();
+        for (String method : methods) {
+          JsonObject metric = bucket.getJsonObject(metricName(attr, method), new JsonObject());
+          values.put(method, metric.getValue(VALUE));
+        }
+        result.put(attr, values);
+      }
+      results.add(result);
+    }
+    return results;
+  }
+
+  private static String metricName(String attr, String method) {
+    return attr + "_" + method;
+  }
+}
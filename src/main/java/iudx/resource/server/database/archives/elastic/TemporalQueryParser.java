@@ -7,11 +7,13 @@ import static iudx.resource.server.database.archives.Constants.END_TIME;
 import static iudx.resource.server.database.archives.Constants.REQ_TIMEREL;
 import static iudx.resource.server.database.archives.Constants.TIME_KEY;
 
+import static iudx.resource.server.database.archives.Constants.TIME_FIELD_DB;
+
+import java.io.IOException;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeParseException;
 
-import org.elasticsearch.index.query.BoolQueryBuilder;
-import org.elasticsearch.index.query.QueryBuilders;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import io.vertx.core.json.JsonObject;
 import iudx.resource.server.database.archives.elastic.exception.ESQueryDecodeException;
@@ -19,16 +21,14 @@ import iudx.resource.server.database.archives.elastic.exception.ESQueryDecodeExc
 public class TemporalQueryParser implements QueryParser {
 
 
-  private BoolQueryBuilder builder;
   private JsonObject json;
 
-  public TemporalQueryParser(BoolQueryBuilder builder, JsonObject json) {
-    this.builder = builder;
+  public TemporalQueryParser(JsonObject json) {
     this.json = json;
   }
 
   @Override
-  public BoolQueryBuilder parse() {
+  public void writeFilters(JsonGenerator generator) throws IOException {
 
     String timeRelation = json.getString(REQ_TIMEREL);
     String time = json.getString(TIME_KEY);
@@ -75,12 +75,8 @@ public class TemporalQueryParser implements QueryParser {
       throw new ESQueryDecodeException("exception while parsing date/time");
     }
 
-    builder
-        .filter(QueryBuilders.rangeQuery("observationDateTime")
-            .lte(endTime)
-            .gte(startTime));
-
-    return builder;
+    QueryClauses.range(generator, TIME_FIELD_DB, QueryClauses.LTE, endTime, QueryClauses.GTE,
+        startTime);
   }
 
 }
@@ -0,0 +1,129 @@
+package iudx.resource.server.database.archives.elastic;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Format of the request bodies sent to and the responses read from elasticsearch.
+ * <p>
+ * The binary formats skip the text tokenizing and number formatting of JSON on both sides. A
+ * response is always read in the format named by its <code>Content-Type</code>, so a response
+ * which is returned as JSON anyway is still read.
+ * </p>
+ */
+public enum WireFormat {
+
+  JSON("application/json", new JsonFactory()),
+  SMILE("application/smile", new SmileFactory()),
+  CBOR("application/cbor", new CBORFactory());
+
+  private final String mimeType;
+  private final ContentType contentType;
+  private final JsonFactory factory;
+  private final ObjectMapper mapper;
+  private final RequestOptions options;
+
+  WireFormat(String mimeType, JsonFactory factory) {
+    this.mimeType = mimeType;
+    this.contentType = ContentType.create(mimeType);
+    this.factory = factory;
+    this.mapper = new ObjectMapper(factory);
+    this.options = "application/json".equals(mimeType) ? RequestOptions.DEFAULT
+        : RequestOptions.DEFAULT.toBuilder().addHeader(HttpHeaders.ACCEPT, mimeType).build();
+  }
+
+  /**
+   * Format of a name in the configuration.
+   *
+   * @param name <code>json</code>, <code>smile</code> or <code>cbor</code>
+   * @return the format, JSON when the name is not known
+   */
+  public static WireFormat of(String name) {
+    for (WireFormat format : values()) {
+      if (format.name().equalsIgnoreCase(name)) {
+        return format;
+      }
+    }
+    return JSON;
+  }
+
+  /**
+   * Format of a response body.
+   *
+   * @param contentType <code>Content-Type</code> of the response, may be null
+   * @return the format, JSON when the content type is not a binary format
+   */
+  public static WireFormat forContentType(String contentType) {
+    if (contentType != null) {
+      String type = contentType.trim().toLowerCase(Locale.ROOT);
+      for (WireFormat format : values()) {
+        if (type.startsWith(format.mimeType)) {
+          return format;
+        }
+      }
+    }
+    return JSON;
+  }
+
+  /** Asks for the response of a request in this format. */
+  void accept(Request request) {
+    request.setOptions(options);
+  }
+
+  /**
+   * Request body in this format.
+   *
+   * @param json body serialized as JSON
+   * @return the body, transcoded when this is a binary format
+   */
+  HttpEntity entity(Buffer json) {
+    if (this == JSON) {
+      return new NByteArrayEntity(json.getBytes(), contentType);
+    }
+    ByteArrayBuilder body = new ByteArrayBuilder(json.length());
+    try (JsonParser parser = JSON.factory.createParser(json.getBytes());
+        JsonGenerator generator = factory.createGenerator(body)) {
+      parser.nextToken();
+      generator.copyCurrentStructure(parser);
+    } catch (IOException e) {
+      return JSON.entity(json);
+    }
+    return new NByteArrayEntity(body.toByteArray(), contentType);
+  }
+
+  /**
+   * Reads a response body.
+   *
+   * @param body response body in this format
+   * @return the body as a JsonObject
+   * @throws DecodeException when the body is not an object in this format
+   */
+  @SuppressWarnings("unchecked")
+  public JsonObject read(byte[] body) {
+    if (this == JSON) {
+      return new JsonObject(Buffer.buffer(body));
+    }
+    try {
+      return new JsonObject(mapper.readValue(body, Map.class));
+    } catch (IOException | RuntimeException e) {
+      throw new DecodeException("Failed to decode " + name() + ":" + e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package iudx.resource.server.database.export;
+
+public class Constants {
+
+  public static final String JOB_ID = "jobId";
+  public static final String USER_ID = "userId";
+  public static final String STATUS = "status";
+  public static final String FORMAT = "format";
+  public static final String CREATED_AT = "createdAt";
+  public static final String COMPLETED_AT = "completedAt";
+  public static final String RECORDS = "records";
+  public static final String FILE_SIZE = "size";
+
+  public static final String JOB_QUEUED = "queued";
+  public static final String JOB_RUNNING = "running";
+  public static final String JOB_COMPLETED = "completed";
+  public static final String JOB_FAILED = "failed";
+
+  public static final String STATUS_FILE_SUFFIX = ".json";
+  public static final String PART_FILE_SUFFIX = ".part";
+  public static final String JOB_ID_REGEX =
+      "^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$";
+
+  public static final String EXPORT_WORKER_POOL = "iudx-rs-export";
+  public static final String EXPORT_JOBS = "iudx.rs.export.jobs";
+  public static final String DEFAULT_SCROLL_KEEP_ALIVE = "2m";
+
+  public static final String INVALID_EXPORT_ID = "Export is supported for a single valid id";
+  public static final String INVALID_FORMAT = "Invalid export format";
+  public static final String TOO_MANY_JOBS = "Too many export jobs running, retry later";
+  public static final String JOB_NOT_FOUND = "Export job not found";
+}
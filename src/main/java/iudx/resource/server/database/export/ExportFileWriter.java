@@ -0,0 +1,128 @@
+package iudx.resource.server.database.export;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Writes the records of an export into a gzip compressed file.
+ * <p>
+ * Every slice of an export is written into a part file of its own. A gzip file may consist of
+ * several compressed members, so the part files are joined into the export file by appending them
+ * as they are, without decompressing them again.
+ * </p>
+ */
+final class ExportFileWriter implements Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Writer out;
+  private final ExportFormat format;
+  private final List<String> columns;
+  private long records;
+
+  /**
+   * Creates the file, or replaces an existing one.
+   *
+   * @param path file to write
+   * @param format format of the records
+   * @param columns columns of a csv export
+   * @param header whether the csv header row is written, only the first part file has one
+   * @throws IOException if the file can not be written
+   */
+  ExportFileWriter(Path path, ExportFormat format, List<String> columns, boolean header)
+      throws IOException {
+    this.format = format;
+    this.columns = columns;
+    this.out = new BufferedWriter(new OutputStreamWriter(
+        new GZIPOutputStream(Files.newOutputStream(path), BUFFER_SIZE), StandardCharsets.UTF_8),
+        BUFFER_SIZE);
+    if (format == ExportFormat.CSV && header) {
+      writeRow(new JsonArray(columns));
+    }
+  }
+
+  void write(JsonObject record) throws IOException {
+    if (format == ExportFormat.CSV) {
+      JsonArray row = new JsonArray();
+      for (String column : columns) {
+        row.add(record.getValue(column));
+      }
+      writeRow(row);
+    } else {
+      out.write(record.encode());
+      out.write('\n');
+    }
+    records++;
+  }
+
+  long records() {
+    return records;
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  private void writeRow(JsonArray row) throws IOException {
+    for (int i = 0; i < row.size(); i++) {
+      if (i > 0) {
+        out.write(',');
+      }
+      out.write(toCell(row.getValue(i)));
+    }
+    out.write("\r\n");
+  }
+
+  /** Csv cell of a value, nested objects and arrays are written as json. */
+  static String toCell(Object value) {
+    if (value == null) {
+      return "";
+    }
+    String cell = value instanceof JsonObject || value instanceof JsonArray
+        ? value.toString()
+        : String.valueOf(value);
+    if (cell.indexOf(',') < 0 && cell.indexOf('"') < 0 && cell.indexOf('\n') < 0
+        && cell.indexOf('\r') < 0) {
+      return cell;
+    }
+    return '"' + cell.replace("\"", "\"\"") + '"';
+  }
+
+  /**
+   * Appends the part files to the export file in their order and deletes them.
+   *
+   * @param parts part files
+   * @param target export file
+   * @return size of the export file
+   * @throws IOException if a file can not be read or written
+   */
+  static long join(List<Path> parts, Path target) throws IOException {
+    try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      for (Path part : parts) {
+        try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+          long position = 0;
+          long size = in.size();
+          while (position < size) {
+            position += in.transferTo(position, size - position, out);
+          }
+        }
+        Files.delete(part);
+      }
+      return out.size();
+    }
+  }
+}
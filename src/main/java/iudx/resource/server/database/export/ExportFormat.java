@@ -0,0 +1,48 @@
+package iudx.resource.server.database.export;
+
+import java.util.stream.Stream;
+
+/**
+ * File formats of an export. Export files are always gzip compressed.
+ */
+public enum ExportFormat {
+  NDJSON("ndjson", "application/x-ndjson"),
+  CSV("csv", "text/csv");
+
+  private final String format;
+  private final String contentType;
+
+  ExportFormat(String format, String contentType) {
+    this.format = format;
+    this.contentType = contentType;
+  }
+
+  public String getFormat() {
+    return format;
+  }
+
+  /** Content type of the uncompressed records. */
+  public String getContentType() {
+    return contentType;
+  }
+
+  public String fileName(String jobId) {
+    return jobId + "." + format + ".gz";
+  }
+
+  /**
+   * Format of an export request.
+   *
+   * @param format requested format, null for the default ndjson
+   * @return the format, or null when it is not supported
+   */
+  public static ExportFormat fromFormat(String format) {
+    if (format == null) {
+      return NDJSON;
+    }
+    return Stream.of(values())
+        .filter(v -> v.format.equalsIgnoreCase(format))
+        .findAny()
+        .orElse(null);
+  }
+}
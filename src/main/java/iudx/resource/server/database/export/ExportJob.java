@@ -0,0 +1,158 @@
+package iudx.resource.server.database.export;
+
+import static iudx.resource.server.database.archives.Constants.DOC_SORT;
+import static iudx.resource.server.database.archives.Constants.HITS;
+import static iudx.resource.server.database.archives.Constants.ID;
+import static iudx.resource.server.database.archives.Constants.SCROLL_ID;
+import static iudx.resource.server.database.archives.Constants.SIZE_KEY;
+import static iudx.resource.server.database.archives.Constants.SLICE_KEY;
+import static iudx.resource.server.database.archives.Constants.SLICE_MAX;
+import static iudx.resource.server.database.archives.Constants.SORT_KEY;
+import static iudx.resource.server.database.archives.Constants.SOURCE_FILTER_KEY;
+import static iudx.resource.server.database.export.Constants.PART_FILE_SUFFIX;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.database.archives.elastic.ElasticClient;
+import iudx.resource.server.database.archives.elastic.ElasticQuery;
+
+/**
+ * A bulk export of the hits of a query.
+ * <p>
+ * The hits are read with a sliced scroll, every slice can be read in parallel and is written to a
+ * part file of its own. The methods of a job block the calling thread, they are run on the worker
+ * pool of the exports.
+ * </p>
+ */
+final class ExportJob {
+
+  private final String jobId;
+  private final ElasticClient client;
+  private final String index;
+  private final ElasticQuery query;
+  private final ExportFormat format;
+  private final Path directory;
+  private final int slices;
+  private final int batchSize;
+  private final String keepAlive;
+  private List<String> columns;
+  private JsonObject firstPage;
+
+  ExportJob(String jobId, ElasticClient client, String index, ElasticQuery query,
+      ExportFormat format, List<String> columns, Path directory, JsonObject config) {
+    this.jobId = jobId;
+    this.client = client;
+    this.index = index;
+    this.query = query;
+    this.format = format;
+    this.columns = columns;
+    this.directory = directory;
+    this.slices = Math.max(1, config.getInteger("exportSlices", 4));
+    this.batchSize = config.getInteger("exportBatchSize", 5000);
+    this.keepAlive =
+        config.getString("exportScrollKeepAlive", Constants.DEFAULT_SCROLL_KEEP_ALIVE);
+  }
+
+  String getJobId() {
+    return jobId;
+  }
+
+  int getSlices() {
+    return slices;
+  }
+
+  Path getFile() {
+    return directory.resolve(format.fileName(jobId));
+  }
+
+  List<Path> getParts() {
+    List<Path> parts = new ArrayList<>(slices);
+    for (int slice = 0; slice < slices; slice++) {
+      parts.add(directory.resolve(jobId + PART_FILE_SUFFIX + slice));
+    }
+    return parts;
+  }
+
+  /**
+   * Columns of a csv export. Without a response filter the columns are taken from the first hit,
+   * the first page of the first slice is kept and written by {@link #exportSlice(int)}.
+   *
+   * @throws IOException if the hits can not be read
+   */
+  void prepare() throws IOException {
+    if (format != ExportFormat.CSV || columns != null) {
+      return;
+    }
+    columns = new ArrayList<>();
+    firstPage = client.openScroll(index, query.searchBody(page(0)), keepAlive);
+    JsonArray hits = getHits(firstPage);
+    if (!hits.isEmpty()) {
+      columns.addAll(hits.getJsonObject(0).getJsonObject(SOURCE_FILTER_KEY).fieldNames());
+    }
+  }
+
+  /**
+   * Scrolls through one slice of the hits and writes them to its part file.
+   *
+   * @param slice slice to read
+   * @return number of records written
+   * @throws IOException if the hits can not be read or written
+   */
+  long exportSlice(int slice) throws IOException {
+    String scrollId = null;
+    try (ExportFileWriter writer =
+        new ExportFileWriter(getParts().get(slice), format, columns, slice == 0)) {
+      JsonObject response;
+      if (slice == 0 && firstPage != null) {
+        response = firstPage;
+        firstPage = null;
+      } else {
+        response = client.openScroll(index, query.searchBody(page(slice)), keepAlive);
+      }
+      while (true) {
+        scrollId = response.getString(SCROLL_ID, scrollId);
+        JsonArray hits = getHits(response);
+        if (hits.isEmpty()) {
+          break;
+        }
+        for (Object hit : hits) {
+          writer.write(((JsonObject) hit).getJsonObject(SOURCE_FILTER_KEY));
+        }
+        response = client.scroll(scrollId, keepAlive);
+      }
+      return writer.records();
+    } finally {
+      if (scrollId != null) {
+        client.clearScroll(scrollId);
+      }
+    }
+  }
+
+  /**
+   * Joins the part files into the export file.
+   *
+   * @return size of the export file
+   * @throws IOException if the files can not be read or written
+   */
+  long complete() throws IOException {
+    return ExportFileWriter.join(getParts(), getFile());
+  }
+
+  /** Size, order and slice of the pages of a slice. */
+  private JsonObject page(int slice) {
+    JsonObject page = new JsonObject()
+        .put(SIZE_KEY, batchSize)
+        .put(SORT_KEY, new JsonArray().add(DOC_SORT));
+    if (slices > 1) {
+      page.put(SLICE_KEY, new JsonObject().put(ID, slice).put(SLICE_MAX, slices));
+    }
+    return page;
+  }
+
+  private JsonArray getHits(JsonObject response) {
+    return response.getJsonObject(HITS, new JsonObject()).getJsonArray(HITS, new JsonArray());
+  }
+}
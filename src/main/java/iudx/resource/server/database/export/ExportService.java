@@ -0,0 +1,59 @@
+package iudx.resource.server.database.export;
+
+import io.vertx.codegen.annotations.Fluent;
+import io.vertx.codegen.annotations.GenIgnore;
+import io.vertx.codegen.annotations.ProxyGen;
+import io.vertx.codegen.annotations.VertxGen;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * The Export Service.
+ * <h1>Export Service</h1>
+ * <p>
+ * The Export Service in the IUDX Resource Server runs bulk exports of the archived data of a
+ * resource in the background, and writes them to compressed files which are downloaded once the
+ * export has completed.
+ * </p>
+ *
+ * @see io.vertx.codegen.annotations.ProxyGen
+ * @see io.vertx.codegen.annotations.VertxGen
+ */
+
+@VertxGen
+@ProxyGen
+public interface ExportService {
+
+  /**
+   * The submitJob queues the export of the hits of a query.
+   *
+   * @param request query json, with the <code>userId</code> of the requester and the
+   *        <code>format</code> of the export
+   * @param handler which is a Request Handler, returns the id of the job
+   * @return ExportService which is a Service
+   */
+
+  @Fluent
+  ExportService submitJob(JsonObject request, Handler<AsyncResult<JsonObject>> handler);
+
+  /**
+   * The getJobStatus returns the status of an export job submitted by the user: its id, status,
+   * format, records, size, detail and timestamps.
+   *
+   * @param jobId id of the job
+   * @param userId id of the user requesting the status
+   * @param handler which is a Request Handler
+   * @return ExportService which is a Service
+   */
+
+  @Fluent
+  ExportService getJobStatus(String jobId, String userId,
+      Handler<AsyncResult<JsonObject>> handler);
+
+  @GenIgnore
+  static ExportService createProxy(Vertx vertx, String address) {
+    return new ExportServiceVertxEBProxy(vertx, address);
+  }
+}
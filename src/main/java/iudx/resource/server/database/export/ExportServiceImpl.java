@@ -0,0 +1,390 @@
+package iudx.resource.server.database.export;
+
+import static iudx.resource.server.database.archives.Constants.DETAIL;
+import static iudx.resource.server.database.archives.Constants.FAILED;
+import static iudx.resource.server.database.archives.Constants.ID;
+import static iudx.resource.server.database.archives.Constants.RESPONSE_ATTRS;
+import static iudx.resource.server.database.archives.Constants.SEARCH_KEY;
+import static iudx.resource.server.database.archives.Constants.SUCCESS;
+import static iudx.resource.server.database.archives.Constants.TIME_LIMIT;
+import static iudx.resource.server.database.export.Constants.COMPLETED_AT;
+import static iudx.resource.server.database.export.Constants.CREATED_AT;
+import static iudx.resource.server.database.export.Constants.EXPORT_JOBS;
+import static iudx.resource.server.database.export.Constants.EXPORT_WORKER_POOL;
+import static iudx.resource.server.database.export.Constants.FILE_SIZE;
+import static iudx.resource.server.database.export.Constants.FORMAT;
+import static iudx.resource.server.database.export.Constants.INVALID_EXPORT_ID;
+import static iudx.resource.server.database.export.Constants.INVALID_FORMAT;
+import static iudx.resource.server.database.export.Constants.JOB_COMPLETED;
+import static iudx.resource.server.database.export.Constants.JOB_FAILED;
+import static iudx.resource.server.database.export.Constants.JOB_ID;
+import static iudx.resource.server.database.export.Constants.JOB_ID_REGEX;
+import static iudx.resource.server.database.export.Constants.JOB_NOT_FOUND;
+import static iudx.resource.server.database.export.Constants.JOB_QUEUED;
+import static iudx.resource.server.database.export.Constants.JOB_RUNNING;
+import static iudx.resource.server.database.export.Constants.PART_FILE_SUFFIX;
+import static iudx.resource.server.database.export.Constants.RECORDS;
+import static iudx.resource.server.database.export.Constants.STATUS;
+import static iudx.resource.server.database.export.Constants.STATUS_FILE_SUFFIX;
+import static iudx.resource.server.database.export.Constants.TOO_MANY_JOBS;
+import static iudx.resource.server.database.export.Constants.USER_ID;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.file.CopyOptions;
+import io.vertx.core.file.FileSystem;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import iudx.resource.server.database.archives.ResponseBuilder;
+import iudx.resource.server.database.archives.elastic.ElasticClient;
+import iudx.resource.server.database.archives.elastic.ElasticQuery;
+import iudx.resource.server.database.archives.elastic.QueryDecoder;
+
+/**
+ * The Export Service Implementation.
+ * <h1>Export Service Implementation</h1>
+ * <p>
+ * Jobs are run on a worker pool of their own, the slices of a job are read in parallel. The status
+ * of a job is kept in a json file next to its export file, so any instance of the verticle on the
+ * same host can report it. The number of jobs accepted is shared by the instances of the verticle
+ * in a vertx instance, the first of them marks the jobs left queued or running by a previous run as
+ * failed.
+ * </p>
+ * <p>
+ * The export files are named after their job and format only, the api server sends them from its
+ * own <code>exportDirectory</code>. Both verticles have to be configured with the same directory,
+ * on the same host or on a shared volume.
+ * </p>
+ */
+public class ExportServiceImpl implements ExportService {
+
+  private static final Logger LOGGER = LogManager.getLogger(ExportServiceImpl.class);
+  private static final List<String> REPORTED_FIELDS = List.of(JOB_ID, STATUS, FORMAT, RECORDS,
+      FILE_SIZE, DETAIL, CREATED_AT, COMPLETED_AT);
+
+  private final Vertx vertx;
+  private final ElasticClient client;
+  private final JsonObject config;
+  private final Path directory;
+  private final String timeLimit;
+  private final int maxJobs;
+  private final long retention;
+  private final WorkerExecutor executor;
+  private final QueryDecoder queryDecoder = new QueryDecoder();
+  private final AtomicInteger activeJobs;
+  private final long cleanupTimer;
+
+  /**
+   * Export service configured from the verticle configuration.
+   * <ul>
+   * <li><code>exportDirectory</code> directory the export files are written to</li>
+   * <li><code>exportSlices</code> number of slices of a job read in parallel</li>
+   * <li><code>exportBatchSize</code> number of hits read with each scroll request</li>
+   * <li><code>exportScrollKeepAlive</code> time a scroll is kept between two requests</li>
+   * <li><code>exportWorkerPoolSize</code> number of slices read at the same time over all
+   * jobs</li>
+   * <li><code>exportMaxJobs</code> number of jobs accepted at the same time over all instances of
+   * the verticle</li>
+   * <li><code>exportRetentionHours</code> hours a finished job is kept</li>
+   * </ul>
+   *
+   * @param vertx vertx instance
+   * @param client elastic client used for the exports only
+   * @param config configuration
+   */
+  public ExportServiceImpl(Vertx vertx, ElasticClient client, JsonObject config) {
+    this.vertx = vertx;
+    this.client = client;
+    this.config = config;
+    this.directory = Paths.get(config.getString("exportDirectory", "exports"));
+    this.timeLimit = config.getString(TIME_LIMIT);
+    this.maxJobs = config.getInteger("exportMaxJobs", 4);
+    this.retention = TimeUnit.HOURS.toMillis(config.getLong("exportRetentionHours", 24L));
+    this.executor = vertx.createSharedWorkerExecutor(EXPORT_WORKER_POOL,
+        config.getInteger("exportWorkerPoolSize", 8));
+    vertx.fileSystem().mkdirsBlocking(directory.toString());
+    LocalMap<String, ActiveJobs> shared = vertx.sharedData().getLocalMap(EXPORT_JOBS);
+    ActiveJobs created = new ActiveJobs();
+    ActiveJobs existing = shared.putIfAbsent(EXPORT_JOBS, created);
+    this.activeJobs = existing == null ? created.count : existing.count;
+    if (existing == null) {
+      failInterruptedJobs();
+    }
+    this.cleanupTimer =
+        vertx.setPeriodic(TimeUnit.MINUTES.toMillis(10), timerId -> deleteExpiredJobs());
+  }
+
+  @Override
+  public ExportService submitJob(JsonObject request, Handler<AsyncResult<JsonObject>> handler) {
+    LOGGER.trace("Info: submitJob;" + request.toString());
+
+    request.put(SEARCH_KEY, true);
+    request.put(TIME_LIMIT, timeLimit);
+
+    JsonArray ids = request.getJsonArray(ID);
+    if (ids == null || ids.size() != 1 || ids.getString(0).split("/").length != 5) {
+      fail(handler, 400, INVALID_EXPORT_ID);
+      return this;
+    }
+    ExportFormat format = ExportFormat.fromFormat(request.getString(FORMAT));
+    if (format == null) {
+      fail(handler, 400, INVALID_FORMAT);
+      return this;
+    }
+    ElasticQuery query;
+    try {
+      query = queryDecoder.getESquery(request);
+    } catch (Exception e) {
+      LOGGER.error("Fail: Query returned with an error: " + e.getMessage());
+      fail(handler, 400, e.getMessage());
+      return this;
+    }
+    if (activeJobs.incrementAndGet() > maxJobs) {
+      activeJobs.decrementAndGet();
+      fail(handler, 429, TOO_MANY_JOBS);
+      return this;
+    }
+
+    List<String> splitId = new LinkedList<>(Arrays.asList(ids.getString(0).split("/")));
+    splitId.remove(splitId.size() - 1);
+    JsonArray attrs = request.getJsonArray(RESPONSE_ATTRS);
+    List<String> columns = attrs == null ? null
+        : attrs.stream().map(Object::toString).collect(Collectors.toList());
+
+    String jobId = UUID.randomUUID().toString();
+    ExportJob job = new ExportJob(jobId, client, String.join("__", splitId), query, format,
+        columns, directory, config);
+    JsonObject status = new JsonObject()
+        .put(JOB_ID, jobId)
+        .put(USER_ID, request.getString(USER_ID))
+        .put(STATUS, JOB_QUEUED)
+        .put(FORMAT, format.getFormat())
+        .put(CREATED_AT, Instant.now().toString());
+
+    writeStatus(status).onComplete(statusHandler -> {
+      if (statusHandler.failed()) {
+        LOGGER.error("Fail: export job status;" + statusHandler.cause().getMessage());
+        activeJobs.decrementAndGet();
+        fail(handler, 500, statusHandler.cause().getMessage());
+        return;
+      }
+      LOGGER.info("Info: export job " + jobId + " queued");
+      handler.handle(Future.succeededFuture(new ResponseBuilder(SUCCESS).setTypeAndTitle(202)
+          .setMessage(new JsonArray().add(new JsonObject().put(JOB_ID, jobId)
+              .put(STATUS, JOB_QUEUED)))
+          .getResponse()));
+      run(job, status);
+    });
+    return this;
+  }
+
+  @Override
+  public ExportService getJobStatus(String jobId, String userId,
+      Handler<AsyncResult<JsonObject>> handler) {
+    // the id is part of a file name, anything but a job id is rejected
+    if (jobId == null || !jobId.matches(JOB_ID_REGEX)) {
+      fail(handler, 404, JOB_NOT_FOUND);
+      return this;
+    }
+    vertx.fileSystem().readFile(statusFile(jobId).toString(), readHandler -> {
+      if (readHandler.failed()) {
+        fail(handler, 404, JOB_NOT_FOUND);
+        return;
+      }
+      JsonObject status = readHandler.result().toJsonObject();
+      if (userId == null || !userId.equals(status.getString(USER_ID))) {
+        fail(handler, 404, JOB_NOT_FOUND);
+        return;
+      }
+      handler.handle(Future.succeededFuture(new ResponseBuilder(SUCCESS).setTypeAndTitle(200)
+          .setMessage(new JsonArray().add(reported(status))).getResponse()));
+    });
+    return this;
+  }
+
+  /** Fields of a status reported to the user, the owner and the files stay on the server. */
+  private static JsonObject reported(JsonObject status) {
+    JsonObject reported = new JsonObject();
+    for (String field : REPORTED_FIELDS) {
+      if (status.containsKey(field)) {
+        reported.put(field, status.getValue(field));
+      }
+    }
+    return reported;
+  }
+
+  /** Stops the cleanup of expired jobs and releases the worker pool. */
+  public void close() {
+    vertx.cancelTimer(cleanupTimer);
+    executor.close();
+  }
+
+  private void run(ExportJob job, JsonObject status) {
+    executor.<Void>executeBlocking(promise -> {
+      try {
+        job.prepare();
+        promise.complete();
+      } catch (IOException e) {
+        promise.fail(e);
+      }
+    }, false)
+        .compose(prepared -> writeStatus(status.put(STATUS, JOB_RUNNING)))
+        .compose(running -> {
+          @SuppressWarnings("rawtypes")
+          List<Future> slices = new ArrayList<>(job.getSlices());
+          for (int slice = 0; slice < job.getSlices(); slice++) {
+            int current = slice;
+            slices.add(executor.<Long>executeBlocking(promise -> {
+              try {
+                promise.complete(job.exportSlice(current));
+              } catch (IOException e) {
+                promise.fail(e);
+              }
+            }, false));
+          }
+          // join waits for every slice, so no part file is still written on a failure
+          return CompositeFuture.join(slices);
+        })
+        .compose(slices -> {
+          long records = 0;
+          for (int slice = 0; slice < slices.size(); slice++) {
+            records += slices.<Long>resultAt(slice);
+          }
+          status.put(RECORDS, records);
+          return executor.<Long>executeBlocking(promise -> {
+            try {
+              promise.complete(job.complete());
+            } catch (IOException e) {
+              promise.fail(e);
+            }
+          }, false);
+        })
+        .compose(size -> writeStatus(status
+            .put(STATUS, JOB_COMPLETED)
+            .put(FILE_SIZE, size)
+            .put(COMPLETED_AT, Instant.now().toString())))
+        .onComplete(jobHandler -> {
+          activeJobs.decrementAndGet();
+          if (jobHandler.succeeded()) {
+            LOGGER.info("Info: export job " + job.getJobId() + " completed");
+            return;
+          }
+          LOGGER.error("Fail: export job " + job.getJobId() + ";"
+              + jobHandler.cause().getMessage());
+          for (Path part : job.getParts()) {
+            vertx.fileSystem().delete(part.toString(), deleteHandler -> {
+            });
+          }
+          status.remove(RECORDS);
+          writeStatus(status
+              .put(STATUS, JOB_FAILED)
+              .put(DETAIL, "Export failed")
+              .put(COMPLETED_AT, Instant.now().toString()));
+        });
+  }
+
+  /** Writes the status of a job, replacing the previous status at once. */
+  private Future<Void> writeStatus(JsonObject status) {
+    FileSystem fileSystem = vertx.fileSystem();
+    String target = statusFile(status.getString(JOB_ID)).toString();
+    String temp = target + ".tmp";
+    return fileSystem.writeFile(temp, status.toBuffer())
+        .compose(written -> fileSystem.move(temp, target,
+            new CopyOptions().setReplaceExisting(true).setAtomicMove(true)));
+  }
+
+  private Path statusFile(String jobId) {
+    return directory.resolve(jobId + STATUS_FILE_SUFFIX);
+  }
+
+  /**
+   * Marks the jobs which were queued or running when the previous run stopped as failed, and deletes
+   * their part files. Blocks, it is only called while the verticle starts.
+   */
+  private void failInterruptedJobs() {
+    try (DirectoryStream<Path> statusFiles =
+        Files.newDirectoryStream(directory, "*" + STATUS_FILE_SUFFIX)) {
+      for (Path statusFile : statusFiles) {
+        JsonObject status = new JsonObject(new String(Files.readAllBytes(statusFile)));
+        String state = status.getString(STATUS);
+        if (!JOB_QUEUED.equals(state) && !JOB_RUNNING.equals(state)) {
+          continue;
+        }
+        String jobId = status.getString(JOB_ID);
+        try (DirectoryStream<Path> parts =
+            Files.newDirectoryStream(directory, jobId + PART_FILE_SUFFIX + "*")) {
+          for (Path part : parts) {
+            Files.deleteIfExists(part);
+          }
+        }
+        status.remove(RECORDS);
+        Files.write(statusFile, status
+            .put(STATUS, JOB_FAILED)
+            .put(DETAIL, "Export interrupted")
+            .put(COMPLETED_AT, Instant.now().toString())
+            .toBuffer().getBytes());
+        LOGGER.warn("Warning: export job " + jobId + " interrupted");
+      }
+    } catch (Exception e) {
+      LOGGER.error("Fail: export jobs interrupted;" + e.getMessage());
+    }
+  }
+
+  /** Deletes finished jobs, and their export files, once they are older than the retention. */
+  private void deleteExpiredJobs() {
+    executor.<Void>executeBlocking(promise -> {
+      long expiredBefore = System.currentTimeMillis() - retention;
+      try (DirectoryStream<Path> statusFiles =
+          Files.newDirectoryStream(directory, "*" + STATUS_FILE_SUFFIX)) {
+        for (Path statusFile : statusFiles) {
+          JsonObject status = new JsonObject(new String(Files.readAllBytes(statusFile)));
+          String completedAt = status.getString(COMPLETED_AT);
+          if (completedAt == null
+              || Instant.parse(completedAt).toEpochMilli() > expiredBefore) {
+            continue;
+          }
+          ExportFormat format = ExportFormat.fromFormat(status.getString(FORMAT));
+          if (format != null) {
+            Files.deleteIfExists(directory.resolve(format.fileName(status.getString(JOB_ID))));
+          }
+          Files.deleteIfExists(statusFile);
+          LOGGER.info("Info: export job " + status.getString(JOB_ID) + " expired");
+        }
+        promise.complete();
+      } catch (Exception e) {
+        promise.fail(e);
+      }
+    }, false).onFailure(e -> LOGGER.error("Fail: delete expired exports;" + e.getMessage()));
+  }
+
+  private void fail(Handler<AsyncResult<JsonObject>> handler, int statusCode, String message) {
+    handler.handle(Future.failedFuture(new ResponseBuilder(FAILED).setTypeAndTitle(statusCode)
+        .setMessage(message).getResponse().toString()));
+  }
+
+  /** Number of jobs accepted, shared by the instances of the verticle. */
+  private static final class ActiveJobs implements Shareable {
+    private final AtomicInteger count = new AtomicInteger();
+  }
+}
@@ -0,0 +1,50 @@
+package iudx.resource.server.database.export;
+
+import static iudx.resource.server.common.Constants.EXPORT_SERVICE_ADDRESS;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceBinder;
+import iudx.resource.server.database.archives.elastic.ElasticClient;
+import iudx.resource.server.database.archives.elastic.WireFormat;
+
+/**
+ * The Export Verticle.
+ * <h1>Export Verticle</h1>
+ * <p>
+ * The Export Verticle exposes the {@link iudx.resource.server.database.export.ExportService} over
+ * the Vert.x Event Bus. It is deployed as a worker verticle with an elasticsearch client of its
+ * own, so that bulk exports do not share connections or event loops with interactive queries.
+ * </p>
+ */
+
+public class ExportVerticle extends AbstractVerticle {
+
+  private ElasticClient client;
+  private ExportServiceImpl exportService;
+  private ServiceBinder binder;
+  private MessageConsumer<JsonObject> consumer;
+
+  @Override
+  public void start() throws Exception {
+
+    String databaseIP = config().getString("databaseIP");
+    int databasePort = config().getInteger("databasePort");
+    String user = config().getString("dbUser");
+    String password = config().getString("dbPassword");
+
+    client = new ElasticClient(databaseIP, databasePort, user, password)
+        .setWireFormat(WireFormat.of(config().getString("esWireFormat")));
+    exportService = new ExportServiceImpl(vertx, client, config());
+
+    binder = new ServiceBinder(vertx);
+    consumer =
+        binder.setAddress(EXPORT_SERVICE_ADDRESS).register(ExportService.class, exportService);
+  }
+
+  @Override
+  public void stop() {
+    binder.unregister(consumer);
+    exportService.close();
+  }
+}
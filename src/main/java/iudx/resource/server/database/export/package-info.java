@@ -0,0 +1,6 @@
+@ModuleGen(groupPackage = "iudx.resource.server.database.export",
+    name = "iudx-resource-server-database-export")
+
+package iudx.resource.server.database.export;
+
+import io.vertx.codegen.annotations.ModuleGen;
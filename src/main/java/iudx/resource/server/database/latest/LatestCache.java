@@ -0,0 +1,198 @@
+package iudx.resource.server.database.latest;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Near-cache of the latest values read from Redis, keyed by the Redis key and path of an id.
+ * <p>
+ * The values of a resource group are only cached while the data published to the exchange of the
+ * group is watched. A publish drops the cached values of its id, and the values read from Redis
+ * are not cached until the publish has settled, the time the latest data is given to be written to
+ * Redis, so a value older than the last publish is not served. Values are also dropped after a time
+ * to live, in case publishes are missed.
+ * </p>
+ */
+final class LatestCache {
+
+  private static final String METRIC_PREFIX = "iudx.rs.latest.cache";
+
+  private final RedisCommandArgsBuilder argsBuilder = new RedisCommandArgsBuilder();
+  private final LongSupplier clock;
+  private final Predicate<String> watching;
+  private final int maxEntries;
+  private final long ttl;
+  private final long settle;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  // time of the last publish of a resource, of any resource of a group and of a whole group
+  private final LinkedHashMap<String, Long> published = new LinkedHashMap<>();
+  private final LinkedHashMap<String, Long> groupPublished = new LinkedHashMap<>();
+  private final LinkedHashMap<String, Long> groupWidePublished = new LinkedHashMap<>();
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Timer staleness;
+
+  /**
+   * Near-cache configured from the latest verticle configuration.
+   * <ul>
+   * <li><code>latestCacheMaxEntries</code> number of values kept</li>
+   * <li><code>latestCacheTtl</code> millis a value is kept for</li>
+   * <li><code>latestCacheSettle</code> millis after a publish its value is not cached for</li>
+   * </ul>
+   *
+   * @param config configuration
+   * @param registry registry the hit ratio and staleness are published to
+   * @param clock current time in millis
+   * @param watching whether the publishes to the exchange of a group are watched
+   */
+  LatestCache(JsonObject config, MeterRegistry registry, LongSupplier clock,
+      Predicate<String> watching) {
+    this.clock = clock;
+    this.watching = watching;
+    this.maxEntries = config.getInteger("latestCacheMaxEntries", 10000);
+    this.ttl = config.getLong("latestCacheTtl", 60000L);
+    this.settle = config.getLong("latestCacheSettle", 2000L);
+
+    hits = Counter.builder(METRIC_PREFIX + ".requests").tag("result", "hit").register(registry);
+    misses = Counter.builder(METRIC_PREFIX + ".requests").tag("result", "miss")
+        .register(registry);
+    staleness = Timer.builder(METRIC_PREFIX + ".staleness")
+        .description("age of the latest values served from the near-cache")
+        .register(registry);
+    Gauge.builder(METRIC_PREFIX + ".hit.ratio", hits, h -> {
+      double total = h.count() + misses.count();
+      return total == 0 ? 0 : h.count() / total;
+    }).register(registry);
+  }
+
+  /**
+   * Cached value of an id.
+   *
+   * @return a copy of the value, null when it is not cached
+   */
+  synchronized JsonObject get(RedisArgs args) {
+    Entry entry = entries.get(cacheKey(args));
+    long now = clock.getAsLong();
+    if (entry == null || now - entry.cachedAt > ttl) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    staleness.record(now - entry.cachedAt, TimeUnit.MILLISECONDS);
+    return entry.value.copy();
+  }
+
+  /**
+   * Start of a read of an id from Redis, to be passed to {@link #put}.
+   *
+   * @return time of the read, -1 when the value read is not to be cached
+   */
+  long readStarted(String id) {
+    return watching.test(exchange(id)) ? clock.getAsLong() : -1;
+  }
+
+  /**
+   * Caches a value read from Redis, unless it was published since the read started or not long
+   * enough before for the value read to be the published one.
+   */
+  synchronized void put(String id, RedisArgs args, JsonObject value, long readAt) {
+    if (readAt < 0 || value == null) {
+      return;
+    }
+    String exchange = exchange(id);
+    long lastPublished = exchange.equals(id) ? groupPublished.getOrDefault(id, Long.MIN_VALUE)
+        : Math.max(published.getOrDefault(id, Long.MIN_VALUE),
+            groupWidePublished.getOrDefault(exchange, Long.MIN_VALUE));
+    if (lastPublished != Long.MIN_VALUE && readAt < lastPublished + settle) {
+      return;
+    }
+    entries.put(cacheKey(args), new Entry(id, value.copy(), clock.getAsLong()));
+    if (entries.size() > maxEntries) {
+      entries.remove(entries.keySet().iterator().next());
+    }
+  }
+
+  /**
+   * Drops the values changed by a publish to an exchange.
+   *
+   * @param exchange exchange of a resource group
+   * @param routingKey routing key of the publish, the id of the resource published
+   */
+  synchronized void invalidate(String exchange, String routingKey) {
+    long now = clock.getAsLong();
+    prune(now);
+    touch(groupPublished, exchange, now);
+    remove(exchange);
+    if (routingKey != null && routingKey.startsWith(exchange + "/")) {
+      touch(published, routingKey, now);
+      remove(routingKey);
+    } else {
+      // not known which resource was published, all of the group are dropped
+      touch(groupWidePublished, exchange, now);
+      entries.values().removeIf(entry -> exchange.equals(exchange(entry.id)));
+    }
+  }
+
+  /** Drops all the values, when the publishes could not be watched. */
+  synchronized void clear() {
+    entries.clear();
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /** Exchange the data of an id is published to, the resource group of the id. */
+  static String exchange(String id) {
+    // a resource id has 5 segments, a resource group id 4
+    int segments = id.split("/").length;
+    return segments > 4 ? id.substring(0, id.lastIndexOf('/')) : id;
+  }
+
+  private void remove(String id) {
+    entries.remove(cacheKey(argsBuilder.getRedisCommandArgs(id, true)));
+    entries.remove(cacheKey(argsBuilder.getRedisCommandArgs(id, false)));
+  }
+
+  private static String cacheKey(RedisArgs args) {
+    return args.getKey() + " " + args.getPath();
+  }
+
+  private static void touch(LinkedHashMap<String, Long> times, String key, long now) {
+    times.remove(key);
+    times.put(key, now);
+  }
+
+  /** Publishes older than the settle time do not hold back caching any more. */
+  private void prune(long now) {
+    for (LinkedHashMap<String, Long> times : List.of(published, groupPublished,
+        groupWidePublished)) {
+      Iterator<Long> oldest = times.values().iterator();
+      while (oldest.hasNext() && oldest.next() + settle <= now) {
+        oldest.remove();
+      }
+    }
+  }
+
+  private static final class Entry {
+    private final String id;
+    private final JsonObject value;
+    private final long cachedAt;
+
+    private Entry(String id, JsonObject value, long cachedAt) {
+      this.id = id;
+      this.value = value;
+      this.cachedAt = cachedAt;
+    }
+  }
+}
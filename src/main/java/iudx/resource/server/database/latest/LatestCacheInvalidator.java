@@ -0,0 +1,102 @@
+package iudx.resource.server.database.latest;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import io.vertx.core.Future;
+import io.vertx.rabbitmq.QueueOptions;
+import io.vertx.rabbitmq.RabbitMQClient;
+import iudx.resource.server.databroker.listeners.RMQListeners;
+
+/**
+ * Watches the data published to the exchanges of the resource groups whose latest values are in
+ * the {@link LatestCache}, and drops the values a publish changes.
+ * <p>
+ * The publishes are consumed from a queue of the verticle instance, which is bound to the exchange
+ * of a group when a value of the group is first read. The values are dropped whenever the queue
+ * stops being consumed.
+ * </p>
+ */
+final class LatestCacheInvalidator implements RMQListeners {
+
+  private static final Logger LOGGER = LogManager.getLogger(LatestCacheInvalidator.class);
+
+  private final RabbitMQClient client;
+  private final String queue = "latest-cache." + UUID.randomUUID();
+  private final Set<String> bound = ConcurrentHashMap.newKeySet();
+  private final Set<String> binding = ConcurrentHashMap.newKeySet();
+  private final QueueOptions options =
+      new QueueOptions()
+          .setMaxInternalQueueSize(10000)
+          .setKeepMostRecent(true);
+
+  private LatestCache cache;
+  private volatile boolean consuming;
+
+  LatestCacheInvalidator(RabbitMQClient client) {
+    this.client = client;
+  }
+
+  void setCache(LatestCache cache) {
+    this.cache = cache;
+  }
+
+  @Override
+  public void start() {
+    client
+        .start()
+        .compose(started -> client.queueDeclare(queue, false, true, true))
+        .compose(declared -> client.basicConsumer(queue, options))
+        .onSuccess(rmqConsumer -> {
+          LOGGER.trace("starting Q listener for latest cache");
+          consuming = true;
+          rmqConsumer.handler(message -> cache.invalidate(message.envelope().getExchange(),
+              message.envelope().getRoutingKey()));
+          rmqConsumer.exceptionHandler(failure -> {
+            LOGGER.error("latest cache Q listener failed : " + failure.getMessage());
+            stopped();
+          });
+          rmqConsumer.endHandler(end -> stopped());
+        })
+        .onFailure(handler -> {
+          LOGGER.error("Rabbit client startup failed for latest cache.");
+        });
+  }
+
+  /**
+   * Whether the publishes to an exchange are watched, the exchange is bound to the queue when it
+   * is not yet.
+   *
+   * @param exchange exchange of a resource group
+   * @return true when the values of the group may be cached
+   */
+  boolean watching(String exchange) {
+    if (!consuming) {
+      return false;
+    }
+    if (bound.contains(exchange)) {
+      return true;
+    }
+    if (binding.add(exchange)) {
+      client.queueBind(queue, exchange, "#")
+          .onSuccess(bind -> bound.add(exchange))
+          .onFailure(failure -> LOGGER.debug("exchange " + exchange + " not watched : "
+              + failure.getMessage()))
+          .onComplete(bind -> binding.remove(exchange));
+    }
+    return false;
+  }
+
+  private void stopped() {
+    consuming = false;
+    bound.clear();
+    cache.clear();
+  }
+
+  Future<Void> stop() {
+    consuming = false;
+    return client.stop();
+  }
+}
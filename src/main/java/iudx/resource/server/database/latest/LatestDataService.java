@@ -37,6 +37,18 @@ public interface LatestDataService {
     @Fluent
     LatestDataService getLatestData(JsonObject request, Handler<AsyncResult<JsonObject>> handler);
 
+    /**
+     * The getGroupLatestData retrieves the latest data of all the resources of a resource group.
+     *
+     * @param request which is a JsonObject with the group id and the attrs to project on
+     * @param handler which is a Request Handler
+     * @return LatestDataService which is a Service
+     */
+
+    @Fluent
+    LatestDataService getGroupLatestData(JsonObject request,
+        Handler<AsyncResult<JsonObject>> handler);
+
 
     /**
      * The createProxy helps the code generation blocks to generate proxy code.
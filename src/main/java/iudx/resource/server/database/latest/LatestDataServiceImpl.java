@@ -5,16 +5,31 @@ import static iudx.resource.server.database.archives.Constants.EMPTY_RESOURCE_ID
 import static iudx.resource.server.database.archives.Constants.FAILED;
 import static iudx.resource.server.database.archives.Constants.ID;
 import static iudx.resource.server.database.archives.Constants.ID_NOT_FOUND;
+import static iudx.resource.server.database.archives.Constants.RESPONSE_ATTRS;
 import static iudx.resource.server.database.archives.Constants.SUCCESS;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.core.streams.ReadStream;
 import iudx.resource.server.cache.CacheService;
 import iudx.resource.server.cache.cacheImpl.CacheType;
 import iudx.resource.server.database.archives.ResponseBuilder;
@@ -31,19 +46,52 @@ import iudx.resource.server.database.archives.ResponseBuilder;
  * @since 2021-03-26
  */
 
-public class LatestDataServiceImpl implements LatestDataService {
+public class LatestDataServiceImpl implements LatestDataService, Shareable {
 
   RedisClient redisClient;
   private ResponseBuilder responseBuilder;
   JsonObject attributeList;
   private static final Logger LOGGER = LogManager.getLogger(LatestDataServiceImpl.class);
   // private RedisAPI redisAPI;
-  private RedisCommandArgsBuilder redisCmdBuilder = new RedisCommandArgsBuilder();
+  private final RedisCommandArgsBuilder redisCmdBuilder;
   private final CacheService cache;
+  private final LatestCache nearCache;
+  // Redis keys of the resources of a group, found by a scan of the key space
+  private final Cache<String, List<String>> groupKeys = CacheBuilder.newBuilder()
+      .maximumSize(1000).expireAfterWrite(GROUP_KEYS_TIMEOUT_MINUTES, TimeUnit.MINUTES).build();
+  private static final long GROUP_KEYS_TIMEOUT_MINUTES = 5;
+  private static final int GROUP_BATCH_SIZE = 200;
 
   public LatestDataServiceImpl(RedisClient client, final CacheService cacheService) {
+    this(client, cacheService, null);
+  }
+
+  /**
+   * LatestData service reading the latest values through a near-cache.
+   *
+   * @param client Redis client
+   * @param cacheService cache of the unique attributes
+   * @param nearCache near-cache of the latest values, null to always read from Redis
+   */
+  LatestDataServiceImpl(RedisClient client, final CacheService cacheService,
+      final LatestCache nearCache) {
+    this(client, cacheService, nearCache, new RedisCommandArgsBuilder());
+  }
+
+  /**
+   * LatestData service reading the latest values through a near-cache.
+   *
+   * @param client Redis client
+   * @param cacheService cache of the unique attributes
+   * @param nearCache near-cache of the latest values, null to always read from Redis
+   * @param redisCmdBuilder registry of the Redis keys and paths of the ids
+   */
+  LatestDataServiceImpl(RedisClient client, final CacheService cacheService,
+      final LatestCache nearCache, final RedisCommandArgsBuilder redisCmdBuilder) {
     this.redisClient = client;
     this.cache = cacheService;
+    this.nearCache = nearCache;
+    this.redisCmdBuilder = redisCmdBuilder;
   }
 
   /**
@@ -75,6 +123,12 @@ public class LatestDataServiceImpl implements LatestDataService {
       handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
       return null;
     }
+    if (request.getJsonArray(ID).size() > 1) {
+      List<String> ids = request.getJsonArray(ID).stream().map(Object::toString)
+          .collect(Collectors.toList());
+      getLatestValues(ids, handler);
+      return this;
+    }
     String id = request.getJsonArray(ID).getString(0);
 
     isUniqueAttrRecordExist(id).onComplete(uaHandler -> {
@@ -103,9 +157,20 @@ public class LatestDataServiceImpl implements LatestDataService {
 
     LOGGER.debug("key : " + args.getKey() + " path : " + args.getPath());
     JsonArray response = new JsonArray();
+    JsonObject cached = nearCache == null ? null : nearCache.get(args);
+    if (cached != null) {
+      response.addAll(extractValues(args.getKey(), cached, isUniqueAttrRecordExist));
+      responseBuilder = new ResponseBuilder(SUCCESS).setTypeAndTitle(200).setMessage(response);
+      handler.handle(Future.succeededFuture(responseBuilder.getResponse()));
+      return;
+    }
+    long readAt = nearCache == null ? -1 : nearCache.readStarted(id);
     redisClient.searchAsync(args.getKey(), args.getPath(), searchRes -> {
       if (searchRes.succeeded()) {
         LOGGER.debug("Success: Successful Redis request");
+        if (nearCache != null) {
+          nearCache.put(id, args, searchRes.result(), readAt);
+        }
         response
             .addAll(extractValues(args.getKey(), searchRes.result(), isUniqueAttrRecordExist));
         responseBuilder = new ResponseBuilder(SUCCESS).setTypeAndTitle(200).setMessage(response);
@@ -117,6 +182,288 @@ public class LatestDataServiceImpl implements LatestDataService {
     });
   }
 
+  /**
+   * Latest values of many ids, with the unique attribute flags of all the ids looked up at once and
+   * the keys read in a batch per Redis slot. Ids without latest data are left out of the response.
+   */
+  private void getLatestValues(final List<String> ids, Handler<AsyncResult<JsonObject>> handler) {
+    uniqueAttrRecordsExist(ids).compose(unique -> {
+      List<RedisArgs> args = ids.stream()
+          .map(id -> redisCmdBuilder.getRedisCommandArgs(id, unique.contains(id)))
+          .collect(Collectors.toList());
+      return readThrough(ids, args).map(results -> {
+        JsonArray response = new JsonArray();
+        for (int i = 0; i < results.size(); i++) {
+          if (results.get(i) != null) {
+            response.addAll(extractValues(args.get(i).getKey(), results.get(i),
+                unique.contains(ids.get(i))));
+          }
+        }
+        return response;
+      });
+    }).onComplete(searchRes -> {
+      if (searchRes.succeeded() && !searchRes.result().isEmpty()) {
+        LOGGER.debug("Success: Successful Redis batch request");
+        responseBuilder =
+            new ResponseBuilder(SUCCESS).setTypeAndTitle(200).setMessage(searchRes.result());
+        handler.handle(Future.succeededFuture(responseBuilder.getResponse()));
+      } else {
+        String message = searchRes.succeeded() ? "no latest data found for ids " + ids
+            : searchRes.cause().getMessage();
+        LOGGER.error("Fail: Redis Cache Request;" + message);
+        responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(204).setMessage(message);
+        handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
+      }
+    });
+  }
+
+  /**
+   * Values of the args, from the near-cache when it holds them and from Redis otherwise.
+   */
+  private Future<List<JsonObject>> readThrough(List<String> ids, List<RedisArgs> args) {
+    if (nearCache == null) {
+      return redisClient.getAll(args);
+    }
+    JsonObject[] results = new JsonObject[args.size()];
+    List<Integer> missed = new ArrayList<>();
+    for (int i = 0; i < args.size(); i++) {
+      results[i] = nearCache.get(args.get(i));
+      if (results[i] == null) {
+        missed.add(i);
+      }
+    }
+    if (missed.isEmpty()) {
+      return Future.succeededFuture(Arrays.asList(results));
+    }
+    long[] readAt = missed.stream().mapToLong(i -> nearCache.readStarted(ids.get(i))).toArray();
+    return redisClient.getAll(missed.stream().map(args::get).collect(Collectors.toList()))
+        .map(read -> {
+          for (int j = 0; j < missed.size(); j++) {
+            int i = missed.get(j);
+            results[i] = read.get(j);
+            nearCache.put(ids.get(i), args.get(i), results[i], readAt[j]);
+          }
+          return Arrays.asList(results);
+        });
+  }
+
+  /**
+   * Performs a Latest search query for all the resources of a resource group.
+   *
+   * @param request Json object received from the ApiServerVerticle
+   * @param handler Handler to return redis response in case of success and appropriate error
+   *        message in case of failure
+   */
+
+  @Override
+  public LatestDataService getGroupLatestData(JsonObject request,
+      Handler<AsyncResult<JsonObject>> handler) {
+    String invalidReason = validateGroupRequest(request);
+    if (invalidReason != null) {
+      handler.handle(Future.failedFuture(failure(400, invalidReason)));
+      return this;
+    }
+    String group = request.getJsonArray(ID).getString(0);
+    JsonArray attrs = request.getJsonArray(RESPONSE_ATTRS);
+
+    groupBatches(group).compose(batches -> {
+      List<Future> reads = batches.stream().map(batch -> readGroupBatch(group, attrs, batch))
+          .collect(Collectors.toList());
+      return CompositeFuture.all(reads).map(read -> {
+        JsonArray response = new JsonArray();
+        for (int i = 0; i < read.size(); i++) {
+          response.addAll(read.resultAt(i));
+        }
+        return response;
+      });
+    }).onComplete(searchRes -> {
+      if (searchRes.succeeded() && !searchRes.result().isEmpty()) {
+        LOGGER.debug("Success: Successful Redis group request");
+        responseBuilder =
+            new ResponseBuilder(SUCCESS).setTypeAndTitle(200).setMessage(searchRes.result());
+        handler.handle(Future.succeededFuture(responseBuilder.getResponse()));
+      } else {
+        String message = searchRes.succeeded() ? "no latest data found for group " + group
+            : searchRes.cause().getMessage();
+        LOGGER.error("Fail: Redis Cache Request;" + message);
+        handler.handle(Future.failedFuture(failure(204, message)));
+      }
+    });
+    return this;
+  }
+
+  /**
+   * Performs a Latest search query for all the resources of a resource group, writing the values
+   * as they are read instead of collecting them into a single response. A group without any
+   * resource in Redis is still reported as a failure before anything is written to the client.
+   *
+   * <p>
+   * This method is not part of the {@link LatestDataService} proxy, the returned stream has to be
+   * consumed on the same Vert.x instance, e.g. piped into a chunked HTTP response. The stream and
+   * its values are handed out on the context of the caller, not on the one of the Redis client.
+   * </p>
+   *
+   * @param request Json object received from the ApiServerVerticle
+   * @param handler Handler to return a stream of the serialized response in case of success and
+   *        appropriate error message in case of failure
+   */
+  public LatestDataServiceImpl getGroupLatestStream(JsonObject request,
+      Handler<AsyncResult<ReadStream<Buffer>>> handler) {
+    String invalidReason = validateGroupRequest(request);
+    if (invalidReason != null) {
+      handler.handle(Future.failedFuture(failure(400, invalidReason)));
+      return this;
+    }
+    String group = request.getJsonArray(ID).getString(0);
+    JsonArray attrs = request.getJsonArray(RESPONSE_ATTRS);
+
+    Context context = Vertx.currentContext();
+    onContext(context, groupBatches(group)).onComplete(batches -> {
+      if (batches.succeeded() && !batches.result().isEmpty()) {
+        handler.handle(Future.succeededFuture(new LatestGroupStream(batches.result(),
+            batch -> onContext(context, readGroupBatch(group, attrs, batch)))));
+      } else {
+        String message = batches.succeeded() ? "no latest data found for group " + group
+            : batches.cause().getMessage();
+        LOGGER.error("Fail: Redis Cache Request;" + message);
+        handler.handle(Future.failedFuture(failure(204, message)));
+      }
+    });
+    return this;
+  }
+
+  /** Completes a result of the Redis client on the context of the caller, when it has one. */
+  private static <T> Future<T> onContext(Context context, Future<T> future) {
+    if (context == null) {
+      return future;
+    }
+    Promise<T> promise = Promise.promise();
+    future.onComplete(result -> context.runOnContext(v -> promise.handle(result)));
+    return promise.future();
+  }
+
+  private static String validateGroupRequest(JsonObject request) {
+    if (!request.containsKey(ID)) {
+      return ID_NOT_FOUND;
+    }
+    if (request.getJsonArray(ID).isEmpty()) {
+      return EMPTY_RESOURCE_ID;
+    }
+    return null;
+  }
+
+  /**
+   * Slot batches of the Redis keys of the resources of a group, the whole document of a key is
+   * read as the path of a resource can not be told from its key.
+   */
+  private Future<List<List<RedisArgs>>> groupBatches(String group) {
+    return groupKeys(group).map(keys -> redisClient.slotBatches(keys.stream().map(key -> {
+      RedisArgs args = new RedisArgs();
+      args.setKey(key);
+      args.setPath(".");
+      return args;
+    }).collect(Collectors.toList()), GROUP_BATCH_SIZE));
+  }
+
+  private Future<List<String>> groupKeys(String group) {
+    List<String> keys = groupKeys.getIfPresent(group);
+    if (keys != null) {
+      return Future.succeededFuture(keys);
+    }
+    // the values of a group with a unique attribute are kept at the key of the group, the value of
+    // any other resource at the key of its group followed by its name
+    String groupKey = redisCmdBuilder.getRedisCommandArgs(group, true).getKey();
+    return redisClient.scan(groupKey + "*")
+        .map(found -> found.stream()
+            .filter(key -> key.equals(groupKey) || key.startsWith(groupKey + "_"))
+            .collect(Collectors.toList()))
+        .onSuccess(found -> groupKeys.put(group, found));
+  }
+
+  private Future<JsonArray> readGroupBatch(String group, JsonArray attrs, List<RedisArgs> batch) {
+    return redisClient.getAll(batch).map(documents -> {
+      JsonArray values = new JsonArray();
+      for (int i = 0; i < documents.size(); i++) {
+        if (documents.get(i) != null) {
+          values.addAll(groupValues(group, batch.get(i).getKey(), documents.get(i), attrs));
+        }
+      }
+      return values;
+    });
+  }
+
+  /**
+   * Latest values in the document of a resource of a group, with only the given attributes.
+   * <p>
+   * The latest value of a resource without a unique attribute is kept at the path of its default
+   * attribute, the values of a resource with a unique attribute are expanded as for a resource
+   * level query. Values of other groups whose keys look alike are left out.
+   * </p>
+   */
+  JsonArray groupValues(String group, String key, JsonObject document, JsonArray attrs) {
+    JsonArray values = null;
+    for (Map.Entry<String, Object> field : document) {
+      if (field.getValue() instanceof JsonObject) {
+        String id = ((JsonObject) field.getValue()).getString(ID);
+        if (id != null && field.getKey()
+            .equals(redisCmdBuilder.getRedisCommandArgs(id, false).getPath().substring(1))) {
+          values = new JsonArray().add(field.getValue());
+          break;
+        }
+      }
+    }
+    if (values == null) {
+      values = extractValues(key, document, true);
+    }
+    JsonArray projected = new JsonArray();
+    for (Object value : values) {
+      if (value instanceof JsonObject
+          && ((JsonObject) value).getString(ID, "").startsWith(group + "/")) {
+        projected.add(project((JsonObject) value, attrs));
+      }
+    }
+    return projected;
+  }
+
+  private static JsonObject project(JsonObject value, JsonArray attrs) {
+    if (attrs == null || attrs.isEmpty()) {
+      return value;
+    }
+    JsonObject projected = new JsonObject();
+    for (Object attr : attrs) {
+      if (value.containsKey(attr.toString())) {
+        projected.put(attr.toString(), value.getValue(attr.toString()));
+      }
+    }
+    return projected;
+  }
+
+  /** Serialized failure response of the latest service. */
+  private static String failure(int statusCode, String reason) {
+    return new ResponseBuilder(FAILED).setTypeAndTitle(statusCode).setMessage(reason)
+        .getResponse().toString();
+  }
+
+  /**
+   * Ids among the given ones which have a unique attribute, looked up in one call to the cache.
+   */
+  Future<Set<String>> uniqueAttrRecordsExist(List<String> ids) {
+    Promise<Set<String>> promise = Promise.promise();
+
+    JsonObject requestJson = new JsonObject();
+    requestJson.put("type", CacheType.UNIQUE_ATTRIBUTE);
+    requestJson.put("keys", new JsonArray(ids));
+    cache.getAll(requestJson, handler -> {
+      if (handler.succeeded()) {
+        promise.complete(handler.result().getJsonObject("values", new JsonObject()).fieldNames());
+      } else {
+        LOGGER.error("unique attributes couldn't be fetched for ids : " + ids);
+        promise.complete(Set.of());
+      }
+    });
+    return promise.future();
+  }
+
   public Future<JsonObject> isUniqueAttrRecordExist(String id) {
     Promise<JsonObject> promise = Promise.promise();
 
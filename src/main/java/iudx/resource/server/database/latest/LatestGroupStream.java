@@ -0,0 +1,138 @@
+package iudx.resource.server.database.latest;
+
+import static iudx.resource.server.database.archives.Constants.ERROR_TYPE;
+import static iudx.resource.server.database.archives.Constants.RESULTS;
+import static iudx.resource.server.database.archives.Constants.SUCCESS;
+import static iudx.resource.server.database.archives.Constants.TITLE;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.streams.ReadStream;
+
+/**
+ * The serialized latest values of a resource group, read from Redis one slot batch at a time.
+ * <p>
+ * The next batch is only read once the values of the previous one are written and the consumer
+ * asks for more, so the memory held per request is bounded by the size of a batch rather than by
+ * the number of resources of the group.
+ * </p>
+ */
+final class LatestGroupStream implements ReadStream<Buffer> {
+
+  private static final String RESPONSE_PREFIX =
+      "{\"" + ERROR_TYPE + "\":200,\"" + TITLE + "\":\"" + SUCCESS + "\",\"" + RESULTS + "\":[";
+  private static final String RESPONSE_SUFFIX = "]}";
+
+  private final Iterator<List<RedisArgs>> batches;
+  private final Function<List<RedisArgs>, Future<JsonArray>> reader;
+
+  private Handler<Buffer> handler;
+  private Handler<Void> endHandler;
+  private Handler<Throwable> exceptionHandler;
+  private long demand = Long.MAX_VALUE;
+  private boolean started;
+  private boolean reading;
+  private boolean ended;
+  private boolean firstValue = true;
+
+  /**
+   * @param batches batches of Redis keys of the group
+   * @param reader reads the latest values of a batch
+   */
+  LatestGroupStream(List<List<RedisArgs>> batches,
+      Function<List<RedisArgs>, Future<JsonArray>> reader) {
+    this.batches = batches.iterator();
+    this.reader = reader;
+  }
+
+  @Override
+  public LatestGroupStream exceptionHandler(Handler<Throwable> handler) {
+    this.exceptionHandler = handler;
+    return this;
+  }
+
+  @Override
+  public LatestGroupStream handler(Handler<Buffer> handler) {
+    this.handler = handler;
+    next();
+    return this;
+  }
+
+  @Override
+  public LatestGroupStream pause() {
+    demand = 0;
+    return this;
+  }
+
+  @Override
+  public LatestGroupStream resume() {
+    return fetch(Long.MAX_VALUE);
+  }
+
+  @Override
+  public LatestGroupStream fetch(long amount) {
+    demand = Long.MAX_VALUE - demand < amount ? Long.MAX_VALUE : demand + amount;
+    next();
+    return this;
+  }
+
+  @Override
+  public LatestGroupStream endHandler(Handler<Void> endHandler) {
+    this.endHandler = endHandler;
+    return this;
+  }
+
+  private void next() {
+    while (handler != null && demand > 0 && !reading && !ended) {
+      if (!started) {
+        started = true;
+        emit(Buffer.buffer(RESPONSE_PREFIX));
+      } else if (!batches.hasNext()) {
+        ended = true;
+        emit(Buffer.buffer(RESPONSE_SUFFIX));
+        if (endHandler != null) {
+          endHandler.handle(null);
+        }
+      } else {
+        reading = true;
+        reader.apply(batches.next()).onComplete(this::batchRead);
+      }
+    }
+  }
+
+  private void batchRead(AsyncResult<JsonArray> read) {
+    reading = false;
+    if (read.failed()) {
+      ended = true;
+      if (exceptionHandler != null) {
+        exceptionHandler.handle(read.cause());
+      }
+      return;
+    }
+    Buffer chunk = Buffer.buffer();
+    for (Object value : read.result()) {
+      if (!firstValue) {
+        chunk.appendByte((byte) ',');
+      }
+      firstValue = false;
+      chunk.appendBuffer(Json.encodeToBuffer(value));
+    }
+    if (chunk.length() > 0) {
+      emit(chunk);
+    }
+    next();
+  }
+
+  private void emit(Buffer buffer) {
+    if (demand != Long.MAX_VALUE) {
+      demand--;
+    }
+    handler.handle(buffer);
+  }
+}
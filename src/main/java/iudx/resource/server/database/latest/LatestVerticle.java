@@ -1,12 +1,20 @@
 package iudx.resource.server.database.latest;
 
 import static iudx.resource.server.common.Constants.CACHE_SERVICE_ADDRESS;
+import static iudx.resource.server.common.Constants.LATEST_KEYS_REFRESH_ADDRESS;
 import static iudx.resource.server.common.Constants.LATEST_SERVICE_ADDRESS;
+import static iudx.resource.server.common.Constants.LOCAL_SERVICES_MAP;
+import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
+import io.vertx.rabbitmq.RabbitMQClient;
+import io.vertx.rabbitmq.RabbitMQOptions;
 import io.vertx.serviceproxy.ServiceBinder;
 import iudx.resource.server.cache.CacheService;
 
@@ -23,7 +31,7 @@ public class LatestVerticle extends AbstractVerticle {
    * @version 1.0
    * @since 2020-05-31
    */
-  private LatestDataService latestData;
+  private LatestDataServiceImpl latestData;
   private RedisClient redisClient;
   private JsonObject attributeList;
   private ServiceBinder binder;
@@ -31,6 +39,8 @@ public class LatestVerticle extends AbstractVerticle {
   private static final Logger LOGGER = LogManager.getLogger(LatestVerticle.class);
   
   private CacheService cacheService;
+  private LatestCacheInvalidator invalidator;
+  private MessageConsumer<JsonObject> keysRefreshConsumer;
 
   /**
    * This method is used to start the Verticle. It deploys a verticle in a cluster, registers the
@@ -49,20 +59,75 @@ public class LatestVerticle extends AbstractVerticle {
       redisClient = handler;
       cacheService=CacheService.createProxy(vertx, CACHE_SERVICE_ADDRESS);
       binder = new ServiceBinder(vertx);
-      latestData = new LatestDataServiceImpl(redisClient, cacheService);
+      RedisCommandArgsBuilder redisCmdBuilder = new RedisCommandArgsBuilder();
+      // keys resolved for the ids are dropped when their unique attributes change
+      keysRefreshConsumer = vertx.eventBus().consumer(LATEST_KEYS_REFRESH_ADDRESS, message -> {
+        String id = message.body().getString("id");
+        if (id != null) {
+          redisCmdBuilder.evict(id);
+        } else {
+          redisCmdBuilder.clear();
+        }
+      });
+      latestData = new LatestDataServiceImpl(redisClient, cacheService, createNearCache(),
+          redisCmdBuilder);
       consumer = binder.setAddress(LATEST_SERVICE_ADDRESS)
           .register(LatestDataService.class, latestData);
+      // the api server of this instance streams the latest values of a group through the service
+      vertx.sharedData().getLocalMap(LOCAL_SERVICES_MAP).put(LATEST_SERVICE_ADDRESS, latestData);
       LOGGER.info("Latest verticle deployed.");
     }).onFailure(handler -> {
       LOGGER.error("failed to start redis client");
     });
   }
 
+  /**
+   * Near-cache of the latest values, kept up to date from the data published by the adaptors.
+   *
+   * @return near-cache, null when it is not enabled
+   */
+  private LatestCache createNearCache() {
+    if (!config().getBoolean("latestCacheEnabled", false)) {
+      return null;
+    }
+    RabbitMQOptions options = new RabbitMQOptions();
+    options.setUser(config().getString("dataBrokerUserName"));
+    options.setPassword(config().getString("dataBrokerPassword"));
+    options.setHost(config().getString("dataBrokerIP"));
+    options.setPort(config().getInteger("dataBrokerPort"));
+    options.setVirtualHost(config().getString("dataBrokerVhost"));
+    options.setConnectionTimeout(config().getInteger("connectionTimeout"));
+    options.setRequestedHeartbeat(config().getInteger("requestedHeartbeat"));
+    options.setHandshakeTimeout(config().getInteger("handshakeTimeout"));
+    options.setRequestedChannelMax(config().getInteger("requestedChannelMax"));
+    options.setNetworkRecoveryInterval(config().getInteger("networkRecoveryInterval"));
+    options.setAutomaticRecoveryEnabled(true);
+
+    MeterRegistry registry = BackendRegistries.getDefaultNow();
+    invalidator = new LatestCacheInvalidator(RabbitMQClient.create(vertx, options));
+    LatestCache nearCache = new LatestCache(config(),
+        registry == null ? new SimpleMeterRegistry() : registry,
+        () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()), invalidator::watching);
+    invalidator.setCache(nearCache);
+    invalidator.start();
+    return nearCache;
+  }
+
   @Override
   public void stop() {
     if (redisClient != null) {
       redisClient.close();
     }
+    if (invalidator != null) {
+      invalidator.stop();
+    }
+    if (keysRefreshConsumer != null) {
+      keysRefreshConsumer.unregister();
+    }
+    if (latestData != null) {
+      vertx.sharedData().getLocalMap(LOCAL_SERVICES_MAP)
+          .removeIfPresent(LATEST_SERVICE_ADDRESS, latestData);
+    }
     binder.unregister(consumer);
   }
 }
@@ -2,32 +2,53 @@ package iudx.resource.server.database.latest;
 
 import static iudx.resource.server.database.archives.Constants.FAILED;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
 import io.vertx.redis.client.Command;
 import io.vertx.redis.client.Redis;
 import io.vertx.redis.client.RedisAPI;
 import io.vertx.redis.client.RedisClientType;
 import io.vertx.redis.client.RedisOptions;
 import io.vertx.redis.client.RedisReplicas;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
 import iudx.resource.server.database.archives.ResponseBuilder;
 
 public class RedisClient {
   // private Redis redisClient;
   private ResponseBuilder responseBuilder;
   private Redis ClusteredClient;
-  private RedisAPI redis;
+  private RedisConnectionPool pool;
+  private boolean clustered;
+  // connections to the masters of a cluster, for the commands which only run on one node
+  private final Map<String, RedisAPI> nodes = new ConcurrentHashMap<>();
   private Vertx vertx;
   private JsonObject config;
   private static final Command JSONGET =
       Command.create("JSON.GET", -1, 1, 1, 1, false, true, false, false);
+  private static final Command JSONMGET =
+      Command.create("JSON.MGET", -3, 1, -2, 1, false, true, false, false);
+  private static final int SCAN_COUNT = 1000;
   private static final Logger LOGGER = LogManager.getLogger(RedisClient.class);
 
 
@@ -44,6 +65,14 @@ public class RedisClient {
     this.config=config;
   }
   
+  /**
+   * start - Opens the connections to Redis, <code>redisPoolSize</code> connections the commands
+   * are spread over, 1 by default. A connection lost is reopened after
+   * <code>redisReconnectDelay</code> millis, doubled on every failed attempt up to
+   * <code>redisReconnectMaxDelay</code>.
+   *
+   * @return Future Object which succeeds once a connection is open
+   */
   public Future<RedisClient> start() {
     Promise<RedisClient> promise = Promise.promise();
     StringBuilder RedisURI = new StringBuilder();
@@ -63,12 +92,23 @@ public class RedisClient {
       promise.fail("Invalid/Unsupported mode");
       return promise.future();
     }
+    clustered = mode.equals("CLUSTER");
+    int poolSize = config.getInteger("redisPoolSize", 1);
     options.setMaxWaitingHandlers(config.getInteger("redisMaxWaitingHandlers"))
         .setConnectionString(RedisURI.toString());
+    // every connection of the pool takes a connection to each node of a cluster
+    options.setMaxPoolSize(Math.max(poolSize, config.getInteger("redisMaxPoolSize", 6)))
+        .setMaxPoolWaiting(config.getInteger("redisMaxPoolWaiting", 24))
+        .setPoolRecycleTimeout(config.getInteger("redisPoolRecycleTimeout", 180000));
     ClusteredClient = Redis.createClient(vertx, options);
-    ClusteredClient.connect(conn -> {
-      redis = RedisAPI.api(conn.result());
-      promise.complete(this);
+    MeterRegistry registry = BackendRegistries.getDefaultNow();
+    pool = new RedisConnectionPool(vertx, ClusteredClient, poolSize,
+        config.getLong("redisReconnectDelay", 500L),
+        config.getLong("redisReconnectMaxDelay", 30000L), RedisConnectionPool.Metrics
+            .shared(vertx, registry == null ? new SimpleMeterRegistry() : registry));
+    pool.start().onSuccess(started -> promise.complete(this)).onFailure(failure -> {
+      LOGGER.error("Redis connection failed : " + failure.getMessage());
+      promise.fail(failure);
     });
     return promise.future();
   }
@@ -117,7 +157,7 @@ public class RedisClient {
 
   public Future<JsonObject> get(String key, String path) {
     Promise<JsonObject> promise = Promise.promise();
-    redis.send(JSONGET, key, path).onFailure(res -> {
+    pool.api().compose(redis -> redis.send(JSONGET, key, path)).onFailure(res -> {
       promise.fail(String.format("JSONGET did not work: %s", res.getMessage()));
     }).onSuccess(redisResponse -> {
       if (redisResponse == null) {
@@ -130,8 +170,168 @@ public class RedisClient {
     return promise.future();
   }
 
+  /**
+   * getAll - Redis vertx JSON.MGET wrapper for many keys and paths. The keys are grouped by their
+   * cluster slot, every slot gets one pipelined batch with a JSON.MGET for the keys sharing a path
+   * and a JSON.GET for a key alone on its path, and the batches of the slots run together.
+   *
+   * @param args Redis keys and paths
+   * @return Future Object with the (JSON) results in the order of the args, null for a key or path
+   *         not found
+   */
+
+  public Future<List<JsonObject>> getAll(List<RedisArgs> args) {
+    JsonObject[] results = new JsonObject[args.size()];
+    List<Future> batches = new ArrayList<>();
+    groupBySlot(args, clustered).values().forEach(paths -> {
+      List<Request> requests = new ArrayList<>();
+      List<List<Integer>> indices = new ArrayList<>();
+      paths.forEach((path, keys) -> {
+        Request request = Request.cmd(keys.size() == 1 ? JSONGET : JSONMGET);
+        keys.forEach(index -> request.arg(args.get(index).getKey()));
+        requests.add(request.arg(path));
+        indices.add(keys);
+      });
+      batches.add(pool.connection().compose(connection -> connection.batch(requests))
+          .onSuccess(responses -> {
+            for (int i = 0; i < responses.size(); i++) {
+              List<Integer> keys = indices.get(i);
+              Response response = responses.get(i);
+              if (keys.size() == 1) {
+                results[keys.get(0)] = toJson(response);
+              } else {
+                for (int j = 0; j < keys.size(); j++) {
+                  results[keys.get(j)] = response == null ? null : toJson(response.get(j));
+                }
+              }
+            }
+          }));
+    });
+    return CompositeFuture.all(batches)
+        .recover(failure -> Future.failedFuture(
+            String.format("JSONMGET did not work: %s", failure.getMessage())))
+        .map(done -> Arrays.asList(results));
+  }
+
+  /**
+   * Batches of args whose keys are on one slot, of at most maxKeys args each, to be read one after
+   * the other with {@link #getAll(List)}.
+   *
+   * @param args Redis keys and paths
+   * @param maxKeys keys of a batch
+   * @return batches of args in the order of their slots
+   */
+
+  public List<List<RedisArgs>> slotBatches(List<RedisArgs> args, int maxKeys) {
+    List<List<RedisArgs>> batches = new ArrayList<>();
+    groupBySlot(args, clustered).values().forEach(paths -> {
+      List<RedisArgs> batch = new ArrayList<>();
+      paths.values().forEach(indices -> indices.forEach(index -> {
+        batch.add(args.get(index));
+        if (batch.size() == maxKeys) {
+          batches.add(new ArrayList<>(batch));
+          batch.clear();
+        }
+      }));
+      if (!batch.isEmpty()) {
+        batches.add(batch);
+      }
+    });
+    return batches;
+  }
+
+  /**
+   * scan - Redis vertx SCAN wrapper, the keys matching a pattern. A scan only walks the keys of the
+   * node it is sent to, in a cluster the master of every slot range is scanned through a
+   * connection of its own.
+   *
+   * @param pattern glob style pattern of the keys
+   * @return Future Object with the keys found
+   */
+
+  public Future<List<String>> scan(String pattern) {
+    if (!clustered) {
+      return pool.api().compose(redis -> scan(redis, pattern, "0", new ArrayList<>()));
+    }
+    return pool.api().compose(redis -> redis.cluster(List.of("SLOTS"))).compose(slots -> {
+      Set<String> masters = new LinkedHashSet<>();
+      for (int i = 0; i < slots.size(); i++) {
+        // a slot range is [start, end, [host, port, id], replicas...]
+        Response master = slots.get(i).get(2);
+        masters.add(master.get(0).toString() + ":" + master.get(1).toInteger());
+      }
+      List<Future> scans = new ArrayList<>();
+      masters.forEach(master -> scans.add(
+          node(master).compose(node -> scan(node, pattern, "0", new ArrayList<>()))));
+      return CompositeFuture.all(scans).map(scanned -> {
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < scanned.size(); i++) {
+          keys.addAll(scanned.<List<String>>resultAt(i));
+        }
+        return new ArrayList<>(keys);
+      });
+    });
+  }
+
+  private Future<List<String>> scan(RedisAPI api, String pattern, String cursor,
+      List<String> keys) {
+    return api.scan(List.of(cursor, "MATCH", pattern, "COUNT", String.valueOf(SCAN_COUNT)))
+        .compose(page -> {
+          page.get(1).forEach(key -> keys.add(key.toString()));
+          String next = page.get(0).toString();
+          return "0".equals(next) ? Future.succeededFuture(keys)
+              : scan(api, pattern, next, keys);
+        });
+  }
+
+  /** Connection to a master of the cluster, kept for the next commands. */
+  private Future<RedisAPI> node(String endpoint) {
+    RedisAPI node = nodes.get(endpoint);
+    if (node != null) {
+      return Future.succeededFuture(node);
+    }
+    RedisOptions options = new RedisOptions().setType(RedisClientType.STANDALONE)
+        .setMaxWaitingHandlers(config.getInteger("redisMaxWaitingHandlers"))
+        .setConnectionString("redis://" + config.getString("redisUsername") + ":"
+            + config.getString("redisPassword") + "@" + endpoint);
+    return Redis.createClient(vertx, options).connect().map(conn -> {
+      RedisAPI created = RedisAPI.api(conn);
+      // a node lost, e.g. on a failover, is connected again by the next scan
+      conn.exceptionHandler(failure -> nodes.remove(endpoint, created));
+      conn.endHandler(end -> nodes.remove(endpoint, created));
+      RedisAPI known = nodes.putIfAbsent(endpoint, created);
+      if (known != null) {
+        created.close();
+        return known;
+      }
+      return created;
+    });
+  }
+
+  /**
+   * Indices of the args by their path, by their slot. Out of a cluster all keys are on slot 0.
+   */
+  static Map<Integer, Map<String, List<Integer>>> groupBySlot(List<RedisArgs> args,
+      boolean clustered) {
+    Map<Integer, Map<String, List<Integer>>> slots = new TreeMap<>();
+    for (int i = 0; i < args.size(); i++) {
+      RedisArgs arg = args.get(i);
+      int slot = clustered ? RedisSlot.of(arg.getKey()) : 0;
+      slots.computeIfAbsent(slot, s -> new LinkedHashMap<>())
+          .computeIfAbsent(arg.getPath(), p -> new ArrayList<>())
+          .add(i);
+    }
+    return slots;
+  }
+
+  private static JsonObject toJson(Response response) {
+    return response == null ? null : new JsonObject(response.toString());
+  }
+
   public void close() {
-    redis.close();
+    pool.close();
+    nodes.values().forEach(RedisAPI::close);
+    ClusteredClient.close();
 
   }
 
@@ -1,40 +1,101 @@
 package iudx.resource.server.database.latest;
 
 import static iudx.resource.server.database.archives.Constants.DEFAULT_ATTRIBUTE;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+/**
+ * Redis key and path of the latest data of an id.
+ * <p>
+ * The key and paths of an id are resolved once and kept in a registry, the ids queried are the
+ * resources of the catalogue, so a request costs a single lookup. The args returned are shared
+ * between requests and are not to be changed. Ids changed in the catalogue are dropped with
+ * {@link #evict(String)}, and the registry stops growing once it holds <code>maxEntries</code> ids.
+ * </p>
+ */
 public class RedisCommandArgsBuilder {
 
   private static final Logger LOGGER = LogManager.getLogger(RedisCommandArgsBuilder.class);
+  private static final int DEFAULT_MAX_ENTRIES = 100000;
+
+  private final Map<String, ResolvedId> registry = new ConcurrentHashMap<>();
+  private final int maxEntries;
+
+  public RedisCommandArgsBuilder() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   * @param maxEntries number of ids kept resolved
+   */
+  public RedisCommandArgsBuilder(int maxEntries) {
+    this.maxEntries = maxEntries;
+  }
 
   public RedisArgs getRedisCommandArgs(String id, boolean isUniqueAttribueExist) {
-    RedisArgs args = new RedisArgs();
+    ResolvedId resolved = registry.get(id);
+    if (resolved == null) {
+      resolved = resolve(id);
+      if (registry.size() < maxEntries) {
+        registry.putIfAbsent(id, resolved);
+      }
+    }
+    // itms type resource at the root, aqm type resource at the path of its default attribute
+    return isUniqueAttribueExist ? resolved.group : resolved.resource;
+  }
+
+  /**
+   * Drops an id and the ids of its resources, when its catalogue item or unique attribute changes.
+   *
+   * @param id id of a resource or resource group
+   */
+  public void evict(String id) {
+    registry.remove(id);
+    registry.keySet().removeIf(known -> known.startsWith(id + "/"));
+  }
+
+  /** Drops all the ids, when it is not known which changed. */
+  public void clear() {
+    registry.clear();
+  }
 
+  int size() {
+    return registry.size();
+  }
+
+  private static ResolvedId resolve(String id) {
     LOGGER.trace("In LatestSearch Redis");
 
-    String key = id.replace("-", "_")
-        .replaceAll("/", "_")
-        .replaceAll("\\.", "_");
+    char[] key = id.toCharArray();
+    for (int i = 0; i < key.length; i++) {
+      if (key[i] == '-' || key[i] == '/' || key[i] == '.') {
+        key[i] = '_';
+      }
+    }
 
-    args.setKey(key);
+    StringBuilder shaId = new StringBuilder(id).append("/").append(DEFAULT_ATTRIBUTE);
+    String sha = DigestUtils.sha1Hex(shaId.toString());
 
-    StringBuilder pathParam = new StringBuilder();
+    return new ResolvedId(args(new String(key), "."), args(new String(key), "._" + sha));
+  }
 
-    if (isUniqueAttribueExist) {
-      // itms type resource
-      pathParam.append(".");
-    } else {
-      // aqm type resource
-      StringBuilder shaId = new StringBuilder(id).append("/").append(DEFAULT_ATTRIBUTE);
-      String sha = DigestUtils.sha1Hex(shaId.toString());
-      pathParam.append(".")
-          .append("_")
-          .append(sha);
+  private static RedisArgs args(String key, String path) {
+    RedisArgs args = new RedisArgs();
+    args.setKey(key);
+    args.setPath(path);
+    return args;
+  }
 
+  private static final class ResolvedId {
+    private final RedisArgs group;
+    private final RedisArgs resource;
+
+    private ResolvedId(RedisArgs group, RedisArgs resource) {
+      this.group = group;
+      this.resource = resource;
     }
-    args.setPath(pathParam.toString());
-    return args;
   }
 }
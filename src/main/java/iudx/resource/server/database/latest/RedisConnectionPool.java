@@ -0,0 +1,221 @@
+package iudx.resource.server.database.latest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisAPI;
+import io.vertx.redis.client.RedisConnection;
+
+/**
+ * Connections to Redis the commands of a {@link RedisClient} are spread over.
+ * <p>
+ * Every connection is opened from the same client, in a cluster a connection holds a connection to
+ * each node, taken from the pool the client keeps per node. A connection that fails or is closed
+ * by Redis is reopened after a delay doubled on every failed attempt, up to a maximum, while the
+ * other connections keep serving. Commands fail fast when no connection is open.
+ * </p>
+ * <p>
+ * The health of the pools of a vertx instance is published summed over the pools, see
+ * {@link Metrics}.
+ * </p>
+ */
+final class RedisConnectionPool {
+
+  private static final Logger LOGGER = LogManager.getLogger(RedisConnectionPool.class);
+  private static final String METRIC_PREFIX = "iudx.rs.redis.pool";
+  private static final String METRICS = "iudx.rs.redis.pool.metrics";
+
+  private final Vertx vertx;
+  private final Redis client;
+  private final long reconnectDelay;
+  private final long reconnectMaxDelay;
+  private final List<PooledConnection> connections = new ArrayList<>();
+  private final AtomicInteger next = new AtomicInteger();
+  private final AtomicInteger open = new AtomicInteger();
+  private final Metrics metrics;
+  private volatile boolean closed;
+
+  /**
+   * @param vertx Vertx instance
+   * @param client client the connections are opened from
+   * @param size number of connections
+   * @param reconnectDelay millis before a failed connection is first reopened
+   * @param reconnectMaxDelay most millis between two attempts to reopen a connection
+   * @param metrics metrics the health of the pool is published to
+   */
+  RedisConnectionPool(Vertx vertx, Redis client, int size, long reconnectDelay,
+      long reconnectMaxDelay, Metrics metrics) {
+    this.vertx = vertx;
+    this.client = client;
+    this.reconnectDelay = reconnectDelay;
+    this.reconnectMaxDelay = reconnectMaxDelay;
+    for (int i = 0; i < size; i++) {
+      connections.add(new PooledConnection());
+    }
+    this.metrics = metrics;
+    metrics.pools.add(this);
+  }
+
+  /**
+   * Opens all the connections, the connections which can not be opened are retried in the
+   * background.
+   *
+   * @return succeeds once a connection is open, fails when none could be
+   */
+  Future<RedisConnectionPool> start() {
+    List<Future> opened = new ArrayList<>();
+    connections.forEach(connection -> opened.add(connection.connect()));
+    return CompositeFuture.any(opened).map(this).recover(failure -> {
+      LOGGER.error("no connection to Redis could be opened : " + failure.getMessage());
+      close();
+      return Future.failedFuture(failure);
+    });
+  }
+
+  /** Next open connection, the connections are used in turn. */
+  Future<RedisConnection> connection() {
+    int size = connections.size();
+    int first = Math.floorMod(next.getAndIncrement(), size);
+    for (int i = 0; i < size; i++) {
+      RedisConnection connection = connections.get((first + i) % size).connection;
+      if (connection != null) {
+        return Future.succeededFuture(connection);
+      }
+    }
+    return Future.failedFuture("no Redis connection available");
+  }
+
+  /** Commands on the next open connection. */
+  Future<RedisAPI> api() {
+    return connection().map(RedisAPI::api);
+  }
+
+  int open() {
+    return open.get();
+  }
+
+  void close() {
+    closed = true;
+    connections.forEach(PooledConnection::close);
+    metrics.pools.remove(this);
+  }
+
+  /** Delay before the given attempt to reopen a connection, the first attempt being 0. */
+  long backoff(int attempt) {
+    long delay = reconnectDelay << Math.min(attempt, 30);
+    return delay <= 0 || delay > reconnectMaxDelay ? reconnectMaxDelay : delay;
+  }
+
+  private final class PooledConnection {
+    private volatile RedisConnection connection;
+    private int attempts;
+    private long timer = -1;
+
+    private Future<RedisConnection> connect() {
+      return client.connect().onSuccess(opened -> {
+        if (closed) {
+          opened.close();
+          return;
+        }
+        attempts = 0;
+        connection = opened;
+        open.incrementAndGet();
+        opened.exceptionHandler(failure -> lost(opened, failure.getMessage()));
+        opened.endHandler(end -> lost(opened, "closed by Redis"));
+      }).onFailure(failure -> {
+        LOGGER.warn("Redis connection failed : " + failure.getMessage());
+        reconnect();
+      });
+    }
+
+    private synchronized void lost(RedisConnection lost, String reason) {
+      if (connection != lost) {
+        return;
+      }
+      LOGGER.warn("Redis connection lost : " + reason);
+      connection = null;
+      open.decrementAndGet();
+      lost.close();
+      reconnect();
+    }
+
+    private synchronized void reconnect() {
+      if (closed || timer != -1) {
+        return;
+      }
+      timer = vertx.setTimer(backoff(attempts++), id -> {
+        synchronized (this) {
+          timer = -1;
+        }
+        connect().onSuccess(opened -> metrics.reconnected.increment())
+            .onFailure(failure -> metrics.reconnectFailed.increment());
+      });
+    }
+
+    private synchronized void close() {
+      if (timer != -1) {
+        vertx.cancelTimer(timer);
+        timer = -1;
+      }
+      if (connection != null) {
+        connection.close();
+        connection = null;
+        open.decrementAndGet();
+      }
+    }
+  }
+
+  /** Health of the pools of a vertx instance, the connections are summed over the open pools. */
+  static final class Metrics implements Shareable {
+
+    private final Set<RedisConnectionPool> pools = ConcurrentHashMap.newKeySet();
+    private final Counter reconnected;
+    private final Counter reconnectFailed;
+
+    /**
+     * @param registry registry the health of the pools is published to
+     */
+    Metrics(MeterRegistry registry) {
+      Gauge.builder(METRIC_PREFIX + ".size", this,
+          metrics -> metrics.sum(pool -> pool.connections.size()))
+          .description("connections of the pools").register(registry);
+      Gauge.builder(METRIC_PREFIX + ".open", this,
+          metrics -> metrics.sum(RedisConnectionPool::open))
+          .description("connections of the pools which are open").register(registry);
+      reconnected = Counter.builder(METRIC_PREFIX + ".reconnects").tag("result", "success")
+          .register(registry);
+      reconnectFailed = Counter.builder(METRIC_PREFIX + ".reconnects").tag("result", "failure")
+          .register(registry);
+    }
+
+    /**
+     * The metrics shared by the pools of a vertx instance.
+     *
+     * @param vertx Vertx instance
+     * @param registry registry the health of the pools is published to
+     * @return the shared metrics
+     */
+    static Metrics shared(Vertx vertx, MeterRegistry registry) {
+      LocalMap<String, Metrics> metrics = vertx.sharedData().getLocalMap(METRICS);
+      return metrics.computeIfAbsent(METRICS, key -> new Metrics(registry));
+    }
+
+    private int sum(ToIntFunction<RedisConnectionPool> connections) {
+      return pools.stream().mapToInt(connections).sum();
+    }
+  }
+}
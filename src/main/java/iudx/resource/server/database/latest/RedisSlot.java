@@ -0,0 +1,48 @@
+package iudx.resource.server.database.latest;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Hash slot of a key in a Redis cluster, the CRC16 (XMODEM) of the key, or of its hash tag when it
+ * has one, modulo 16384. Keys of one slot live on one node, so commands on them can be pipelined
+ * together.
+ */
+final class RedisSlot {
+
+  static final int SLOTS = 16384;
+
+  private RedisSlot() {}
+
+  static int of(String key) {
+    byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+    int start = 0;
+    int end = bytes.length;
+    // only the part between the first '{' and the next '}' is hashed, when it is not empty
+    for (int i = 0; i < bytes.length; i++) {
+      if (bytes[i] == '{') {
+        for (int j = i + 1; j < bytes.length; j++) {
+          if (bytes[j] == '}') {
+            if (j > i + 1) {
+              start = i + 1;
+              end = j;
+            }
+            break;
+          }
+        }
+        break;
+      }
+    }
+    return crc16(bytes, start, end) % SLOTS;
+  }
+
+  static int crc16(byte[] bytes, int start, int end) {
+    int crc = 0;
+    for (int i = start; i < end; i++) {
+      crc ^= (bytes[i] & 0xff) << 8;
+      for (int bit = 0; bit < 8; bit++) {
+        crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+      }
+    }
+    return crc & 0xffff;
+  }
+}
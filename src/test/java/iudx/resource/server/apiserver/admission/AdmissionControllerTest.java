@@ -0,0 +1,107 @@
+package iudx.resource.server.apiserver.admission;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+public class AdmissionControllerTest {
+
+  private static final String ID =
+      "iisc.ac.in/89a36273d77dac4cf38114fca1bbe64392547f86/rs.iudx.io/surat-itms-realtime-information/surat-itms-live-eta";
+
+  private final AtomicLong now = new AtomicLong(1_000_000);
+  private Vertx vertx;
+  private SimpleMeterRegistry registry;
+  private AdmissionController controller;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void init() {
+    vertx = mock(Vertx.class);
+    doAnswer(invocation -> {
+      ((Handler<Long>) invocation.getArgument(1)).handle(1L);
+      return 1L;
+    }).when(vertx).setTimer(anyLong(), any());
+    registry = new SimpleMeterRegistry();
+    JsonObject config = new JsonObject()
+        .put("admissionUserRate", 10.0)
+        .put("admissionUserBurst", 100.0)
+        .put("admissionGlobalRate", 100.0)
+        .put("admissionGlobalBurst", 1000.0)
+        .put("admissionMaxWait", 1000L)
+        .put("admissionDocsPerDay", 10000.0);
+    controller = new AdmissionController(vertx, config,
+        new QueryCostEstimator(config, () -> 0L), registry, now::get);
+  }
+
+  /** A count of a single day of 10000 documents costs 2 units. */
+  private static JsonObject light() {
+    return new JsonObject().put("id", new JsonArray().add(ID)).put("options", "count")
+        .put("timerel", "during").put("time", "2021-06-01T00:00:00Z")
+        .put("endtime", "2021-06-02T00:00:00Z");
+  }
+
+  /** A search of 10 days with a page of 5000 documents costs 16 units. */
+  private static JsonObject heavy() {
+    return new JsonObject().put("id", new JsonArray().add(ID)).put("limit", "5000")
+        .put("timerel", "during").put("time", "2021-06-01T00:00:00Z")
+        .put("endtime", "2021-06-11T00:00:00Z");
+  }
+
+  private double requests(String result) {
+    return registry.get("iudx.rs.api.admission.requests").tag("result", result).counter().count();
+  }
+
+  @Test
+  @DisplayName("a user above budget is queued, then rejected with the time to retry after")
+  public void userBudget() {
+    for (int i = 0; i < 6; i++) {
+      assertTrue(controller.admit("heavy-user", heavy()).succeeded());
+    }
+    assertEquals(4, controller.tokens("heavy-user"), 0.001);
+    assertEquals(6, requests("admitted"), 0.001);
+
+    // 16 units are refilled in 1.2 seconds, above the maximum wait
+    Future<Void> rejected = controller.admit("heavy-user", heavy());
+    assertTrue(rejected.failed());
+    assertEquals(2, ((AdmissionRejectedException) rejected.cause()).getRetryAfter());
+
+    // the light queries of others are admitted at once
+    assertTrue(controller.admit("light-user", light()).succeeded());
+    assertEquals(1, requests("rejected"), 0.001);
+
+    now.addAndGet(500);
+    assertTrue(controller.admit("heavy-user", heavy()).succeeded());
+    assertEquals(1, requests("queued"), 0.001);
+    verify(vertx).setTimer(anyLong(), any());
+  }
+
+  @Test
+  @DisplayName("the global budget is shared by all users")
+  public void globalBudget() {
+    int admitted = 0;
+    for (int i = 0; i < 100; i++) {
+      if (controller.admit("user-" + i, heavy()).succeeded()) {
+        admitted++;
+      }
+    }
+    // 62 queries fit in the bucket, 6 more are refilled within the maximum wait
+    assertEquals(68, admitted);
+    assertEquals(6, requests("queued"), 0.001);
+    assertEquals(32, requests("rejected"), 0.001);
+  }
+}
@@ -0,0 +1,90 @@
+package iudx.resource.server.apiserver.admission;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.ZonedDateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+public class QueryCostEstimatorTest {
+
+  private static final String GROUP =
+      "iisc.ac.in/89a36273d77dac4cf38114fca1bbe64392547f86/rs.iudx.io/surat-itms-realtime-information";
+  private static final long NOW = ZonedDateTime.parse("2021-06-15T10:00:00Z").toInstant()
+      .toEpochMilli();
+
+  private QueryCostEstimator estimator;
+
+  @BeforeEach
+  public void init() {
+    estimator = new QueryCostEstimator(new JsonObject()
+        .put("admissionDocsPerDay", 10000.0)
+        .put("admissionDocsPerUnit", 10000.0)
+        .put("admissionPageDocsPerUnit", 1000.0), () -> NOW);
+  }
+
+  private static JsonObject during(int days) {
+    return new JsonObject()
+        .put("id", new JsonArray().add(GROUP + "/surat-itms-live-eta"))
+        .put("timerel", "during")
+        .put("time", "2021-06-01T00:00:00Z")
+        .put("endtime", ZonedDateTime.parse("2021-06-01T00:00:00Z").plusDays(days).toString());
+  }
+
+  @Test
+  @DisplayName("the cost grows with the time span, the page size and the filters")
+  public void cost() {
+    JsonObject day = during(1).put("limit", "10");
+    assertEquals(2.01, estimator.cost(day), 0.001);
+
+    JsonObject tenDays = during(10).put("limit", "5000");
+    assertEquals(1 + 10 + 5, estimator.cost(tenDays), 0.001);
+
+    JsonObject filtered = during(10).put("limit", "5000").put("attr-query", new JsonArray()
+        .add(new JsonObject().put("attribute", "speed").put("operator", ">").put("value", "30")));
+    assertEquals(1 + 15 + 5, estimator.cost(filtered), 0.001);
+
+    JsonObject count = during(10).put("options", "count");
+    assertEquals(11, estimator.cost(count), 0.001);
+  }
+
+  @Test
+  @DisplayName("a continent sized polygon costs far more than a city block")
+  public void geometry() {
+    JsonObject block = during(10).put("options", "count").put("geometry", "polygon")
+        .put("coordinates", "[[[72.82,21.17],[72.83,21.17],[72.83,21.18],[72.82,21.18],[72.82,21.17]]]");
+    JsonObject continent = during(10).put("options", "count").put("geometry", "polygon")
+        .put("coordinates", "[[[60,5],[100,5],[100,40],[60,40],[60,5]]]");
+
+    double blockCost = estimator.cost(block);
+    assertTrue(blockCost < 12, "block " + blockCost);
+    assertTrue(estimator.cost(continent) > 10 * blockCost, "continent " + estimator.cost(continent));
+
+    JsonObject near = during(10).put("options", "count").put("lat", 21.17).put("lon", 72.82)
+        .put("radius", "1000");
+    assertEquals(estimator.geometryWeight(near), 1 + Math.log1p(Math.PI / 100), 0.001);
+  }
+
+  @Test
+  @DisplayName("the documents per day of an index are learnt from exact counts")
+  public void record() {
+    JsonObject count = during(10).put("options", "count");
+    estimator.record(count, new JsonObject().put("results",
+        new JsonArray().add(new JsonObject().put("count", 1000))));
+    assertEquals(100, estimator.docsPerDay(GROUP), 0.001);
+
+    estimator.record(count, new JsonObject().put("estimate", true).put("results",
+        new JsonArray().add(new JsonObject().put("count", 1000000))));
+    estimator.record(count, new JsonObject().put("totalHitsRelation", "gte").put("results",
+        new JsonArray().add(new JsonObject().put("count", 1000000))));
+    estimator.record(during(10).put("geometry", "bbox"), new JsonObject().put("totalHits", 5));
+    assertEquals(100, estimator.docsPerDay(GROUP), 0.001);
+
+    estimator.record(during(1), new JsonObject().put("totalHits", 600));
+    assertEquals(100 + 0.2 * 500, estimator.docsPerDay(GROUP), 0.001);
+    assertEquals(10000, estimator.docsPerDay("other"), 0.001);
+  }
+}
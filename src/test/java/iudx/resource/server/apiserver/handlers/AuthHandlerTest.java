@@ -0,0 +1,102 @@
+package iudx.resource.server.apiserver.handlers;
+
+import static iudx.resource.server.apiserver.util.Constants.HEADER_TOKEN;
+import static iudx.resource.server.apiserver.util.Constants.ID;
+import static iudx.resource.server.apiserver.util.Constants.NGSILD_ENTITIES_URL;
+import static iudx.resource.server.apiserver.util.Constants.USER_ID;
+import static iudx.resource.server.common.Constants.AUTH_SERVICE_ADDRESS;
+import static iudx.resource.server.common.Constants.LOCAL_SERVICES_MAP;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.impl.VertxInternal;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.RoutingContext;
+import iudx.resource.server.authenticator.AuthenticationService;
+
+public class AuthHandlerTest {
+
+  private static final String ENTITY = "iisc.ac.in/89a36273d77dac4cf38114fca1bbe64392547f86/"
+      + "rs.iudx.io/surat-itms-realtime-information/surat-itms-live-eta";
+
+  private final Vertx vertx = Vertx.vertx();
+
+  @AfterEach
+  public void close() throws Exception {
+    vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  @DisplayName("the local service is called, and the route continues on the context of the request")
+  @SuppressWarnings("unchecked")
+  public void localService() throws Exception {
+    // the lookup is answered on the context of another request
+    Context otherContext = ((VertxInternal) vertx).createEventLoopContext();
+    AuthenticationService localAuthenticator = mock(AuthenticationService.class,
+        withSettings().extraInterfaces(Shareable.class));
+    when(((Shareable) localAuthenticator).copy()).thenReturn((Shareable) localAuthenticator);
+    doAnswer(invocation -> {
+      Handler<AsyncResult<JsonObject>> handler = invocation.getArgument(2);
+      otherContext.runOnContext(v -> handler.handle(Future.succeededFuture(
+          new JsonObject().put(USER_ID, "consumer").put("iid", ENTITY).put("expiry", 1))));
+      return localAuthenticator;
+    }).when(localAuthenticator).tokenInterospect(any(), any(), any());
+    vertx.sharedData().getLocalMap(LOCAL_SERVICES_MAP).put(AUTH_SERVICE_ADDRESS,
+        localAuthenticator);
+
+    Map<String, Object> data = new HashMap<>();
+    CompletableFuture<Context> continued = new CompletableFuture<>();
+    RoutingContext routingContext = routingContext(data);
+    doAnswer(invocation -> {
+      continued.complete(Vertx.currentContext());
+      return null;
+    }).when(routingContext).next();
+
+    AuthHandler authHandler = AuthHandler.create(vertx);
+    Context requestContext = vertx.getOrCreateContext();
+    assertNotSame(otherContext, requestContext);
+    requestContext.runOnContext(v -> authHandler.handle(routingContext));
+
+    assertSame(requestContext, continued.get(10, TimeUnit.SECONDS));
+    verify(localAuthenticator).tokenInterospect(any(), any(), any());
+    assertEquals("consumer", ((JsonObject) data.get("authInfo")).getString(USER_ID));
+  }
+
+  private RoutingContext routingContext(Map<String, Object> data) {
+    HttpServerRequest request = mock(HttpServerRequest.class);
+    when(request.path()).thenReturn(NGSILD_ENTITIES_URL);
+    when(request.method()).thenReturn(HttpMethod.GET);
+    when(request.headers()).thenReturn(MultiMap.caseInsensitiveMultiMap()
+        .add(HEADER_TOKEN, "token"));
+    when(request.getParam(ID)).thenReturn(ENTITY);
+
+    RoutingContext routingContext = mock(RoutingContext.class);
+    when(routingContext.request()).thenReturn(request);
+    when(routingContext.vertx()).thenReturn(vertx);
+    when(routingContext.data()).thenReturn(data);
+    when(routingContext.pathParams()).thenReturn(new HashMap<>());
+    return routingContext;
+  }
+}
@@ -0,0 +1,65 @@
+package iudx.resource.server.apiserver.validation;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.cli.annotations.Description;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.apiserver.exceptions.DxRuntimeException;
+import iudx.resource.server.apiserver.validation.types.AggregationTypeValidator;
+
+@ExtendWith(VertxExtension.class)
+public class AggregationTypeValidatorTest {
+
+  private AggregationTypeValidator aggregationTypeValidator;
+
+  static Stream<Arguments> allowedValues() {
+    // Add any valid value which will pass successfully.
+    return Stream.of(
+        Arguments.of(null, null, null),
+        Arguments.of("1m", "avg", "pm2p5"),
+        Arguments.of("12h", "avg,min,max", "pm2p5,pm10"),
+        Arguments.of("1d", "sum,count", "co2"));
+  }
+
+  @ParameterizedTest
+  @MethodSource("allowedValues")
+  @Description("aggregation type parameters allowed values.")
+  public void testValidAggregationTypeValue(String interval, String methods, String attrs,
+      Vertx vertx, VertxTestContext testContext) {
+    aggregationTypeValidator = new AggregationTypeValidator(interval, methods, attrs);
+    assertTrue(aggregationTypeValidator.isValid());
+    testContext.completeNow();
+  }
+
+  static Stream<Arguments> invalidValues() {
+    return Stream.of(
+        Arguments.of("1h", null, "pm2p5"),
+        Arguments.of(null, "avg", "pm2p5"),
+        Arguments.of("0h", "avg", "pm2p5"),
+        Arguments.of("1w", "avg", "pm2p5"),
+        Arguments.of("1000m", "avg", "pm2p5"),
+        Arguments.of("1h", "avg,median", "pm2p5"),
+        Arguments.of("1h", "avg", "pm2.5"),
+        Arguments.of("1h", "avg", "a,b,c,d,e,f"));
+  }
+
+  @ParameterizedTest
+  @MethodSource("invalidValues")
+  @Description("aggregation type parameters invalid values.")
+  public void testInvalidAggregationTypeValue(String interval, String methods, String attrs,
+      Vertx vertx, VertxTestContext testContext) {
+    aggregationTypeValidator = new AggregationTypeValidator(interval, methods, attrs);
+    assertThrows(DxRuntimeException.class, () -> aggregationTypeValidator.isValid());
+    testContext.completeNow();
+  }
+}
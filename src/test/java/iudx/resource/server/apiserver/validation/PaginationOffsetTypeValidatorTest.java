@@ -69,4 +69,26 @@ public class PaginationOffsetTypeValidatorTest {
     assertThrows(DxRuntimeException.class, () -> paginationOffsetTypeValidator.isValid());
     testContext.completeNow();
   }
+
+  static Stream<Arguments> cursorValues() {
+    return Stream.of(
+        Arguments.of(null, "eyJzYSI6WzE2MTc4MjY0MDAwMDAsImEiXX0", true),
+        Arguments.of("0", "eyJzYSI6WzE2MTc4MjY0MDAwMDAsImEiXX0", false),
+        Arguments.of(null, "eyJzYSI6WzE2MTc4Mj+0MDAwMDAsImEiXX0=", false),
+        Arguments.of(null, "   ", false));
+  }
+
+  @ParameterizedTest
+  @MethodSource("cursorValues")
+  @Description("pagination offset type parameter with cursor.")
+  public void testCursorValue(String value, String cursor, boolean valid, Vertx vertx,
+      VertxTestContext testContext) {
+    paginationOffsetTypeValidator = new PaginationOffsetTypeValidator(value, cursor, false);
+    if (valid) {
+      assertTrue(paginationOffsetTypeValidator.isValid());
+    } else {
+      assertThrows(DxRuntimeException.class, () -> paginationOffsetTypeValidator.isValid());
+    }
+    testContext.completeNow();
+  }
 }
@@ -0,0 +1,85 @@
+package iudx.resource.server.authenticator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+
+public class CatalogueAclCacheTest {
+
+  private static final String ID = "iisc.ac.in/89a36273d77dac4cf38114fca1bbe64392547f86/"
+      + "rs.iudx.io/surat-itms-realtime-information";
+
+  private final List<Promise<String>> lookups = new ArrayList<>();
+  private long now;
+  private CatalogueAclCache cache;
+
+  @BeforeEach
+  public void setup() {
+    lookups.clear();
+    now = 0;
+    cache = new CatalogueAclCache(10, 10000L, 1000L, () -> now);
+  }
+
+  @Test
+  @DisplayName("requests missing an item while it is looked up share the lookup")
+  public void singleFlight() {
+    Future<String> first = cache.get(ID, this::lookup);
+    Future<String> second = cache.get(ID, this::lookup);
+    assertSame(first, second);
+    assertEquals(1, lookups.size());
+
+    lookups.get(0).complete("SECURE");
+    assertEquals("SECURE", second.result());
+    assertEquals("SECURE", cache.get(ID, this::lookup).result());
+    assertEquals(1, lookups.size());
+  }
+
+  @Test
+  @DisplayName("an item not found is remembered for a short time, a failed lookup is not")
+  public void notFound() {
+    cache.get(ID, this::lookup);
+    lookups.get(0).fail("Resource not found");
+    cache.get(ID, this::lookup);
+    assertEquals(2, lookups.size());
+
+    lookups.get(1).complete(null);
+    now += 999;
+    assertNull(cache.get(ID, this::lookup).result());
+    assertEquals(2, lookups.size());
+
+    now += 1;
+    cache.get(ID, this::lookup);
+    assertEquals(3, lookups.size());
+  }
+
+  @Test
+  @DisplayName("an item read late in its time to live is looked up again in the background")
+  public void refreshAhead() {
+    cache.put(ID, "SECURE");
+    now += 7999;
+    assertEquals("SECURE", cache.get(ID, this::lookup).result());
+    assertTrue(lookups.isEmpty());
+
+    now += 1;
+    assertEquals("SECURE", cache.get(ID, this::lookup).result());
+    assertEquals("SECURE", cache.get(ID, this::lookup).result());
+    assertEquals(1, lookups.size());
+
+    lookups.get(0).complete("OPEN");
+    assertEquals("OPEN", cache.getIfPresent(ID));
+  }
+
+  private Future<String> lookup(String id) {
+    Promise<String> lookup = Promise.promise();
+    lookups.add(lookup);
+    return lookup.future();
+  }
+}
@@ -0,0 +1,155 @@
+package iudx.resource.server.authenticator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+
+public class CatalogueAclIndexTest {
+
+  private static final String GROUP = "iisc.ac.in/89a36273d77dac4cf38114fca1bbe64392547f86/"
+      + "rs.iudx.io/surat-itms-realtime-information";
+  private static final String OPEN_GROUP = "iisc.ac.in/89a36273d77dac4cf38114fca1bbe64392547f86/"
+      + "rs.iudx.io/pune-env-flood";
+  private static final String OTHER_SERVER_GROUP =
+      "iisc.ac.in/89a36273d77dac4cf38114fca1bbe64392547f86/rs.other.io/pune-env-aqm";
+  private static final String RESOURCE = GROUP + "/surat-itms-live-eta";
+  private static final String SERVER =
+      "iisc.ac.in/89a36273d77dac4cf38114fca1bbe64392547f86/rs.iudx.io";
+
+  private final Map<String, String> params = new HashMap<>();
+  private int requests;
+  private long now;
+  private WebClient catWebClient;
+  private JsonObject config;
+  private CatalogueAclIndex index;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    params.clear();
+    requests = 0;
+    now = 0;
+    Vertx vertx = mock(Vertx.class);
+    catWebClient = mock(WebClient.class);
+    HttpRequest<Buffer> request = mock(HttpRequest.class);
+    when(catWebClient.get(anyInt(), anyString(), anyString())).thenReturn(request);
+    when(request.addQueryParam(anyString(), anyString())).thenAnswer(invocation -> {
+      params.put(invocation.getArgument(0), invocation.getArgument(1));
+      return request;
+    });
+    when(request.expect(any())).thenReturn(request);
+    Mockito.doAnswer(invocation -> {
+      requests++;
+      HttpResponse<Buffer> response = mock(HttpResponse.class);
+      when(response.statusCode()).thenReturn(200);
+      when(response.bodyAsJsonObject()).thenReturn(page());
+      ((Handler<AsyncResult<HttpResponse<Buffer>>>) invocation.getArgument(0))
+          .handle(Future.succeededFuture(response));
+      return null;
+    }).when(request).send(any());
+
+    config = new JsonObject()
+        .put("catServerHost", "api.catalogue.iudx.io")
+        .put("catServerPort", 443)
+        .put("host", "rs.iudx.io")
+        .put("resourceServerId", SERVER);
+    index = new CatalogueAclIndex(vertx, catWebClient, config, 2, new SimpleMeterRegistry(),
+        () -> now);
+  }
+
+  @Test
+  @DisplayName("access policies of the groups and resources of the server are read by page")
+  public void preload() {
+    assertTrue(Double.isNaN(index.syncLag()));
+    assertTrue(index.start(60000L).succeeded());
+
+    assertEquals(3, requests);
+    assertEquals("[type,resourceServer]", params.get("property"));
+    assertEquals("[[iudx:Resource],[" + SERVER + "]]", params.get("value"));
+    assertEquals("SECURE", index.get(GROUP));
+    assertEquals("OPEN", index.get(OPEN_GROUP));
+    assertEquals("SECURE", index.get(RESOURCE));
+    assertNull(index.get(OTHER_SERVER_GROUP));
+    assertEquals(3, index.size());
+
+    now += 5000;
+    assertEquals(5.0, index.syncLag());
+  }
+
+  @Test
+  @DisplayName("items looked up between two reads are added, and replaced by the next read")
+  public void lookedUp() {
+    index.put(OPEN_GROUP + "/pune-flood-sensor", "OPEN");
+    assertEquals(0, index.size());
+
+    index.start(60000L);
+    index.put(OPEN_GROUP + "/pune-flood-sensor", "OPEN");
+    assertEquals("OPEN", index.get(OPEN_GROUP + "/pune-flood-sensor"));
+
+    index.sync();
+    assertNull(index.get(OPEN_GROUP + "/pune-flood-sensor"));
+    assertEquals(3, index.size());
+  }
+
+  @Test
+  @DisplayName("the services of a vertx instance share one index, read by the first to start it")
+  public void shared() {
+    Vertx vertx = Vertx.vertx();
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    try {
+      CatalogueAclIndex shared = CatalogueAclIndex.shared(vertx, catWebClient, config, 2, registry);
+      assertSame(shared, CatalogueAclIndex.shared(vertx, catWebClient, config, 2, registry));
+      assertTrue(shared.start(60000L).succeeded());
+      assertTrue(shared.start(60000L).succeeded());
+      assertEquals(3, requests);
+      assertEquals(1, registry.find("iudx.rs.auth.acl.index.size").gauges().size());
+
+      shared.stop();
+      assertSame(shared, CatalogueAclIndex.shared(vertx, catWebClient, config, 2, registry));
+      shared.stop();
+      assertNotSame(shared, CatalogueAclIndex.shared(vertx, catWebClient, config, 2, registry));
+    } finally {
+      vertx.close();
+    }
+  }
+
+  /** A page of the catalogue items of the type and offset requested. */
+  private JsonObject page() {
+    JsonArray items;
+    if (params.get("value").contains("iudx:ResourceGroup")) {
+      items = "0".equals(params.get("offset"))
+          ? new JsonArray()
+              .add(new JsonObject().put("id", GROUP).put("accessPolicy", "SECURE"))
+              .add(new JsonObject().put("id", OTHER_SERVER_GROUP).put("accessPolicy", "OPEN"))
+          : new JsonArray()
+              .add(new JsonObject().put("id", OPEN_GROUP).put("accessPolicy", "OPEN"));
+      return new JsonObject().put("totalHits", 3).put("results", items);
+    }
+    items = new JsonArray().add(new JsonObject().put("id", RESOURCE).put("resourceGroup", GROUP));
+    return new JsonObject().put("totalHits", 1).put("results", items);
+  }
+}
@@ -0,0 +1,98 @@
+package iudx.resource.server.authenticator;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import io.vertx.core.Vertx;
+import io.vertx.ext.auth.PubSecKeyOptions;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.auth.authentication.TokenCredentials;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import io.vertx.ext.auth.jwt.JWTAuthOptions;
+import iudx.resource.server.authenticator.model.JwtData;
+
+/**
+ * Compares the cost of verifying and decoding a token on every request, as it was done before,
+ * with looking up a token verified before. The tokens are consumer, provider and delegate tokens
+ * issued by the auth server, signed with ES256, the time is set to when they were valid.
+ * <p>
+ * Run with the allocation profiler:
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args="TokenVerificationBenchmark -prof gc"</code>
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenVerificationBenchmark {
+
+  private static final String PUBLIC_KEY = "-----BEGIN PUBLIC KEY-----\n"
+      + "MFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAE8BKf2HZ3wt6wNf30SIsbyjYPkkTS\n"
+      + "GGyyM2/MGF/zYTZV9Z28hHwvZgSfnbsrF36BBKnWszlOYW0AieyAUKaKdg==\n"
+      + "-----END PUBLIC KEY-----\n";
+  // within the validity of all the tokens
+  private static final long NOW = 1631200000000L;
+
+  private final String[] tokens = {
+      JwtTokenHelper.openConsumerApiToken,
+      JwtTokenHelper.closedConsumerApiToken,
+      JwtTokenHelper.closedProviderSubsToken,
+      JwtTokenHelper.closedDelegateIngestToken};
+  private Vertx vertx;
+  private JWTAuth jwtAuth;
+  private VerifiedTokenCache verifiedTokens;
+
+  @Setup
+  public void setup() {
+    vertx = Vertx.vertx();
+    JWTAuthOptions jwtAuthOptions = new JWTAuthOptions();
+    jwtAuthOptions.addPubSecKey(new PubSecKeyOptions().setAlgorithm("ES256").setBuffer(PUBLIC_KEY));
+    jwtAuthOptions.getJWTOptions().setIgnoreExpiration(true);
+    jwtAuth = JWTAuth.create(vertx, jwtAuthOptions);
+    verifiedTokens = new VerifiedTokenCache(10000, () -> NOW);
+    for (String token : tokens) {
+      verifiedTokens.put(token, verify(token));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    vertx.close();
+  }
+
+  @Benchmark
+  public void verifiedPerRequest(Blackhole blackhole) {
+    for (String token : tokens) {
+      blackhole.consume(verify(token));
+    }
+  }
+
+  @Benchmark
+  public void verifiedTokenCache(Blackhole blackhole) {
+    for (String token : tokens) {
+      blackhole.consume(verifiedTokens.get(token));
+    }
+  }
+
+  /** Verification and decoding of a token as done for a token not verified before. */
+  private JwtData verify(String token) {
+    User user = jwtAuth.authenticate(new TokenCredentials(token)).result();
+    JwtData jwtData = new JwtData(user.principal());
+    jwtData.setExp(user.get("exp"));
+    jwtData.setIat(user.get("iat"));
+    return jwtData;
+  }
+}
@@ -0,0 +1,72 @@
+package iudx.resource.server.authenticator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import iudx.resource.server.authenticator.model.JwtData;
+
+public class VerifiedTokenCacheTest {
+
+  private static final int ISSUED_AT = 1631191957;
+  private static final int EXPIRY = 1631235157;
+
+  private long now;
+  private VerifiedTokenCache cache;
+
+  @BeforeEach
+  public void setup() {
+    now = ISSUED_AT * 1000L;
+    cache = new VerifiedTokenCache(2, () -> now);
+  }
+
+  @Test
+  @DisplayName("a verified token is served until its expiry")
+  public void untilExpiry() {
+    JwtData jwtData = jwtData("15c7506f-c800-48d6-adeb-0542b03947c6");
+    cache.put(JwtTokenHelper.closedConsumerApiToken, jwtData);
+    assertSame(jwtData, cache.get(JwtTokenHelper.closedConsumerApiToken));
+    assertNull(cache.get(JwtTokenHelper.openConsumerApiToken));
+
+    now = EXPIRY * 1000L;
+    assertNull(cache.get(JwtTokenHelper.closedConsumerApiToken));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  @DisplayName("expired tokens and tokens without expiry are not kept")
+  public void notKept() {
+    JwtData noExpiry = jwtData("15c7506f-c800-48d6-adeb-0542b03947c6");
+    noExpiry.setExp(null);
+    cache.put(JwtTokenHelper.closedConsumerApiToken, noExpiry);
+
+    now = EXPIRY * 1000L + 1;
+    cache.put(JwtTokenHelper.openConsumerApiToken, jwtData("844e251b-574b-46e6-9247-f76f1f70a637"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  @DisplayName("the tokens of a revoked client are dropped")
+  public void revoked() {
+    cache.put(JwtTokenHelper.closedConsumerApiToken,
+        jwtData("15c7506f-c800-48d6-adeb-0542b03947c6"));
+    cache.put(JwtTokenHelper.openConsumerApiToken, jwtData("844e251b-574b-46e6-9247-f76f1f70a637"));
+
+    cache.invalidate("15c7506f-c800-48d6-adeb-0542b03947c6");
+    assertNull(cache.get(JwtTokenHelper.closedConsumerApiToken));
+    assertEquals(1, cache.size());
+
+    cache.invalidate(null);
+    assertEquals(0, cache.size());
+  }
+
+  private static JwtData jwtData(String sub) {
+    JwtData jwtData = new JwtData();
+    jwtData.setSub(sub);
+    jwtData.setIat(ISSUED_AT);
+    jwtData.setExp(EXPIRY);
+    return jwtData;
+  }
+}
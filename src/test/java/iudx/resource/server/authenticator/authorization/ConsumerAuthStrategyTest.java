@@ -0,0 +1,79 @@
+package iudx.resource.server.authenticator.authorization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.authenticator.model.JwtData;
+
+public class ConsumerAuthStrategyTest {
+
+  private final ConsumerAuthStrategy strategy = new ConsumerAuthStrategy();
+
+  @Test
+  @DisplayName("the compiled rules allow the calls the rule lists allow, for every access list")
+  public void compiledRules() {
+    JsonArray[] accessLists = {
+        null,
+        new JsonArray(),
+        new JsonArray().add("api"),
+        new JsonArray().add("sub"),
+        new JsonArray().add("api").add("sub").add("management"),
+        new JsonArray().add("ingestion")};
+    for (JsonArray access : accessLists) {
+      JwtData jwtData = consumer(access);
+      for (Api api : Api.values()) {
+        for (Method method : Method.values()) {
+          assertEquals(allowedByRules(access, new AuthorizationRequest(method, api)),
+              strategy.isAuthorized(api, method, jwtData), access + " " + method + " " + api);
+        }
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("the access list of a token is decoded once and decoded again when it changes")
+  public void accessMaskKept() {
+    JwtData jwtData = consumer(new JsonArray().add("api"));
+    assertEquals(JwtData.ACCESS_NOT_DECODED, jwtData.accessMask());
+    assertTrue(strategy.isAuthorized(Api.ENTITIES, Method.GET, jwtData));
+    assertEquals(IudxAccess.LISTED | IudxAccess.API.mask(), jwtData.accessMask());
+
+    jwtData.setCons(new JsonObject().put("access", new JsonArray().add("sub")));
+    assertFalse(strategy.isAuthorized(Api.ENTITIES, Method.GET, jwtData));
+    assertTrue(strategy.isAuthorized(Api.SUBSCRIPTION, Method.POST, jwtData));
+  }
+
+  @Test
+  @DisplayName("an endpoint which is not an api is not allowed")
+  public void unknownApi() {
+    assertFalse(strategy.isAuthorized(null, Method.GET, consumer(new JsonArray().add("api"))));
+  }
+
+  /** Decision of the rule lists, as it was made before they were compiled. */
+  private static boolean allowedByRules(JsonArray access, AuthorizationRequest request) {
+    if (access == null) {
+      return false;
+    }
+    List<AuthorizationRequest> api =
+        ConsumerAuthStrategy.consumerAuthorizationRules.get(IudxAccess.API.getAccess());
+    List<AuthorizationRequest> subscription =
+        ConsumerAuthStrategy.consumerAuthorizationRules.get(IudxAccess.SUBSCRIPTION.getAccess());
+    List<AuthorizationRequest> management =
+        ConsumerAuthStrategy.consumerAuthorizationRules.get(IudxAccess.MANAGEMENT.getAccess());
+    return (access.contains(IudxAccess.API.getAccess()) && api.contains(request))
+        || (access.contains(IudxAccess.SUBSCRIPTION.getAccess()) && subscription.contains(request))
+        || management.contains(request);
+  }
+
+  private static JwtData consumer(JsonArray access) {
+    JwtData jwtData = new JwtData();
+    jwtData.setRole(IudxRole.CONSUMER.getRole());
+    jwtData.setCons(access == null ? new JsonObject() : new JsonObject().put("access", access));
+    return jwtData;
+  }
+}
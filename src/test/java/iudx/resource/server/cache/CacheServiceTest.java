@@ -183,6 +183,27 @@ public class CacheServiceTest {
   }
 
 
+  @Description("values of the keys present in cache are returned together")
+  @Test
+  public void getAllValuesFromCache(Vertx vertx, VertxTestContext testContext) {
+    cacheService.put(testJson_2, handler -> {
+    });
+
+    JsonObject json = new JsonObject()
+        .put("type", CacheType.UNIQUE_ATTRIBUTE)
+        .put("keys", new JsonArray().add(testJson_2.getString("key")).add("unknown_id"));
+    cacheService.getAll(json, handler -> {
+      if (handler.succeeded()) {
+        JsonObject values = handler.result().getJsonObject("values");
+        assertEquals(1, values.size());
+        assertEquals(testJson_2.getString("value"), values.getString(testJson_2.getString("key")));
+        testContext.completeNow();
+      } else {
+        testContext.failNow("no values returned for known keys.");
+      }
+    });
+  }
+
   @Test
   public void getValueFromCache2(Vertx vertx, VertxTestContext testContext) {
     JsonObject json = testJson_1.copy();
@@ -0,0 +1,153 @@
+package iudx.resource.server.database.archives;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.database.archives.elastic.ElasticClient;
+import iudx.resource.server.database.archives.elastic.QueryDecoder;
+
+public class CountEstimatorTest {
+
+  private static final String ID =
+      "iisc.ac.in/89a36273d77dac4cf38114fca1bbe64392547f86/rs.iudx.io/surat-itms-realtime-information/surat-itms-live-eta";
+  private static final long NOW = millis("2021-06-15T10:00:00Z");
+
+  private ElasticClient client;
+  private JsonArray buckets;
+  private List<JsonObject> histograms;
+  private CountEstimator estimator;
+
+  private static long millis(String time) {
+    return ZonedDateTime.parse(time).toInstant().toEpochMilli();
+  }
+
+  private static JsonObject bucket(String day, long count) {
+    return new JsonObject().put("key", millis(day)).put("doc_count", count);
+  }
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void init() {
+    client = mock(ElasticClient.class);
+    histograms = new ArrayList<>();
+    doAnswer(invocation -> {
+      histograms.add(((Buffer) invocation.getArgument(1)).toJsonObject());
+      ((Handler<AsyncResult<JsonArray>>) invocation.getArgument(2))
+          .handle(Future.succeededFuture(buckets));
+      return client;
+    }).when(client).aggregateAsync(anyString(), any(), any());
+    doAnswer(invocation -> {
+      ((Handler<AsyncResult<JsonObject>>) invocation.getArgument(3))
+          .handle(Future.succeededFuture(new JsonObject().put("totalHitsRelation", "gte")));
+      return client;
+    }).when(client).countAsync(anyString(), any(), eq(1000), any());
+    estimator = new CountEstimator(client, new JsonObject().put("countTerminateAfter", 1000),
+        () -> NOW);
+  }
+
+  private static JsonObject request(String searchType) {
+    return new JsonObject()
+        .put("id", new JsonArray().add(ID))
+        .put("searchType", searchType)
+        .put("search", false)
+        .put("timeLimit", "production,10")
+        .put("applicableFilters", new JsonArray().add("ATTR").add("TEMPORAL"));
+  }
+
+  private static JsonObject during(String time, String endTime) {
+    return request("temporalSearch_").put("timerel", "during").put("time", time)
+        .put("endtime", endTime);
+  }
+
+  private JsonObject count(JsonObject request) {
+    Future<JsonObject> result = estimator.count("index", request,
+        new QueryDecoder().getESquery(request));
+    assertTrue(result.succeeded());
+    return result.result();
+  }
+
+  private static long gte(JsonObject histogram) {
+    return histogram.getJsonObject("query").getJsonObject("bool").getJsonArray("filter")
+        .getJsonObject(1).getJsonObject("range").getJsonObject("observationDateTime")
+        .getLong("gte");
+  }
+
+  @Test
+  @DisplayName("a closed window is estimated from the daily counts, which are cached")
+  public void closedWindow() {
+    buckets = new JsonArray().add(bucket("2021-06-10T00:00:00Z", 100))
+        .add(bucket("2021-06-11T00:00:00Z", 50));
+    JsonObject request = during("2021-06-10T12:00:00Z", "2021-06-12T00:00:00Z");
+
+    JsonObject count = count(request);
+    assertEquals(100, count.getJsonArray("results").getJsonObject(0).getInteger("count"));
+    assertEquals(true, count.getBoolean("estimate"));
+    assertEquals(millis("2021-06-10T00:00:00Z"), gte(histograms.get(0)));
+
+    assertEquals(100, count(request).getJsonArray("results").getJsonObject(0)
+        .getInteger("count"));
+    verify(client, times(1)).aggregateAsync(anyString(), any(), any());
+  }
+
+  @Test
+  @DisplayName("the current day is read again, the days which have passed are not")
+  public void openWindow() {
+    buckets = new JsonArray().add(bucket("2021-06-14T00:00:00Z", 24))
+        .add(bucket("2021-06-15T00:00:00Z", 10));
+    JsonObject request = request("temporalSearch_").put("timerel", "after")
+        .put("time", "2021-06-14T12:00:00Z");
+
+    assertEquals(22, count(request).getJsonArray("results").getJsonObject(0)
+        .getInteger("count"));
+
+    buckets = new JsonArray().add(bucket("2021-06-15T00:00:00Z", 20));
+    assertEquals(32, count(request).getJsonArray("results").getJsonObject(0)
+        .getInteger("count"));
+    assertEquals(millis("2021-06-15T00:00:00Z"), gte(histograms.get(1)));
+  }
+
+  @Test
+  @DisplayName("a count with other filters stops after a number of documents")
+  public void boundedCount() {
+    JsonObject request = request("attributeSearch_").put("attr-query", new JsonArray()
+        .add(new JsonObject().put("attribute", "speed").put("operator", ">").put("value", "30")));
+
+    assertEquals("gte", count(request).getString("totalHitsRelation"));
+    verify(client).countAsync(eq("index/_count"), any(), eq(1000), any());
+    verify(client, never()).aggregateAsync(anyString(), any(), any());
+  }
+
+  @Test
+  @DisplayName("only windows with a start are estimated per day")
+  public void dailyWindow() {
+    long[] window = CountEstimator.dailyWindow(request("temporalSearch_"), NOW);
+    assertEquals(millis("2021-06-05T00:00:00Z"), window[0]);
+    assertEquals(NOW, window[1]);
+
+    assertNull(CountEstimator.dailyWindow(request("temporalSearch_").put("timerel", "before")
+        .put("time", "2021-06-14T12:00:00Z"), NOW));
+    assertNull(CountEstimator.dailyWindow(request("geoSearch_temporalSearch_"), NOW));
+    assertNull(CountEstimator.dailyWindow(during("2021-06-16T00:00:00Z",
+        "2021-06-17T00:00:00Z"), NOW));
+  }
+}
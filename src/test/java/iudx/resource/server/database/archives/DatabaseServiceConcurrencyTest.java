@@ -0,0 +1,161 @@
+package iudx.resource.server.database.archives;
+
+import static iudx.resource.server.database.archives.Constants.PARAM_SIZE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.database.archives.elastic.ElasticClient;
+
+/**
+ * Many searches and counts in flight on a single service instance at once, answered by a fake
+ * elasticsearch in random order. Every response has to reach the request it belongs to.
+ */
+public class DatabaseServiceConcurrencyTest {
+
+  private static final String GROUP =
+      "iisc.ac.in/89a36273d77dac4cf38114fca1bbe64392547f86/rs.iudx.io/surat-itms-realtime-information/";
+  private static final int REQUESTS = 500;
+
+  private ScheduledExecutorService elastic;
+  private ElasticClient client;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void init() {
+    elastic = Executors.newScheduledThreadPool(8);
+    client = mock(ElasticClient.class);
+    doAnswer(invocation -> {
+      String id = queriedId(invocation.getArgument(2));
+      Handler<AsyncResult<JsonObject>> handler = invocation.getArgument(4);
+      answerLater(() -> handler.handle(Future.succeededFuture(new JsonObject()
+          .put("type", 200).put("title", "success")
+          .put("results", new JsonArray().add(new JsonObject().put("id", id))))));
+      return client;
+    }).when(client).searchAsync(anyString(), anyString(), any(Buffer.class), anyInt(), any());
+    doAnswer(invocation -> {
+      String id = queriedId(invocation.getArgument(1));
+      Handler<AsyncResult<JsonObject>> handler = invocation.getArgument(2);
+      answerLater(() -> handler.handle(Future.succeededFuture(new JsonObject()
+          .put("type", 200).put("title", "success")
+          .put("results", new JsonArray().add(new JsonObject().put("id", id))))));
+      return client;
+    }).when(client).countAsync(anyString(), any(Buffer.class), any());
+    doAnswer(invocation -> {
+      String id = queriedId(invocation.getArgument(1));
+      Handler<AsyncResult<JsonObject>> handler = invocation.getArgument(3);
+      answerLater(() -> handler.handle(Future.succeededFuture(new JsonObject()
+          .put("type", 200).put("title", "success")
+          .put("results", new JsonArray().add(new JsonObject().put("id", id))))));
+      return client;
+    }).when(client).countAsync(anyString(), any(Buffer.class), anyInt(), any());
+  }
+
+  @AfterEach
+  public void shutdown() {
+    elastic.shutdownNow();
+  }
+
+  private void answerLater(Runnable answer) {
+    elastic.schedule(answer, ThreadLocalRandom.current().nextInt(5), TimeUnit.MILLISECONDS);
+  }
+
+  private static String queriedId(Buffer body) {
+    return body.toJsonObject().getJsonObject("query").getJsonObject("bool")
+        .getJsonArray("filter").getJsonObject(0).getJsonObject("terms").getJsonArray("id")
+        .getString(0);
+  }
+
+  private static JsonObject request(String id, int size) {
+    return new JsonObject()
+        .put("id", new JsonArray().add(id))
+        .put("searchType", "responseFilter_attributeSearch_")
+        .put("applicableFilters", new JsonArray().add("ATTR").add("TEMPORAL"))
+        .put("attrs", new JsonArray().add("id").add("speed"))
+        .put("attr-query", new JsonArray().add(new JsonObject().put("attribute", "speed")
+            .put("operator", ">").put("value", String.valueOf(size))))
+        .put(PARAM_SIZE, String.valueOf(size));
+  }
+
+  @Test
+  @DisplayName("concurrent searches and counts on one instance do not see each other's state")
+  public void noCrossTalk() throws InterruptedException {
+    DatabaseService service = new DatabaseServiceImpl(client, "production,10");
+    CountDownLatch done = new CountDownLatch(2 * REQUESTS);
+    Queue<String> errors = new ConcurrentLinkedQueue<>();
+
+    for (int i = 0; i < REQUESTS; i++) {
+      String id = GROUP + "entity-" + i;
+      int size = i + 1;
+      JsonObject searchRequest = request(id, size);
+      // a count can not filter the response
+      JsonObject countRequest = request(id, size).put("searchType", "attributeSearch_");
+      elastic.execute(() -> service.searchQuery(searchRequest, result -> {
+        try {
+          if (result.failed()) {
+            errors.add(id + " search failed: " + result.cause().getMessage());
+          } else if (!id.equals(result.result().getJsonArray("results").getJsonObject(0)
+              .getString("id"))
+              || !Integer.valueOf(size).equals(result.result().getInteger(PARAM_SIZE))) {
+            errors.add(id + " got the search response " + result.result());
+          }
+        } catch (RuntimeException e) {
+          errors.add(id + " search response not read: " + e);
+        } finally {
+          done.countDown();
+        }
+      }));
+      elastic.execute(() -> service.countQuery(countRequest, result -> {
+        try {
+          if (result.failed()) {
+            errors.add(id + " count failed: " + result.cause().getMessage());
+          } else if (!id.equals(result.result().getJsonArray("results").getJsonObject(0)
+              .getString("id"))) {
+            errors.add(id + " got the count response " + result.result());
+          }
+        } catch (RuntimeException e) {
+          errors.add(id + " count response not read: " + e);
+        } finally {
+          done.countDown();
+        }
+      }));
+    }
+
+    assertTrue(done.await(30, TimeUnit.SECONDS));
+    assertEquals("[]", errors.toString());
+  }
+
+  @Test
+  @DisplayName("the request of the caller is not modified by a search")
+  public void requestNotModified() throws InterruptedException {
+    DatabaseService service = new DatabaseServiceImpl(client, "production,10");
+    JsonObject request = request(GROUP + "entity-0", 10);
+    JsonObject copy = request.copy();
+    CountDownLatch done = new CountDownLatch(1);
+
+    service.searchQuery(request, result -> done.countDown());
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(copy, request);
+  }
+}
@@ -0,0 +1,149 @@
+package iudx.resource.server.database.archives;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.database.archives.IndexRouter.IndexLayout;
+import iudx.resource.server.database.archives.elastic.ElasticClient;
+
+public class IndexRouterTest {
+
+  private static final String GROUP = "iisc.ac.in__89a3__rs.iudx.io__surat-itms";
+  private static final long NOW = millis("2021-06-15T10:00:00Z");
+
+  private static long millis(String time) {
+    return ZonedDateTime.parse(time).toInstant().toEpochMilli();
+  }
+
+  private static JsonObject aliases(String group, String writeIndex, String... indices) {
+    JsonObject aliases = new JsonObject();
+    for (String index : indices) {
+      JsonObject alias = new JsonObject();
+      if (index.equals(writeIndex)) {
+        alias.put("is_write_index", true);
+      }
+      aliases.put(index, new JsonObject().put("aliases", new JsonObject().put(group, alias)));
+    }
+    return aliases;
+  }
+
+  private static JsonObject range(String min, String max) {
+    return new JsonObject().put("aggregations", new JsonObject()
+        .put("minTime", new JsonObject().put("value", (double) millis(min)))
+        .put("maxTime", new JsonObject().put("value", (double) millis(max))));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static IndexRouter router(JsonObject aliases, JsonArray ranges) {
+    ElasticClient client = mock(ElasticClient.class);
+    doAnswer(invocation -> {
+      ((Handler<AsyncResult<JsonObject>>) invocation.getArgument(0))
+          .handle(Future.succeededFuture(aliases));
+      return client;
+    }).when(client).aliasesAsync(any());
+    doAnswer(invocation -> {
+      ((Handler<AsyncResult<JsonArray>>) invocation.getArgument(2))
+          .handle(Future.succeededFuture(ranges));
+      return client;
+    }).when(client).msearchAsync(any(), anyString(), any());
+    IndexRouter router = new IndexRouter(client, () -> NOW);
+    assertTrue(router.refresh().succeeded());
+    return router;
+  }
+
+  private static JsonObject during(String time, String endTime) {
+    return new JsonObject().put("timerel", "during").put("time", time).put("endtime", endTime);
+  }
+
+  @Test
+  @DisplayName("monthly indices are routed by the months of the window")
+  public void routeMonthly() {
+    IndexRouter router = router(aliases(GROUP, null, GROUP + "-2021.04", GROUP + "-2021.05",
+        GROUP + "-2021.06"), new JsonArray());
+
+    assertEquals(GROUP + "-2021.05*",
+        router.route(GROUP, during("2021-05-02T00:00:00Z", "2021-05-20T00:00:00Z")));
+    assertEquals(GROUP + "-2021.05*," + GROUP + "-2021.06*",
+        router.route(GROUP, new JsonObject().put("timerel", "after")
+            .put("time", "2021-05-30T00:00:00Z")));
+    assertEquals(GROUP, router.route(GROUP, new JsonObject().put("timerel", "before")
+        .put("time", "2021-05-30T00:00:00Z")));
+    assertEquals(GROUP, router.route(GROUP, during("2018-01-01T00:00:00Z",
+        "2021-05-20T00:00:00Z")));
+  }
+
+  @Test
+  @DisplayName("rollover indices are routed by their time ranges and the next generation")
+  public void routeRollover() {
+    IndexRouter router = router(aliases(GROUP, GROUP + "-000003", GROUP + "-000001",
+        GROUP + "-000002", GROUP + "-000003"), new JsonArray()
+            .add(range("2021-01-01T00:00:00Z", "2021-02-28T23:00:00Z"))
+            .add(range("2021-03-01T00:00:00Z", "2021-04-30T23:00:00Z"))
+            .add(range("2021-05-01T00:00:00Z", "2021-06-15T09:00:00Z")));
+
+    assertEquals(GROUP + "-000001*",
+        router.route(GROUP, during("2021-01-10T00:00:00Z", "2021-01-20T00:00:00Z")));
+    assertEquals(GROUP + "-000002*," + GROUP + "-000003*," + GROUP + "-000004*",
+        router.route(GROUP, during("2021-04-10T00:00:00Z", "2021-05-20T00:00:00Z")));
+    assertEquals(GROUP, router.route(GROUP, during("2020-01-10T00:00:00Z",
+        "2020-01-20T00:00:00Z")));
+    assertEquals("other-group", router.route("other-group", during("2021-01-10T00:00:00Z",
+        "2021-01-20T00:00:00Z")));
+  }
+
+  @Test
+  @DisplayName("requests without a window are bounded by the default time limit only")
+  public void window() {
+    JsonObject request = new JsonObject().put("applicableFilters", new JsonArray().add("TEMPORAL"))
+        .put("timeLimit", "production,10");
+    long[] window = IndexRouter.window(request, NOW);
+    assertEquals(millis("2021-06-05T00:00:00Z"), window[0]);
+    assertEquals(Long.MAX_VALUE, window[1]);
+
+    request.put("timeLimit", "test,2020-10-22T04:00:00Z,10");
+    window = IndexRouter.window(request, NOW);
+    assertEquals(millis("2020-10-12T04:00:00Z"), window[0]);
+    assertEquals(millis("2020-10-22T04:00:00Z"), window[1]);
+
+    assertNull(IndexRouter.window(new JsonObject().put("timeLimit", "production,10"), NOW));
+    assertNull(IndexRouter.window(new JsonObject().put("timerel", "during")
+        .put("time", "not-a-time"), NOW));
+  }
+
+  @Test
+  @DisplayName("aliases of a single index or of mixed index names are not routed")
+  public void readLayouts() {
+    JsonObject aliases = aliases("single", null, "single-000001");
+    aliases.mergeIn(aliases("mixed", null, "mixed-000001", "mixed-2021.05"));
+    aliases.mergeIn(aliases(GROUP, null, GROUP + "-2021.05", GROUP + "-2021.06"));
+    Map<String, IndexLayout> layouts = IndexRouter.readLayouts(aliases);
+
+    assertTrue(layouts.containsKey(GROUP));
+    assertFalse(layouts.containsKey("single"));
+    assertFalse(layouts.containsKey("mixed"));
+  }
+
+  @Test
+  @DisplayName("aliases with a filter are not routed")
+  public void filteredAlias() {
+    JsonObject aliases = aliases(GROUP, null, GROUP + "-2021.05", GROUP + "-2021.06");
+    aliases.getJsonObject(GROUP + "-2021.06").getJsonObject("aliases").getJsonObject(GROUP)
+        .put("filter", new JsonObject().put("term", new JsonObject().put("id", "a")));
+
+    assertFalse(IndexRouter.readLayouts(aliases).containsKey(GROUP));
+  }
+}
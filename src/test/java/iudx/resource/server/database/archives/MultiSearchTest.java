@@ -0,0 +1,87 @@
+package iudx.resource.server.database.archives;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+public class MultiSearchTest {
+
+  private static final String GROUP_A = "iisc.ac.in__89a36273d77dac4cf38114fca1bbe64392547f86__"
+      + "rs.iudx.io__surat-itms-realtime-information";
+  private static final String GROUP_B = "iisc.ac.in__89a36273d77dac4cf38114fca1bbe64392547f86__"
+      + "rs.iudx.io__pune-env-aqm";
+
+  private MultiSearch multiSearch() {
+    return new MultiSearch()
+        .add("a1", GROUP_A, Buffer.buffer("{\"query\":{\"term\":{\"id\":\"a1\"}}}"))
+        .add("b1", GROUP_B, Buffer.buffer("{\"query\":{\"term\":{\"id\":\"b1\"}}}"))
+        .add("a2", GROUP_A, Buffer.buffer("{\"query\":{\"term\":{\"id\":\"a2\"}}}"));
+  }
+
+  private JsonObject hits(int total, String... ids) {
+    JsonArray hits = new JsonArray();
+    for (String id : ids) {
+      hits.add(new JsonObject().put("_source", new JsonObject().put("id", id)));
+    }
+    return new JsonObject().put("status", 200).put("hits",
+        new JsonObject().put("total", new JsonObject().put("value", total).put("relation", "eq"))
+            .put("hits", hits));
+  }
+
+  @Test
+  @DisplayName("searches are grouped by index in the request body")
+  public void bodyGroupedByIndex() {
+    String[] lines = multiSearch().body().toString().split("\n");
+
+    assertEquals(6, lines.length);
+    assertEquals(GROUP_A, new JsonObject(lines[0]).getString("index"));
+    assertEquals("a1", new JsonObject(lines[1]).getJsonObject("query").getJsonObject("term")
+        .getString("id"));
+    assertEquals(GROUP_A, new JsonObject(lines[2]).getString("index"));
+    assertEquals("a2", new JsonObject(lines[3]).getJsonObject("query").getJsonObject("term")
+        .getString("id"));
+    assertEquals(GROUP_B, new JsonObject(lines[4]).getString("index"));
+  }
+
+  @Test
+  @DisplayName("responses are merged per entity in the requested order")
+  public void mergeInRequestedOrder() {
+    JsonArray responses = new JsonArray()
+        .add(hits(2, "a1", "a1"))
+        .add(new JsonObject().put("status", 404)
+            .put("error", new JsonObject().put("reason", "no such index")))
+        .add(hits(1, "b1"));
+
+    JsonObject merged = multiSearch().merge(responses, false);
+    JsonArray results = merged.getJsonArray("results");
+
+    assertEquals(200, merged.getInteger("type"));
+    assertEquals("a1", results.getJsonObject(0).getString("id"));
+    assertEquals(2, results.getJsonObject(0).getInteger("totalHits"));
+    assertEquals(2, results.getJsonObject(0).getJsonArray("results").size());
+    assertFalse(results.getJsonObject(0).containsKey("totalHitsRelation"));
+    assertEquals("b1", results.getJsonObject(1).getString("id"));
+    assertEquals(1, results.getJsonObject(1).getJsonArray("results").size());
+    assertEquals("a2", results.getJsonObject(2).getString("id"));
+    assertEquals(404, results.getJsonObject(2).getInteger("type"));
+    assertEquals("no such index", results.getJsonObject(2).getString("detail"));
+  }
+
+  @Test
+  @DisplayName("counts are reported per entity, no hits at all is an empty response")
+  public void mergeCounts() {
+    JsonArray responses = new JsonArray().add(hits(7)).add(hits(0)).add(hits(3));
+
+    JsonArray results = multiSearch().merge(responses, true).getJsonArray("results");
+    assertEquals(7, results.getJsonObject(0).getInteger("count"));
+    assertEquals(3, results.getJsonObject(1).getInteger("count"));
+    assertEquals(0, results.getJsonObject(2).getInteger("count"));
+
+    assertNull(multiSearch().merge(new JsonArray().add(hits(0)).add(hits(0)).add(hits(0)), true));
+  }
+}
@@ -0,0 +1,127 @@
+package iudx.resource.server.database.archives;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+public class QueryResultCacheTest {
+
+  private SimpleMeterRegistry registry;
+  private long now;
+
+  @BeforeEach
+  public void setup() {
+    registry = new SimpleMeterRegistry();
+    now = 0;
+  }
+
+  private QueryResultCache cache(int maxEntries, long maxBytes) {
+    JsonObject config = new JsonObject()
+        .put("queryCacheMaxEntries", maxEntries)
+        .put("queryCacheMaxBytes", maxBytes)
+        .put("queryCacheClosedTtl", 3600)
+        .put("queryCacheOpenTtl", 10);
+    return new QueryResultCache(config, registry, () -> now);
+  }
+
+  @Test
+  @DisplayName("key covers the index and the request body")
+  public void key() {
+    Buffer body = Buffer.buffer("{\"query\":{\"bool\":{}},\"size\":10}");
+
+    assertEquals(QueryResultCache.key("index/_search", body),
+        QueryResultCache.key("index/_search", body.copy()));
+    assertNotEquals(QueryResultCache.key("index/_search", body),
+        QueryResultCache.key("index/_count", body));
+    assertNotEquals(QueryResultCache.key("index/_search", body),
+        QueryResultCache.key("index/_search", Buffer.buffer("{\"query\":{\"bool\":{}}}")));
+  }
+
+  @Test
+  @DisplayName("cached response expires with the ttl of its window")
+  public void ttlByWindow() {
+    QueryResultCache cache = cache(10, 1024);
+    cache.put("open", new JsonObject().put("totalHits", 1), false);
+    cache.put("closed", new JsonObject().put("totalHits", 2), true);
+
+    now = 5_000;
+    assertEquals(1, cache.get("open").getInteger("totalHits"));
+    now = 11_000;
+    assertNull(cache.get("open"));
+    assertEquals(2, cache.get("closed").getInteger("totalHits"));
+    assertEquals(1, registry.counter("iudx.rs.archive.cache.evictions", "cause", "expired")
+        .count());
+  }
+
+  @Test
+  @DisplayName("least recently used response is evicted first")
+  public void lruEviction() {
+    QueryResultCache cache = cache(2, 1024);
+    cache.put("a", new JsonObject().put("id", "a"), true);
+    cache.put("b", new JsonObject().put("id", "b"), true);
+    assertNotNull(cache.get("a"));
+    cache.put("c", new JsonObject().put("id", "c"), true);
+
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("a"));
+    assertNotNull(cache.get("c"));
+    assertEquals(2, cache.size());
+    assertEquals(1, registry.counter("iudx.rs.archive.cache.evictions", "cause", "size").count());
+    assertEquals(3, registry.counter("iudx.rs.archive.cache.requests", "result", "hit").count());
+    assertEquals(1, registry.counter("iudx.rs.archive.cache.requests", "result", "miss").count());
+  }
+
+  @Test
+  @DisplayName("cache is bounded by the size of the responses")
+  public void byteBound() {
+    QueryResultCache cache = cache(100, 40);
+    cache.put("a", new JsonObject().put("id", "aaaaaaaaaa"), true);
+    cache.put("b", new JsonObject().put("id", "bbbbbbbbbb"), true);
+    cache.put("c", new JsonObject().put("id", "cccc"), true);
+    cache.put("d", new JsonObject().put("id", "dddddddddddddddddddddddddddddddddddddddd"), true);
+
+    assertTrue(cache.bytes() <= 40);
+    assertNull(cache.get("a"));
+    assertNotNull(cache.get("b"));
+    assertNotNull(cache.get("c"));
+    assertNull(cache.get("d"));
+  }
+
+  @Test
+  @DisplayName("only windows ending in the past are closed")
+  public void closedWindow() {
+    assertTrue(QueryResultCache.isClosedWindow(new JsonObject().put("timerel", "during")
+        .put("time", "2020-10-10T14:20:00Z").put("endtime", "2020-10-20T14:20:00Z")));
+    assertTrue(QueryResultCache.isClosedWindow(new JsonObject().put("timerel", "before")
+        .put("time", "2020-10-10T14:20:00Z")));
+    assertFalse(QueryResultCache.isClosedWindow(new JsonObject().put("timerel", "after")
+        .put("time", "2020-10-10T14:20:00Z")));
+    assertFalse(QueryResultCache.isClosedWindow(new JsonObject().put("timerel", "during")
+        .put("time", "2020-10-10T14:20:00Z").put("endtime", "2999-10-20T14:20:00Z")));
+    assertFalse(QueryResultCache.isClosedWindow(new JsonObject()));
+  }
+
+  @Test
+  @DisplayName("the database services of a vertx instance share one cache")
+  public void shared() {
+    Vertx vertx = Vertx.vertx();
+    try {
+      QueryResultCache cache = QueryResultCache.shared(vertx, new JsonObject(), registry);
+      assertSame(cache, QueryResultCache.shared(vertx, new JsonObject(), registry));
+      assertEquals(1, registry.find("iudx.rs.archive.cache.entries").gauges().size());
+    } finally {
+      vertx.close();
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package iudx.resource.server.database.archives;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.vertx.core.json.JsonArray;
+
+public class SearchCursorTest {
+
+  @Test
+  @DisplayName("cursor survives an encode decode round trip")
+  public void roundTrip() {
+    JsonArray searchAfter = new JsonArray().add(1617826400000L).add("a");
+    String token = new SearchCursor(searchAfter, "pit-1").encode();
+
+    assertTrue(token.matches("^[A-Za-z0-9_-]+$"));
+    SearchCursor cursor = SearchCursor.decode(token);
+    assertEquals(searchAfter, cursor.getSearchAfter());
+    assertEquals("pit-1", cursor.getPitId());
+  }
+
+  @Test
+  @DisplayName("cursor without point in time")
+  public void withoutPointInTime() {
+    SearchCursor cursor =
+        SearchCursor.decode(new SearchCursor(new JsonArray().add(1), null).encode());
+    assertNull(cursor.getPitId());
+  }
+
+  @Test
+  @DisplayName("the start token requests a first page")
+  public void start() {
+    SearchCursor cursor = SearchCursor.decode(SearchCursor.START);
+    assertNull(cursor.getSearchAfter());
+    assertNull(cursor.getPitId());
+  }
+
+  @Test
+  @DisplayName("decode rejects tokens not created by encode")
+  public void invalidToken() {
+    assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("not-a-cursor"));
+    assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("e30"));
+  }
+}
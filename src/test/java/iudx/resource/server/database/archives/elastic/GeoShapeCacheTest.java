@@ -0,0 +1,121 @@
+package iudx.resource.server.database.archives.elastic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.database.archives.elastic.exception.ESQueryDecodeException;
+
+public class GeoShapeCacheTest {
+
+  // clockwise shell with a vertex 0.000001 degrees off the edge between its neighbours
+  private static final String POLYGON =
+      "[[[72.7,21],[72.8,21.1],[72.9,21.2000001],[73,21.3],[73,20.5],[72.7,20.5],[72.7,21]]]";
+
+  private SimpleMeterRegistry registry;
+
+  @BeforeEach
+  public void init() {
+    registry = new SimpleMeterRegistry();
+  }
+
+  private GeoShapeCache cache(double tolerance) {
+    return new GeoShapeCache(new JsonObject().put("geoSimplifyTolerance", tolerance)
+        .put("geoShapeCacheSize", 2), registry);
+  }
+
+  private static JsonArray ring(String shape) {
+    return new JsonObject(shape).getJsonArray("coordinates").getJsonArray(0);
+  }
+
+  @Test
+  @DisplayName("polygons are oriented counter-clockwise and simplified within the tolerance")
+  public void orientAndSimplify() {
+    JsonArray exact = ring(cache(0).shape("polygon", POLYGON));
+    assertEquals(7, exact.size());
+    // counter-clockwise: the second vertex follows the first along the bottom edge
+    assertEquals(new JsonArray().add(72.7).add(20.5), exact.getJsonArray(1));
+
+    JsonArray simplified = ring(cache(0.00001).shape("Polygon", POLYGON));
+    assertEquals(5, simplified.size());
+    assertEquals(simplified.getJsonArray(0), simplified.getJsonArray(4));
+  }
+
+  @Test
+  @DisplayName("rectangles and boxes are sent as envelopes")
+  public void envelopes() {
+    JsonObject rectangle = new JsonObject(cache(0).shape("polygon",
+        "[[[72.7,20.5],[73,20.5],[73,21.3],[72.7,21.3],[72.7,20.5]]]"));
+    assertEquals("envelope", rectangle.getString("type"));
+    assertEquals(new JsonArray().add(new JsonArray().add(72.7).add(21.3))
+        .add(new JsonArray().add(73.0).add(20.5)), rectangle.getJsonArray("coordinates"));
+
+    JsonObject bbox = new JsonObject(cache(0).shape("bbox", "[[73,20.5],[72.7,21.3]]"));
+    assertEquals(rectangle, bbox);
+  }
+
+  @Test
+  @DisplayName("a polygon close to its envelope is replaced by it for the intersects relation only")
+  public void approximateIntersects() {
+    // a rectangle with a corner cut within the tolerance
+    String cut = "[[[72.7,20.5],[73,20.5],[73,21.3],[72.70005,21.3],[72.7,21.29995],[72.7,20.5]]]";
+    GeoShapeCache cache = cache(0.0001);
+    assertEquals("envelope",
+        new JsonObject(cache.shape("polygon", cut, "intersects")).getString("type"));
+    for (String relation : new String[] {"within", "contains", "disjoint"}) {
+      assertEquals("Polygon",
+          new JsonObject(cache.shape("polygon", cut, relation)).getString("type"));
+    }
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  @DisplayName("a repeated shape is served from the cache, the least recently used is evicted")
+  public void cached() {
+    GeoShapeCache cache = cache(0);
+    String shape = cache.shape("polygon", POLYGON);
+    assertSame(shape, cache.shape("polygon", POLYGON));
+    cache.shape("linestring", "[[72.8,21.2],[72.9,20.8]]");
+    cache.shape("bbox", "[[72.8,21.2],[72.9,20.8]]");
+
+    assertEquals(2, cache.size());
+    assertEquals(1.0, registry.get("iudx.rs.archive.geometry.cache.requests")
+        .tag("result", "hit").counter().count());
+    assertTrue(shape != cache.shape("polygon", POLYGON));
+  }
+
+  @Test
+  @DisplayName("open rings and invalid geometries are rejected")
+  public void invalid() {
+    GeoShapeCache cache = cache(0);
+    ESQueryDecodeException open = assertThrows(ESQueryDecodeException.class,
+        () -> cache.shape("polygon", "[[[72.7,21],[72.8,21.1],[73,20.5],[72.6,20.4]]]"));
+    assertEquals("Coordinate mismatch (Polygon)", open.getMessage());
+    // self intersecting bow tie
+    assertThrows(ESQueryDecodeException.class, () -> cache.shape("polygon",
+        "[[[72,20],[73,21],[73,20],[72,21],[72,20]]]"));
+    assertThrows(ESQueryDecodeException.class,
+        () -> cache.shape("bbox", "[[72.8,21.2],[72.9,20.8],[73,20]]"));
+    assertThrows(ESQueryDecodeException.class, () -> cache.shape("polygon", "[[[72.7,21"));
+  }
+
+  @Test
+  @DisplayName("the database services of a vertx instance share one cache")
+  public void shared() {
+    Vertx vertx = Vertx.vertx();
+    try {
+      GeoShapeCache cache = GeoShapeCache.shared(vertx, new JsonObject(), registry);
+      assertSame(cache, GeoShapeCache.shared(vertx, new JsonObject(), registry));
+      assertEquals(1, registry.find("iudx.rs.archive.geometry.cache.entries").gauges().size());
+    } finally {
+      vertx.close();
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package iudx.resource.server.database.archives.elastic;
+
+import java.util.concurrent.TimeUnit;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Compares the compiled query generation with the previous BoolQueryBuilder based generation for a
+ * geo, temporal and attribute search.
+ * <p>
+ * Run with the allocation profiler:
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args="QueryDecoderBenchmark -prof gc"</code>
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryDecoderBenchmark {
+
+  private static final String COORDINATES =
+      "[[[72.719,21],[72.842,21.2],[72.923,20.8],[72.74,20.34],[72.9,20.1],[72.67,20],[72.719,21]]]";
+
+  private final QueryDecoder decoder = new QueryDecoder();
+  private JsonObject request;
+
+  @Setup
+  public void setup() {
+    request = new JsonObject()
+        .put("id", new JsonArray().add("iisc.ac.in/89a36273d77dac4cf38114fca1bbe64392547f86/"
+            + "rs.iudx.io/surat-itms-realtime-information/surat-itms-live-eta"))
+        .put("searchType", "geoSearch_temporalSearch_attributeSearch_")
+        .put("search", true)
+        .put("timeLimit", "production,10,10")
+        .put("applicableFilters", new JsonArray().add("ATTR").add("TEMPORAL").add("SPATIAL"))
+        .put("geometry", "polygon").put("georel", "within").put("geoproperty", "location")
+        .put("coordinates", COORDINATES)
+        .put("timerel", "during").put("time", "2020-10-18T14:20:00Z")
+        .put("endtime", "2020-10-19T14:20:00Z")
+        .put("attr-query", new JsonArray().add(new JsonObject().put("attribute", "speed")
+            .put("operator", ">").put("value", "30")));
+  }
+
+  @Benchmark
+  public Buffer compiled() {
+    ElasticQuery query = decoder.getESquery(request);
+    return query.searchBody(new JsonObject().put("size", 5000).put("from", 0)
+        .put("track_total_hits", true));
+  }
+
+  @Benchmark
+  public Buffer compiledCount() {
+    return decoder.getESquery(request).countBody();
+  }
+
+  /** The request body as it was generated before queries were compiled. */
+  @Benchmark
+  public Buffer boolQueryBuilder() {
+    BoolQueryBuilder boolQuery = QueryBuilders.boolQuery();
+    boolQuery.filter(QueryBuilders.termsQuery("id", request.getJsonArray("id").getString(0)));
+    boolQuery.filter(QueryBuilders.wrapperQuery(String.format(
+        "{ \"geo_shape\": { \"%s\": { \"shape\": %s, \"relation\": \"%s\" } } }", "location",
+        new JsonObject().put("type", "polygon").put("coordinates", new JsonArray(COORDINATES)),
+        "within")));
+    boolQuery.filter(QueryBuilders.rangeQuery("observationDateTime")
+        .lte(request.getString("endtime")).gte(request.getString("time")));
+    boolQuery.filter(QueryBuilders.rangeQuery("speed").gt("30"));
+    JsonObject query = new JsonObject().put("query", new JsonObject(boolQuery.toString()));
+    query.put("size", 5000).put("from", 0).put("track_total_hits", true);
+    return Buffer.buffer(query.toString());
+  }
+}
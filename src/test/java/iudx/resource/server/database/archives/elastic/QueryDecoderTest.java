@@ -0,0 +1,159 @@
+package iudx.resource.server.database.archives.elastic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.database.archives.elastic.exception.ESQueryDecodeException;
+
+public class QueryDecoderTest {
+
+  private static final String ID =
+      "iisc.ac.in/89a36273d77dac4cf38114fca1bbe64392547f86/rs.iudx.io/surat-itms-realtime-information/surat-itms-live-eta";
+
+  private JsonObject request(String searchType) {
+    return new JsonObject()
+        .put("id", new JsonArray().add(ID))
+        .put("searchType", searchType)
+        .put("search", true)
+        .put("timeLimit", "production,10,10")
+        .put("applicableFilters", new JsonArray().add("ATTR").add("TEMPORAL").add("SPATIAL"));
+  }
+
+  @Test
+  @DisplayName("geo, temporal and attribute clauses in a single bool query")
+  public void compileCombinedQuery() {
+    JsonObject request = request("geoSearch_temporalSearch_attributeSearch_")
+        .put("lon", 72.8296).put("lat", 21.2).put("radius", "500")
+        .put("timerel", "during").put("time", "2020-10-18T14:20:00Z")
+        .put("endtime", "2020-10-19T14:20:00Z")
+        .put("attr-query", new JsonArray()
+            .add(new JsonObject().put("attribute", "speed").put("operator", ">")
+                .put("value", "30"))
+            .add(new JsonObject().put("attribute", "routeId").put("operator", "!=")
+                .put("value", "A")));
+
+    ElasticQuery query = new QueryDecoder().getESquery(request);
+    JsonObject bool = new JsonObject(query.toString()).getJsonObject("bool");
+    JsonArray filter = bool.getJsonArray("filter");
+
+    assertEquals(ID, filter.getJsonObject(0).getJsonObject("terms").getJsonArray("id")
+        .getString(0));
+    JsonObject geoShape = filter.getJsonObject(1).getJsonObject("geo_shape")
+        .getJsonObject("location");
+    assertEquals("Circle", geoShape.getJsonObject("shape").getString("type"));
+    assertEquals("500m", geoShape.getJsonObject("shape").getString("radius"));
+    assertEquals("within", geoShape.getString("relation"));
+    assertEquals("2020-10-19T14:20:00Z", filter.getJsonObject(2).getJsonObject("range")
+        .getJsonObject("observationDateTime").getString("lte"));
+    assertEquals("30", filter.getJsonObject(3).getJsonObject("range").getJsonObject("speed")
+        .getString("gt"));
+    assertEquals(4, filter.size());
+    assertEquals("A", bool.getJsonArray("must_not").getJsonObject(0).getJsonObject("term")
+        .getString("routeId"));
+  }
+
+  @Test
+  @DisplayName("count and search bodies from the same compiled query")
+  public void countAndSearchBodies() {
+    JsonObject request = request("responseFilter_attributeSearch_")
+        .put("attrs", new JsonArray().add("id").add("speed"))
+        .put("attr-query", new JsonArray().add(new JsonObject().put("attribute", "speed")
+            .put("operator", "==").put("value", "30")));
+
+    ElasticQuery query = new QueryDecoder().getESquery(request);
+    JsonObject count = query.countBody().toJsonObject();
+    JsonObject search = query.searchBody(new JsonObject().put("size", 10).put("from", 0))
+        .toJsonObject();
+
+    assertEquals(count.getJsonObject("query"), search.getJsonObject("query"));
+    assertFalse(count.containsKey("_source"));
+    assertEquals(new JsonArray().add("id").add("speed"), search.getJsonArray("_source"));
+    assertEquals(10, search.getInteger("size"));
+    assertFalse(count.getJsonObject("query").getJsonObject("bool").containsKey("must_not"));
+    // default time limit for requests without a temporal window
+    assertEquals("now-10d/d", count.getJsonObject("query").getJsonObject("bool")
+        .getJsonArray("filter").getJsonObject(2).getJsonObject("range")
+        .getJsonObject("observationDateTime").getString("gte"));
+  }
+
+  @Test
+  @DisplayName("search body without page fields")
+  public void searchBodyWithoutPage() {
+    ElasticQuery query = new QueryDecoder().getESquery(request("attributeSearch_")
+        .put("attr-query", new JsonArray()));
+
+    JsonObject search = query.searchBody(new JsonObject()).toJsonObject();
+    assertEquals(1, search.size());
+    assertTrue(search.containsKey("query"));
+  }
+
+  @Test
+  @DisplayName("invalid requests are rejected while compiling")
+  public void invalidRequests() {
+    assertThrows(ESQueryDecodeException.class,
+        () -> new QueryDecoder().getESquery(request("latestSearch")));
+    assertThrows(ESQueryDecodeException.class,
+        () -> new QueryDecoder().getESquery(request("geoSearch_").put("lon", 72.8)
+            .put("lat", 21.2).put("radius", "500").put("georel", "near")));
+    ESQueryDecodeException count = assertThrows(ESQueryDecodeException.class,
+        () -> new QueryDecoder().getESquery(request("responseFilter_").put("search", false)));
+    assertEquals("Count is not supported with filtering", count.getMessage());
+  }
+
+  private JsonObject aggregationRequest(String endTime) {
+    return request("temporalSearch_")
+        .put("timerel", "during").put("time", "2020-10-18T00:00:00Z").put("endtime", endTime)
+        .put("aggrInterval", "1h")
+        .put("aggrMethods", new JsonArray().add("avg").add("count"))
+        .put("aggrAttrs", new JsonArray().add("pm2p5"));
+  }
+
+  @Test
+  @DisplayName("aggregation as a date histogram with a metric per attribute and method")
+  public void compileAggregation() {
+    TemporalAggregation aggregation =
+        new QueryDecoder().getAggregation(aggregationRequest("2020-10-28T00:00:00Z"));
+    JsonObject page = aggregation.searchPage();
+
+    assertEquals(0, page.getInteger("size"));
+    JsonObject buckets = page.getJsonObject("aggs").getJsonObject("timeBuckets");
+    assertEquals("observationDateTime", buckets.getJsonObject("date_histogram")
+        .getString("field"));
+    assertEquals("1h", buckets.getJsonObject("date_histogram").getString("fixed_interval"));
+    JsonObject metrics = buckets.getJsonObject("aggs");
+    assertEquals("pm2p5", metrics.getJsonObject("pm2p5_avg").getJsonObject("avg")
+        .getString("field"));
+    assertEquals("pm2p5", metrics.getJsonObject("pm2p5_count").getJsonObject("value_count")
+        .getString("field"));
+
+    JsonArray results = aggregation.toResults(new JsonArray().add(new JsonObject()
+        .put("key_as_string", "2020-10-18T00:00:00.000Z").put("doc_count", 12)
+        .put("pm2p5_avg", new JsonObject().put("value", 41.5))
+        .put("pm2p5_count", new JsonObject().put("value", 11))));
+    JsonObject bucket = results.getJsonObject(0);
+    assertEquals("2020-10-18T00:00:00.000Z", bucket.getString("observationDateTime"));
+    assertEquals(12, bucket.getLong("count"));
+    assertEquals(41.5, bucket.getJsonObject("pm2p5").getDouble("avg"));
+    assertEquals(11, bucket.getJsonObject("pm2p5").getInteger("count"));
+  }
+
+  @Test
+  @DisplayName("invalid aggregations are rejected while compiling")
+  public void invalidAggregations() {
+    // ten days of buckets of a minute
+    ESQueryDecodeException buckets = assertThrows(ESQueryDecodeException.class,
+        () -> new QueryDecoder().getAggregation(aggregationRequest("2020-10-28T00:00:00Z")
+            .put("aggrInterval", "1m")));
+    assertEquals("Number of aggregation buckets exceeds 10000", buckets.getMessage());
+    assertThrows(ESQueryDecodeException.class, () -> new QueryDecoder().getAggregation(
+        aggregationRequest("2020-10-28T00:00:00Z").put("aggrMethods",
+            new JsonArray().add("terms"))));
+    assertThrows(ESQueryDecodeException.class, () -> new QueryDecoder().getAggregation(
+        aggregationRequest("2020-10-28T00:00:00Z").put("aggrInterval", "1w")));
+  }
+}
@@ -0,0 +1,127 @@
+package iudx.resource.server.database.archives.elastic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.database.archives.elastic.RequestLimiter.Permit;
+import iudx.resource.server.database.archives.elastic.RequestLimiter.Rejection;
+
+public class RequestLimiterTest {
+
+  private AtomicLong clock;
+  private SimpleMeterRegistry registry;
+  private List<Permit> permits;
+  private List<Rejection> rejections;
+
+  @BeforeEach
+  public void init() {
+    clock = new AtomicLong();
+    registry = new SimpleMeterRegistry();
+    permits = new ArrayList<>();
+    rejections = new ArrayList<>();
+  }
+
+  private RequestLimiter limiter(JsonObject config) {
+    return new RequestLimiter(config, registry, clock::get);
+  }
+
+  private void send(RequestLimiter limiter, int requests) {
+    for (int i = 0; i < requests; i++) {
+      limiter.execute(permits::add, rejections::add);
+    }
+  }
+
+  private void advance(long millis) {
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+
+  @Test
+  @DisplayName("requests above the limit are queued, and rejected once the queue is full")
+  public void queueAndReject() {
+    RequestLimiter limiter = limiter(new JsonObject().put("esLimitInitial", 2)
+        .put("esLimitMin", 1).put("esLimitQueueSize", 1));
+    send(limiter, 4);
+
+    assertEquals(2, permits.size());
+    assertEquals(1, limiter.queued());
+    assertEquals(List.of(Rejection.LIMIT), rejections);
+
+    permits.get(0).succeeded();
+    assertEquals(3, permits.size());
+    assertEquals(0, limiter.queued());
+    assertEquals(2, limiter.inFlight());
+    assertEquals(1.0, registry.get("iudx.rs.archive.elastic.rejected").tag("cause", "limit")
+        .counter().count());
+  }
+
+  @Test
+  @DisplayName("fast requests raise the limit, slow requests lower it once per round")
+  public void adaptLimit() {
+    RequestLimiter limiter = limiter(new JsonObject().put("esLimitInitial", 10)
+        .put("esLimitLatencyThreshold", 100));
+    send(limiter, 10);
+    advance(10);
+    for (Permit permit : new ArrayList<>(permits)) {
+      permit.succeeded();
+    }
+    assertTrue(limiter.limit() > 10);
+
+    double raised = limiter.limit();
+    permits.clear();
+    send(limiter, 10);
+    advance(500);
+    for (Permit permit : new ArrayList<>(permits)) {
+      permit.succeeded();
+    }
+    assertEquals(raised * 0.9, limiter.limit(), 1e-9);
+  }
+
+  @Test
+  @DisplayName("the breaker opens after consecutive failures and closes after a successful trial")
+  public void circuitBreaker() {
+    RequestLimiter limiter = limiter(new JsonObject().put("esBreakerFailureThreshold", 2)
+        .put("esBreakerOpenTime", 1000));
+    send(limiter, 2);
+    permits.get(0).overloaded();
+    permits.get(1).overloaded();
+    assertTrue(limiter.isOpen());
+
+    send(limiter, 1);
+    assertEquals(List.of(Rejection.BREAKER), rejections);
+
+    advance(1000);
+    permits.clear();
+    send(limiter, 2);
+    assertEquals(1, permits.size());
+    assertEquals(2, rejections.size());
+
+    permits.get(0).succeeded();
+    assertFalse(limiter.isOpen());
+    send(limiter, 1);
+    assertEquals(2, permits.size());
+  }
+
+  @Test
+  @DisplayName("the database verticles of a vertx instance share one limiter")
+  public void shared() {
+    Vertx vertx = Vertx.vertx();
+    try {
+      RequestLimiter limiter = RequestLimiter.shared(vertx, new JsonObject(), registry);
+      assertSame(limiter, RequestLimiter.shared(vertx, new JsonObject(), registry));
+      assertEquals(1, registry.find("iudx.rs.archive.elastic.inflight").gauges().size());
+    } finally {
+      vertx.close();
+    }
+  }
+}
@@ -0,0 +1,184 @@
+package iudx.resource.server.database.archives.elastic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.junit5.VertxExtension;
+import iudx.resource.server.database.archives.SearchCursor;
+
+@ExtendWith(VertxExtension.class)
+public class SearchHitsStreamTest {
+
+  private static final String ES_RESPONSE =
+      "{\"took\":3,\"hits\":{\"total\":{\"value\":3,\"relation\":\"eq\"},\"hits\":["
+      + "{\"_source\":{\"id\":\"a\",\"location\":{\"type\":\"Point\",\"coordinates\":[1,2]}}},"
+      + "{\"_source\":{\"id\":\"b\",\"hits\":[1,2]}},"
+      + "{\"_source\":{\"id\":\"c\"}}]}}";
+
+  @Test
+  @DisplayName("stream serializes all hits with trailer")
+  public void streamAllHits() {
+    FakeSource source = new FakeSource();
+    JsonObject trailer = new JsonObject().put("limit", 10).put("offset", 0);
+    SearchHitsStream stream = new SearchHitsStream(source, trailer, 0, 1024);
+
+    Buffer collected = Buffer.buffer();
+    boolean[] ended = {false};
+    stream.handler(collected::appendBuffer).endHandler(v -> ended[0] = true).resume();
+
+    // split the payload to check hits spanning multiple network buffers
+    source.push(Buffer.buffer(ES_RESPONSE.substring(0, 40)));
+    source.push(Buffer.buffer(ES_RESPONSE.substring(40)));
+    source.end();
+
+    assertTrue(ended[0]);
+    JsonObject response = collected.toJsonObject();
+    assertEquals(200, response.getInteger("type"));
+    assertEquals("Success", response.getString("title"));
+    assertEquals(10, response.getInteger("limit"));
+    assertEquals(3, response.getInteger("totalHits"));
+    JsonArray results = response.getJsonArray("results");
+    assertEquals(3, results.size());
+    assertEquals("a", results.getJsonObject(0).getString("id"));
+    assertEquals(new JsonArray().add(1).add(2), results.getJsonObject(1).getJsonArray("hits"));
+  }
+
+  @Test
+  @DisplayName("stream emits multiple chunks for small chunk size")
+  public void streamInChunks() {
+    FakeSource source = new FakeSource();
+    SearchHitsStream stream = new SearchHitsStream(source, new JsonObject(), 0, 16);
+
+    List<Buffer> chunks = new ArrayList<>();
+    stream.handler(chunks::add).resume();
+    source.push(Buffer.buffer(ES_RESPONSE));
+    source.end();
+
+    assertTrue(chunks.size() > 1);
+    Buffer collected = Buffer.buffer();
+    chunks.forEach(collected::appendBuffer);
+    assertEquals(3, collected.toJsonObject().getJsonArray("results").size());
+  }
+
+  @Test
+  @DisplayName("stream without hits returns empty results")
+  public void streamWithoutHits() {
+    FakeSource source = new FakeSource();
+    SearchHitsStream stream = new SearchHitsStream(source, null, 0, 1024);
+
+    Buffer collected = Buffer.buffer();
+    stream.handler(collected::appendBuffer).resume();
+    source.push(Buffer.buffer("{}"));
+    source.end();
+
+    assertTrue(collected.toJsonObject().getJsonArray("results").isEmpty());
+  }
+
+  @Test
+  @DisplayName("stream is ready with total hits before any hit is consumed")
+  public void streamReadyWithTotal() {
+    FakeSource source = new FakeSource();
+    SearchHitsStream stream = new SearchHitsStream(source, new JsonObject(), 0, 1024);
+
+    source.push(Buffer.buffer("{\"took\":3,\"hits\":{\"total\":{\"value\":10000,"
+        + "\"relation\":\"gte\"},\"hits\":[{\"_source\":{\"id\":\"a\"}}]}}"));
+    source.end();
+
+    assertTrue(stream.ready().succeeded());
+    assertEquals(10000, stream.getTotalHits());
+
+    Buffer collected = Buffer.buffer();
+    stream.handler(collected::appendBuffer).resume();
+    JsonObject response = collected.toJsonObject();
+    assertEquals(1, response.getJsonArray("results").size());
+    assertEquals(10000, response.getInteger("totalHits"));
+    assertEquals("gte", response.getString("totalHitsRelation"));
+  }
+
+  @Test
+  @DisplayName("stream reports zero total hits for an empty result")
+  public void streamEmptyTotal() {
+    FakeSource source = new FakeSource();
+    SearchHitsStream stream = new SearchHitsStream(source, new JsonObject(), 0, 1024);
+
+    source.push(Buffer.buffer("{\"hits\":{\"total\":{\"value\":0,\"relation\":\"eq\"}}}"));
+    source.end();
+
+    assertTrue(stream.ready().succeeded());
+    assertEquals(0, stream.getTotalHits());
+  }
+
+  @Test
+  @DisplayName("stream adds a cursor to the trailer of a full page")
+  public void streamFullPageCursor() {
+    FakeSource source = new FakeSource();
+    SearchHitsStream stream = new SearchHitsStream(source, new JsonObject(), 2, 1024);
+
+    Buffer collected = Buffer.buffer();
+    stream.handler(collected::appendBuffer).resume();
+    source.push(Buffer.buffer("{\"pit_id\":\"p1\",\"hits\":{\"total\":{\"value\":5,"
+        + "\"relation\":\"eq\"},\"hits\":[{\"_source\":{\"id\":\"a\"},\"sort\":[1,\"a\"]},"
+        + "{\"_source\":{\"id\":\"b\"},\"sort\":[2,\"b\"]}]}}"));
+    source.end();
+
+    SearchCursor cursor =
+        SearchCursor.decode(collected.toJsonObject().getString("cursor"));
+    assertEquals(new JsonArray().add(2).add("b"), cursor.getSearchAfter());
+    assertEquals("p1", cursor.getPitId());
+  }
+
+  private static class FakeSource implements ReadStream<Buffer> {
+
+    private Handler<Buffer> handler;
+    private Handler<Void> endHandler;
+
+    void push(Buffer buffer) {
+      handler.handle(buffer);
+    }
+
+    void end() {
+      endHandler.handle(null);
+    }
+
+    @Override
+    public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+      this.handler = handler;
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> pause() {
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> resume() {
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> fetch(long amount) {
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+      this.endHandler = endHandler;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package iudx.resource.server.database.archives.elastic;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Compares the cost of reading a search response of 1000 hits as JSON, as it was read before, with
+ * reading the same response as SMILE and CBOR. The hits repeat a document recorded from the
+ * surat-itms-live-eta resource with its time, position and speed varied.
+ * <p>
+ * Run with the allocation profiler:
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args="WireFormatBenchmark -prof gc"</code>
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+  private static final int HITS = 1000;
+
+  private static final String RECORDED_HIT = "{\"_source\":{"
+      + "\"trip_direction\":\"UP\",\"trip_id\":\"1855\",\"route_id\":\"56D\","
+      + "\"actual_trip_start_time\":\"2021-06-15T09:26:00+05:30\",\"last_stop_arrival_time\":"
+      + "\"09:58:34\",\"vehicle_label\":\"SD6\",\"license_plate\":\"GJ05BX1190\","
+      + "\"last_stop_id\":\"1282\",\"speed\":21.0,\"trip_delay\":40,"
+      + "\"observationDateTime\":\"2021-06-15T10:00:00+05:30\",\"location\":{\"type\":\"Point\","
+      + "\"coordinates\":[72.811408,21.170358]},\"id\":\"iisc.ac.in/"
+      + "89a36273d77dac4cf38114fca1bbe64392547f86/rs.iudx.io/surat-itms-realtime-information/"
+      + "surat-itms-live-eta\"},\"sort\":[1623731400000]}";
+
+  private byte[] json;
+  private byte[] smile;
+  private byte[] cbor;
+
+  @Setup
+  public void setup() throws IOException {
+    JsonObject recorded = new JsonObject(RECORDED_HIT);
+    JsonArray hits = new JsonArray();
+    for (int i = 0; i < HITS; i++) {
+      JsonObject hit = recorded.copy();
+      JsonObject source = hit.getJsonObject("_source");
+      source.put("speed", 20.0 + i % 40)
+          .put("observationDateTime", String.format("2021-06-15T%02d:%02d:%02d+05:30",
+              i / 3600 % 24, i / 60 % 60, i % 60));
+      source.getJsonObject("location").getJsonArray("coordinates").set(0, 72.811408 + i * 1e-5);
+      hit.put("sort", new JsonArray().add(1623731400000L + i * 1000L));
+      hits.add(hit);
+    }
+    JsonObject response = new JsonObject().put("hits", new JsonObject()
+        .put("total", new JsonObject().put("value", HITS).put("relation", "eq"))
+        .put("hits", hits));
+
+    json = response.encode().getBytes(StandardCharsets.UTF_8);
+    smile = EntityUtils.toByteArray(WireFormat.SMILE.entity(response.toBuffer()));
+    cbor = EntityUtils.toByteArray(WireFormat.CBOR.entity(response.toBuffer()));
+  }
+
+  /** The response as it was read before, decoded to a string first. */
+  @Benchmark
+  public JsonObject jsonString() {
+    return new JsonObject(new String(json, StandardCharsets.UTF_8));
+  }
+
+  @Benchmark
+  public JsonObject json() {
+    return WireFormat.JSON.read(json);
+  }
+
+  @Benchmark
+  public JsonObject smile() {
+    return WireFormat.SMILE.read(smile);
+  }
+
+  @Benchmark
+  public JsonObject cbor() {
+    return WireFormat.CBOR.read(cbor);
+  }
+}
@@ -0,0 +1,109 @@
+package iudx.resource.server.database.archives.elastic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpEntity;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+public class WireFormatTest {
+
+  private static final JsonObject RESPONSE = new JsonObject()
+      .put("hits", new JsonObject()
+          .put("total", new JsonObject().put("value", 1).put("relation", "eq"))
+          .put("hits", new JsonArray().add(new JsonObject()
+              .put("_source", new JsonObject()
+                  .put("id", "surat-itms-live-eta")
+                  .put("speed", 31.5)
+                  .put("location", new JsonObject().put("type", "Point")
+                      .put("coordinates", new JsonArray().add(72.82).add(21.17))))
+              .put("sort", new JsonArray().add(1623751200000L)))));
+
+  @Test
+  @DisplayName("request bodies are transcoded and read back in each format")
+  public void roundTrip() throws IOException {
+    for (WireFormat format : WireFormat.values()) {
+      HttpEntity entity = format.entity(RESPONSE.toBuffer());
+      assertEquals(format, WireFormat.forContentType(entity.getContentType().getValue()));
+
+      JsonObject read = format.read(EntityUtils.toByteArray(entity));
+      assertEquals(RESPONSE, read);
+      JsonObject hit = read.getJsonObject("hits").getJsonArray("hits").getJsonObject(0);
+      assertEquals(1623751200000L, hit.getJsonArray("sort").getLong(0));
+      assertEquals(1, read.getJsonObject("hits").getJsonObject("total").getInteger("value"));
+    }
+    assertNotEquals(RESPONSE.toBuffer().length(),
+        EntityUtils.toByteArray(WireFormat.SMILE.entity(RESPONSE.toBuffer())).length);
+  }
+
+  @Test
+  @DisplayName("responses and configurations which are not a binary format fall back to JSON")
+  public void fallback() {
+    assertEquals(WireFormat.JSON, WireFormat.forContentType("application/json; charset=UTF-8"));
+    assertEquals(WireFormat.JSON, WireFormat.forContentType("text/plain"));
+    assertEquals(WireFormat.JSON, WireFormat.forContentType(null));
+    assertEquals(WireFormat.SMILE, WireFormat.forContentType("application/smile"));
+    assertEquals(WireFormat.CBOR, WireFormat.of("cbor"));
+    assertEquals(WireFormat.JSON, WireFormat.of("yaml"));
+    assertEquals(WireFormat.JSON, WireFormat.of(null));
+  }
+
+  @Test
+  @DisplayName("a body which is not in the format is a decode error")
+  public void malformed() {
+    byte[] json = RESPONSE.toBuffer().getBytes();
+    assertThrows(DecodeException.class, () -> WireFormat.SMILE.read(json));
+    assertThrows(DecodeException.class, () -> WireFormat.JSON.read(new byte[] {':', ')'}));
+  }
+
+  @Test
+  @DisplayName("a request which is not accepted in a binary format is sent once more in JSON")
+  public void notAccepted() throws Exception {
+    Vertx vertx = Vertx.vertx();
+    List<String> contentTypes = new ArrayList<>();
+    HttpServer server = vertx.createHttpServer().requestHandler(request -> {
+      String contentType = request.getHeader("Content-Type");
+      contentTypes.add(contentType);
+      if (WireFormat.forContentType(contentType) != WireFormat.JSON) {
+        request.response().setStatusCode(406).putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("error", "Content-Type not supported").encode());
+        return;
+      }
+      request.response().putHeader("Content-Type", "application/json")
+          .end(new JsonObject().put("count", 3).encode());
+    }).listen(0).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    try {
+      ElasticClient client = new ElasticClient("localhost", server.actualPort(), "user", "pw")
+          .setWireFormat(WireFormat.SMILE);
+      CompletableFuture<JsonObject> count = new CompletableFuture<>();
+      client.countAsync("index/_count", new JsonObject().put("query", new JsonObject()).toBuffer(),
+          result -> {
+            if (result.succeeded()) {
+              count.complete(result.result());
+            } else {
+              count.completeExceptionally(result.cause());
+            }
+          });
+
+      assertEquals(3, count.get(10, TimeUnit.SECONDS).getJsonArray("results").getJsonObject(0)
+          .getInteger("count"));
+      assertEquals(2, contentTypes.size());
+      assertEquals(WireFormat.SMILE, WireFormat.forContentType(contentTypes.get(0)));
+      assertEquals(WireFormat.JSON, WireFormat.forContentType(contentTypes.get(1)));
+    } finally {
+      vertx.close();
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package iudx.resource.server.database.export;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+public class ExportFileWriterTest {
+
+  @TempDir
+  Path directory;
+
+  private List<String> readLines(Path file) throws IOException {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+      return reader.lines().collect(Collectors.toList());
+    }
+  }
+
+  private JsonObject record(String id, double value) {
+    return new JsonObject().put("id", id).put("value", value);
+  }
+
+  @Test
+  @DisplayName("ndjson export writes one record per line")
+  public void writeNdjson() throws IOException {
+    Path file = directory.resolve("records.ndjson.gz");
+    try (ExportFileWriter writer = new ExportFileWriter(file, ExportFormat.NDJSON, null, true)) {
+      writer.write(record("a", 1.5));
+      writer.write(record("b", 2.5));
+      assertEquals(2, writer.records());
+    }
+
+    List<String> lines = readLines(file);
+    assertEquals(2, lines.size());
+    assertEquals(record("a", 1.5), new JsonObject(lines.get(0)));
+    assertEquals(record("b", 2.5), new JsonObject(lines.get(1)));
+  }
+
+  @Test
+  @DisplayName("csv export escapes cells and writes nested values as json")
+  public void writeCsv() throws IOException {
+    Path file = directory.resolve("records.csv.gz");
+    List<String> columns = Arrays.asList("id", "name", "location");
+    try (ExportFileWriter writer = new ExportFileWriter(file, ExportFormat.CSV, columns, true)) {
+      writer.write(new JsonObject().put("id", "a").put("name", "say \"hi\", bye")
+          .put("location", new JsonObject().put("type", "Point")));
+    }
+
+    List<String> lines = readLines(file);
+    assertEquals("id,name,location", lines.get(0));
+    assertEquals("a,\"say \"\"hi\"\", bye\",\"{\"\"type\"\":\"\"Point\"\"}\"", lines.get(1));
+    assertEquals("", ExportFileWriter.toCell(null));
+    assertEquals("\"[1,2]\"", ExportFileWriter.toCell(new JsonArray().add(1).add(2)));
+  }
+
+  @Test
+  @DisplayName("part files are joined into one gzip file, with a single csv header")
+  public void joinParts() throws IOException {
+    List<String> columns = Arrays.asList("id", "value");
+    Path first = directory.resolve("job.part0");
+    Path second = directory.resolve("job.part1");
+    try (ExportFileWriter writer = new ExportFileWriter(first, ExportFormat.CSV, columns, true)) {
+      writer.write(record("a", 1.5));
+    }
+    try (ExportFileWriter writer = new ExportFileWriter(second, ExportFormat.CSV, columns, false)) {
+      writer.write(record("b", 2.5));
+    }
+
+    Path target = directory.resolve("job.csv.gz");
+    long size = ExportFileWriter.join(Arrays.asList(first, second), target);
+
+    assertEquals(Files.size(target), size);
+    assertEquals(Arrays.asList("id,value", "a,1.5", "b,2.5"), readLines(target));
+    assertFalse(Files.exists(first));
+    assertFalse(Files.exists(second));
+  }
+
+  @Test
+  @DisplayName("export format defaults to ndjson, unknown formats are rejected")
+  public void exportFormat() {
+    assertEquals(ExportFormat.NDJSON, ExportFormat.fromFormat(null));
+    assertEquals(ExportFormat.CSV, ExportFormat.fromFormat("csv"));
+    assertNull(ExportFormat.fromFormat("xml"));
+    assertEquals("job.csv.gz", ExportFormat.CSV.fileName("job"));
+  }
+}
@@ -0,0 +1,148 @@
+package iudx.resource.server.database.latest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.json.JsonObject;
+
+public class LatestCacheTest {
+
+  private static final String GROUP =
+      "datakaveri.org/04a15c9960ffda227e9546f3f46e629e1fe4132b/rs.iudx.io/pune-env-aqm";
+  private static final String SENSOR = GROUP + "/0a1b2c3d";
+  private static final String OTHER_SENSOR = GROUP + "/4e5f6a7b";
+  private static final RedisCommandArgsBuilder BUILDER = new RedisCommandArgsBuilder();
+
+  private final Set<String> watched = new HashSet<>();
+  private long now;
+  private SimpleMeterRegistry registry;
+  private LatestCache cache;
+
+  @BeforeEach
+  public void setup() {
+    now = 1000000L;
+    watched.clear();
+    watched.add(GROUP);
+    registry = new SimpleMeterRegistry();
+    cache = new LatestCache(new JsonObject().put("latestCacheTtl", 60000L)
+        .put("latestCacheSettle", 2000L).put("latestCacheMaxEntries", 2), registry,
+        () -> now, watched::contains);
+  }
+
+  @Test
+  @DisplayName("a value read is served until its id is published")
+  public void publishDropsValue() {
+    RedisArgs args = BUILDER.getRedisCommandArgs(SENSOR, false);
+    RedisArgs other = BUILDER.getRedisCommandArgs(OTHER_SENSOR, false);
+    cache.put(SENSOR, args, value(1), cache.readStarted(SENSOR));
+    cache.put(OTHER_SENSOR, other, value(2), cache.readStarted(OTHER_SENSOR));
+
+    now += 500;
+    assertEquals(value(1), cache.get(args));
+
+    cache.invalidate(GROUP, SENSOR);
+    assertNull(cache.get(args));
+    assertEquals(value(2), cache.get(other));
+  }
+
+  @Test
+  @DisplayName("a value read before a publish has settled is not cached")
+  public void settle() {
+    RedisArgs args = BUILDER.getRedisCommandArgs(SENSOR, false);
+    cache.invalidate(GROUP, SENSOR);
+
+    now += 1000;
+    cache.put(SENSOR, args, value(1), cache.readStarted(SENSOR));
+    assertNull(cache.get(args));
+
+    now += 1000;
+    cache.put(SENSOR, args, value(2), cache.readStarted(SENSOR));
+    assertEquals(value(2), cache.get(args));
+
+    // published while it was read
+    long readAt = cache.readStarted(SENSOR);
+    now += 3000;
+    cache.invalidate(GROUP, SENSOR);
+    cache.put(SENSOR, args, value(3), readAt);
+    assertNull(cache.get(args));
+  }
+
+  @Test
+  @DisplayName("a publish to the group without a resource drops all values of the group")
+  public void groupWidePublish() {
+    RedisArgs args = BUILDER.getRedisCommandArgs(SENSOR, true);
+    RedisArgs group = BUILDER.getRedisCommandArgs(GROUP, false);
+    cache.put(SENSOR, args, value(1), cache.readStarted(SENSOR));
+    cache.put(GROUP, group, value(2), cache.readStarted(GROUP));
+
+    cache.invalidate(GROUP, "unknown");
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  @DisplayName("values of groups not watched and values past their ttl are not served")
+  public void notWatchedAndTtl() {
+    RedisArgs args = BUILDER.getRedisCommandArgs(SENSOR, false);
+    watched.clear();
+    cache.put(SENSOR, args, value(1), cache.readStarted(SENSOR));
+    assertNull(cache.get(args));
+
+    watched.add(GROUP);
+    cache.put(SENSOR, args, value(1), cache.readStarted(SENSOR));
+    now += 60001;
+    assertNull(cache.get(args));
+  }
+
+  @Test
+  @DisplayName("the values served are copies and the cache is bounded")
+  public void copiesAndBound() {
+    RedisArgs args = BUILDER.getRedisCommandArgs(SENSOR, false);
+    cache.put(SENSOR, args, value(1), cache.readStarted(SENSOR));
+    cache.get(args).put("pm2p5", 0);
+    assertEquals(value(1), cache.get(args));
+
+    cache.put(OTHER_SENSOR, BUILDER.getRedisCommandArgs(OTHER_SENSOR, false), value(2),
+        cache.readStarted(OTHER_SENSOR));
+    // the least recently read value is dropped
+    cache.get(args);
+    cache.put(GROUP, BUILDER.getRedisCommandArgs(GROUP, false), value(3),
+        cache.readStarted(GROUP));
+    assertEquals(2, cache.size());
+    assertNotNull(cache.get(args));
+    assertNull(cache.get(BUILDER.getRedisCommandArgs(OTHER_SENSOR, false)));
+  }
+
+  @Test
+  @DisplayName("hit ratio and staleness are published")
+  public void metrics() {
+    RedisArgs args = BUILDER.getRedisCommandArgs(SENSOR, false);
+    assertNull(cache.get(args));
+    cache.put(SENSOR, args, value(1), cache.readStarted(SENSOR));
+    now += 1500;
+    cache.get(args);
+    cache.get(args);
+
+    assertEquals(2.0 / 3, registry.get("iudx.rs.latest.cache.hit.ratio").gauge().value(), 1e-9);
+    assertEquals(2, registry.get("iudx.rs.latest.cache.staleness").timer().count());
+    assertEquals(1500.0,
+        registry.get("iudx.rs.latest.cache.staleness").timer().max(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  @DisplayName("the exchange of an id is its resource group")
+  public void exchange() {
+    assertEquals(GROUP, LatestCache.exchange(SENSOR));
+    assertEquals(GROUP, LatestCache.exchange(GROUP));
+  }
+
+  private static JsonObject value(int pm2p5) {
+    return new JsonObject().put("id", SENSOR).put("pm2p5", pm2p5);
+  }
+}
@@ -0,0 +1,188 @@
+package iudx.resource.server.database.latest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.cache.CacheService;
+
+public class LatestDataServiceImplTest {
+
+  private static final String AQM =
+      "datakaveri.org/04a15c9960ffda227e9546f3f46e629e1fe4132b/rs.iudx.io/pune-env-aqm/";
+  private static final String ITMS = "iisc.ac.in/89a36273d77dac4cf38114fca1bbe64392547f86/"
+      + "rs.iudx.io/surat-itms-realtime-information";
+
+  private RedisClient redisClient;
+  private CacheService cacheService;
+  private LatestDataService latest;
+
+  @BeforeEach
+  public void setup() {
+    redisClient = mock(RedisClient.class);
+    cacheService = mock(CacheService.class);
+    latest = new LatestDataServiceImpl(redisClient, cacheService);
+    doAnswer(invocation -> {
+      Handler<AsyncResult<JsonObject>> handler = invocation.getArgument(1);
+      handler.handle(Future.succeededFuture(new JsonObject()
+          .put("values", new JsonObject().put(ITMS, "license_plate"))));
+      return cacheService;
+    }).when(cacheService).getAll(any(), any());
+  }
+
+  @Test
+  @DisplayName("the latest data of many ids is looked up in one batch and merged")
+  @SuppressWarnings("unchecked")
+  public void batch() {
+    JsonObject sensor = new JsonObject().put("id", AQM + "0a1b2c3d").put("pm2p5", 41.0);
+    JsonObject group = new JsonObject()
+        .put(ITMS.replace("-", "_").replace("/", "_").replace(".", "_"), new JsonObject())
+        .put("GJ05BX1190", new JsonObject().put("license_plate", "GJ05BX1190"))
+        .put("GJ05BX1191", new JsonObject().put("license_plate", "GJ05BX1191"));
+    when(redisClient.getAll(anyList()))
+        .thenReturn(Future.succeededFuture(Arrays.asList(sensor, null, group)));
+
+    JsonObject request = new JsonObject().put("id",
+        new JsonArray().add(AQM + "0a1b2c3d").add(AQM + "4e5f6a7b").add(ITMS));
+    JsonObject[] response = new JsonObject[1];
+    latest.getLatestData(request, handler -> response[0] = handler.result());
+
+    verify(cacheService, times(1)).getAll(any(), any());
+    verify(cacheService, never()).get(any(), any());
+    ArgumentCaptor<List<RedisArgs>> args = ArgumentCaptor.forClass(List.class);
+    verify(redisClient).getAll(args.capture());
+    assertEquals(3, args.getValue().size());
+    assertTrue(args.getValue().get(0).getPath().startsWith("._"));
+    assertEquals(".", args.getValue().get(2).getPath());
+
+    JsonArray results = response[0].getJsonArray("results");
+    assertEquals(3, results.size());
+    assertEquals(sensor, results.getJsonObject(0));
+    assertEquals("GJ05BX1190", results.getJsonObject(1).getString("license_plate"));
+  }
+
+  @Test
+  @DisplayName("values held by the near-cache are not read from redis again")
+  @SuppressWarnings("unchecked")
+  public void nearCache() {
+    LatestCache nearCache = new LatestCache(new JsonObject(), new SimpleMeterRegistry(),
+        System::currentTimeMillis, exchange -> true);
+    latest = new LatestDataServiceImpl(redisClient, cacheService, nearCache);
+    JsonObject sensor = new JsonObject().put("id", AQM + "0a1b2c3d").put("pm2p5", 41.0);
+    JsonObject other = new JsonObject().put("id", AQM + "4e5f6a7b").put("pm2p5", 12.0);
+    when(redisClient.getAll(anyList()))
+        .thenReturn(Future.succeededFuture(Arrays.asList(sensor, null)))
+        .thenReturn(Future.succeededFuture(Arrays.asList(other)));
+
+    JsonObject request = new JsonObject().put("id",
+        new JsonArray().add(AQM + "0a1b2c3d").add(AQM + "4e5f6a7b"));
+    latest.getLatestData(request.copy(), handler -> {
+    });
+    JsonObject[] response = new JsonObject[1];
+    latest.getLatestData(request.copy(), handler -> response[0] = handler.result());
+
+    ArgumentCaptor<List<RedisArgs>> args = ArgumentCaptor.forClass(List.class);
+    verify(redisClient, times(2)).getAll(args.capture());
+    assertEquals(1, args.getAllValues().get(1).size());
+    assertEquals(new JsonArray().add(sensor).add(other), response[0].getJsonArray("results"));
+  }
+
+  @Test
+  @DisplayName("a batch of ids none of which has latest data is an empty response")
+  public void batchNotFound() {
+    when(redisClient.getAll(anyList()))
+        .thenReturn(Future.succeededFuture(Arrays.asList(null, null)));
+
+    JsonObject request = new JsonObject().put("id",
+        new JsonArray().add(AQM + "0a1b2c3d").add(AQM + "4e5f6a7b"));
+    String[] failure = new String[1];
+    latest.getLatestData(request, handler -> failure[0] = handler.cause().getMessage());
+
+    assertEquals(204, new JsonObject(failure[0]).getInteger("type"));
+  }
+
+  @Test
+  @DisplayName("the latest data of a group is read from the keys of its resources")
+  @SuppressWarnings("unchecked")
+  public void group() {
+    RedisCommandArgsBuilder builder = new RedisCommandArgsBuilder();
+    String aqm = AQM.substring(0, AQM.length() - 1);
+    String groupKey = builder.getRedisCommandArgs(aqm, true).getKey();
+    RedisArgs sensorArgs = builder.getRedisCommandArgs(AQM + "0a1b2c3d", false);
+    JsonObject sensor = new JsonObject().put("id", AQM + "0a1b2c3d").put("pm2p5", 41.0)
+        .put("pm10", 60.0);
+    JsonObject document = new JsonObject().put(sensorArgs.getPath().substring(1), sensor);
+    // keys of another group sharing the prefix of the key of the group
+    when(redisClient.scan(anyString())).thenReturn(Future.succeededFuture(
+        Arrays.asList(sensorArgs.getKey(), groupKey + "2_0a1b2c3d")));
+    when(redisClient.slotBatches(anyList(), anyInt())).thenAnswer(
+        invocation -> Collections.singletonList(invocation.<List<RedisArgs>>getArgument(0)));
+    when(redisClient.getAll(anyList()))
+        .thenReturn(Future.succeededFuture(Arrays.asList(document)));
+
+    JsonObject request = new JsonObject().put("id", new JsonArray().add(aqm))
+        .put("attrs", new JsonArray().add("id").add("pm2p5"));
+    JsonObject[] response = new JsonObject[2];
+    latest.getGroupLatestData(request.copy(), handler -> response[0] = handler.result());
+    latest.getGroupLatestData(request.copy(), handler -> response[1] = handler.result());
+
+    verify(redisClient, times(1)).scan(groupKey + "*");
+    ArgumentCaptor<List<RedisArgs>> args = ArgumentCaptor.forClass(List.class);
+    verify(redisClient, times(2)).getAll(args.capture());
+    assertEquals(1, args.getValue().size());
+    assertEquals(".", args.getValue().get(0).getPath());
+    JsonArray projected =
+        new JsonArray().add(new JsonObject().put("id", AQM + "0a1b2c3d").put("pm2p5", 41.0));
+    assertEquals(projected, response[0].getJsonArray("results"));
+    assertEquals(projected, response[1].getJsonArray("results"));
+  }
+
+  @Test
+  @DisplayName("the values of a group with a unique attribute are expanded")
+  public void groupValues() {
+    String itmsKey = new RedisCommandArgsBuilder().getRedisCommandArgs(ITMS, true).getKey();
+    JsonObject bus = new JsonObject().put("id", ITMS + "/surat-itms-live-eta")
+        .put("license_plate", "GJ05BX1190");
+    JsonObject document = new JsonObject().put(itmsKey, new JsonObject())
+        .put("GJ05BX1190", bus)
+        .put("GJ05BX1191", new JsonObject().put("id", ITMS + "2/surat-itms-live-eta"));
+
+    JsonArray values = ((LatestDataServiceImpl) latest).groupValues(ITMS, itmsKey, document,
+        null);
+    assertEquals(new JsonArray().add(bus), values);
+  }
+
+  @Test
+  @DisplayName("a group without latest data is an empty response")
+  public void groupNotFound() {
+    when(redisClient.scan(anyString())).thenReturn(Future.succeededFuture(Arrays.asList()));
+    when(redisClient.slotBatches(anyList(), anyInt())).thenReturn(Arrays.asList());
+
+    JsonObject request = new JsonObject().put("id", new JsonArray().add(ITMS));
+    String[] failure = new String[1];
+    latest.getGroupLatestData(request, handler -> failure[0] = handler.cause().getMessage());
+
+    assertEquals(204, new JsonObject(failure[0]).getInteger("type"));
+  }
+}
@@ -0,0 +1,97 @@
+package iudx.resource.server.database.latest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+public class LatestGroupStreamTest {
+
+  private static final RedisCommandArgsBuilder BUILDER = new RedisCommandArgsBuilder();
+
+  private final List<Promise<JsonArray>> reads = new ArrayList<>();
+  private final List<Buffer> chunks = new ArrayList<>();
+  private boolean ended;
+  private Throwable failure;
+  private LatestGroupStream stream;
+
+  @BeforeEach
+  public void setup() {
+    reads.clear();
+    chunks.clear();
+    ended = false;
+    failure = null;
+    List<List<RedisArgs>> batches = Arrays.asList(
+        Arrays.asList(BUILDER.getRedisCommandArgs("a/b/c/d/e", false)),
+        Arrays.asList(BUILDER.getRedisCommandArgs("a/b/c/d/f", false)));
+    stream = new LatestGroupStream(batches, batch -> {
+      Promise<JsonArray> read = Promise.promise();
+      reads.add(read);
+      return read.future();
+    });
+    stream.endHandler(end -> ended = true);
+    stream.exceptionHandler(cause -> failure = cause);
+  }
+
+  @Test
+  @DisplayName("the values of all the batches are written as one response")
+  public void response() {
+    stream.handler(chunks::add);
+    assertEquals(1, reads.size());
+    reads.get(0).complete(new JsonArray().add(value(1)).add(value(2)));
+    assertEquals(2, reads.size());
+    reads.get(1).complete(new JsonArray().add(value(3)));
+
+    assertTrue(ended);
+    Buffer body = Buffer.buffer();
+    chunks.forEach(body::appendBuffer);
+    JsonObject response = new JsonObject(body);
+    assertEquals(200, response.getInteger("type"));
+    assertEquals(new JsonArray().add(value(1)).add(value(2)).add(value(3)),
+        response.getJsonArray("results"));
+  }
+
+  @Test
+  @DisplayName("the next batch is only read when more is asked for")
+  public void demand() {
+    stream.pause();
+    stream.handler(chunks::add);
+    assertEquals(0, chunks.size());
+
+    stream.fetch(2);
+    assertEquals(1, reads.size());
+    reads.get(0).complete(new JsonArray().add(value(1)));
+    // the prefix and the first batch are written, the second batch waits
+    assertEquals(2, chunks.size());
+    assertEquals(1, reads.size());
+
+    stream.resume();
+    reads.get(1).complete(new JsonArray());
+    assertTrue(ended);
+  }
+
+  @Test
+  @DisplayName("a batch that can not be read fails the stream")
+  public void failure() {
+    stream.handler(chunks::add);
+    reads.get(0).fail("JSONMGET did not work");
+
+    assertNotNull(failure);
+    assertEquals(1, reads.size());
+    assertFalse(ended);
+  }
+
+  private static JsonObject value(int pm2p5) {
+    return new JsonObject().put("id", "a/b/c/d/e").put("pm2p5", pm2p5);
+  }
+}
@@ -0,0 +1,68 @@
+package iudx.resource.server.database.latest;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the cost of the Redis key and path of a latest request when they are resolved for every
+ * request, hashing the path of the default attribute each time, with looking them up in the
+ * registry of resolved ids. The ids are 1000 resources of a group of the pune-env-aqm kind.
+ * <p>
+ * Run with the allocation profiler:
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args="RedisArgsBenchmark -prof gc"</code>
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisArgsBenchmark {
+
+  private static final int IDS = 1000;
+  private static final String GROUP =
+      "datakaveri.org/04a15c9960ffda227e9546f3f46e629e1fe4132b/rs.iudx.io/pune-env-aqm";
+
+  private final String[] ids = new String[IDS];
+  private RedisCommandArgsBuilder resolvedPerRequest;
+  private RedisCommandArgsBuilder registry;
+
+  @Setup
+  public void setup() {
+    for (int i = 0; i < IDS; i++) {
+      ids[i] = GROUP + "/" + String.format("%08x", i * 2654435761L & 0xffffffffL);
+    }
+    // a registry that keeps no id resolves every request
+    resolvedPerRequest = new RedisCommandArgsBuilder(0);
+    registry = new RedisCommandArgsBuilder();
+    for (String id : ids) {
+      registry.getRedisCommandArgs(id, false);
+    }
+  }
+
+  @Benchmark
+  public void resolvedPerRequest(Blackhole blackhole) {
+    for (String id : ids) {
+      blackhole.consume(resolvedPerRequest.getRedisCommandArgs(id, false));
+    }
+  }
+
+  @Benchmark
+  public void registry(Blackhole blackhole) {
+    for (String id : ids) {
+      blackhole.consume(registry.getRedisCommandArgs(id, false));
+    }
+  }
+}
@@ -2,6 +2,8 @@ package iudx.resource.server.database.latest;
 
 import static iudx.resource.server.database.archives.Constants.DEFAULT_ATTRIBUTE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.jupiter.api.BeforeAll;
@@ -50,4 +52,32 @@ public class RedisCommandArgsBuilderTest {
     assertEquals("._" + sha, redisArgs.getPath());
   }
 
+  @Test
+  public void resolvedOnce() {
+    RedisCommandArgsBuilder builder = new RedisCommandArgsBuilder();
+    String group = "asdas/asdasdas/adsasdasd/asdasda";
+    RedisArgs resource = builder.getRedisCommandArgs(group + "/asdasdas", false);
+    builder.getRedisCommandArgs(group, true);
+
+    assertSame(resource, builder.getRedisCommandArgs(group + "/asdasdas", false));
+    assertEquals(2, builder.size());
+
+    // the resources of a group are dropped with it
+    builder.evict(group);
+    assertEquals(0, builder.size());
+    RedisArgs resolvedAgain = builder.getRedisCommandArgs(group + "/asdasdas", false);
+    assertNotSame(resource, resolvedAgain);
+    assertEquals(resource.getPath(), resolvedAgain.getPath());
+  }
+
+  @Test
+  public void bounded() {
+    RedisCommandArgsBuilder builder = new RedisCommandArgsBuilder(1);
+    builder.getRedisCommandArgs("asdas/asdasdas/adsasdasd/asdasda", true);
+    RedisArgs notKept = builder.getRedisCommandArgs("asdas/asdasdas/adsasdasd/asdasdb", true);
+
+    assertEquals(1, builder.size());
+    assertEquals("asdas_asdasdas_adsasdasd_asdasdb", notKept.getKey());
+  }
+
 }
@@ -0,0 +1,136 @@
+package iudx.resource.server.database.latest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisConnection;
+
+public class RedisConnectionPoolTest {
+
+  private final List<Long> delays = new ArrayList<>();
+  private final List<Handler<Long>> timers = new ArrayList<>();
+  private Vertx vertx;
+  private Redis client;
+  private SimpleMeterRegistry registry;
+  private RedisConnectionPool.Metrics metrics;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    delays.clear();
+    timers.clear();
+    vertx = mock(Vertx.class);
+    client = mock(Redis.class);
+    registry = new SimpleMeterRegistry();
+    metrics = new RedisConnectionPool.Metrics(registry);
+    when(vertx.setTimer(anyLong(), any())).thenAnswer(invocation -> {
+      delays.add(invocation.getArgument(0));
+      timers.add(invocation.getArgument(1));
+      return (long) timers.size();
+    });
+  }
+
+  @Test
+  @DisplayName("the open connections are used in turn")
+  public void inTurn() {
+    RedisConnection first = mock(RedisConnection.class);
+    RedisConnection second = mock(RedisConnection.class);
+    when(client.connect()).thenReturn(Future.succeededFuture(first),
+        Future.succeededFuture(second));
+    RedisConnectionPool pool = pool(2);
+
+    assertTrue(pool.start().succeeded());
+    assertSame(first, pool.connection().result());
+    assertSame(second, pool.connection().result());
+    assertSame(first, pool.connection().result());
+    assertEquals(2.0, registry.get("iudx.rs.redis.pool.open").gauge().value());
+  }
+
+  @Test
+  @DisplayName("the connections are published summed over the pools which are not closed")
+  public void summed() {
+    when(client.connect()).thenAnswer(invocation ->
+        Future.succeededFuture(mock(RedisConnection.class)));
+    RedisConnectionPool first = pool(2);
+    RedisConnectionPool second = pool(1);
+    first.start();
+    second.start();
+    assertEquals(3.0, registry.get("iudx.rs.redis.pool.size").gauge().value());
+    assertEquals(3.0, registry.get("iudx.rs.redis.pool.open").gauge().value());
+
+    first.close();
+    assertEquals(1.0, registry.get("iudx.rs.redis.pool.size").gauge().value());
+    assertEquals(1.0, registry.get("iudx.rs.redis.pool.open").gauge().value());
+  }
+
+  @Test
+  @DisplayName("a lost connection is skipped until it is reopened")
+  @SuppressWarnings("unchecked")
+  public void reconnect() {
+    RedisConnection first = mock(RedisConnection.class);
+    RedisConnection second = mock(RedisConnection.class);
+    RedisConnection reopened = mock(RedisConnection.class);
+    when(client.connect()).thenReturn(Future.succeededFuture(first),
+        Future.succeededFuture(second), Future.failedFuture("connection refused"),
+        Future.succeededFuture(reopened));
+    RedisConnectionPool pool = pool(2);
+    pool.start();
+
+    ArgumentCaptor<Handler<Void>> end = ArgumentCaptor.forClass(Handler.class);
+    verify(first).endHandler(end.capture());
+    end.getValue().handle(null);
+    assertEquals(1, pool.open());
+    assertSame(second, pool.connection().result());
+    assertSame(second, pool.connection().result());
+
+    // the first attempt fails, the second one is made after twice the delay
+    timers.get(0).handle(1L);
+    timers.get(1).handle(2L);
+    assertEquals(List.of(100L, 200L), delays);
+    assertEquals(2, pool.open());
+    assertEquals(1.0, registry.get("iudx.rs.redis.pool.reconnects").tag("result", "failure")
+        .counter().count());
+    assertEquals(1.0, registry.get("iudx.rs.redis.pool.reconnects").tag("result", "success")
+        .counter().count());
+  }
+
+  @Test
+  @DisplayName("commands fail fast and the start fails when no connection is open")
+  public void noConnection() {
+    when(client.connect()).thenReturn(Future.failedFuture("connection refused"));
+    RedisConnectionPool pool = pool(2);
+
+    assertTrue(pool.start().failed());
+    assertTrue(pool.connection().failed());
+  }
+
+  @Test
+  @DisplayName("the delay before reopening a connection is doubled up to a maximum")
+  public void backoff() {
+    RedisConnectionPool pool = pool(1);
+    assertEquals(100L, pool.backoff(0));
+    assertEquals(800L, pool.backoff(3));
+    assertEquals(1000L, pool.backoff(4));
+    assertEquals(1000L, pool.backoff(64));
+  }
+
+  private RedisConnectionPool pool(int size) {
+    return new RedisConnectionPool(vertx, client, size, 100L, 1000L, metrics);
+  }
+}
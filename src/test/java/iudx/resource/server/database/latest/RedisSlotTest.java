@@ -0,0 +1,60 @@
+package iudx.resource.server.database.latest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class RedisSlotTest {
+
+  private static final RedisCommandArgsBuilder BUILDER = new RedisCommandArgsBuilder();
+
+  @Test
+  @DisplayName("slots are the ones redis cluster computes")
+  public void slots() {
+    byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+    assertEquals(0x31C3, RedisSlot.crc16(check, 0, check.length));
+    assertEquals(12182, RedisSlot.of("foo"));
+    assertEquals(5061, RedisSlot.of("bar"));
+    // only the hash tag is hashed, an empty one is not a hash tag
+    assertEquals(RedisSlot.of("user1000"), RedisSlot.of("{user1000}.following"));
+    assertEquals(RedisSlot.of("{user1000}.following"), RedisSlot.of("{user1000}.followers"));
+    assertEquals(RedisSlot.crc16("{}foo".getBytes(StandardCharsets.US_ASCII), 0, 5)
+        % RedisSlot.SLOTS, RedisSlot.of("{}foo"));
+  }
+
+  @Test
+  @DisplayName("keys are grouped by slot and by path")
+  public void groupBySlot() {
+    String aqm = "datakaveri.org/04a15c9960ffda227e9546f3f46e629e1fe4132b/rs.iudx.io/pune-env-aqm/";
+    String itms = "iisc.ac.in/89a36273d77dac4cf38114fca1bbe64392547f86/rs.iudx.io/"
+        + "surat-itms-realtime-information/surat-itms-live-eta";
+    List<RedisArgs> args = List.of(
+        BUILDER.getRedisCommandArgs(aqm + "0a1b2c3d", false),
+        BUILDER.getRedisCommandArgs(itms, true),
+        BUILDER.getRedisCommandArgs(aqm + "4e5f6a7b", false),
+        BUILDER.getRedisCommandArgs(aqm + "0a1b2c3d", true));
+
+    Map<Integer, Map<String, List<Integer>>> standalone = RedisClient.groupBySlot(args, false);
+    assertEquals(1, standalone.size());
+    Map<String, List<Integer>> paths = standalone.get(0);
+    assertEquals(List.of(1, 3), paths.get("."));
+    assertEquals(List.of(0), paths.get(args.get(0).getPath()));
+    assertNotEquals(args.get(0).getPath(), args.get(2).getPath());
+
+    Map<Integer, Map<String, List<Integer>>> clustered = RedisClient.groupBySlot(args, true);
+    int grouped = 0;
+    for (Map.Entry<Integer, Map<String, List<Integer>>> slot : clustered.entrySet()) {
+      for (List<Integer> indices : slot.getValue().values()) {
+        for (int index : indices) {
+          assertEquals((int) slot.getKey(), RedisSlot.of(args.get(index).getKey()));
+          grouped++;
+        }
+      }
+    }
+    assertEquals(args.size(), grouped);
+  }
+}